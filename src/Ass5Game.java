@@ -1,20 +1,348 @@
 //ID 230360703
 // Date 2.01.2026
+import biuoop.GUI;
+import biuoop.KeyboardSensor;
+import eventlog.EventLog;
+import game.AutoplayController;
+import game.FramePacer;
 import game.Game;
+import game.Heatmap;
+import game.IdleKeyboardSensor;
+import game.ParticleSystem;
+import game.Warmup;
+import input.InputQueue;
+import input.InputSampler;
+import input.QueuedKeyboardSensor;
+import leaderboard.Leaderboard;
+import leaderboard.LeaderboardStore;
+import net.GameClient;
+import net.GameServer;
+import render.Display;
+import render.FrameSink;
+import render.GuiDisplay;
+import render.OffscreenDisplay;
+import render.PngSequenceSink;
+import render.RawVideoSink;
+import render.TimedDisplay;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Entry point for Assignment 3.
  * Creates a game, initializes it, and starts the animation loop.
  */
 public class Ass5Game {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final int ENCODER_THREADS = 3;
+    private static final String[] INPUT_KEYS = {KeyboardSensor.LEFT_KEY, KeyboardSensor.RIGHT_KEY};
+    private static final int INPUT_QUEUE_CAPACITY = 1024;
+    private static final long INPUT_PERIOD_NANOS = 250_000L;
+    private static final int DEFAULT_PLAYERS = 2;
+    private static final int TRAINING_TICKS = 5000;
+    private static final int TRAINING_FRAMES = 60;
+    private static final int HEATMAP_CELL = 20;
+
     /**
      * Launches the game.
+     * Options:
+     * <ul>
+     *     <li>{@code --level FILE} plays the level in {@code FILE} (text or binary
+     *         level format) instead of the built-in one;</li>
+     *     <li>{@code --chunked SIZE} splits the level into chunks of
+     *         {@code SIZE} pixels that are paged in around the viewport and
+     *         the balls, for levels much larger than the screen;</li>
+     *     <li>{@code --input-thread} samples the keyboard on its own thread,
+     *         about every quarter millisecond, so short taps between frames
+     *         are not lost, and reports the input-to-tick latency at the end;</li>
+     *     <li>{@code --autoplay} lets the computer move the paddle;</li>
+     *     <li>{@code --ball-collisions} makes balls bounce off each other;</li>
+     *     <li>{@code --fixed-point} moves balls in fixed point, so a game plays
+     *         the same on every machine;</li>
+     *     <li>{@code --vector-collisions} tests bricks several per vector
+     *         instruction, for levels with many bricks close together; the
+     *         JVM needs {@code --add-modules jdk.incubator.vector};</li>
+     *     <li>{@code --particles} shows particles when blocks break and
+     *         behind the balls, thinned out whenever they would take more
+     *         than a millisecond a frame; see {@link ParticleSystem};</li>
+     *     <li>{@code --heatmap FILE} counts block hits and where the balls
+     *         go, and saves the counts to {@code FILE} when the game ends, as
+     *         CSV if its name ends in {@code .csv}; see {@link Heatmap};</li>
+     *     <li>{@code --event-log DIR} records block hits, lost balls, score
+     *         changes and the level's start and end into a memory-mapped
+     *         log in {@code DIR}; see {@link EventLog};</li>
+     *     <li>{@code --leaderboard DIR} enters the final score into the
+     *         level's top-ten table in {@code DIR} and prints the table;
+     *         {@code --name NAME} names the player (the user name by default);</li>
+     *     <li>{@code --serve PORT} runs a headless server on {@code PORT} for
+     *         {@code --players N} players (two by default) who connect with
+     *         {@code --connect HOST:PORT}; clients must pass the same
+     *         {@code --level} as the server;</li>
+     *     <li>{@code --render-thread} draws on a separate render thread;</li>
+     *     <li>{@code --snapshot FILE} loads a level snapshot written by
+     *         {@link game.LevelSnapshot} instead of building the level;</li>
+     *     <li>{@code --warmup TICKS} plays {@code TICKS} ticks of headless
+     *         throwaway games before the window opens, so the first frames
+     *         run compiled code;</li>
+     *     <li>{@code --startup-report} prints the time to the first frame and
+     *         the frame times of the first second;</li>
+     *     <li>{@code --pacing-report} prints how evenly frames were spaced;</li>
+     *     <li>{@code --train} runs the startup code once without a window and
+     *         exits, for recording a class-data-sharing archive;</li>
+     *     <li>{@code --capture-png DIR} runs without a window and writes every
+     *         frame as a PNG file into {@code DIR};</li>
+     *     <li>{@code --capture-raw FILE} runs without a window and writes raw RGB
+     *         frames to {@code FILE}, or to standard output when {@code FILE} is
+     *         {@code -}.</li>
+     * </ul>
      *
-     * @param args unused command-line arguments
+     * @param args command-line options
+     * @throws IOException if the level or a capture target cannot be opened
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        long jvmStart = System.nanoTime() - ManagementFactory.getRuntimeMXBean().getUptime() * 1_000_000L;
+        long mainStart = System.nanoTime();
         Game game = new Game();
-        game.initialize();
+        FrameSink capture = null;
+        Path level = null;
+        double chunkSize = 0;
+        boolean autoplay = false;
+        boolean inputThread = false;
+        int servePort = -1;
+        int players = DEFAULT_PLAYERS;
+        String connect = null;
+        Path snapshot = null;
+        int warmup = 0;
+        boolean report = false;
+        boolean train = false;
+        boolean pacingReport = false;
+        Path heatmap = null;
+        EventLog eventLog = null;
+        Path leaderboard = null;
+        String playerName = System.getProperty("user.name", "player");
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--level") && i + 1 < args.length) {
+                level = Paths.get(args[++i]);
+            } else if (args[i].equals("--chunked") && i + 1 < args.length) {
+                chunkSize = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--input-thread")) {
+                inputThread = true;
+            } else if (args[i].equals("--serve") && i + 1 < args.length) {
+                servePort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--players") && i + 1 < args.length) {
+                players = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--connect") && i + 1 < args.length) {
+                connect = args[++i];
+            } else if (args[i].equals("--ball-collisions")) {
+                game.setBallCollisions(true);
+            } else if (args[i].equals("--fixed-point")) {
+                game.setFixedPoint(true);
+            } else if (args[i].equals("--vector-collisions")) {
+                game.setVectorCollisions(true);
+            } else if (args[i].equals("--particles")) {
+                game.setParticles(new ParticleSystem(ParticleSystem.DEFAULT_CAPACITY,
+                        ParticleSystem.DEFAULT_BUDGET_NANOS));
+            } else if (args[i].equals("--heatmap") && i + 1 < args.length) {
+                heatmap = Paths.get(args[++i]);
+            } else if (args[i].equals("--event-log") && i + 1 < args.length) {
+                eventLog = EventLog.create(Paths.get(args[++i]));
+                game.setEventLog(eventLog);
+            } else if (args[i].equals("--leaderboard") && i + 1 < args.length) {
+                leaderboard = Paths.get(args[++i]);
+            } else if (args[i].equals("--name") && i + 1 < args.length) {
+                playerName = args[++i];
+            } else if (args[i].equals("--autoplay")) {
+                autoplay = true;
+            } else if (args[i].equals("--snapshot") && i + 1 < args.length) {
+                snapshot = Paths.get(args[++i]);
+            } else if (args[i].equals("--warmup") && i + 1 < args.length) {
+                warmup = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--startup-report")) {
+                report = true;
+            } else if (args[i].equals("--pacing-report")) {
+                pacingReport = true;
+            } else if (args[i].equals("--train")) {
+                train = true;
+            } else if (args[i].equals("--render-thread")) {
+                game.setRenderThreaded(true);
+            } else if (args[i].equals("--capture-png") && i + 1 < args.length) {
+                capture = new PngSequenceSink(new File(args[++i]));
+            } else if (args[i].equals("--capture-raw") && i + 1 < args.length) {
+                String target = args[++i];
+                if (target.equals("-")) {
+                    capture = RawVideoSink.toChannel(
+                            Channels.newChannel(new FileOutputStream(FileDescriptor.out)), WIDTH, HEIGHT);
+                    // keep the video stream clean: messages go to stderr instead
+                    System.setOut(System.err);
+                } else {
+                    capture = RawVideoSink.toFile(Paths.get(target), WIDTH, HEIGHT);
+                }
+            }
+        }
+        LeaderboardStore store = null;
+        if (leaderboard != null) {
+            store = new LeaderboardStore(leaderboard, Leaderboard.DEFAULT_CAPACITY);
+            game.setLeaderboard(store, playerName);
+        }
+        if (servePort >= 0) {
+            serve(level, players, servePort);
+            return;
+        }
+        if (train) {
+            train(game, level, snapshot, Math.max(warmup, TRAINING_TICKS));
+            return;
+        }
+        long warmupStart = System.nanoTime();
+        if (warmup > 0) {
+            Warmup.run(warmup);
+        }
+        long warmupNanos = System.nanoTime() - warmupStart;
+        Display display;
+        KeyboardSensor keyboard;
+        if (capture == null) {
+            GUI gui = new GUI("game.Game", WIDTH, HEIGHT);
+            display = new GuiDisplay(gui);
+            keyboard = gui.getKeyboardSensor();
+        } else {
+            System.setProperty("java.awt.headless", "true");
+            display = new OffscreenDisplay(WIDTH, HEIGHT, capture, ENCODER_THREADS);
+            keyboard = new IdleKeyboardSensor();
+        }
+        TimedDisplay timed = null;
+        if (report) {
+            timed = new TimedDisplay(display);
+            display = timed;
+        }
+        if (connect != null) {
+            play(connect, level, display, keyboard);
+            return;
+        }
+        InputSampler sampler = null;
+        QueuedKeyboardSensor queued = null;
+        if (autoplay) {
+            keyboard = new AutoplayController(game);
+        } else if (inputThread) {
+            InputQueue queue = new InputQueue(INPUT_QUEUE_CAPACITY);
+            sampler = new InputSampler(keyboard, INPUT_KEYS, queue, INPUT_PERIOD_NANOS);
+            queued = new QueuedKeyboardSensor(queue, INPUT_KEYS);
+            keyboard = queued;
+            game.addInputSource(queued);
+            sampler.start();
+        }
+        if (snapshot != null) {
+            game.initializeFromSnapshot(display, keyboard, snapshot);
+        } else if (level == null) {
+            game.initialize(display, keyboard);
+        } else if (chunkSize > 0) {
+            Path swap = Files.createTempDirectory("arkanoid-chunks");
+            swap.toFile().deleteOnExit();
+            game.initializeChunked(display, keyboard, level, chunkSize, swap);
+        } else {
+            game.initialize(display, keyboard, level);
+        }
+        if (heatmap != null) {
+            // sized once the level is known, so a chunked world is covered whole
+            game.setHeatmap(new Heatmap(game.getWorldWidth(), game.getWorldHeight(), HEATMAP_CELL));
+        }
         game.run();
+        if (eventLog != null) {
+            eventLog.close();
+        }
+        if (store != null) {
+            Leaderboard top = store.top(game.getLevelName());
+            System.out.println("Best scores on " + game.getLevelName() + ":");
+            for (int rank = 0; rank < top.size(); rank++) {
+                System.out.printf("%3d. %-16s %8d%n", rank + 1, top.getName(rank), top.getScore(rank));
+            }
+            store.shutdown();
+        }
+        if (heatmap != null) {
+            if (heatmap.toString().endsWith(".csv")) {
+                game.getHeatmap().writeCsv(heatmap);
+            } else {
+                game.getHeatmap().write(heatmap);
+            }
+        }
+        if (sampler != null) {
+            sampler.shutdown();
+            System.out.printf("Input: %d events, latency mean %.2f ms, max %.2f ms%n",
+                    queued.getEventCount(), queued.getMeanLatencyNanos() / 1e6, queued.getMaxLatencyNanos() / 1e6);
+        }
+        if (pacingReport) {
+            FramePacer pacer = game.getFramePacer();
+            System.out.printf("Pacing: %d frames, interval mean %.3f ms, jitter %.3f ms, max %.3f ms, "
+                            + "%d late, %d skipped%n",
+                    pacer.getFrames(), pacer.getMeanIntervalNanos() / 1e6, pacer.getJitterNanos() / 1e6,
+                    pacer.getMaxIntervalNanos() / 1e6, pacer.getLateFrames(), pacer.getSkippedFrames());
+        }
+        if (timed != null) {
+            System.out.printf("Startup: JVM to main %.1f ms, warm-up %.1f ms, first frame %.1f ms after JVM start%n",
+                    (mainStart - jvmStart) / 1e6, warmupNanos / 1e6, (timed.getFirstFrameAt() - jvmStart) / 1e6);
+            System.out.printf("First second: %d frames, mean %.2f ms, max %.2f ms%n",
+                    timed.getFirstSecondFrames(), timed.getFirstSecondMeanNanos() / 1e6,
+                    timed.getFirstSecondMaxNanos() / 1e6);
+        }
+    }
+
+    /**
+     * Runs the startup code paths once without a window, so that a JVM
+     * started with {@code -XX:ArchiveClassesAtExit} records the classes they
+     * load. The window classes are loaded but not initialized, since
+     * training may run where no display is available.
+     */
+    private static void train(Game game, Path level, Path snapshot, int ticks) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        Warmup.run(ticks);
+        KeyboardSensor keyboard = new IdleKeyboardSensor();
+        if (snapshot != null) {
+            game.initializeFromSnapshot(null, keyboard, snapshot);
+        } else if (level != null) {
+            game.initialize(null, keyboard, level);
+        } else {
+            game.initialize(null, keyboard);
+        }
+        for (int i = 0; i < TRAINING_FRAMES; i++) {
+            game.tick();
+        }
+        try {
+            ClassLoader loader = Ass5Game.class.getClassLoader();
+            Class.forName("biuoop.GUI", false, loader);
+            Class.forName("render.GuiDisplay", false, loader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("window classes are missing from the class path", e);
+        }
+    }
+
+    private static void serve(Path level, int players, int port) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        GameServer server = new GameServer(level, players, new InetSocketAddress(port));
+        System.out.printf("Serving %d players on port %d%n", players, server.getPort());
+        server.run();
+        System.out.printf("Score %d, %d bytes sent, %d keyframes, %d packets allocated, "
+                        + "%d keyframe skips, %d clients dropped%n",
+                server.getGame().getScore().getValue(), server.getBytesSent(), server.getKeyframes(),
+                server.getPool().getCreated(), server.getSkips(), server.getDropped());
+    }
+
+    private static void play(String address, Path level, Display display, KeyboardSensor keyboard)
+            throws IOException {
+        int colon = address.lastIndexOf(':');
+        InetSocketAddress server = new InetSocketAddress(address.substring(0, colon),
+                Integer.parseInt(address.substring(colon + 1)));
+        try (GameClient client = GameClient.connect(server)) {
+            client.start(level);
+            client.run(display, keyboard);
+            System.out.printf("Final score %d, %d bytes received%n", client.getFinalScore(),
+                    client.getBytesReceived());
+        }
     }
 }
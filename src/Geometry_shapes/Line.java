@@ -137,7 +137,7 @@ public class Line {
      */
     public double getSlope() {
         if (!isVertical()) {
-            double slope = (double) (start.getY() - end.getY()) / (start.getX() - end.getX());
+            double slope = (start.getY() - end.getY()) / (start.getX() - end.getX());
             return slope;
         }
         return -1;
@@ -45,6 +45,33 @@ public class Rectangle {
         return (int) upperLeft.getX();
     }
 
+    /**
+     * Returns the y-coordinate of the upper-left corner of the rectangle.
+     *
+     * @return the y-coordinate of the rectangle's starting point.
+     */
+    public int getStartY() {
+        return (int) upperLeft.getY();
+    }
+
+    /**
+     * Returns the exact x-coordinate of the rectangle's left edge.
+     *
+     * @return the left edge
+     */
+    public double getLeft() {
+        return upperLeft.getX();
+    }
+
+    /**
+     * Returns the exact y-coordinate of the rectangle's top edge.
+     *
+     * @return the top edge
+     */
+    public double getTop() {
+        return upperLeft.getY();
+    }
+
     /**
      * Returns the upper-left point of the rectangle.
      *
@@ -109,6 +136,110 @@ public class Rectangle {
         return intersections;
     }
 
+    /**
+     * Returns how far along a segment it first crosses the boundary of an
+     * axis-aligned rectangle, without creating any objects.
+     *
+     * <p>
+     * The segment runs from {@code (x0, y0)} to {@code (x0 + dx, y0 + dy)}.
+     * The result is the smallest {@code t} in {@code [0, 1]} at which the point
+     * {@code (x0 + t*dx, y0 + t*dy)} lies on one of the four edges, matching
+     * {@link #intersectionPoints(Line)}: a segment starting inside the
+     * rectangle reports the point where it leaves.
+     *
+     * @param x0     the x-coordinate of the segment start.
+     * @param y0     the y-coordinate of the segment start.
+     * @param dx     the horizontal extent of the segment.
+     * @param dy     the vertical extent of the segment.
+     * @param left   the rectangle's left edge.
+     * @param top    the rectangle's top edge.
+     * @param right  the rectangle's right edge.
+     * @param bottom the rectangle's bottom edge.
+     * @return the crossing parameter, or {@link Double#POSITIVE_INFINITY} if the
+     * segment does not touch the boundary.
+     */
+    public static double edgeHitTime(double x0, double y0, double dx, double dy,
+                                     double left, double top, double right, double bottom) {
+        double best = Double.POSITIVE_INFINITY;
+        if (dx != 0) {
+            best = edgeTime(left - x0, dx, y0, dy, top, bottom, best);
+            best = edgeTime(right - x0, dx, y0, dy, top, bottom, best);
+        }
+        if (dy != 0) {
+            best = edgeTime(top - y0, dy, x0, dx, left, right, best);
+            best = edgeTime(bottom - y0, dy, x0, dx, left, right, best);
+        }
+        return best;
+    }
+
+    /**
+     * Returns when a ray starting at {@code (x0, y0)} and moving by
+     * {@code (dx, dy)} per unit of time first enters an axis-aligned box,
+     * edges included. Unlike {@link #edgeHitTime}, the ray is not cut at
+     * {@code t = 1}, and a ray starting inside the box enters it at 0. The
+     * box may be unbounded on a side.
+     *
+     * @param x0     the x-coordinate of the ray start.
+     * @param y0     the y-coordinate of the ray start.
+     * @param dx     the horizontal movement per unit of time.
+     * @param dy     the vertical movement per unit of time.
+     * @param left   the box's left edge.
+     * @param top    the box's top edge.
+     * @param right  the box's right edge.
+     * @param bottom the box's bottom edge.
+     * @return the entry time, or {@link Double#POSITIVE_INFINITY} if the ray
+     * never enters the box.
+     */
+    public static double entryTime(double x0, double y0, double dx, double dy,
+                                   double left, double top, double right, double bottom) {
+        double enter = 0;
+        double exit = Double.POSITIVE_INFINITY;
+        if (dx == 0) {
+            if (x0 < left || x0 > right) {
+                return Double.POSITIVE_INFINITY;
+            }
+        } else {
+            double t1 = (left - x0) / dx;
+            double t2 = (right - x0) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (y0 < top || y0 > bottom) {
+                return Double.POSITIVE_INFINITY;
+            }
+        } else {
+            double t1 = (top - y0) / dy;
+            double t2 = (bottom - y0) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        return enter <= exit ? enter : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Tests one edge: the segment reaches the edge's line after
+     * {@code distance / d}, and the other coordinate must then lie
+     * between {@code low} and {@code high}. Both tests allow the same
+     * margin as {@link Line}'s segment test, so touching hits agree.
+     */
+    private static double edgeTime(double distance, double d, double other0, double otherD,
+                                   double low, double high, double best) {
+        double t = distance / d;
+        if (t * (t - 1) * d * d > Line.THRESHOLD) {
+            return best;
+        }
+        t = Math.max(0, Math.min(1, t));
+        if (t >= best) {
+            return best;
+        }
+        double o = other0 + otherD * t;
+        if ((o - low) * (o - high) > Line.THRESHOLD) {
+            return best;
+        }
+        return t;
+    }
+
     /**
      * Draws the rectangle (filled) on the given {@link DrawSurface}.
      *
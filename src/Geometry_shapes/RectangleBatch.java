@@ -0,0 +1,161 @@
+package Geometry_shapes;
+
+import java.util.Arrays;
+
+/**
+ * A batch of axis-aligned rectangles, stored as one array per edge, that a
+ * segment is tested against all at once.
+ *
+ * <p>
+ * {@link #firstHit} finds the rectangle whose boundary the segment
+ * crosses first, with the same result as calling
+ * {@link Rectangle#edgeHitTime} on each rectangle in turn. When the JVM
+ * runs with {@code --add-modules jdk.incubator.vector}, batches of at least
+ * one vector's worth of rectangles are tested several rectangles per
+ * instruction. The vector code performs the same floating-point operations
+ * in the same order as the scalar code, so both give identical results.
+ */
+public final class RectangleBatch {
+    private static final boolean VECTORIZED =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    private static final int INITIAL_CAPACITY = 16;
+    /** The fewest whole vectors of rectangles worth testing with vector instructions. */
+    private static final int MIN_VECTORS = 2;
+
+    private double[] lefts = new double[INITIAL_CAPACITY];
+    private double[] tops = new double[INITIAL_CAPACITY];
+    private double[] rights = new double[INITIAL_CAPACITY];
+    private double[] bottoms = new double[INITIAL_CAPACITY];
+    private int count;
+    private double hitTime;
+    /** Where the vector code leaves the crossing time. */
+    private final double[] vectorTime = new double[1];
+    /** The vector code's crossing time of each rectangle. */
+    private double[] vectorTimes = new double[INITIAL_CAPACITY];
+
+    /**
+     * Returns whether batches are tested with the vector API.
+     *
+     * @return true if the vector module is available
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Empties the batch.
+     */
+    public void clear() {
+        this.count = 0;
+    }
+
+    /**
+     * Returns the number of rectangles in the batch.
+     *
+     * @return the rectangle count
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Adds a rectangle to the batch.
+     *
+     * @param left   the rectangle's left edge
+     * @param top    the rectangle's top edge
+     * @param right  the rectangle's right edge
+     * @param bottom the rectangle's bottom edge
+     * @return the rectangle's index in the batch
+     */
+    public int add(double left, double top, double right, double bottom) {
+        if (this.count == this.lefts.length) {
+            int capacity = this.count * 2;
+            this.lefts = Arrays.copyOf(this.lefts, capacity);
+            this.tops = Arrays.copyOf(this.tops, capacity);
+            this.rights = Arrays.copyOf(this.rights, capacity);
+            this.bottoms = Arrays.copyOf(this.bottoms, capacity);
+        }
+        int i = this.count++;
+        this.lefts[i] = left;
+        this.tops[i] = top;
+        this.rights[i] = right;
+        this.bottoms[i] = bottom;
+        return i;
+    }
+
+    /**
+     * Finds the rectangle whose boundary the segment from {@code (x0, y0)}
+     * to {@code (x0 + dx, y0 + dy)} crosses first, earlier than
+     * {@code limit}. Of rectangles crossed at the same time, the one added
+     * first is returned. On success the crossing time can be read with
+     * {@link #getHitTime()}.
+     *
+     * @param x0    the x-coordinate of the segment start
+     * @param y0    the y-coordinate of the segment start
+     * @param dx    the horizontal extent of the segment
+     * @param dy    the vertical extent of the segment
+     * @param limit only crossings earlier than this count
+     * @return the index of the rectangle crossed first, or -1 if none is crossed before {@code limit}
+     */
+    public int firstHit(double x0, double y0, double dx, double dy, double limit) {
+        if (VECTORIZED && this.count >= MIN_VECTORS * VectorEdgeHits.length()) {
+            int padded = pad(VectorEdgeHits.length());
+            if (this.vectorTimes.length < this.lefts.length) {
+                this.vectorTimes = new double[this.lefts.length];
+            }
+            int best = VectorEdgeHits.firstHit(this.lefts, this.tops, this.rights, this.bottoms, padded,
+                    x0, y0, dx, dy, limit, this.vectorTimes, this.vectorTime);
+            this.hitTime = this.vectorTime[0];
+            return best;
+        }
+        return firstHitScalar(x0, y0, dx, dy, limit);
+    }
+
+    /**
+     * Fills the rest of the last vector with infinite rectangles, which no
+     * segment crosses, and returns the padded size. The capacity is a power
+     * of two and at least {@link #INITIAL_CAPACITY}, so it holds whole vectors.
+     */
+    private int pad(int lanes) {
+        int end = (this.count + lanes - 1) / lanes * lanes;
+        Arrays.fill(this.lefts, this.count, end, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.tops, this.count, end, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.rights, this.count, end, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.bottoms, this.count, end, Double.POSITIVE_INFINITY);
+        return end;
+    }
+
+    /**
+     * Like {@link #firstHit}, testing one rectangle at a time.
+     *
+     * @param x0    the x-coordinate of the segment start
+     * @param y0    the y-coordinate of the segment start
+     * @param dx    the horizontal extent of the segment
+     * @param dy    the vertical extent of the segment
+     * @param limit only crossings earlier than this count
+     * @return the index of the rectangle crossed first, or -1 if none is crossed before {@code limit}
+     */
+    public int firstHitScalar(double x0, double y0, double dx, double dy, double limit) {
+        double best = limit;
+        int bestIndex = -1;
+        for (int i = 0; i < this.count; i++) {
+            double t = Rectangle.edgeHitTime(x0, y0, dx, dy, this.lefts[i], this.tops[i],
+                    this.rights[i], this.bottoms[i]);
+            if (t < best) {
+                best = t;
+                bestIndex = i;
+            }
+        }
+        this.hitTime = best;
+        return bestIndex;
+    }
+
+    /**
+     * Returns the crossing time of the last successful {@link #firstHit}.
+     *
+     * @return the crossing parameter, in {@code [0, 1]}
+     */
+    public double getHitTime() {
+        return this.hitTime;
+    }
+}
@@ -0,0 +1,101 @@
+package Geometry_shapes;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The vector version of {@link Rectangle#edgeHitTime}, testing one segment
+ * against as many rectangles per instruction as the CPU's preferred
+ * vector holds doubles.
+ *
+ * <p>
+ * Only {@link RectangleBatch} uses this class, and only once it has
+ * checked that the {@code jdk.incubator.vector} module is present, so the
+ * class is never loaded without it. Every lane computes exactly what
+ * {@code edgeHitTime} computes for its rectangle: the same operations in
+ * the same order, with {@code Math.min} and {@code Math.max} semantics.
+ */
+final class VectorEdgeHits {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorEdgeHits() {
+    }
+
+    /**
+     * Returns the number of rectangles tested per instruction.
+     *
+     * @return the vector length in doubles
+     */
+    static int length() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Finds the first of {@code count} rectangles the segment crosses
+     * before {@code limit}, as {@link RectangleBatch#firstHit} does. The
+     * arrays must be padded to a whole number of vectors with rectangles
+     * whose edges are all infinite, which no segment crosses.
+     *
+     * @param times  scratch space for one crossing time per rectangle
+     * @param time   where the crossing time is stored on success
+     * @return the index of the rectangle crossed first, or -1
+     */
+    static int firstHit(double[] lefts, double[] tops, double[] rights, double[] bottoms, int count,
+                        double x0, double y0, double dx, double dy, double limit, double[] times, double[] time) {
+        // one pass per edge keeps each loop small enough for C2 to compile
+        // without boxing vectors, which it does to vectors that cross a
+        // branch or a call that was not inlined
+        Arrays.fill(times, 0, count, Double.POSITIVE_INFINITY);
+        if (dx != 0) {
+            edgeTimes(lefts, x0, dx, y0, dy, tops, bottoms, count, times);
+            edgeTimes(rights, x0, dx, y0, dy, tops, bottoms, count, times);
+        }
+        if (dy != 0) {
+            edgeTimes(tops, y0, dy, x0, dx, lefts, rights, count, times);
+            edgeTimes(bottoms, y0, dy, x0, dx, lefts, rights, count, times);
+        }
+        // JDK 17 does not compile floating-point min-reductions into vector
+        // instructions, so the earliest time is found by a scalar scan
+        double best = limit;
+        int bestIndex = -1;
+        for (int i = 0; i < count; i++) {
+            if (times[i] < best) {
+                best = times[i];
+                bestIndex = i;
+            }
+        }
+        time[0] = best;
+        return bestIndex;
+    }
+
+    /**
+     * Tests one edge of every rectangle, lowering each rectangle's time in
+     * {@code times} to the time the edge is crossed at.
+     */
+    private static void edgeTimes(double[] edges, double start, double d, double other0, double otherD,
+                                  double[] lows, double[] highs, int count, double[] times) {
+        for (int i = 0; i < count; i += SPECIES.length()) {
+            DoubleVector t = edgeTime(DoubleVector.fromArray(SPECIES, edges, i).sub(start), d, other0, otherD,
+                    DoubleVector.fromArray(SPECIES, lows, i), DoubleVector.fromArray(SPECIES, highs, i));
+            t.min(DoubleVector.fromArray(SPECIES, times, i)).intoArray(times, i);
+        }
+    }
+
+    /**
+     * Tests one edge of every rectangle, as {@code Rectangle.edgeTime}
+     * does, giving infinity in the lanes whose edge is missed.
+     */
+    private static DoubleVector edgeTime(DoubleVector distance, double d, double other0, double otherD,
+                                         DoubleVector low, DoubleVector high) {
+        DoubleVector t = distance.div(d);
+        VectorMask<Double> miss = t.mul(t.sub(1)).mul(d).mul(d).compare(VectorOperators.GT, Line.THRESHOLD);
+        t = t.min(1).max(0);
+        DoubleVector o = t.mul(otherD).add(other0);
+        miss = miss.or(o.sub(low).mul(o.sub(high)).compare(VectorOperators.GT, Line.THRESHOLD));
+        return t.blend(Double.POSITIVE_INFINITY, miss);
+    }
+}
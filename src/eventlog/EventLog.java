@@ -0,0 +1,174 @@
+package eventlog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only log of gameplay events, written to numbered segment files
+ * in a directory through memory-mapped buffers.
+ *
+ * <p>
+ * Every event is a fixed-size record:
+ * <pre>
+ * long tick, int kind, int subject, int other, int value   (little-endian, 24 bytes)
+ * </pre>
+ * What {@code subject}, {@code other} and {@code value} hold depends on
+ * the kind; see the kind constants. A segment starts with a 16-byte header
+ * ({@code int MAGIC, int VERSION, int RECORD_SIZE, int segment number})
+ * and is mapped whole when it is created, so appending a record only
+ * stores into the mapped buffer and makes no system call. A new segment
+ * is created once every {@link #SEGMENT_RECORDS} records, and the full
+ * one is forced to disk. On {@link #close()} the last segment is forced
+ * and cut to the records written; a log that was never closed ends at the
+ * first record of kind 0.
+ *
+ * <p>
+ * A mapping is only released when the buffer is garbage collected, and
+ * some platforms, Windows among them, refuse to shrink a file that is
+ * still mapped. There the last segment keeps its full size, and reads
+ * the same as a cut one: the reader stops at its first zeroed record.
+ *
+ * <p>
+ * A log is written from the game thread only. {@link EventLogReader}
+ * streams it back.
+ */
+public final class EventLog implements Closeable {
+    /** A block was hit and removed: block id, ball id, blocks remaining. */
+    public static final int BLOCK_HIT = 1;
+    /** A ball was lost: ball id, id of the block it fell into, balls remaining. */
+    public static final int BALL_LOST = 2;
+    /** The score changed: block id, ball id, the new score. */
+    public static final int SCORE = 3;
+    /** A level started: blocks to remove, -1, balls. */
+    public static final int LEVEL_START = 4;
+    /** A level ended: blocks remaining, balls remaining, the final score. */
+    public static final int LEVEL_END = 5;
+
+    static final int MAGIC = 0x41524B45;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 24;
+    /** Records per segment file. */
+    public static final int SEGMENT_RECORDS = 1 << 16;
+
+    private final Path directory;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentNumber = -1;
+    private int position;
+    private long records;
+
+    private EventLog(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates a log in the given directory, replacing the segments of any
+     * log already there.
+     *
+     * @param directory the directory to write segments to; it is created if missing
+     * @return the log
+     * @throws IOException if the directory or the first segment cannot be created
+     */
+    public static EventLog create(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Path old : EventLogReader.segments(directory)) {
+            Files.delete(old);
+        }
+        EventLog log = new EventLog(directory);
+        log.roll();
+        return log;
+    }
+
+    /**
+     * Returns the file name of a segment.
+     *
+     * @param number the segment number
+     * @return the file name
+     */
+    static String segmentName(int number) {
+        return String.format("events-%06d.log", number);
+    }
+
+    /**
+     * Appends an event.
+     *
+     * @param kind    the event kind, one of the kind constants
+     * @param tick    the game tick the event happened at
+     * @param subject the first event field
+     * @param other   the second event field
+     * @param value   the third event field
+     */
+    public void append(int kind, long tick, int subject, int other, int value) {
+        if (this.position == this.segment.capacity()) {
+            try {
+                roll();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        MappedByteBuffer s = this.segment;
+        int p = this.position;
+        s.putLong(p, tick);
+        s.putInt(p + 8, kind);
+        s.putInt(p + 12, subject);
+        s.putInt(p + 16, other);
+        s.putInt(p + 20, value);
+        this.position = p + RECORD_SIZE;
+        this.records++;
+    }
+
+    /**
+     * Returns the number of events appended so far.
+     *
+     * @return the event count
+     */
+    public long getRecords() {
+        return this.records;
+    }
+
+    /**
+     * Closes the current segment, cut to the records written, and maps a
+     * new one.
+     */
+    private void roll() throws IOException {
+        closeSegment();
+        this.segmentNumber++;
+        this.channel = FileChannel.open(this.directory.resolve(segmentName(this.segmentNumber)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.segment = this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) SEGMENT_RECORDS * RECORD_SIZE);
+        this.segment.order(ByteOrder.LITTLE_ENDIAN);
+        this.segment.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putInt(12, this.segmentNumber);
+        this.position = HEADER_SIZE;
+    }
+
+    private void closeSegment() throws IOException {
+        if (this.channel != null) {
+            this.segment.force();
+            this.segment = null;
+            // a full segment already has its final size
+            if (this.position < this.channel.size()) {
+                try {
+                    this.channel.truncate(this.position);
+                } catch (IOException e) {
+                    // the file is still mapped until the buffer is collected; keep it whole
+                }
+            }
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+}
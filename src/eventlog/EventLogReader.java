@@ -0,0 +1,187 @@
+package eventlog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streams the events of an {@link EventLog} back, segment by segment,
+ * mapping one segment at a time. After {@link #next()} returns true the
+ * event's fields can be read with the getters.
+ *
+ * <p>
+ * Run this class to print a log as CSV:
+ * <pre>
+ * java eventlog.EventLogReader DIR
+ * </pre>
+ */
+public final class EventLogReader implements Closeable {
+    private static final String[] KIND_NAMES = {"end", "block-hit", "ball-lost", "score", "level-start", "level-end"};
+
+    private final List<Path> segments;
+    private int nextSegment;
+    private MappedByteBuffer segment;
+    private long tick;
+    private int kind;
+    private int subject;
+    private int other;
+    private int value;
+
+    /**
+     * Opens the log in the given directory.
+     *
+     * @param directory the directory holding the log's segments
+     * @throws IOException if the directory cannot be listed
+     */
+    public EventLogReader(Path directory) throws IOException {
+        this.segments = segments(directory);
+    }
+
+    /**
+     * Prints a log as CSV.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if the log cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: EventLogReader DIR");
+            System.exit(2);
+        }
+        StringBuilder line = new StringBuilder();
+        try (EventLogReader reader = new EventLogReader(Paths.get(args[0]))) {
+            System.out.println("tick,kind,subject,other,value");
+            while (reader.next()) {
+                line.setLength(0);
+                int k = reader.getKind();
+                line.append(reader.getTick()).append(',')
+                        .append(k < KIND_NAMES.length ? KIND_NAMES[k] : Integer.toString(k)).append(',')
+                        .append(reader.getSubject()).append(',')
+                        .append(reader.getOther()).append(',')
+                        .append(reader.getValue());
+                System.out.println(line);
+            }
+        }
+    }
+
+    /**
+     * Lists the segment files of a log, in order.
+     *
+     * @param directory the log directory
+     * @return the segment files
+     * @throws IOException if the directory cannot be listed
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> found = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "events-*.log")) {
+            for (Path p : stream) {
+                found.add(p);
+            }
+        }
+        // names are zero-padded, so name order is segment order
+        Collections.sort(found);
+        return found;
+    }
+
+    /**
+     * Moves to the next event.
+     *
+     * @return true if there is one, false at the end of the log
+     * @throws IOException if a segment cannot be read or is not a log segment
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (this.segment != null && this.segment.remaining() >= EventLog.RECORD_SIZE) {
+                int at = this.segment.position();
+                this.kind = this.segment.getInt(at + 8);
+                if (this.kind != 0) {
+                    this.tick = this.segment.getLong(at);
+                    this.subject = this.segment.getInt(at + 12);
+                    this.other = this.segment.getInt(at + 16);
+                    this.value = this.segment.getInt(at + 20);
+                    this.segment.position(at + EventLog.RECORD_SIZE);
+                    return true;
+                }
+                // a segment left unclosed ends at its first zeroed record
+            }
+            if (this.nextSegment == this.segments.size()) {
+                this.segment = null;
+                return false;
+            }
+            openSegment(this.segments.get(this.nextSegment++));
+        }
+    }
+
+    private void openSegment(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        this.segment.order(ByteOrder.LITTLE_ENDIAN);
+        if (this.segment.remaining() < EventLog.HEADER_SIZE || this.segment.getInt(0) != EventLog.MAGIC
+                || this.segment.getInt(4) != EventLog.VERSION || this.segment.getInt(8) != EventLog.RECORD_SIZE) {
+            throw new IOException(path + " is not an event log segment of this version");
+        }
+        this.segment.position(EventLog.HEADER_SIZE);
+    }
+
+    /**
+     * Returns the game tick of the current event.
+     *
+     * @return the tick
+     */
+    public long getTick() {
+        return this.tick;
+    }
+
+    /**
+     * Returns the kind of the current event, one of the {@link EventLog} kinds.
+     *
+     * @return the event kind
+     */
+    public int getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Returns the first field of the current event.
+     *
+     * @return the field
+     */
+    public int getSubject() {
+        return this.subject;
+    }
+
+    /**
+     * Returns the second field of the current event.
+     *
+     * @return the field
+     */
+    public int getOther() {
+        return this.other;
+    }
+
+    /**
+     * Returns the third field of the current event.
+     *
+     * @return the field
+     */
+    public int getValue() {
+        return this.value;
+    }
+
+    @Override
+    public void close() {
+        this.segment = null;
+        this.nextSegment = this.segments.size();
+    }
+}
@@ -0,0 +1,111 @@
+package game;
+
+import Geometry_shapes.Rectangle;
+import biuoop.KeyboardSensor;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A keyboard sensor that plays the game: it presses left or right to move
+ * the paddle under the ball that will reach it first.
+ *
+ * <p>
+ * Once per tick it predicts every ball's path down to the paddle's top
+ * line with a {@link TrajectoryPredictor}, and steers the paddle's middle
+ * region towards the point where the earliest ball crosses that line.
+ *
+ * <p>
+ * A controller created with an aim error plays less than perfectly: for
+ * each ball it goes to meet, it aims at a random point within that
+ * fraction of the paddle's half-width from the middle. The offsets come
+ * from a seeded generator, so a game against the same controller seed
+ * plays out the same every time.
+ */
+public class AutoplayController implements KeyboardSensor {
+    private static final int MAX_HITS = 32;
+    private static final int LOOKAHEAD_FRAMES = 600;
+
+    private final Game game;
+    private final TrajectoryPredictor predictor;
+    private final double aimError;
+    private final SplittableRandom random;
+    private long decidedAt = -1;
+    private String pressed;
+    private int lastSoonest = -1;
+    private double aimOffset;
+
+    /**
+     * Creates a controller for the paddle of the given game.
+     *
+     * @param game the game to play
+     */
+    public AutoplayController(Game game) {
+        this(game, 0, 0);
+    }
+
+    /**
+     * Creates a controller that misses its aim by up to the given fraction
+     * of the paddle's half-width.
+     *
+     * @param game     the game to play
+     * @param aimError the largest aim offset, as a fraction of the paddle's half-width
+     * @param seed     the seed of the aim offsets
+     */
+    public AutoplayController(Game game, double aimError, long seed) {
+        this.game = game;
+        this.predictor = new TrajectoryPredictor(game.getEnvironment(), MAX_HITS);
+        this.aimError = aimError;
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public boolean isPressed(String key) {
+        if (this.decidedAt != this.game.getTick()) {
+            this.decidedAt = this.game.getTick();
+            this.pressed = decide();
+        }
+        return key.equals(this.pressed);
+    }
+
+    /**
+     * Returns the key to hold this tick, or null to stand still.
+     */
+    private String decide() {
+        Paddle paddle = this.game.getPaddle();
+        if (paddle == null) {
+            return null;
+        }
+        Rectangle rect = paddle.getCollisionRectangle();
+        double lineY = rect.getUpperLeft().getY();
+        double center = rect.getUpperLeft().getX() + rect.getWidth() / 2;
+        double target = center;
+        int soonest = Integer.MAX_VALUE;
+        List<Ball> balls = this.game.getBalls();
+        for (int i = 0; i < balls.size(); i++) {
+            this.predictor.predict(balls.get(i), MAX_HITS, LOOKAHEAD_FRAMES, lineY, paddle);
+            int frame = this.predictor.getLineFrame();
+            if (frame >= 0 && frame < soonest) {
+                soonest = frame;
+                target = this.predictor.getLineX();
+            }
+        }
+        if (this.aimError > 0 && soonest != Integer.MAX_VALUE) {
+            // a new approach unless it is the one from last tick, one frame closer
+            if (soonest != this.lastSoonest - 1) {
+                this.aimOffset = (this.random.nextDouble() * 2 - 1) * this.aimError * rect.getWidth() / 2;
+            }
+            target += this.aimOffset;
+        }
+        this.lastSoonest = soonest;
+        // stay while the target is over the paddle's middle region
+        double slack = rect.getWidth() / 10;
+        if (target < center - slack) {
+            return LEFT_KEY;
+        }
+        if (target > center + slack) {
+            return RIGHT_KEY;
+        }
+        return null;
+    }
+}
@@ -3,6 +3,8 @@ package game;
 import Geometry_shapes.Line;
 import Geometry_shapes.Point;
 import biuoop.DrawSurface;
+import render.FrameState;
+
 import java.awt.Color;
 
 /**
@@ -38,6 +40,23 @@ public class Ball implements Sprite {
     private Velocity velocity;
     /** The current velocity of the ball. */
     private GameEnvironment gameEnvironment;
+    private int id = -1;
+    /** The ball's slot in its game's {@link BallCollider}, or -1. */
+    private int colliderSlot = -1;
+    /** Whether the ball came from the game's pool and goes back to it when removed. */
+    private boolean pooled;
+    /** Whether the ball moves in fixed point; see {@link FixedPoint}. */
+    private boolean fixed;
+    /** The fixed-point center and velocity, kept while {@link #fixed} is set. */
+    private long fx;
+    private long fy;
+    private long fdx;
+    private long fdy;
+    /** The first tick this ball must query collisions at; see {@link Kinetics}. */
+    private long freeUntil;
+    private int freeEpoch;
+    /** Free ticks counted but not yet added to the center. */
+    private int pending;
     /**
      * The full window width.
      */
@@ -60,17 +79,141 @@ public class Ball implements Sprite {
         this.color = color;
     }
 
+    /**
+     * Sets up a ball taken from a pool as if it had just been constructed.
+     *
+     * @param x      the x-coordinate of the center
+     * @param y      the y-coordinate of the center
+     * @param radius the radius
+     * @param c      the color
+     * @param dx     the horizontal velocity
+     * @param dy     the vertical velocity
+     */
+    void reset(double x, double y, int radius, Color c, double dx, double dy) {
+        this.center = new Point(x, y);
+        this.r = radius;
+        this.color = c;
+        this.velocity = new Velocity(dx, dy);
+        this.pooled = true;
+        this.pending = 0;
+        this.freeUntil = 0;
+    }
+
+    /**
+     * Drops the ball's references before it goes back to its pool.
+     */
+    void scrub() {
+        this.gameEnvironment = null;
+        this.velocity = null;
+        this.color = null;
+        this.id = -1;
+        this.pooled = false;
+        this.fixed = false;
+        this.pending = 0;
+        this.freeUntil = 0;
+    }
+
+    boolean isPooled() {
+        return this.pooled;
+    }
+
+    boolean isFixedPoint() {
+        return this.fixed;
+    }
+
+    /**
+     * Rounds the center to fixed point, when the ball moves in fixed point.
+     */
+    private void fixCenter() {
+        if (this.fixed) {
+            this.fx = FixedPoint.of(this.center.getX());
+            this.fy = FixedPoint.of(this.center.getY());
+            this.center = new Point(FixedPoint.toDouble(this.fx), FixedPoint.toDouble(this.fy));
+        }
+    }
+
+    /**
+     * Rounds the velocity to fixed point, when the ball moves in fixed point.
+     */
+    private void fixVelocity() {
+        if (this.fixed && this.velocity != null) {
+            this.fdx = FixedPoint.of(this.velocity.getDx());
+            this.fdy = FixedPoint.of(this.velocity.getDy());
+            this.velocity = new Velocity(FixedPoint.toDouble(this.fdx), FixedPoint.toDouble(this.fdy));
+        }
+    }
+
     @Override
     public void timePassed() {
+        Kinetics kinetics = this.gameEnvironment.getKinetics();
+        if (kinetics != null && kinetics.isFree(this.freeUntil, this.freeEpoch)) {
+            this.pending++;
+            return;
+        }
         moveOneStep();
+        if (kinetics != null) {
+            this.freeUntil = kinetics.freeUntil(this.center.getX(), this.center.getY(),
+                    this.velocity.getDx(), this.velocity.getDy());
+            this.freeEpoch = kinetics.getEpoch();
+        }
+    }
+
+    /**
+     * Adds the free ticks counted so far to the center, one step at a time,
+     * so it ends up where moving every tick would have put it.
+     */
+    private void settle() {
+        if (this.pending == 0) {
+            return;
+        }
+        if (this.fixed) {
+            this.fx += this.pending * this.fdx;
+            this.fy += this.pending * this.fdy;
+            this.center = new Point(FixedPoint.toDouble(this.fx), FixedPoint.toDouble(this.fy));
+        } else {
+            double x = this.center.getX();
+            double y = this.center.getY();
+            double dx = this.velocity.getDx();
+            double dy = this.velocity.getDy();
+            for (int i = 0; i < this.pending; i++) {
+                x += dx;
+                y += dy;
+            }
+            this.center = new Point(x, y);
+        }
+        this.pending = 0;
     }
 
     @Override
     public void addToGame(Game g) {
+        this.id = g.nextBallId();
         g.addSprite(this);
+        g.addBall(this);
         this.setGameEnvironment(g.getEnvironment());
     }
 
+    @Override
+    public void writeTo(FrameState state) {
+        state.putBall(this.id, this.getX(), this.getY(), this.r, this.color);
+    }
+
+    /**
+     * Returns the stable id this ball got when it was added to a game.
+     *
+     * @return the ball id, or -1 if the ball was never added to a game
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    int getColliderSlot() {
+        return this.colliderSlot;
+    }
+
+    void setColliderSlot(int slot) {
+        this.colliderSlot = slot;
+    }
+
     /**
      * Draws the ball on the given draw surface.
      *
@@ -88,15 +231,23 @@ public class Ball implements Sprite {
      */
     public void removeFromGame(Game game) {
         game.removeSprite(this);
+        game.removeBall(this);
     }
 
     /**
-     * Sets the game environment in which this ball moves.
+     * Sets the game environment in which this ball moves. The ball moves
+     * in fixed point if the environment does, and its center and velocity
+     * are rounded to fixed point then.
      *
      * @param gameEnvironment the environment containing all collidable objects.
      */
     public void setGameEnvironment(GameEnvironment gameEnvironment) {
+        settle();
+        this.freeUntil = 0;
         this.gameEnvironment = gameEnvironment;
+        this.fixed = gameEnvironment != null && gameEnvironment.isFixedPoint();
+        fixCenter();
+        fixVelocity();
     }
 
     /**
@@ -106,6 +257,7 @@ public class Ball implements Sprite {
      */
     // accessors
     public int getX() {
+        settle();
         return (int) center.getX();
     }
 
@@ -115,9 +267,45 @@ public class Ball implements Sprite {
      * @return the y-coordinate of the ball's center.
      */
     public int getY() {
+        settle();
         return (int) center.getY();
     }
 
+    /**
+     * Returns the exact center of the ball.
+     *
+     * @return the ball's center point.
+     */
+    public Point getCenter() {
+        settle();
+        return this.center;
+    }
+
+    double getDx() {
+        return this.velocity.getDx();
+    }
+
+    double getDy() {
+        return this.velocity.getDy();
+    }
+
+    GameEnvironment getGameEnvironment() {
+        return this.gameEnvironment;
+    }
+
+    /**
+     * Puts the ball's center at the given point without checking for collisions.
+     *
+     * @param x the new x-coordinate of the center
+     * @param y the new y-coordinate of the center
+     */
+    void moveTo(double x, double y) {
+        this.pending = 0;
+        this.freeUntil = 0;
+        this.center = new Point(x, y);
+        fixCenter();
+    }
+
     /**
      * Returns the radius (size) of the ball.
      *
@@ -152,7 +340,10 @@ public class Ball implements Sprite {
      * @param v the velocity to set.
      */
     public void setVelocity(Velocity v) {
+        settle();
+        this.freeUntil = 0;
         this.velocity = new Velocity(v.getDx(), v.getDy());
+        fixVelocity();
     }
 
     /**
@@ -163,7 +354,10 @@ public class Ball implements Sprite {
      */
 
     public void setVelocity(double dx, double dy) {
+        settle();
+        this.freeUntil = 0;
         this.velocity = new Velocity(dx, dy);
+        fixVelocity();
     }
 
     /**
@@ -203,10 +397,21 @@ public class Ball implements Sprite {
      * is updated accordingly.
      */
     public void moveOneStep() {
+        settle();
+        this.freeUntil = 0;
+        Heatmap heatmap = this.gameEnvironment.getHeatmap();
+        if (heatmap != null) {
+            heatmap.ballAt(this.center.getX(), this.center.getY());
+        }
+        if (this.fixed) {
+            moveOneStepFixed();
+            return;
+        }
         Point nextCenter = this.velocity.applyToPoint(this.center);
         Line trajectory = new Line(this.center, nextCenter);
 
-        CollisionInfo info = this.gameEnvironment.getClosestCollision(trajectory);
+        GameEnvironment environment = this.gameEnvironment;
+        CollisionInfo info = environment.getClosestCollision(trajectory);
         //If there are no collisions on this trajectory
         // then move the ball to the end of trajectory
         if (info == null) {
@@ -243,6 +448,32 @@ public class Ball implements Sprite {
         }
         this.center = new Point(newX, newY);
         this.velocity = obj.hit(this, collisionPoint, this.velocity);
+        environment.release(info);
+    }
+
+    /**
+     * Moves the ball one step like {@link #moveOneStep()}, in fixed point:
+     * the collision is found with integer arithmetic, the ball stops one
+     * pixel before it, and the velocity the collidable returns is rounded
+     * to fixed point.
+     */
+    private void moveOneStepFixed() {
+        GameEnvironment environment = this.gameEnvironment;
+        CollisionInfo info = environment.getClosestCollisionFixed(this.fx, this.fy, this.fdx, this.fdy);
+        if (info == null) {
+            this.fx += this.fdx;
+            this.fy += this.fdy;
+            this.center = new Point(FixedPoint.toDouble(this.fx), FixedPoint.toDouble(this.fy));
+            return;
+        }
+        long hitX = environment.getFixedHitX();
+        long hitY = environment.getFixedHitY();
+        this.fx = this.fdx > 0 ? hitX - FixedPoint.ONE : this.fdx < 0 ? hitX + FixedPoint.ONE : hitX;
+        this.fy = this.fdy > 0 ? hitY - FixedPoint.ONE : this.fdy < 0 ? hitY + FixedPoint.ONE : hitY;
+        this.center = new Point(FixedPoint.toDouble(this.fx), FixedPoint.toDouble(this.fy));
+        this.velocity = info.collisionObject().hit(this, info.collisionPoint(), this.velocity);
+        fixVelocity();
+        environment.release(info);
     }
 }
 
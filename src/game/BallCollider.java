@@ -0,0 +1,336 @@
+package game;
+
+import Geometry_shapes.Point;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounces balls off each other. After every ball has made its move for a
+ * tick, the collider finds pairs of balls whose paths met during the
+ * tick and turns each such pair into an elastic collision.
+ *
+ * <p>
+ * The broad phase is sweep and prune on the x-axis: the balls are kept in
+ * an order sorted by the left edge of the box around each ball's path,
+ * and only balls whose boxes overlap are tested. Balls move little from
+ * one tick to the next, so the order is restored with an insertion sort
+ * that does close to linear work. The narrow phase solves for the first
+ * time in the tick at which the two circles touch, treating each path as
+ * a straight line from where the ball started the tick to where it ended.
+ *
+ * <p>
+ * Contacts are handled in order of time, and a ball takes part in at
+ * most one contact per tick. Both balls of a contact are put back where
+ * they touched and leave with their new velocities on the next tick;
+ * the point of contact lies on the path each ball has already moved
+ * along, so it is never inside a block. Balls are treated as discs with a
+ * mass proportional to their area.
+ *
+ * <p>
+ * The per-ball state is kept in arrays indexed by a slot the collider
+ * gives each ball the first tick it sees it. A ball's slot is freed once
+ * the ball is gone and handed to the next new ball, so the arrays grow
+ * with the most balls alive at once, not with every ball ever made.
+ */
+public class BallCollider {
+    private long tick;
+    private Ball[] balls = new Ball[16];
+    private long[] seen = new long[16];
+    private long[] started = new long[16];
+    private double[] startX = new double[16];
+    private double[] startY = new double[16];
+    private double[] minX = new double[16];
+    private double[] maxX = new double[16];
+    private double[] minY = new double[16];
+    private double[] maxY = new double[16];
+    private boolean[] done = new boolean[16];
+    /** The slots in use, in order of {@link #minX}. */
+    private int[] order = new int[16];
+    private int orderCount;
+    private int slotCount;
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+
+    private int[] contactA = new int[16];
+    private int[] contactB = new int[16];
+    private double[] contactT = new double[16];
+    private long[] contactKeys = new long[16];
+    private int contactCount;
+
+    private int pairTests;
+    private int contacts;
+    private int sortMoves;
+
+    /**
+     * Records where the balls start the tick. Call before they move.
+     *
+     * @param list the balls of the game
+     */
+    public void begin(List<Ball> list) {
+        this.tick++;
+        for (int i = 0; i < list.size(); i++) {
+            Ball b = list.get(i);
+            int id = slotOf(b);
+            Point c = b.getCenter();
+            this.startX[id] = c.getX();
+            this.startY[id] = c.getY();
+            this.started[id] = this.tick;
+        }
+    }
+
+    /**
+     * Finds the balls that met during the tick and bounces them. Call after
+     * every ball has moved.
+     *
+     * @param list the balls of the game
+     */
+    public void resolve(List<Ball> list) {
+        this.pairTests = 0;
+        this.contacts = 0;
+        this.sortMoves = 0;
+        for (int i = 0; i < list.size(); i++) {
+            Ball b = list.get(i);
+            int id = slotOf(b);
+            this.seen[id] = this.tick;
+            this.done[id] = false;
+            Point c = b.getCenter();
+            double x1 = c.getX();
+            double y1 = c.getY();
+            double x0 = this.started[id] == this.tick ? this.startX[id] : x1;
+            double y0 = this.started[id] == this.tick ? this.startY[id] : y1;
+            this.startX[id] = x0;
+            this.startY[id] = y0;
+            int r = b.getSize();
+            this.minX[id] = Math.min(x0, x1) - r;
+            this.maxX[id] = Math.max(x0, x1) + r;
+            this.minY[id] = Math.min(y0, y1) - r;
+            this.maxY[id] = Math.max(y0, y1) + r;
+        }
+        sortOrder();
+        findContacts();
+        handleContacts();
+    }
+
+    /**
+     * Returns a ball's slot, giving it a free one the first time the ball
+     * is seen.
+     */
+    private int slotOf(Ball b) {
+        int slot = b.getColliderSlot();
+        // a slot from another collider, or from before the ball was removed, is stale
+        if (slot >= 0 && slot < this.slotCount && this.balls[slot] == b) {
+            return slot;
+        }
+        if (this.freeSlotCount > 0) {
+            slot = this.freeSlots[--this.freeSlotCount];
+        } else {
+            if (this.slotCount == this.balls.length) {
+                grow(this.slotCount * 2);
+            }
+            slot = this.slotCount++;
+        }
+        this.balls[slot] = b;
+        this.seen[slot] = 0;
+        this.started[slot] = 0;
+        b.setColliderSlot(slot);
+        this.order[this.orderCount++] = slot;
+        return slot;
+    }
+
+    /**
+     * Frees the slots of removed balls, drops them from the order and
+     * restores the order with an insertion sort.
+     */
+    private void sortOrder() {
+        int n = 0;
+        for (int i = 0; i < this.orderCount; i++) {
+            int id = this.order[i];
+            if (this.seen[id] == this.tick) {
+                this.order[n++] = id;
+            } else {
+                if (this.balls[id].getColliderSlot() == id) {
+                    this.balls[id].setColliderSlot(-1);
+                }
+                this.balls[id] = null;
+                this.freeSlots[this.freeSlotCount++] = id;
+            }
+        }
+        this.orderCount = n;
+        for (int i = 1; i < n; i++) {
+            int id = this.order[i];
+            double key = this.minX[id];
+            int j = i - 1;
+            while (j >= 0 && this.minX[this.order[j]] > key) {
+                this.order[j + 1] = this.order[j];
+                j--;
+                this.sortMoves++;
+            }
+            this.order[j + 1] = id;
+        }
+    }
+
+    private void findContacts() {
+        this.contactCount = 0;
+        for (int i = 0; i < this.orderCount; i++) {
+            int a = this.order[i];
+            double right = this.maxX[a];
+            for (int j = i + 1; j < this.orderCount; j++) {
+                int b = this.order[j];
+                if (this.minX[b] > right) {
+                    break;
+                }
+                if (this.minY[b] > this.maxY[a] || this.minY[a] > this.maxY[b]) {
+                    continue;
+                }
+                this.pairTests++;
+                double t = timeOfImpact(a, b);
+                if (t >= 0) {
+                    addContact(a, b, t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the first time in [0, 1] at which balls a and b touch while
+     * approaching each other, or -1 if they do not.
+     */
+    private double timeOfImpact(int a, int b) {
+        Point ca = this.balls[a].getCenter();
+        Point cb = this.balls[b].getCenter();
+        double px = this.startX[b] - this.startX[a];
+        double py = this.startY[b] - this.startY[a];
+        double dx = (cb.getX() - this.startX[b]) - (ca.getX() - this.startX[a]);
+        double dy = (cb.getY() - this.startY[b]) - (ca.getY() - this.startY[a]);
+        double reach = this.balls[a].getSize() + this.balls[b].getSize();
+        double approach = px * dx + py * dy;
+        double gap = px * px + py * py - reach * reach;
+        if (gap <= 0) {
+            // already touching: a contact now if they are closing in
+            return approach < 0 ? 0 : -1;
+        }
+        double speed = dx * dx + dy * dy;
+        if (approach >= 0 || speed == 0) {
+            return -1;
+        }
+        double disc = approach * approach - speed * gap;
+        if (disc < 0) {
+            return -1;
+        }
+        double t = (-approach - Math.sqrt(disc)) / speed;
+        return t <= 1 ? t : -1;
+    }
+
+    private void addContact(int a, int b, double t) {
+        if (this.contactCount == this.contactA.length) {
+            int size = this.contactCount * 2;
+            this.contactA = Arrays.copyOf(this.contactA, size);
+            this.contactB = Arrays.copyOf(this.contactB, size);
+            this.contactT = Arrays.copyOf(this.contactT, size);
+            this.contactKeys = Arrays.copyOf(this.contactKeys, size);
+        }
+        this.contactA[this.contactCount] = a;
+        this.contactB[this.contactCount] = b;
+        this.contactT[this.contactCount] = t;
+        // non-negative floats sort like their bits; the index breaks ties
+        this.contactKeys[this.contactCount] = (long) Float.floatToIntBits((float) t) << 32 | this.contactCount;
+        this.contactCount++;
+    }
+
+    private void handleContacts() {
+        Arrays.sort(this.contactKeys, 0, this.contactCount);
+        for (int k = 0; k < this.contactCount; k++) {
+            int c = (int) this.contactKeys[k];
+            int a = this.contactA[c];
+            int b = this.contactB[c];
+            if (this.done[a] || this.done[b]) {
+                continue;
+            }
+            this.done[a] = true;
+            this.done[b] = true;
+            this.contacts++;
+            bounce(this.balls[a], this.startX[a], this.startY[a], this.balls[b], this.startX[b], this.startY[b],
+                    this.contactT[c]);
+        }
+    }
+
+    /**
+     * Moves both balls back to where they touched and exchanges the parts
+     * of their velocities along the line between their centers.
+     */
+    private static void bounce(Ball a, double ax0, double ay0, Ball b, double bx0, double by0, double t) {
+        Point ca = a.getCenter();
+        Point cb = b.getCenter();
+        double ax = ax0 + (ca.getX() - ax0) * t;
+        double ay = ay0 + (ca.getY() - ay0) * t;
+        double bx = bx0 + (cb.getX() - bx0) * t;
+        double by = by0 + (cb.getY() - by0) * t;
+        a.moveTo(ax, ay);
+        b.moveTo(bx, by);
+        double nx = bx - ax;
+        double ny = by - ay;
+        double length = Math.sqrt(nx * nx + ny * ny);
+        if (length == 0) {
+            return;
+        }
+        nx /= length;
+        ny /= length;
+        Velocity va = a.getVelocity();
+        Velocity vb = b.getVelocity();
+        double closing = (va.getDx() - vb.getDx()) * nx + (va.getDy() - vb.getDy()) * ny;
+        if (closing <= 0) {
+            return;
+        }
+        double ma = (double) a.getSize() * a.getSize();
+        double mb = (double) b.getSize() * b.getSize();
+        double ka = 2 * mb / (ma + mb) * closing;
+        double kb = 2 * ma / (ma + mb) * closing;
+        a.setVelocity(va.getDx() - ka * nx, va.getDy() - ka * ny);
+        b.setVelocity(vb.getDx() + kb * nx, vb.getDy() + kb * ny);
+    }
+
+    private void grow(int size) {
+        this.balls = Arrays.copyOf(this.balls, size);
+        this.seen = Arrays.copyOf(this.seen, size);
+        this.started = Arrays.copyOf(this.started, size);
+        this.startX = Arrays.copyOf(this.startX, size);
+        this.startY = Arrays.copyOf(this.startY, size);
+        this.minX = Arrays.copyOf(this.minX, size);
+        this.maxX = Arrays.copyOf(this.maxX, size);
+        this.minY = Arrays.copyOf(this.minY, size);
+        this.maxY = Arrays.copyOf(this.maxY, size);
+        this.done = Arrays.copyOf(this.done, size);
+        this.order = Arrays.copyOf(this.order, size);
+        this.freeSlots = Arrays.copyOf(this.freeSlots, size);
+    }
+
+    /**
+     * Returns the number of ball pairs whose boxes overlapped in the last
+     * tick and were tested for a time of impact.
+     *
+     * @return the pair tests of the last tick
+     */
+    public int getPairTests() {
+        return this.pairTests;
+    }
+
+    /**
+     * Returns the number of ball-to-ball collisions in the last tick.
+     *
+     * @return the contacts of the last tick
+     */
+    public int getContacts() {
+        return this.contacts;
+    }
+
+    /**
+     * Returns how many places balls moved in the insertion sort of the
+     * last tick, a measure of how far the order had drifted.
+     *
+     * @return the sort moves of the last tick
+     */
+    public int getSortMoves() {
+        return this.sortMoves;
+    }
+}
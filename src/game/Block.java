@@ -4,20 +4,50 @@ import Geometry_shapes.Point;
 import Geometry_shapes.Rectangle;
 import biuoop.DrawSurface;
 import listeners.HitListener;
+import profiling.HitDispatchEvent;
+import render.FrameState;
 
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * A rectangular block that can be drawn on the screen and collided with.
  * A block has a rectangle shape and a color, and implements both
  * {@link Collidable} and {@link Sprite}.
+ *
+ * <p>
+ * Bricks loaded with a level live in a row of the game's shared
+ * {@link BlockTable} and get a {@code Block} only as a short-lived view
+ * when they are hit. A block created with {@link #Block(Rectangle, Color)}
+ * is not in any table: it keeps its rectangle, color, id and listeners in
+ * fields of its own, and can be added to a game as a stand-alone sprite
+ * and collidable.
+ *
+ * <p>
+ * Views are pooled by their table and go back to it once the hit they
+ * were made for is over, so a listener must not keep the block it is
+ * given after {@code hitEvent} returns. Stand-alone blocks made with
+ * {@link Game#newBlock(Rectangle, Color)} go back to the game's pool when
+ * removed, and drop their listeners on the way, so a recycled block
+ * neither notifies nor holds on to its old listeners.
  */
 public class Block implements Collidable, Sprite, HitNotifier {
+    private static final HitListener[] NO_LISTENERS = new HitListener[0];
+
+    /** The table of a view, or null for a stand-alone block. */
+    private final BlockTable table;
+    private int row;
+    /** A stand-alone block's own data; unused by views. */
     private Rectangle rect;
     private Color color;
-    private List<HitListener> hitListeners = new ArrayList<>();
+    private int id = -1;
+    /** Replaced, never modified, when a listener is added or removed. */
+    private HitListener[] listeners = NO_LISTENERS;
+    private boolean alive;
+    /** The block's id in the game environment while it is a stand-alone collidable, or -1. */
+    private int collidableId = -1;
+    /** Whether this stand-alone block came from the game's pool and goes back to it when removed. */
+    private boolean pooled;
 
     /**
      * Creates a block with the given rectangle and color.
@@ -26,8 +56,60 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @param color the block's fill color.
      */
     public Block(Rectangle rect, Color color) {
+        this.table = null;
         this.rect = rect;
         this.color = color;
+        this.alive = true;
+    }
+
+    /**
+     * Creates a view of a row of the given table.
+     *
+     * @param table the table holding the block
+     * @param row   the block's row
+     */
+    Block(BlockTable table, int row) {
+        this.table = table;
+        this.row = row;
+    }
+
+    /**
+     * Points a pooled view at another row of its table.
+     *
+     * @param r the row, or -1 when the view goes back to the pool
+     */
+    void setRow(int r) {
+        this.row = r;
+    }
+
+    boolean isView() {
+        return this.table != null;
+    }
+
+    /**
+     * Sets up a stand-alone block taken from a pool with a new shape and
+     * color and no listeners.
+     *
+     * @param rect  the block's collision rectangle
+     * @param color the block's fill color
+     */
+    void reset(Rectangle r, Color c) {
+        this.rect = r;
+        this.color = c;
+        this.id = -1;
+        this.listeners = NO_LISTENERS;
+        this.alive = true;
+        this.pooled = true;
+    }
+
+    /**
+     * Drops a stand-alone block's listeners before it goes back to its pool.
+     */
+    void scrub() {
+        this.listeners = NO_LISTENERS;
+        this.alive = false;
+        this.collidableId = -1;
+        this.pooled = false;
     }
 
     @Override
@@ -40,12 +122,38 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @return the color of this object
      */
     public java.awt.Color getColor() {
-        return this.color;
+        return this.table != null ? this.table.getColor(this.row) : this.color;
     }
 
     @Override
     public Rectangle getCollisionRectangle() {
-        return this.rect;
+        return this.table != null ? this.table.getRectangle(this.row) : this.rect;
+    }
+
+    double getLeft() {
+        return this.table != null ? this.table.getX(this.row) : this.rect.getLeft();
+    }
+
+    double getTop() {
+        return this.table != null ? this.table.getY(this.row) : this.rect.getTop();
+    }
+
+    double getWidth() {
+        return this.table != null ? this.table.getWidth(this.row) : this.rect.getWidth();
+    }
+
+    double getHeight() {
+        return this.table != null ? this.table.getHeight(this.row) : this.rect.getHeight();
+    }
+
+    /**
+     * Returns whether the block is still in play: not yet removed, or for
+     * a view, still showing a live row.
+     *
+     * @return true if the block is alive
+     */
+    boolean isAlive() {
+        return this.table != null ? this.table.isAlive(this.row) : this.alive;
     }
 
     /**
@@ -55,20 +163,65 @@ public class Block implements Collidable, Sprite, HitNotifier {
      */
     @Override
     public void drawOn(DrawSurface d) {
-        d.setColor(this.color);
-        int x = (int) this.rect.getUpperLeft().getX();
-        int y = (int) this.rect.getUpperLeft().getY();
-        int w = (int) this.rect.getWidth();
-        int h = (int) this.rect.getHeight();
-        d.fillRectangle(x, y, w, h);
-        d.setColor(Color.BLACK);
-        d.drawRectangle(x, y, w, h);
+        if (this.table != null) {
+            this.table.drawRow(d, this.row);
+        } else {
+            BlockTable.drawBlock(d, (int) this.rect.getLeft(), (int) this.rect.getTop(),
+                    (int) this.rect.getWidth(), (int) this.rect.getHeight(), this.color);
+        }
+    }
+
+    @Override
+    public void writeTo(FrameState state) {
+        if (this.table != null) {
+            this.table.writeRow(state, this.row);
+        } else {
+            state.putBlock(this.id, (int) this.rect.getLeft(), (int) this.rect.getTop(),
+                    (int) this.rect.getWidth(), (int) this.rect.getHeight(), this.color);
+        }
     }
 
     @Override
     public void addToGame(Game g) {
+        addToGame(g, g.nextBlockId());
+    }
+
+    /**
+     * Adds this block to the game under an id reserved for it earlier.
+     *
+     * @param g       the game
+     * @param blockId the block's stable id
+     */
+    void addToGame(Game g, int blockId) {
+        this.id = blockId;
         g.addSprite(this);
-        g.addCollidable(this);
+        this.collidableId = g.addCollidable(this);
+    }
+    /**
+     * Returns the stable id this block got when it was added to a game.
+     *
+     * @return the block id, or -1 if the block was never added to a game
+     */
+    public int getId() {
+        return this.table != null ? this.table.getId(this.row) : this.id;
+    }
+
+    /**
+     * Returns the table of a view.
+     *
+     * @return the table, or null for a stand-alone block
+     */
+    BlockTable getTable() {
+        return this.table;
+    }
+
+    /**
+     * Returns the block's listeners. The returned array must not be modified.
+     *
+     * @return the listeners
+     */
+    HitListener[] getListeners() {
+        return this.table != null ? this.table.getListeners(this.row) : this.listeners;
     }
     /**
      * Checks whether the given ball has the same color as this object.
@@ -77,7 +230,7 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @return true if the colors match, false otherwise
      */
     public boolean ballColorMatch(Ball ball) {
-        return this.color.equals(ball.getColor());
+        return getColor().equals(ball.getColor());
     }
     /**
      * Removes this object from the given game.
@@ -85,28 +238,69 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @param game the game from which this object is removed
      */
     public void removeFromGame(Game game) {
-        game.removeCollidable(this);
-        game.removeSprite(this);
+        if (this.collidableId >= 0) {
+            game.removeCollidable(this.collidableId);
+            game.removeSprite(this);
+            this.collidableId = -1;
+            if (this.pooled) {
+                game.retireBlock(this);
+            }
+        }
+        if (isAlive()) {
+            int blockId = getId();
+            if (this.table != null) {
+                this.table.remove(this.row);
+            } else {
+                this.alive = false;
+            }
+            game.blockRemoved(blockId);
+        }
     }
 
     @Override
     public void addHitListener(HitListener hl) {
-        this.hitListeners.add(hl);
-
+        if (this.table != null) {
+            this.table.addHitListener(this.row, hl);
+            return;
+        }
+        HitListener[] next = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        next[this.listeners.length] = hl;
+        this.listeners = next;
     }
 
     @Override
     public void removeHitListener(HitListener hl) {
-        this.hitListeners.remove(hl);
-
+        if (this.table != null) {
+            this.table.removeHitListener(this.row, hl);
+            return;
+        }
+        for (int i = 0; i < this.listeners.length; i++) {
+            if (this.listeners[i] == hl) {
+                HitListener[] next = new HitListener[this.listeners.length - 1];
+                System.arraycopy(this.listeners, 0, next, 0, i);
+                System.arraycopy(this.listeners, i + 1, next, i, this.listeners.length - i - 1);
+                this.listeners = next;
+                return;
+            }
+        }
     }
 
     private void notifyHit(Ball hitter) {
-        // Make a copy of the hitListeners before iterating over them.
-        List<HitListener> listeners = new ArrayList<HitListener>(this.hitListeners);
+        // Listener sets are never modified, so listeners may add or remove
+        // listeners while the current set is being dispatched.
+        HitListener[] current = getListeners();
         // Notify all listeners about a hit event:
-        for (HitListener hl : listeners) {
+        for (HitListener hl : current) {
+            HitDispatchEvent event = new HitDispatchEvent();
+            event.begin();
+            // read before dispatch: a listener may remove the block or the ball
+            int blockId = getId();
+            int ballId = hitter.getId();
             hl.hitEvent(this, hitter);
+            if (event.shouldCommit()) {
+                event.setHit(hl.getClass(), blockId, ballId);
+                event.commit();
+            }
         }
     }
 
@@ -115,10 +309,10 @@ public class Block implements Collidable, Sprite, HitNotifier {
         double dx = currentVelocity.getDx();
         double dy = currentVelocity.getDy();
 
-        double leftX = rect.getUpperLeft().getX();
-        double rightX = leftX + rect.getWidth();
-        double topY = rect.getUpperLeft().getY();
-        double bottomY = topY + rect.getHeight();
+        double leftX = getLeft();
+        double rightX = leftX + getWidth();
+        double topY = getTop();
+        double bottomY = topY + getHeight();
         if (DoublesCompare.equals(collisionPoint.getX(), leftX)
                 || DoublesCompare.equals(collisionPoint.getX(), rightX)) {
             dx = -dx;
@@ -127,6 +321,10 @@ public class Block implements Collidable, Sprite, HitNotifier {
                 || DoublesCompare.equals(collisionPoint.getY(), bottomY)) {
             dy = -dy;
         }
+        GameEnvironment environment = hitter.getGameEnvironment();
+        if (environment != null && environment.getHeatmap() != null) {
+            environment.getHeatmap().blockHit(getId());
+        }
         if (!ballColorMatch(hitter)) {
             this.notifyHit(hitter);
         }
@@ -0,0 +1,1138 @@
+package game;
+
+import Geometry_shapes.Point;
+import Geometry_shapes.Rectangle;
+import Geometry_shapes.RectangleBatch;
+import biuoop.DrawSurface;
+import listeners.HitListener;
+import render.FrameState;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact table of blocks, stored column by column in primitive arrays
+ * instead of as one object per brick.
+ *
+ * <p>
+ * Every block is a row holding its id, its position and size as
+ * {@code float}s, an index into a shared color palette, the id of a shared
+ * listener set, the next row in its collision grid cell and an alive bit:
+ * 30 bytes, against several hundred for a {@link Block} with its own
+ * rectangle, point and listener list. The grid adds a few bytes per
+ * occupied cell on top.
+ *
+ * <p>
+ * A listener set is counted by the rows that use it, and dropped once the
+ * last of them is removed or moves to another set; its id is then reused.
+ * The table holds only the sets its live blocks use, plus those handed
+ * out by {@link #listenerSet(HitListener...)}, however many listeners
+ * come and go.
+ *
+ * <p>
+ * The table draws all of its rows as one sprite, and answers collision
+ * queries through a uniform grid, so a ball only tests the blocks near the
+ * cells its path crosses. A block no larger than a cell is chained into
+ * the cell of its upper-left corner only; larger blocks, such as the
+ * borders, are kept in one list that every query tests. {@link Block}
+ * objects are created only as thin views on a row, when a listener needs one.
+ *
+ * <p>
+ * Rows of removed blocks are reused by later {@link #add} calls; a view
+ * is only valid until its block is removed.
+ */
+public class BlockTable implements Sprite {
+    private static final int INITIAL_CAPACITY = 16;
+    /** The side of a collision grid cell, in pixels. */
+    static final double CELL_SIZE = 64;
+    /** How close a hit point must be to an edge to be placed exactly on it. */
+    private static final double SNAP = 1e-6;
+    private static final int FREE_SLOT = -2;
+    /** The most idle views kept; a ball holds one at a time. */
+    private static final int MAX_IDLE_VIEWS = 8;
+
+    private int rows;
+    private int liveCount;
+    /** The number of blocks ever added, by either {@link #add} or {@link #load}. */
+    private int additions;
+    private int[] ids;
+    private float[] xs;
+    private float[] ys;
+    private float[] ws;
+    private float[] hs;
+    private short[] paint;
+    private int[] listenerSet;
+    /** The next row in the same grid cell, or -1. */
+    private int[] next;
+    private long[] alive = new long[1];
+    private int[] freeRows;
+    private int freeCount;
+
+    private Color[] palette = new Color[8];
+    private int paletteSize;
+    /** Listener sets shared by rows, or null once dropped; set 0 is the empty set. Sets are never modified. */
+    private final List<HitListener[]> listenerSets = new ArrayList<>();
+    private final Map<List<HitListener>, Integer> listenerSetIds = new HashMap<>();
+    /** The uses of each set: the rows in it, and one for every id handed out by {@link #listenerSet}. */
+    private int[] setUses = new int[8];
+    private int[] freeSets = new int[8];
+    private int freeSetCount;
+    /**
+     * The last listener added to and removed from each set, and the sets
+     * that resulted, so that the blocks sharing a set move to the next one
+     * without building and looking up the new set again.
+     */
+    private HitListener[] lastAdded = new HitListener[8];
+    private int[] afterAdd = new int[8];
+    private HitListener[] lastRemoved = new HitListener[8];
+    private int[] afterRemove = new int[8];
+
+    private boolean gridBuilt;
+    private long[] cellKeys;
+    /** The first row of each cell, -1 for an empty cell, or {@link #FREE_SLOT}. */
+    private int[] cellHeads;
+    private int cellCount;
+    /** The first row too large for a single cell, or -1. */
+    private int largeHead = -1;
+
+    private int chainBest;
+    /** Whether the candidates of each grid step are tested together; see {@link #setBatched}. */
+    private boolean batched;
+    /** Candidate blocks tested together, and their rows. */
+    /** Created with the grid, so a table that is never queried does without it. */
+    private RectangleBatch batch;
+    private int[] batchRows;
+    private double walkBest;
+    /** The number of rows the last query tested. */
+    private int testedRows;
+    private int[] skipRows;
+    private int skipCount;
+    /** The hit a fixed-point query keeps, or null during a floating-point query. */
+    private FixedHit fixedHit;
+    private double hitTime;
+    private double hitX;
+    private double hitY;
+
+    /** Created by the first view, so a table that never makes one does without it. */
+    private Pool<Block> views;
+
+    /**
+     * Creates an empty table.
+     */
+    public BlockTable() {
+        int n = INITIAL_CAPACITY;
+        this.ids = new int[n];
+        this.xs = new float[n];
+        this.ys = new float[n];
+        this.ws = new float[n];
+        this.hs = new float[n];
+        this.paint = new short[n];
+        this.listenerSet = new int[n];
+        this.next = new int[n];
+        this.freeRows = new int[n];
+        this.batchRows = new int[n];
+        this.listenerSets.add(new HitListener[0]);
+        this.listenerSetIds.put(List.of(), 0);
+        this.setUses[0] = 1;
+    }
+
+    /**
+     * Adds a block and returns its row.
+     *
+     * @param id          the block's stable id
+     * @param x           the x-coordinate of the upper-left corner
+     * @param y           the y-coordinate of the upper-left corner
+     * @param width       the block width
+     * @param height      the block height
+     * @param color       the block color
+     * @param listenerSet a listener set from {@link #listenerSet(HitListener...)}
+     * @return the row of the new block
+     */
+    public int add(int id, double x, double y, double width, double height, Color color, int listenerSet) {
+        int row;
+        if (this.freeCount > 0) {
+            row = this.freeRows[--this.freeCount];
+        } else {
+            if (this.rows == this.ids.length) {
+                grow(this.rows * 2);
+            }
+            row = this.rows++;
+        }
+        this.ids[row] = id;
+        this.xs[row] = (float) x;
+        this.ys[row] = (float) y;
+        this.ws[row] = (float) width;
+        this.hs[row] = (float) height;
+        this.paint[row] = paletteIndex(color);
+        // a removed row is in the empty set, unless listeners were added to it since
+        release(this.listenerSet[row]);
+        this.listenerSet[row] = listenerSet;
+        this.setUses[listenerSet]++;
+        this.alive[row >>> 6] |= 1L << row;
+        this.liveCount++;
+        this.additions++;
+        if (this.gridBuilt) {
+            gridInsert(row);
+        }
+        return row;
+    }
+
+    /**
+     * Fills an empty table with whole columns at once, as read from a
+     * level snapshot, instead of adding the blocks one at a time. The
+     * arrays are taken over by the table when they are large enough.
+     *
+     * @param count   the number of rows
+     * @param rowIds  the blocks' stable ids
+     * @param x       the x-coordinates of the upper-left corners
+     * @param y       the y-coordinates of the upper-left corners
+     * @param w       the widths
+     * @param h       the heights
+     * @param colors  the palette the rows' paint indexes refer to
+     * @param paints  each row's palette index
+     * @param sets    each row's listener set
+     */
+    void load(int count, int[] rowIds, float[] x, float[] y, float[] w, float[] h,
+              Color[] colors, short[] paints, int[] sets) {
+        if (this.rows != 0) {
+            throw new IllegalStateException("Only an empty block table can be loaded");
+        }
+        int capacity = Math.max(count, INITIAL_CAPACITY);
+        this.ids = Arrays.copyOf(rowIds, capacity);
+        this.xs = Arrays.copyOf(x, capacity);
+        this.ys = Arrays.copyOf(y, capacity);
+        this.ws = Arrays.copyOf(w, capacity);
+        this.hs = Arrays.copyOf(h, capacity);
+        this.paint = Arrays.copyOf(paints, capacity);
+        this.listenerSet = Arrays.copyOf(sets, capacity);
+        for (int row = 0; row < count; row++) {
+            this.setUses[sets[row]]++;
+        }
+        this.next = new int[capacity];
+        this.alive = new long[(capacity + 63) >>> 6];
+        for (int i = 0; i < count >>> 6; i++) {
+            this.alive[i] = -1L;
+        }
+        if ((count & 63) != 0) {
+            this.alive[count >>> 6] = (1L << count) - 1;
+        }
+        this.palette = Arrays.copyOf(colors, Math.max(colors.length, 8));
+        this.paletteSize = colors.length;
+        this.rows = count;
+        this.liveCount = count;
+        this.additions += count;
+        this.gridBuilt = false;
+    }
+
+    /**
+     * Removes the block in the given row. Its row may be reused by a later block.
+     *
+     * @param row the row to remove
+     */
+    public void remove(int row) {
+        if (!isAlive(row)) {
+            return;
+        }
+        if (this.gridBuilt) {
+            gridRemove(row);
+        }
+        this.alive[row >>> 6] &= ~(1L << row);
+        release(this.listenerSet[row]);
+        this.listenerSet[row] = 0;
+        this.liveCount--;
+        if (this.freeCount == this.freeRows.length) {
+            this.freeRows = Arrays.copyOf(this.freeRows, this.freeCount * 2);
+        }
+        this.freeRows[this.freeCount++] = row;
+    }
+
+    /**
+     * Returns the number of blocks ever added to the table. It changes
+     * whenever a block appears, so a cached answer about the table's free
+     * space is stale once it differs.
+     *
+     * @return the addition count
+     */
+    int getAdditions() {
+        return this.additions;
+    }
+
+    /**
+     * Checks whether the given row holds a block.
+     *
+     * @param row the row
+     * @return true if a block lives in that row
+     */
+    public boolean isAlive(int row) {
+        return row >= 0 && row < this.rows && (this.alive[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Returns the number of blocks in the table.
+     *
+     * @return the live block count
+     */
+    public int size() {
+        return this.liveCount;
+    }
+
+    /**
+     * Returns one past the highest row ever used.
+     *
+     * @return the row limit
+     */
+    public int rowLimit() {
+        return this.rows;
+    }
+
+    /**
+     * Returns the stable id of the block in the given row.
+     *
+     * @param row the row
+     * @return the block id
+     */
+    public int getId(int row) {
+        return this.ids[row];
+    }
+
+    void setId(int row, int id) {
+        this.ids[row] = id;
+    }
+
+    /**
+     * Returns the x-coordinate of the block's upper-left corner.
+     *
+     * @param row the row
+     * @return the x-coordinate
+     */
+    public double getX(int row) {
+        return this.xs[row];
+    }
+
+    /**
+     * Returns the y-coordinate of the block's upper-left corner.
+     *
+     * @param row the row
+     * @return the y-coordinate
+     */
+    public double getY(int row) {
+        return this.ys[row];
+    }
+
+    /**
+     * Returns the width of the block.
+     *
+     * @param row the row
+     * @return the width
+     */
+    public double getWidth(int row) {
+        return this.ws[row];
+    }
+
+    /**
+     * Returns the height of the block.
+     *
+     * @param row the row
+     * @return the height
+     */
+    public double getHeight(int row) {
+        return this.hs[row];
+    }
+
+    /**
+     * Returns the color of the block.
+     *
+     * @param row the row
+     * @return the color
+     */
+    public Color getColor(int row) {
+        return this.palette[this.paint[row]];
+    }
+
+    /**
+     * Returns a new rectangle with the block's shape.
+     *
+     * @param row the row
+     * @return the block's rectangle
+     */
+    public Rectangle getRectangle(int row) {
+        return new Rectangle(new Point(this.xs[row], this.ys[row]), this.ws[row], this.hs[row]);
+    }
+
+    /**
+     * Returns a {@link Block} view of the given row, for code that works
+     * with block objects such as hit listeners. Views come from a pool;
+     * one handed back with {@link #releaseView(Block)} may later show a
+     * different row.
+     *
+     * @param row the row
+     * @return a view of the block in that row
+     */
+    public Block view(int row) {
+        Block view = getViewPool().acquire();
+        view.setRow(row);
+        return view;
+    }
+
+    /**
+     * Returns a view made by {@link #view(int)} to the pool once it is no
+     * longer used.
+     *
+     * @param view the view
+     */
+    void releaseView(Block view) {
+        getViewPool().release(view);
+    }
+
+    /**
+     * Returns the pool of this table's views.
+     *
+     * @return the view pool
+     */
+    public Pool<Block> getViewPool() {
+        if (this.views == null) {
+            this.views = new Pool<>(() -> new Block(this, -1), b -> b.setRow(-1), MAX_IDLE_VIEWS);
+        }
+        return this.views;
+    }
+
+    /**
+     * Returns the id of a listener set that rows can share, registering
+     * it if no equal set exists yet. The set is kept for the table's life,
+     * so the id stays valid even while no block uses it.
+     *
+     * @param listeners the listeners, in dispatch order
+     * @return the listener set id
+     */
+    public int listenerSet(HitListener... listeners) {
+        int set = intern(listeners.clone());
+        this.setUses[set]++;
+        return set;
+    }
+
+    private int intern(HitListener[] listeners) {
+        List<HitListener> key = Arrays.asList(listeners);
+        Integer id = this.listenerSetIds.get(key);
+        if (id != null) {
+            return id;
+        }
+        int set;
+        if (this.freeSetCount > 0) {
+            set = this.freeSets[--this.freeSetCount];
+            this.listenerSets.set(set, listeners);
+        } else {
+            set = this.listenerSets.size();
+            this.listenerSets.add(listeners);
+            if (set == this.lastAdded.length) {
+                this.lastAdded = Arrays.copyOf(this.lastAdded, set * 2);
+                this.afterAdd = Arrays.copyOf(this.afterAdd, set * 2);
+                this.lastRemoved = Arrays.copyOf(this.lastRemoved, set * 2);
+                this.afterRemove = Arrays.copyOf(this.afterRemove, set * 2);
+                this.setUses = Arrays.copyOf(this.setUses, set * 2);
+                this.freeSets = Arrays.copyOf(this.freeSets, set * 2);
+            }
+        }
+        this.listenerSetIds.put(key, set);
+        return set;
+    }
+
+    /**
+     * Drops one use of a set, and the set itself with its last use.
+     */
+    private void release(int set) {
+        // the empty set is never dropped
+        if (set == 0 || --this.setUses[set] > 0) {
+            return;
+        }
+        this.listenerSetIds.remove(Arrays.asList(this.listenerSets.get(set)));
+        this.listenerSets.set(set, null);
+        this.freeSets[this.freeSetCount++] = set;
+        // any memo may lead to the dropped set, whose id is about to be reused
+        Arrays.fill(this.lastAdded, null);
+        Arrays.fill(this.lastRemoved, null);
+    }
+
+    /**
+     * Returns the number of listener sets the table holds.
+     *
+     * @return the live listener set count
+     */
+    int getListenerSetCount() {
+        return this.listenerSets.size() - this.freeSetCount;
+    }
+
+    /**
+     * Returns the id of the listener set of the block in the given row.
+     *
+     * @param row the row
+     * @return the listener set id
+     */
+    int getListenerSet(int row) {
+        return this.listenerSet[row];
+    }
+
+    /**
+     * Returns the listeners of the block in the given row.
+     * The returned array must not be modified.
+     *
+     * @param row the row
+     * @return the block's listeners
+     */
+    HitListener[] getListeners(int row) {
+        return this.listenerSets.get(this.listenerSet[row]);
+    }
+
+    /**
+     * Adds a listener to one block, moving it to the matching listener set.
+     *
+     * @param row the row
+     * @param hl  the listener to add
+     */
+    void addHitListener(int row, HitListener hl) {
+        int set = this.listenerSet[row];
+        if (this.lastAdded[set] != hl) {
+            HitListener[] current = this.listenerSets.get(set);
+            HitListener[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = hl;
+            // interning may replace the memo arrays, so store into them afterwards
+            int added = intern(next);
+            this.afterAdd[set] = added;
+            this.lastAdded[set] = hl;
+        }
+        moveToSet(row, this.afterAdd[set]);
+    }
+
+    /**
+     * Removes a listener from one block, moving it to the matching listener set.
+     *
+     * @param row the row
+     * @param hl  the listener to remove
+     */
+    void removeHitListener(int row, HitListener hl) {
+        int set = this.listenerSet[row];
+        if (this.lastRemoved[set] != hl) {
+            this.afterRemove[set] = set;
+            HitListener[] current = this.listenerSets.get(set);
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == hl) {
+                    HitListener[] next = new HitListener[current.length - 1];
+                    System.arraycopy(current, 0, next, 0, i);
+                    System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                    int removed = intern(next);
+                    this.afterRemove[set] = removed;
+                    break;
+                }
+            }
+            this.lastRemoved[set] = hl;
+        }
+        moveToSet(row, this.afterRemove[set]);
+    }
+
+    private void moveToSet(int row, int set) {
+        int old = this.listenerSet[row];
+        this.listenerSet[row] = set;
+        this.setUses[set]++;
+        release(old);
+    }
+
+    /**
+     * Sets whether the blocks found in each step of a query's grid walk are
+     * tested together in a {@link RectangleBatch}, several per vector
+     * instruction, rather than one at a time. The results are the same
+     * either way. Copying the blocks into the batch costs about as much as
+     * the vector instructions save unless grid cells hold many blocks, so
+     * batching is off by default.
+     *
+     * @param enabled whether to test blocks in batches
+     */
+    public void setBatched(boolean enabled) {
+        this.batched = enabled;
+    }
+
+    /**
+     * Finds the first block whose boundary the segment from {@code (x0, y0)}
+     * to {@code (x1, y1)} crosses. On success the crossing can be read with
+     * {@link #getHitTime()}, {@link #getHitX()} and {@link #getHitY()}; the
+     * hit point lies exactly on the edge that was crossed.
+     *
+     * @param x0 the x-coordinate of the segment start
+     * @param y0 the y-coordinate of the segment start
+     * @param x1 the x-coordinate of the segment end
+     * @param y1 the y-coordinate of the segment end
+     * @return the row of the block hit first, or -1 if none is hit
+     */
+    public int closestHit(double x0, double y0, double x1, double y1) {
+        return closestHit(x0, y0, x1, y1, null, 0);
+    }
+
+    /**
+     * Like {@link #closestHit(double, double, double, double)}, but treats
+     * the first {@code skipCount} rows of {@code skip} as if they were
+     * removed. Used to look ahead past blocks a ball is expected to destroy.
+     *
+     * @param x0        the x-coordinate of the segment start
+     * @param y0        the y-coordinate of the segment start
+     * @param x1        the x-coordinate of the segment end
+     * @param y1        the y-coordinate of the segment end
+     * @param skip      the rows to ignore, may be null if {@code skipCount} is 0
+     * @param skipCount the number of rows to ignore
+     * @return the row of the block hit first, or -1 if none is hit
+     */
+    public int closestHit(double x0, double y0, double x1, double y1, int[] skip, int skipCount) {
+        this.skipRows = skip;
+        this.skipCount = skipCount;
+        this.fixedHit = null;
+        int bestRow = walk(x0, y0, x1, y1);
+        if (bestRow >= 0) {
+            recordHit(bestRow, x0, y0, x1 - x0, y1 - y0, this.walkBest);
+        }
+        return bestRow;
+    }
+
+    /**
+     * Finds the first block the fixed-point segment of {@code hit} crosses,
+     * if it is crossed before the hit already kept there, using exact
+     * integer tests. The grid cells are walked as in
+     * {@link #closestHit(double, double, double, double)}; only the blocks
+     * found there are tested in fixed point.
+     *
+     * @param hit the segment and the earliest hit so far, replaced if a block is hit earlier
+     * @return the row of the block hit first, or -1 if no block is hit before {@code hit}
+     */
+    int closestHitFixed(FixedHit hit) {
+        this.skipCount = 0;
+        this.fixedHit = hit;
+        long x0 = hit.getStartX();
+        long y0 = hit.getStartY();
+        int bestRow = walk(FixedPoint.toDouble(x0), FixedPoint.toDouble(y0),
+                FixedPoint.toDouble(x0 + hit.getLengthX()), FixedPoint.toDouble(y0 + hit.getLengthY()));
+        this.fixedHit = null;
+        return bestRow;
+    }
+
+    /**
+     * Walks the grid cells along the segment and tests the blocks in them,
+     * leaving the earliest hit time in {@link #walkBest}.
+     */
+    private int walk(double x0, double y0, double x1, double y1) {
+        this.testedRows = 0;
+        if (this.liveCount == 0) {
+            return -1;
+        }
+        if (!this.gridBuilt) {
+            buildGrid();
+        }
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        // a fixed-point query stops once it is past the hit it already has
+        double limit = this.fixedHit != null && this.fixedHit.found()
+                ? this.fixedHit.getTime() : Double.POSITIVE_INFINITY;
+        double best = testChain(this.largeHead, x0, y0, dx, dy, limit);
+        int bestRow = this.chainBest;
+        int cx = cell(x0);
+        int cy = cell(y0);
+        int endCx = cell(x1);
+        int endCy = cell(y1);
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        double tDeltaX = dx != 0 ? CELL_SIZE / Math.abs(dx) : Double.POSITIVE_INFINITY;
+        double tDeltaY = dy != 0 ? CELL_SIZE / Math.abs(dy) : Double.POSITIVE_INFINITY;
+        double tMaxX = dx != 0 ? ((cx + (dx > 0 ? 1 : 0)) * CELL_SIZE - x0) / dx : Double.POSITIVE_INFINITY;
+        double tMaxY = dy != 0 ? ((cy + (dy > 0 ? 1 : 0)) * CELL_SIZE - y0) / dy : Double.POSITIVE_INFINITY;
+        while (true) {
+            // a block overlapping this cell starts in it or in a cell to its left or above
+            boolean batched = this.batched && this.fixedHit == null;
+            this.batch.clear();
+            for (int ny = cy - 1; ny <= cy; ny++) {
+                for (int nx = cx - 1; nx <= cx; nx++) {
+                    int head = gridHead(key(nx, ny));
+                    if (head >= 0 && batched) {
+                        gather(head);
+                    } else if (head >= 0) {
+                        double t = testChain(head, x0, y0, dx, dy, best);
+                        if (t < best) {
+                            best = t;
+                            bestRow = this.chainBest;
+                        }
+                    }
+                }
+            }
+            if (this.batch.size() > 0) {
+                double t = testBatch(x0, y0, dx, dy, best);
+                if (t < best) {
+                    best = t;
+                    bestRow = this.chainBest;
+                }
+            }
+            double cellExit = Math.min(tMaxX, tMaxY);
+            if (best <= cellExit || (cx == endCx && cy == endCy) || cellExit > 1) {
+                break;
+            }
+            if (tMaxX < tMaxY) {
+                cx += stepX;
+                tMaxX += tDeltaX;
+            } else {
+                cy += stepY;
+                tMaxY += tDeltaY;
+            }
+        }
+        this.walkBest = best;
+        return bestRow;
+    }
+
+    /**
+     * Returns when a ray first comes within {@code margin} of a block: the
+     * earliest time, below {@code limit}, at which the point
+     * {@code (x0 + t*dx, y0 + t*dy)} lies in a block grown by
+     * {@code margin} on every side. Used to find how many ticks a ball may
+     * fly without a collision query.
+     *
+     * @param x0     the x-coordinate of the ray start
+     * @param y0     the y-coordinate of the ray start
+     * @param dx     the ray's movement per unit of time along x
+     * @param dy     the ray's movement per unit of time along y
+     * @param margin how far from a block the ray must stay, at most {@link #CELL_SIZE}
+     * @param limit  the time to look up to
+     * @return the entry time, or {@code limit} if no block is that close before it
+     */
+    double freeTime(double x0, double y0, double dx, double dy, double margin, double limit) {
+        if (this.liveCount == 0) {
+            return limit;
+        }
+        if (!this.gridBuilt) {
+            buildGrid();
+        }
+        double best = nearChain(this.largeHead, x0, y0, dx, dy, margin, limit);
+        int cx = cell(x0);
+        int cy = cell(y0);
+        int endCx = cell(x0 + dx * limit);
+        int endCy = cell(y0 + dy * limit);
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        double tDeltaX = dx != 0 ? CELL_SIZE / Math.abs(dx) : Double.POSITIVE_INFINITY;
+        double tDeltaY = dy != 0 ? CELL_SIZE / Math.abs(dy) : Double.POSITIVE_INFINITY;
+        double tMaxX = dx != 0 ? ((cx + (dx > 0 ? 1 : 0)) * CELL_SIZE - x0) / dx : Double.POSITIVE_INFINITY;
+        double tMaxY = dy != 0 ? ((cy + (dy > 0 ? 1 : 0)) * CELL_SIZE - y0) / dy : Double.POSITIVE_INFINITY;
+        // a grown block reaching into a cell starts at most two cells to its left or above, or one past it
+        for (int ny = cy - 2; ny <= cy + 1; ny++) {
+            best = nearCells(cx - 2, ny, 1, 0, x0, y0, dx, dy, margin, best);
+        }
+        while (true) {
+            double cellExit = Math.min(tMaxX, tMaxY);
+            if (best <= cellExit || (cx == endCx && cy == endCy) || cellExit > limit) {
+                break;
+            }
+            // the neighborhood of the next cell adds one column or one row to this one's
+            if (tMaxX < tMaxY) {
+                cx += stepX;
+                tMaxX += tDeltaX;
+                best = nearCells(stepX > 0 ? cx + 1 : cx - 2, cy - 2, 0, 1, x0, y0, dx, dy, margin, best);
+            } else {
+                cy += stepY;
+                tMaxY += tDeltaY;
+                best = nearCells(cx - 2, stepY > 0 ? cy + 1 : cy - 2, 1, 0, x0, y0, dx, dy, margin, best);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Tests the chains of four cells in a line, starting at {@code (cx, cy)}
+     * and moving by {@code (stepX, stepY)}, with {@link #nearChain}.
+     */
+    private double nearCells(int cx, int cy, int stepX, int stepY,
+                             double x0, double y0, double dx, double dy, double margin, double limit) {
+        double best = limit;
+        for (int i = 0; i < 4; i++) {
+            int head = gridHead(key(cx + i * stepX, cy + i * stepY));
+            if (head >= 0) {
+                best = nearChain(head, x0, y0, dx, dy, margin, best);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the earliest time below {@code limit} at which the ray enters
+     * a block of one chain grown by {@code margin}.
+     */
+    private double nearChain(int head, double x0, double y0, double dx, double dy, double margin, double limit) {
+        double best = limit;
+        for (int row = head; row >= 0; row = this.next[row]) {
+            double left = this.xs[row];
+            double top = this.ys[row];
+            double t = Rectangle.entryTime(x0, y0, dx, dy, left - margin, top - margin,
+                    left + this.ws[row] + margin, top + this.hs[row] + margin);
+            if (t < best) {
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Tests the rows of one chain, and returns the earliest hit time below
+     * {@code limit}, leaving its row in {@link #chainBest}.
+     */
+    private double testChain(int head, double x0, double y0, double dx, double dy, double limit) {
+        double best = limit;
+        this.chainBest = -1;
+        if (this.fixedHit != null) {
+            for (int row = head; row >= 0; row = this.next[row]) {
+                double left = this.xs[row];
+                double top = this.ys[row];
+                if (this.fixedHit.test(left, top, left + this.ws[row], top + this.hs[row])) {
+                    best = this.fixedHit.getTime();
+                    this.chainBest = row;
+                }
+                this.testedRows++;
+            }
+            return best;
+        }
+        if (this.batched) {
+            this.batch.clear();
+            gather(head);
+            return testBatch(x0, y0, dx, dy, limit);
+        }
+        for (int row = head; row >= 0; row = this.next[row]) {
+            double left = this.xs[row];
+            double top = this.ys[row];
+            double t = Rectangle.edgeHitTime(x0, y0, dx, dy, left, top, left + this.ws[row], top + this.hs[row]);
+            if (t < best && !skipped(row)) {
+                best = t;
+                this.chainBest = row;
+            }
+            this.testedRows++;
+        }
+        return best;
+    }
+
+    /**
+     * Adds the rows of one chain that are not skipped to {@link #batch}.
+     */
+    private void gather(int head) {
+        for (int row = head; row >= 0; row = this.next[row]) {
+            if (!skipped(row)) {
+                double left = this.xs[row];
+                double top = this.ys[row];
+                int i = this.batch.add(left, top, left + this.ws[row], top + this.hs[row]);
+                if (i == this.batchRows.length) {
+                    this.batchRows = Arrays.copyOf(this.batchRows, i * 2);
+                }
+                this.batchRows[i] = row;
+                this.testedRows++;
+            }
+        }
+    }
+
+    /**
+     * Tests the gathered rows like {@link #testChain}, returning the
+     * earliest hit time below {@code limit} and leaving its row in
+     * {@link #chainBest}. Rows gathered earlier win ties, as in a chain.
+     */
+    private double testBatch(double x0, double y0, double dx, double dy, double limit) {
+        int i = this.batch.firstHit(x0, y0, dx, dy, limit);
+        if (i < 0) {
+            this.chainBest = -1;
+            return limit;
+        }
+        this.chainBest = this.batchRows[i];
+        return this.batch.getHitTime();
+    }
+
+    private boolean skipped(int row) {
+        for (int i = 0; i < this.skipCount; i++) {
+            if (this.skipRows[i] == row) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores the hit point of the last query, moved exactly onto the
+     * crossed edge so {@link Block#hit} can tell which side was hit.
+     */
+    private void recordHit(int row, double x0, double y0, double dx, double dy, double t) {
+        double left = this.xs[row];
+        double top = this.ys[row];
+        double right = left + this.ws[row];
+        double bottom = top + this.hs[row];
+        double px = x0 + dx * t;
+        double py = y0 + dy * t;
+        if (Math.abs(px - left) <= SNAP) {
+            px = left;
+        } else if (Math.abs(px - right) <= SNAP) {
+            px = right;
+        }
+        if (Math.abs(py - top) <= SNAP) {
+            py = top;
+        } else if (Math.abs(py - bottom) <= SNAP) {
+            py = bottom;
+        }
+        this.hitTime = t;
+        this.hitX = px;
+        this.hitY = py;
+    }
+
+    /**
+     * Returns the number of blocks the last query tested against its segment.
+     *
+     * @return the tested block count
+     */
+    int getTestedRows() {
+        return this.testedRows;
+    }
+
+    /**
+     * Returns how far along the last queried segment the hit lies, in {@code [0, 1]}.
+     *
+     * @return the hit parameter of the last successful query
+     */
+    public double getHitTime() {
+        return this.hitTime;
+    }
+
+    /**
+     * Returns the x-coordinate of the last hit point.
+     *
+     * @return the hit x-coordinate
+     */
+    public double getHitX() {
+        return this.hitX;
+    }
+
+    /**
+     * Returns the y-coordinate of the last hit point.
+     *
+     * @return the hit y-coordinate
+     */
+    public double getHitY() {
+        return this.hitY;
+    }
+
+    /**
+     * Draws one block, as {@link #drawBlock} does.
+     *
+     * @param d   the surface to draw on
+     * @param row the row to draw
+     */
+    void drawRow(DrawSurface d, int row) {
+        drawBlock(d, (int) this.xs[row], (int) this.ys[row], (int) this.ws[row], (int) this.hs[row],
+                getColor(row));
+    }
+
+    /**
+     * Draws a block as a filled rectangle with a black outline.
+     *
+     * @param d     the surface to draw on
+     * @param x     the x-coordinate of the upper-left corner
+     * @param y     the y-coordinate of the upper-left corner
+     * @param w     the block width
+     * @param h     the block height
+     * @param color the fill color
+     */
+    static void drawBlock(DrawSurface d, int x, int y, int w, int h, Color color) {
+        d.setColor(color);
+        d.fillRectangle(x, y, w, h);
+        d.setColor(Color.BLACK);
+        d.drawRectangle(x, y, w, h);
+    }
+
+    /**
+     * Records one block into a frame state.
+     *
+     * @param state the frame state being filled
+     * @param row   the row to record
+     */
+    void writeRow(FrameState state, int row) {
+        state.putBlock(this.ids[row], (int) this.xs[row], (int) this.ys[row],
+                (int) this.ws[row], (int) this.hs[row], getColor(row));
+    }
+
+    @Override
+    public void drawOn(DrawSurface d) {
+        for (int row = 0; row < this.rows; row++) {
+            if (isAlive(row)) {
+                drawRow(d, row);
+            }
+        }
+    }
+
+    @Override
+    public void writeTo(FrameState state) {
+        for (int row = 0; row < this.rows; row++) {
+            if (isAlive(row)) {
+                writeRow(state, row);
+            }
+        }
+    }
+
+    @Override
+    public void timePassed() {
+    }
+
+    @Override
+    public void addToGame(Game g) {
+        g.addSprite(this);
+        g.getEnvironment().addBlockTable(this);
+    }
+
+    private short paletteIndex(Color color) {
+        for (int i = 0; i < this.paletteSize; i++) {
+            if (this.palette[i] == color || this.palette[i].equals(color)) {
+                return (short) i;
+            }
+        }
+        if (this.paletteSize == Short.MAX_VALUE) {
+            throw new IllegalStateException("A block table holds at most " + Short.MAX_VALUE + " colors");
+        }
+        if (this.paletteSize == this.palette.length) {
+            this.palette = Arrays.copyOf(this.palette, this.paletteSize * 2);
+        }
+        this.palette[this.paletteSize] = color;
+        return (short) this.paletteSize++;
+    }
+
+    private void grow(int size) {
+        this.ids = Arrays.copyOf(this.ids, size);
+        this.xs = Arrays.copyOf(this.xs, size);
+        this.ys = Arrays.copyOf(this.ys, size);
+        this.ws = Arrays.copyOf(this.ws, size);
+        this.hs = Arrays.copyOf(this.hs, size);
+        this.paint = Arrays.copyOf(this.paint, size);
+        this.listenerSet = Arrays.copyOf(this.listenerSet, size);
+        this.next = Arrays.copyOf(this.next, size);
+        this.alive = Arrays.copyOf(this.alive, (size + 63) >>> 6);
+    }
+
+    // ---- collision grid: an open-addressing map from cell key to a chain of rows ----
+
+    private static int cell(double coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private boolean isLarge(int row) {
+        return this.ws[row] > CELL_SIZE || this.hs[row] > CELL_SIZE;
+    }
+
+    private void buildGrid() {
+        // the map grows with the number of occupied cells, not of rows
+        this.cellKeys = new long[64];
+        this.cellHeads = new int[64];
+        Arrays.fill(this.cellHeads, FREE_SLOT);
+        this.cellCount = 0;
+        this.largeHead = -1;
+        this.gridBuilt = true;
+        if (this.batch == null) {
+            this.batch = new RectangleBatch();
+        }
+        for (int row = 0; row < this.rows; row++) {
+            if (isAlive(row)) {
+                gridInsert(row);
+            }
+        }
+    }
+
+    private void gridInsert(int row) {
+        if (isLarge(row)) {
+            this.next[row] = this.largeHead;
+            this.largeHead = row;
+            return;
+        }
+        int slot = gridSlot(key(cell(this.xs[row]), cell(this.ys[row])), true);
+        this.next[row] = this.cellHeads[slot];
+        this.cellHeads[slot] = row;
+    }
+
+    private void gridRemove(int row) {
+        if (isLarge(row)) {
+            this.largeHead = unlink(this.largeHead, row);
+            return;
+        }
+        int slot = gridSlot(key(cell(this.xs[row]), cell(this.ys[row])), false);
+        if (slot >= 0) {
+            this.cellHeads[slot] = unlink(this.cellHeads[slot], row);
+        }
+    }
+
+    /**
+     * Removes a row from the chain starting at {@code head}, and returns the new head.
+     */
+    private int unlink(int head, int row) {
+        if (head == row) {
+            return this.next[row];
+        }
+        for (int r = head; r >= 0; r = this.next[r]) {
+            if (this.next[r] == row) {
+                this.next[r] = this.next[row];
+                break;
+            }
+        }
+        return head;
+    }
+
+    private int gridHead(long key) {
+        int slot = gridSlot(key, false);
+        return slot < 0 ? -1 : this.cellHeads[slot];
+    }
+
+    /**
+     * Finds the slot of a cell, optionally creating it with an empty chain.
+     *
+     * @return the slot, or -1 if the cell is absent and not created
+     */
+    private int gridSlot(long key, boolean create) {
+        int mask = this.cellKeys.length - 1;
+        int slot = (int) (mix(key) & mask);
+        while (this.cellHeads[slot] != FREE_SLOT) {
+            if (this.cellKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return -1;
+        }
+        if ((this.cellCount + 1) * 2 > this.cellKeys.length) {
+            rehash();
+            return gridSlot(key, true);
+        }
+        this.cellKeys[slot] = key;
+        this.cellHeads[slot] = -1;
+        this.cellCount++;
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = this.cellKeys;
+        int[] oldHeads = this.cellHeads;
+        this.cellKeys = new long[oldKeys.length * 2];
+        this.cellHeads = new int[oldKeys.length * 2];
+        Arrays.fill(this.cellHeads, FREE_SLOT);
+        int mask = this.cellKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] != FREE_SLOT) {
+                int slot = (int) (mix(oldKeys[i]) & mask);
+                while (this.cellHeads[slot] != FREE_SLOT) {
+                    slot = (slot + 1) & mask;
+                }
+                this.cellKeys[slot] = oldKeys[i];
+                this.cellHeads[slot] = oldHeads[i];
+            }
+        }
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+}
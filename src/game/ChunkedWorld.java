@@ -0,0 +1,431 @@
+package game;
+
+import levels.LevelBuilder;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A level larger than the screen, split into square chunks of blocks
+ * that are paged in and out of the game as the viewport and the balls move.
+ *
+ * <p>
+ * A chunk is in one of three states:
+ * <ul>
+ *     <li><b>active</b>: its blocks are rows of the game's {@link BlockTable},
+ *         and take part in collisions and drawing;</li>
+ *     <li><b>resident</b>: its blocks are kept only as compact primitive
+ *         records, and cost nothing per frame;</li>
+ *     <li><b>evicted</b>: its records were written to a file in the swap
+ *         directory and dropped from memory.</li>
+ * </ul>
+ * Every tick, chunks within one chunk of the viewport or of a ball are
+ * activated, chunks within two are read back from disk ahead of time, and
+ * active chunks no longer needed are deactivated. Chunks left idle for
+ * {@link #EVICT_AFTER_TICKS} are evicted; a chunk whose blocks were not
+ * destroyed since it was last written is not written again.
+ *
+ * <p>
+ * Blocks larger than a chunk, such as the borders, are not chunked and
+ * stay in the game permanently. The viewport follows the average position
+ * of the balls, within the bounds of the world. The paddles are built once
+ * the level is read, so they wrap around the whole width of the world.
+ * Every swap file is deleted when the JVM exits.
+ */
+public class ChunkedWorld implements LevelBuilder {
+    /** Idle ticks before a resident chunk is evicted to disk. */
+    static final int EVICT_AFTER_TICKS = 600;
+
+    private final Game game;
+    private final GameLevelBuilder builder;
+    private final double chunkSize;
+    private final Path swapDir;
+    private final Map<Long, Chunk> chunks = new HashMap<>();
+    private final List<Chunk> active = new ArrayList<>();
+    private final ArrayDeque<Chunk> idle = new ArrayDeque<>();
+    /** The level's paddles, built by {@link #start()} once the world's width is known. */
+    private final List<Runnable> paddles = new ArrayList<>();
+    private double maxBlockSize;
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+    private long tick;
+
+    /**
+     * Creates an empty world. Blocks are added by reading a level into it.
+     *
+     * @param game      the game the world's blocks take part in
+     * @param builder   the builder that creates blocks, balls and the paddle
+     * @param chunkSize the side of a chunk, in pixels
+     * @param swapDir   the directory evicted chunks are written to
+     */
+    ChunkedWorld(Game game, GameLevelBuilder builder, double chunkSize, Path swapDir) {
+        this.game = game;
+        this.builder = builder;
+        this.chunkSize = chunkSize;
+        this.swapDir = swapDir;
+    }
+
+    @Override
+    public void name(String name) {
+        this.builder.name(name);
+    }
+
+    @Override
+    public void block(double x, double y, double width, double height, Color color, int listeners) {
+        this.minX = Math.min(this.minX, x);
+        this.minY = Math.min(this.minY, y);
+        this.maxX = Math.max(this.maxX, x + width);
+        this.maxY = Math.max(this.maxY, y + height);
+        if (width > this.chunkSize || height > this.chunkSize) {
+            // borders and other long blocks stay in the game permanently
+            this.builder.block(x, y, width, height, color, listeners);
+            return;
+        }
+        long key = key(cell(x), cell(y));
+        Chunk c = this.chunks.get(key);
+        if (c == null) {
+            c = new Chunk(cell(x), cell(y));
+            this.chunks.put(key, c);
+        }
+        c.append(this.game.nextBlockId(), x, y, width, height, color, listeners);
+        if ((listeners & REMOVE_ON_HIT) != 0) {
+            this.game.getRemainingBlocks().increase(1);
+        }
+        this.maxBlockSize = Math.max(this.maxBlockSize, Math.max(width, height));
+    }
+
+    @Override
+    public void paddle(double x, double y, double width, double height, Color color, int speed) {
+        this.paddles.add(() -> this.builder.paddle(x, y, width, height, color, speed));
+    }
+
+    @Override
+    public void ball(double x, double y, int r, Color color, double dx, double dy) {
+        this.builder.ball(x, y, r, color, dx, dy);
+    }
+
+    /**
+     * Builds the paddles, places the viewport, activates the chunks it
+     * needs and evicts all others. Called once after the level was read.
+     */
+    void start() {
+        this.builder.setWorldWidth(getWidth());
+        for (Runnable paddle : this.paddles) {
+            paddle.run();
+        }
+        this.paddles.clear();
+        update(0);
+        for (Chunk c : this.chunks.values()) {
+            if (!c.active) {
+                evict(c);
+            }
+        }
+        this.idle.clear();
+    }
+
+    /**
+     * Moves the viewport and pages chunks in and out for the given tick.
+     *
+     * @param now the current tick
+     */
+    void update(long now) {
+        this.tick = now;
+        moveViewport();
+        double margin = this.chunkSize + this.maxBlockSize;
+        double left = this.game.getViewX();
+        double top = this.game.getViewY();
+        want(left, top, left + Game.WIDTH, top + Game.HEIGHT, margin);
+        List<Ball> balls = this.game.getBalls();
+        for (int i = 0; i < balls.size(); i++) {
+            Ball b = balls.get(i);
+            want(b.getX(), b.getY(), b.getX(), b.getY(), margin);
+        }
+        for (int i = this.active.size() - 1; i >= 0; i--) {
+            Chunk c = this.active.get(i);
+            if (c.wantedAt != now) {
+                deactivate(c);
+                this.active.set(i, this.active.get(this.active.size() - 1));
+                this.active.remove(this.active.size() - 1);
+            }
+        }
+        while (!this.idle.isEmpty() && now - this.idle.peekFirst().wantedAt > EVICT_AFTER_TICKS) {
+            Chunk c = this.idle.pollFirst();
+            if (!c.active && now - c.wantedAt > EVICT_AFTER_TICKS) {
+                evict(c);
+            }
+        }
+    }
+
+    /**
+     * Returns the width of the world, from 0 to the right edge of its
+     * rightmost block, and at least the screen's.
+     *
+     * @return the width, in pixels
+     */
+    int getWidth() {
+        return Math.max(Game.WIDTH, (int) Math.ceil(this.maxX));
+    }
+
+    /**
+     * Returns the height of the world, from 0 to the bottom edge of its
+     * lowest block, and at least the screen's.
+     *
+     * @return the height, in pixels
+     */
+    int getHeight() {
+        return Math.max(Game.HEIGHT, (int) Math.ceil(this.maxY));
+    }
+
+    /**
+     * Returns the number of chunks currently active in the game.
+     *
+     * @return the active chunk count
+     */
+    public int getActiveChunkCount() {
+        return this.active.size();
+    }
+
+    private void moveViewport() {
+        List<Ball> balls = this.game.getBalls();
+        if (balls.isEmpty()) {
+            return;
+        }
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = 0; i < balls.size(); i++) {
+            sumX += balls.get(i).getX();
+            sumY += balls.get(i).getY();
+        }
+        double x = clamp(sumX / balls.size() - Game.WIDTH / 2.0, this.minX, this.maxX - Game.WIDTH);
+        double y = clamp(sumY / balls.size() - Game.HEIGHT / 2.0, this.minY, this.maxY - Game.HEIGHT);
+        this.game.setViewport(x, y);
+    }
+
+    private static double clamp(double v, double low, double high) {
+        if (high < low) {
+            return low;
+        }
+        return Math.max(low, Math.min(high, v));
+    }
+
+    /**
+     * Activates the chunks within {@code margin} of the given area, and
+     * reads back evicted chunks within twice that distance.
+     */
+    private void want(double left, double top, double right, double bottom, double margin) {
+        for (int pass = 2; pass >= 1; pass--) {
+            int fromX = cell(left - margin * pass);
+            int toX = cell(right + margin * pass);
+            int fromY = cell(top - margin * pass);
+            int toY = cell(bottom + margin * pass);
+            for (int cy = fromY; cy <= toY; cy++) {
+                for (int cx = fromX; cx <= toX; cx++) {
+                    Chunk c = this.chunks.get(key(cx, cy));
+                    if (c == null) {
+                        continue;
+                    }
+                    if (c.count < 0) {
+                        load(c);
+                        c.wantedAt = this.tick;
+                        this.idle.addLast(c);
+                    }
+                    if (pass == 1) {
+                        c.wantedAt = this.tick;
+                        if (!c.active) {
+                            activate(c);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void activate(Chunk c) {
+        c.rows = new int[c.count];
+        for (int i = 0; i < c.count; i++) {
+            if (c.alive[i]) {
+                c.rows[i] = this.builder.addRow(c.ids[i], c.x[i], c.y[i], c.w[i], c.h[i], c.color[i], c.flags[i]);
+            }
+        }
+        c.active = true;
+        this.active.add(c);
+    }
+
+    /**
+     * Takes the chunk's blocks out of the table. A block whose row is no
+     * longer alive, or now holds another id, was destroyed while active.
+     */
+    private void deactivate(Chunk c) {
+        BlockTable table = this.game.getBlockTable();
+        for (int i = 0; i < c.count; i++) {
+            if (!c.alive[i]) {
+                continue;
+            }
+            int row = c.rows[i];
+            if (table.isAlive(row) && table.getId(row) == c.ids[i]) {
+                table.remove(row);
+            } else {
+                c.alive[i] = false;
+                c.dirty = true;
+            }
+        }
+        c.rows = null;
+        c.active = false;
+        this.idle.addLast(c);
+    }
+
+    private void evict(Chunk c) {
+        if (c.count < 0) {
+            return;
+        }
+        if (c.dirty) {
+            Path file = this.swapDir.resolve("chunk_" + c.cx + "_" + c.cy + ".bin");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file)))) {
+                int alive = 0;
+                for (int i = 0; i < c.count; i++) {
+                    if (c.alive[i]) {
+                        alive++;
+                    }
+                }
+                out.writeInt(alive);
+                for (int i = 0; i < c.count; i++) {
+                    if (c.alive[i]) {
+                        out.writeInt(c.ids[i]);
+                        out.writeFloat(c.x[i]);
+                        out.writeFloat(c.y[i]);
+                        out.writeFloat(c.w[i]);
+                        out.writeFloat(c.h[i]);
+                        out.writeInt(c.color[i].getRGB());
+                        out.writeByte(c.flags[i]);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot evict chunk " + c.cx + "," + c.cy, e);
+            }
+            if (c.file == null) {
+                // registered after the directory, so deleted before it
+                file.toFile().deleteOnExit();
+            }
+            c.file = file;
+            c.dirty = false;
+        }
+        c.drop();
+    }
+
+    private void load(Chunk c) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(c.file)))) {
+            int n = in.readInt();
+            c.reset(n);
+            Color last = null;
+            for (int i = 0; i < n; i++) {
+                int id = in.readInt();
+                float x = in.readFloat();
+                float y = in.readFloat();
+                float w = in.readFloat();
+                float h = in.readFloat();
+                int rgb = in.readInt();
+                if (last == null || last.getRGB() != rgb) {
+                    last = new Color(rgb, true);
+                }
+                c.append(id, x, y, w, h, last, in.readByte());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load chunk " + c.cx + "," + c.cy, e);
+        }
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / this.chunkSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The blocks of one grid cell, and their table rows while active.
+     */
+    private static final class Chunk {
+        private final int cx;
+        private final int cy;
+        /** The number of records, or -1 while the chunk is evicted. */
+        private int count;
+        private int[] ids = new int[8];
+        private float[] x = new float[8];
+        private float[] y = new float[8];
+        private float[] w = new float[8];
+        private float[] h = new float[8];
+        private Color[] color = new Color[8];
+        private byte[] flags = new byte[8];
+        private boolean[] alive = new boolean[8];
+        private int[] rows;
+        private boolean active;
+        private boolean dirty = true;
+        private long wantedAt = Long.MIN_VALUE / 2;
+        private Path file;
+
+        Chunk(int cx, int cy) {
+            this.cx = cx;
+            this.cy = cy;
+        }
+
+        void append(int id, double bx, double by, double bw, double bh, Color c, int listeners) {
+            if (this.count == this.ids.length) {
+                grow(this.count * 2);
+            }
+            int i = this.count++;
+            this.ids[i] = id;
+            this.x[i] = (float) bx;
+            this.y[i] = (float) by;
+            this.w[i] = (float) bw;
+            this.h[i] = (float) bh;
+            this.color[i] = c;
+            this.flags[i] = (byte) listeners;
+            this.alive[i] = true;
+        }
+
+        void reset(int capacity) {
+            this.count = 0;
+            grow(Math.max(capacity, 1));
+        }
+
+        void drop() {
+            this.count = -1;
+            this.ids = null;
+            this.x = null;
+            this.y = null;
+            this.w = null;
+            this.h = null;
+            this.color = null;
+            this.flags = null;
+            this.alive = null;
+        }
+
+        private void grow(int size) {
+            this.ids = this.ids == null ? new int[size] : Arrays.copyOf(this.ids, size);
+            this.x = this.x == null ? new float[size] : Arrays.copyOf(this.x, size);
+            this.y = this.y == null ? new float[size] : Arrays.copyOf(this.y, size);
+            this.w = this.w == null ? new float[size] : Arrays.copyOf(this.w, size);
+            this.h = this.h == null ? new float[size] : Arrays.copyOf(this.h, size);
+            this.color = this.color == null ? new Color[size] : Arrays.copyOf(this.color, size);
+            this.flags = this.flags == null ? new byte[size] : Arrays.copyOf(this.flags, size);
+            this.alive = this.alive == null ? new boolean[size] : Arrays.copyOf(this.alive, size);
+        }
+    }
+}
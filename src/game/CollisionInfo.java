@@ -22,6 +22,19 @@ public class CollisionInfo {
         this.collisionPoint = collisionPoint;
         this.collisionObject = collisionObject;
     }
+    /**
+     * Refills this object, for reuse from a pool.
+     *
+     * @param point  the collision point, or null when scrubbed
+     * @param object the collidable hit, or null when scrubbed
+     * @return this object
+     */
+    CollisionInfo set(Point point, Collidable object) {
+        this.collisionPoint = point;
+        this.collisionObject = object;
+        return this;
+    }
+
     /**
      * Returns the point at which the collision occurs.
      *
@@ -0,0 +1,171 @@
+package game;
+
+/**
+ * The earliest hit found so far by a fixed-point segment query, and the
+ * integer segment-against-rectangle test that finds it.
+ *
+ * <p>
+ * Like {@link Geometry_shapes.Rectangle#edgeHitTime}, a rectangle is hit
+ * where the segment first crosses one of its edges, ends included. The
+ * crossing is computed exactly: the coordinate along the crossed edge is
+ * rounded down to a fixed-point step, and the hit time is the fraction of
+ * the segment scaled by {@code 2^30}. Only a strictly earlier hit replaces
+ * the current one, so ties go to the rectangle tested first.
+ */
+final class FixedHit {
+    /** Hit times are fractions of the segment scaled by {@code 2^TIME_SHIFT}. */
+    static final int TIME_SHIFT = 30;
+
+    private long x0;
+    private long y0;
+    private long dx;
+    private long dy;
+    /** The segment's bounds in pixels, widened by a pixel, for rejecting rectangles cheaply. */
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+    private long time = Long.MAX_VALUE;
+    private long x;
+    private long y;
+    private double pointX;
+    private double pointY;
+
+    /**
+     * Starts a query for a new segment, forgetting the current hit.
+     *
+     * @param startX the fixed-point x-coordinate of the segment start
+     * @param startY the fixed-point y-coordinate of the segment start
+     * @param lengthX the fixed-point length of the segment along x
+     * @param lengthY the fixed-point length of the segment along y
+     */
+    void begin(long startX, long startY, long lengthX, long lengthY) {
+        this.x0 = startX;
+        this.y0 = startY;
+        this.dx = lengthX;
+        this.dy = lengthY;
+        this.minX = FixedPoint.toDouble(Math.min(startX, startX + lengthX)) - 1;
+        this.maxX = FixedPoint.toDouble(Math.max(startX, startX + lengthX)) + 1;
+        this.minY = FixedPoint.toDouble(Math.min(startY, startY + lengthY)) - 1;
+        this.maxY = FixedPoint.toDouble(Math.max(startY, startY + lengthY)) + 1;
+        this.time = Long.MAX_VALUE;
+    }
+
+    long getStartX() {
+        return this.x0;
+    }
+
+    long getStartY() {
+        return this.y0;
+    }
+
+    long getLengthX() {
+        return this.dx;
+    }
+
+    long getLengthY() {
+        return this.dy;
+    }
+
+    /**
+     * Tests the segment against a rectangle, and keeps the hit if it is
+     * earlier than the current one.
+     *
+     * @param left   the rectangle's left edge, in pixels
+     * @param top    the rectangle's top edge, in pixels
+     * @param right  the rectangle's right edge, in pixels
+     * @param bottom the rectangle's bottom edge, in pixels
+     * @return true if the rectangle is hit before the current hit
+     */
+    boolean test(double left, double top, double right, double bottom) {
+        // a pixel of slack keeps this exact: a rectangle it rejects cannot
+        // touch the segment after rounding to fixed point
+        if (left > this.maxX || right < this.minX || top > this.maxY || bottom < this.minY) {
+            return false;
+        }
+        long x0 = this.x0;
+        long y0 = this.y0;
+        long dx = this.dx;
+        long dy = this.dy;
+        long l = FixedPoint.of(left);
+        long t = FixedPoint.of(top);
+        long r = FixedPoint.of(right);
+        long b = FixedPoint.of(bottom);
+        boolean hit = false;
+        if (dx != 0) {
+            hit |= edge(false, l, left, x0, dx, y0, dy, t, b, top, bottom);
+            hit |= edge(false, r, right, x0, dx, y0, dy, t, b, top, bottom);
+        }
+        if (dy != 0) {
+            hit |= edge(true, t, top, y0, dy, x0, dx, l, r, left, right);
+            hit |= edge(true, b, bottom, y0, dy, x0, dx, l, r, left, right);
+        }
+        return hit;
+    }
+
+    /**
+     * Tests one edge: the segment reaches the edge's line after
+     * {@code distance / d}, and the other coordinate must then lie between
+     * {@code low} and {@code high}. The hit point's pixel coordinates are
+     * the rectangle's own where the hit lies on an edge or corner, so
+     * {@link Block#hit} tells the sides apart exactly.
+     */
+    private boolean edge(boolean horizontal, long edge, double edgePixels, long start, long d,
+                         long other0, long otherD, long low, long high, double lowPixels, double highPixels) {
+        long distance = edge - start;
+        if (d > 0 ? distance < 0 || distance > d : distance > 0 || distance < d) {
+            return false;
+        }
+        long t = (distance << TIME_SHIFT) / d;
+        if (t >= this.time) {
+            return false;
+        }
+        long o = other0 + Math.floorDiv(otherD * distance, d);
+        if (o < low || o > high) {
+            return false;
+        }
+        double oPixels = o == low ? lowPixels : o == high ? highPixels : FixedPoint.toDouble(o);
+        this.time = t;
+        if (horizontal) {
+            this.x = o;
+            this.y = edge;
+            this.pointX = oPixels;
+            this.pointY = edgePixels;
+        } else {
+            this.x = edge;
+            this.y = o;
+            this.pointX = edgePixels;
+            this.pointY = oPixels;
+        }
+        return true;
+    }
+
+    boolean found() {
+        return this.time != Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the hit time as a fraction of the segment.
+     *
+     * @return the hit time in {@code [0, 1]}
+     */
+    double getTime() {
+        return (double) this.time / (1L << TIME_SHIFT);
+    }
+
+    long getX() {
+        return this.x;
+    }
+
+    long getY() {
+        return this.y;
+    }
+
+    double getPointX() {
+        return this.pointX;
+    }
+
+    double getPointY() {
+        return this.pointY;
+    }
+}
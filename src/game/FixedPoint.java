@@ -0,0 +1,40 @@
+package game;
+
+/**
+ * Conversions for the fixed-point physics mode, where positions and
+ * velocities are {@code long}s counting {@code 1 / 65536} of a pixel.
+ *
+ * <p>
+ * Scaling by a power of two is exact, so a fixed-point value converted to
+ * a {@code double} and back is unchanged, and a {@code double} is rounded
+ * to the nearest step the same way on every machine.
+ */
+public final class FixedPoint {
+    /** The number of fraction bits. */
+    public static final int SHIFT = 16;
+    /** One pixel. */
+    public static final long ONE = 1L << SHIFT;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Rounds a coordinate or velocity to fixed point.
+     *
+     * @param value the value in pixels
+     * @return the nearest fixed-point value
+     */
+    public static long of(double value) {
+        return Math.round(value * ONE);
+    }
+
+    /**
+     * Converts a fixed-point value to pixels.
+     *
+     * @param value the fixed-point value
+     * @return the same value in pixels, exactly
+     */
+    public static double toDouble(long value) {
+        return (double) value / ONE;
+    }
+}
@@ -0,0 +1,187 @@
+package game;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces a loop to a fixed frame period measured with
+ * {@link System#nanoTime()}, and keeps statistics of the intervals
+ * between frames.
+ *
+ * <p>
+ * Frame deadlines lie on a fixed grid, {@code start + n * period}, so
+ * rounding never accumulates: a frame that ends late leaves the next one
+ * less time and the loop catches up. A loop that falls more than
+ * {@link #MAX_CATCH_UP} frames behind skips the missed deadlines instead of
+ * running them back to back. {@link #await()} parks the thread until a
+ * little before the deadline and spins for the rest, so frames end within
+ * microseconds of their deadline rather than whenever the scheduler wakes
+ * the thread. How early to stop parking is learned from how late parking
+ * has woken up so far.
+ */
+public final class FramePacer {
+    /** The period of a 60 Hz loop. */
+    public static final long FRAME_NANOS = 1_000_000_000L / 60;
+    /** The most frames a late loop runs without waiting to catch up. */
+    public static final int MAX_CATCH_UP = 2;
+    private static final long MIN_SPIN_NANOS = 50_000L;
+    private static final long MAX_SPIN_NANOS = 2_000_000L;
+
+    private final long period;
+    private long deadline;
+    private long lastFrame = -1;
+    /** How long before a deadline parking stops and spinning starts. */
+    private long spinNanos = 1_000_000L;
+    private long frames;
+    private double meanInterval;
+    private double sumSquares;
+    private long maxInterval;
+    private long maxError;
+    private long late;
+    private long skipped;
+
+    /**
+     * Creates a pacer.
+     *
+     * @param periodNanos the frame period in nanoseconds
+     */
+    public FramePacer(long periodNanos) {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("Frame period must be positive");
+        }
+        this.period = periodNanos;
+    }
+
+    /**
+     * Starts the schedule: the first deadline is one period from now.
+     */
+    public void start() {
+        long now = System.nanoTime();
+        this.deadline = now + this.period;
+        this.lastFrame = now;
+    }
+
+    /**
+     * Waits for the end of the current frame and moves the deadline on by
+     * one period.
+     *
+     * @return how long the call waited, in nanoseconds
+     */
+    public long await() {
+        long begin = System.nanoTime();
+        if (this.lastFrame < 0) {
+            this.deadline = begin;
+            this.lastFrame = begin;
+        }
+        long remaining = this.deadline - begin;
+        if (remaining > this.spinNanos) {
+            long planned = remaining - this.spinNanos;
+            LockSupport.parkNanos(planned);
+            long overslept = System.nanoTime() - begin - planned;
+            // follow a rise in wake-up latency at once, a fall slowly
+            this.spinNanos = overslept > this.spinNanos ? overslept : (this.spinNanos * 15 + overslept) / 16;
+            this.spinNanos = Math.max(MIN_SPIN_NANOS, Math.min(MAX_SPIN_NANOS, this.spinNanos));
+        }
+        long now = System.nanoTime();
+        while (now - this.deadline < 0) {
+            Thread.onSpinWait();
+            now = System.nanoTime();
+        }
+        record(now);
+        this.deadline += this.period;
+        long behind = now - this.deadline;
+        if (behind > MAX_CATCH_UP * this.period) {
+            long missed = behind / this.period;
+            this.deadline += missed * this.period;
+            this.skipped += missed;
+        }
+        return now - begin;
+    }
+
+    private void record(long now) {
+        long interval = now - this.lastFrame;
+        this.lastFrame = now;
+        if (now - this.deadline > this.period / 2) {
+            this.late++;
+        }
+        this.frames++;
+        // Welford's running mean and variance
+        double delta = interval - this.meanInterval;
+        this.meanInterval += delta / this.frames;
+        this.sumSquares += delta * (interval - this.meanInterval);
+        this.maxInterval = Math.max(this.maxInterval, interval);
+        this.maxError = Math.max(this.maxError, Math.abs(interval - this.period));
+    }
+
+    /**
+     * Returns the frame period.
+     *
+     * @return the period in nanoseconds
+     */
+    public long getPeriodNanos() {
+        return this.period;
+    }
+
+    /**
+     * Returns the number of frames paced.
+     *
+     * @return the frame count
+     */
+    public long getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Returns the mean interval between frames.
+     *
+     * @return the mean interval in nanoseconds
+     */
+    public double getMeanIntervalNanos() {
+        return this.meanInterval;
+    }
+
+    /**
+     * Returns the standard deviation of the intervals between frames.
+     *
+     * @return the jitter in nanoseconds
+     */
+    public double getJitterNanos() {
+        return this.frames > 1 ? Math.sqrt(this.sumSquares / (this.frames - 1)) : 0;
+    }
+
+    /**
+     * Returns the longest interval between frames.
+     *
+     * @return the interval in nanoseconds
+     */
+    public long getMaxIntervalNanos() {
+        return this.maxInterval;
+    }
+
+    /**
+     * Returns the largest difference between an interval and the period.
+     *
+     * @return the difference in nanoseconds
+     */
+    public long getMaxErrorNanos() {
+        return this.maxError;
+    }
+
+    /**
+     * Returns the number of frames that ended more than half a period
+     * after their deadline.
+     *
+     * @return the late frame count
+     */
+    public long getLateFrames() {
+        return this.late;
+    }
+
+    /**
+     * Returns the number of deadlines skipped by a loop too far behind.
+     *
+     * @return the skipped frame count
+     */
+    public long getSkippedFrames() {
+        return this.skipped;
+    }
+}
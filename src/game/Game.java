@@ -2,45 +2,111 @@ package game;
 
 import Geometry_shapes.Point;
 import Geometry_shapes.Rectangle;
+import Geometry_shapes.RectangleBatch;
 import biuoop.DrawSurface;
 import biuoop.GUI;
 import biuoop.KeyboardSensor;
-import biuoop.Sleeper;
-import listeners.BallRemover;
-import listeners.BlockRemover;
+import eventlog.EventLog;
+import input.InputSource;
+import levels.DefaultLevel;
+import levels.LevelBuilder;
+import leaderboard.LeaderboardStore;
+import levels.LevelReader;
+import profiling.BlockRemovedEvent;
+import profiling.FrameEvent;
+import profiling.LevelLoadEvent;
+import render.Display;
+import render.FrameExchange;
+import render.FrameState;
+import render.GuiDisplay;
+import render.OffsetDrawSurface;
+import render.RenderThread;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * The game.Game class manages sprites, collidables, and the animation loop.
  * It builds the game level, initializes all objects, and runs the game.
  */
 public class Game {
+    /** The points for clearing a level, added by the tick that breaks the last block. */
+    public static final int CLEAR_BONUS = 100;
     /**
      * All drawable and updatable game objects.
      */
     private SpriteCollection sprites;
+    /**
+     * Sprites drawn on top of the world, unaffected by the viewport (the HUD).
+     */
+    private SpriteCollection overlays;
+    /**
+     * The balls currently in the game.
+     */
+    private List<Ball> balls = new ArrayList<>();
+    private List<Ball> ballsView = Collections.unmodifiableList(this.balls);
     /**
      * All collidable objects used for collision detection.
      */
     private GameEnvironment environment;
     /**
-     * The GUI window in which the game is displayed.
+     * The blocks loaded with the level, stored compactly.
+     */
+    private BlockTable blockTable;
+    /**
+     * The display on which the game is shown: a GUI window or an offscreen capture.
      */
-    private GUI gui;
+    private Display display;
     private Counter remainingBlocks = new Counter();
     private Counter remainingBalls = new Counter();
     private Counter score = new Counter();
+    private long tick;
+    private int blockIds;
+    private int ballIds;
+    private boolean renderThreaded;
+    private String levelName = "default";
+    private ChunkedWorld world;
+    private final FramePacer pacer = new FramePacer(FramePacer.FRAME_NANOS);
+    private EventLog eventLog;
+    private LeaderboardStore leaderboard;
+    private String playerName;
+    private List<Paddle> paddles = new ArrayList<>();
+    private List<Paddle> paddlesView = Collections.unmodifiableList(this.paddles);
+    private List<InputSource> inputs = new ArrayList<>();
+    private List<RemovalListener> removalListeners = new ArrayList<>();
+    private BallCollider ballCollider;
+    private Kinetics kinetics;
+    private ParticleSystem particles;
+    private Pool<Ball> ballPool = new Pool<>(() -> new Ball(new Point(0, 0), 1, Color.WHITE), Ball::scrub,
+            MAX_IDLE_BALLS);
+    private Pool<Block> blockPool = new Pool<>(() -> new Block(new Rectangle(new Point(0, 0), 1, 1), Color.WHITE),
+            Block::scrub, MAX_IDLE_BLOCKS);
+    /** Pooled balls removed this tick, released once the tick is over. */
+    private List<Ball> retiredBalls = new ArrayList<>();
+    /** Pooled blocks removed this tick, released once the tick is over. */
+    private List<Block> retiredBlocks = new ArrayList<>();
+    private double viewX;
+    private double viewY;
+    private OffsetDrawSurface shifted = new OffsetDrawSurface();
 
     static final int WIDTH = 800;
     static final int HEIGHT = 600;
+    private static final int MAX_IDLE_BALLS = 256;
+    private static final int MAX_IDLE_BLOCKS = 256;
 
     /**
      * Creates an empty game with sprite and environment containers.
      */
     public Game() {
         this.sprites = new SpriteCollection();
+        this.overlays = new SpriteCollection();
         this.environment = new GameEnvironment();
+        this.blockTable = new BlockTable();
+        this.blockTable.addToGame(this);
     }
     /**
      * Returns the current game score.
@@ -60,6 +126,65 @@ public class Game {
     public GameEnvironment getEnvironment() {
         return this.environment;
     }
+    /**
+     * Adds an input source to advance at the start of every tick. It should
+     * be a sensor a paddle was created with.
+     *
+     * @param source the input source
+     */
+    public void addInputSource(InputSource source) {
+        this.inputs.add(source);
+    }
+
+    /**
+     * Adds a listener told about every block and ball removed from the game.
+     *
+     * @param listener the listener to add
+     */
+    public void addRemovalListener(RemovalListener listener) {
+        this.removalListeners.add(listener);
+    }
+
+    /**
+     * Returns the first player's paddle.
+     *
+     * @return the paddle, or null before the level created one
+     */
+    public Paddle getPaddle() {
+        return this.paddles.isEmpty() ? null : this.paddles.get(0);
+    }
+
+    /**
+     * Returns the paddles of all players, in player order.
+     *
+     * @return a read-only view of the paddles
+     */
+    public List<Paddle> getPaddles() {
+        return this.paddlesView;
+    }
+
+    void addPaddle(Paddle paddle) {
+        this.paddles.add(paddle);
+    }
+
+    void blockRemoved(int blockId) {
+        BlockRemovedEvent event = new BlockRemovedEvent();
+        if (event.shouldCommit()) {
+            event.setBlock(blockId, this.tick, this.remainingBlocks.getValue());
+            event.commit();
+        }
+        for (int i = 0; i < this.removalListeners.size(); i++) {
+            this.removalListeners.get(i).blockRemoved(blockId);
+        }
+    }
+    /**
+     * Returns the table holding the blocks of the level.
+     *
+     * @return the block table
+     */
+    public BlockTable getBlockTable() {
+        return this.blockTable;
+    }
     /**
      * Returns the counter of remaining blocks.
      *
@@ -77,13 +202,198 @@ public class Game {
         return this.remainingBalls;
     }
 
+    /**
+     * Sets whether drawing happens on a separate render thread.
+     * When enabled, {@link #run()} only simulates and publishes frame
+     * states, and a {@link RenderThread} draws the latest one, so a slow
+     * {@code gui.show} no longer delays the physics.
+     *
+     * @param threaded true to render on a separate thread
+     */
+    public void setRenderThreaded(boolean threaded) {
+        this.renderThreaded = threaded;
+    }
+
+    /**
+     * Turns collisions between balls on or off. They are off by default,
+     * and balls pass through each other.
+     *
+     * @param enabled whether balls bounce off each other
+     */
+    public void setBallCollisions(boolean enabled) {
+        this.ballCollider = enabled ? new BallCollider() : null;
+    }
+
+    /**
+     * Turns batched collision tests on or off. When on, and the JVM runs
+     * with {@code --add-modules jdk.incubator.vector}, the bricks a ball may
+     * hit are tested several per vector instruction; see
+     * {@link BlockTable#setBatched(boolean)}. Collisions come out the same
+     * either way. Without the vector module this has no effect.
+     *
+     * @param enabled whether to test bricks with vector instructions
+     */
+    public void setVectorCollisions(boolean enabled) {
+        this.blockTable.setBatched(enabled && RectangleBatch.isVectorized());
+    }
+
+    /**
+     * Turns fixed-point physics on or off; see {@link FixedPoint}. In fixed
+     * point, ball positions and velocities are scaled {@code long}s and
+     * collisions are found with integer arithmetic, so a game plays the
+     * same on every machine. Call this before the level is built.
+     *
+     * @param enabled whether balls move in fixed point
+     */
+    public void setFixedPoint(boolean enabled) {
+        this.environment.setFixedPoint(enabled);
+    }
+
+    /**
+     * Turns kinetic simulation on or off. When on, a ball that cannot hit
+     * anything for a number of ticks skips their collision queries and only
+     * catches up on its position when it is read; see {@link Kinetics}.
+     * Every tick still comes out exactly as without it. Headless games,
+     * where nothing reads most positions, run many times faster. Skipping
+     * is suspended while ball collisions or a heatmap are on.
+     *
+     * @param enabled whether balls skip the queries of free ticks
+     */
+    public void setKinetic(boolean enabled) {
+        if (enabled && this.kinetics == null) {
+            // one instance for good, so that its epochs never repeat
+            this.kinetics = new Kinetics(this.environment);
+        } else if (!enabled && this.kinetics != null) {
+            // suspended, so that turning it back on starts a new epoch
+            this.kinetics.beginTick(this.tick, false);
+        }
+        this.environment.setKinetics(enabled ? this.kinetics : null);
+    }
+
+    /**
+     * Returns the number of ball ticks that skipped their collision query
+     * while kinetic simulation was on.
+     *
+     * @return the free tick count, 0 if kinetic simulation is off
+     */
+    public long getFreeBallTicks() {
+        return this.kinetics == null ? 0 : this.kinetics.getFreeTicks();
+    }
+
+    /**
+     * Sets the heatmap that counts block hits and where balls spend their
+     * ticks; see {@link Heatmap}.
+     *
+     * @param heatmap the heatmap, or null to stop counting
+     */
+    public void setHeatmap(Heatmap heatmap) {
+        this.environment.setHeatmap(heatmap);
+    }
+
+    /**
+     * Returns the heatmap set with {@link #setHeatmap(Heatmap)}.
+     *
+     * @return the heatmap, or null
+     */
+    public Heatmap getHeatmap() {
+        return this.environment.getHeatmap();
+    }
+
+    /**
+     * Sets the particle system that draws block breaks and ball trails,
+     * replacing any set before. Set it before the level is built, so the
+     * particles are drawn under the blocks, paddles and balls, as a frame
+     * state draws them.
+     *
+     * @param system the particle system, or null for no particles
+     */
+    public void setParticles(ParticleSystem system) {
+        if (this.particles != null) {
+            this.particles.removeFromGame(this);
+        }
+        this.particles = system;
+        if (system != null) {
+            system.addToGame(this);
+        }
+    }
+
+    /**
+     * Returns the particle system set with {@link #setParticles(ParticleSystem)}.
+     *
+     * @return the particle system, or null
+     */
+    public ParticleSystem getParticles() {
+        return this.particles;
+    }
+
+    /**
+     * Sets the log that gameplay events are appended to. Set it before the
+     * level is built, so the log starts with the level's start.
+     *
+     * @param log the event log, or null to stop logging
+     */
+    public void setEventLog(EventLog log) {
+        this.eventLog = log;
+    }
+
+    /**
+     * Returns the log set with {@link #setEventLog(EventLog)}.
+     *
+     * @return the event log, or null
+     */
+    public EventLog getEventLog() {
+        return this.eventLog;
+    }
+
+    /**
+     * Sets the leaderboards the final score is entered into when
+     * {@link #run()} ends, under the level's name. Entering a score only
+     * updates the store's cache; the store writes it in the background.
+     *
+     * @param store      the leaderboards, or null to keep no scores
+     * @param playerName the name the score is entered under
+     */
+    public void setLeaderboard(LeaderboardStore store, String playerName) {
+        this.leaderboard = store;
+        this.playerName = playerName;
+    }
+
+    /**
+     * Returns the pacer that times the frames of {@link #run()}, with the
+     * statistics of the frames run so far.
+     *
+     * @return the frame pacer
+     */
+    public FramePacer getFramePacer() {
+        return this.pacer;
+    }
+
+    /**
+     * Returns the collider bouncing balls off each other.
+     *
+     * @return the ball collider, or null if ball collisions are off
+     */
+    public BallCollider getBallCollider() {
+        return this.ballCollider;
+    }
+
+    /**
+     * Returns the number of simulation ticks run so far.
+     *
+     * @return the current tick
+     */
+    public long getTick() {
+        return this.tick;
+    }
+
     /**
      * Adds a collidable object to the game.
      *
      * @param c the collidable to add.
+     * @return the collidable's id in the game environment.
      */
-    public void addCollidable(Collidable c) {
-        this.environment.addCollidable(c);
+    public int addCollidable(Collidable c) {
+        return this.environment.addCollidable(c);
     }
 
     /**
@@ -96,128 +406,321 @@ public class Game {
     }
 
     /**
-     * Initializes the game:
+     * Adds a sprite drawn on top of the world at a fixed screen position,
+     * such as the score.
+     *
+     * @param s the sprite to add
+     */
+    public void addOverlay(Sprite s) {
+        this.overlays.addSprite(s);
+    }
+
+    /**
+     * Returns the balls currently in the game.
+     *
+     * @return a read-only view of the balls
+     */
+    public List<Ball> getBalls() {
+        return this.ballsView;
+    }
+
+    /**
+     * Moves the viewport so its upper-left corner is at the given world position.
+     *
+     * @param x the world x-coordinate shown at the left edge of the screen
+     * @param y the world y-coordinate shown at the top edge of the screen
+     */
+    public void setViewport(double x, double y) {
+        this.viewX = x;
+        this.viewY = y;
+    }
+
+    /**
+     * Returns the world x-coordinate at the left edge of the screen.
+     *
+     * @return the viewport's x-coordinate
+     */
+    public double getViewX() {
+        return this.viewX;
+    }
+
+    /**
+     * Returns the world y-coordinate at the top edge of the screen.
+     *
+     * @return the viewport's y-coordinate
+     */
+    public double getViewY() {
+        return this.viewY;
+    }
+
+    /**
+     * Returns the width of the world: the screen's, or a chunked world's
+     * once its level is read.
+     *
+     * @return the world width, in pixels
+     */
+    public int getWorldWidth() {
+        return this.world == null ? WIDTH : this.world.getWidth();
+    }
+
+    /**
+     * Returns the height of the world: the screen's, or a chunked world's
+     * once its level is read.
+     *
+     * @return the world height, in pixels
+     */
+    public int getWorldHeight() {
+        return this.world == null ? HEIGHT : this.world.getHeight();
+    }
+
+    /**
+     * Initializes the game in a new GUI window:
      * creates the GUI, borders, paddle, blocks, and balls,
      * adds them to the sprite and environment lists,
      * and sets starting positions and colors.
      */
     public void initialize() {
-        this.gui = new GUI("game.Game", WIDTH, HEIGHT);
-        BlockRemover blockRemover = new BlockRemover(this, this.remainingBlocks);
-        BallRemover ballRemover = new BallRemover(this, this.remainingBalls);
-        ScoreTrackingListener scoreListener = new ScoreTrackingListener(this.score);
+        GUI gui = new GUI("game.Game", WIDTH, HEIGHT);
+        initialize(new GuiDisplay(gui), gui.getKeyboardSensor());
+    }
+
+    /**
+     * Initializes the game on the given display, for example an
+     * offscreen capture instead of a window.
+     *
+     * @param target   where frames are shown
+     * @param keyboard the keyboard sensor that drives the paddle
+     */
+    public void initialize(Display target, KeyboardSensor keyboard) {
+        LevelLoadEvent event = new LevelLoadEvent();
+        event.begin();
+        DefaultLevel.emit(prepare(target, keyboard));
+        loaded(event, null, "built-in");
+    }
+
+    /**
+     * Initializes the game on the given display with a level read from a file.
+     * The file is streamed, so its objects are created while it is read.
+     *
+     * @param target   where frames are shown
+     * @param keyboard the keyboard sensor that drives the paddle
+     * @param level    the level file, in the text or binary level format
+     * @throws IOException if the level file cannot be read or is malformed
+     */
+    public void initialize(Display target, KeyboardSensor keyboard, Path level) throws IOException {
+        LevelLoadEvent event = new LevelLoadEvent();
+        event.begin();
+        LevelReader.read(level, prepare(target, keyboard));
+        loaded(event, level, "file");
+    }
+
+    /**
+     * Initializes the game for several players, each with a paddle of
+     * their own driven by one of the given sensors.
+     *
+     * @param target  where frames are shown, or null when nothing is shown
+     * @param players one keyboard sensor per player
+     * @param level   the level file, or null for the built-in level
+     * @throws IOException if the level file cannot be read or is malformed
+     */
+    public void initialize(Display target, KeyboardSensor[] players, Path level) throws IOException {
+        this.display = target;
+        ScoreIndicator indicator = new ScoreIndicator(this.score);
+        indicator.addToGame(this);
+        LevelLoadEvent event = new LevelLoadEvent();
+        event.begin();
+        LevelBuilder builder = new GameLevelBuilder(this, players);
+        if (level == null) {
+            DefaultLevel.emit(builder);
+        } else {
+            LevelReader.read(level, builder);
+        }
+        loaded(event, level, level == null ? "built-in" : "file");
+    }
+
+    /**
+     * Sets up the display and the score indicator, and returns a builder
+     * that adds the level's objects to this game. Callers that produce a
+     * level themselves, or change it on the way in, send it to this builder.
+     *
+     * @param target   where frames are shown, or null when nothing is shown
+     * @param keyboard the keyboard sensor that drives the paddle
+     * @return the builder the level's parts should be sent to
+     */
+    public LevelBuilder prepare(Display target, KeyboardSensor keyboard) {
+        this.display = target;
         ScoreIndicator indicator = new ScoreIndicator(this.score);
         indicator.addToGame(this);
-        //Creating side borders
-        int borderThickness = 10;
-        Block topBorder = new Block(
-                new Rectangle(new Point(0, 0), WIDTH, borderThickness),
-                Color.GRAY);
-        Block leftBorder = new Block(
-                new Rectangle(new Point(0, borderThickness),
-                        borderThickness, HEIGHT - borderThickness),
-                Color.GRAY);
-        Block rightBorder = new Block(
-                new Rectangle(new Point(WIDTH - borderThickness, borderThickness),
-                        borderThickness, HEIGHT - borderThickness),
-                Color.GRAY);
-        Block deathRegion = new Block(new Rectangle(new Point(0, HEIGHT - borderThickness + 5),
-                WIDTH, borderThickness),
-                Color.ORANGE);
-
-        topBorder.addToGame(this);
-        leftBorder.addToGame(this);
-        rightBorder.addToGame(this);
-        deathRegion.addToGame(this);
-        deathRegion.addHitListener(ballRemover);
-
-        //Creating paddle
-        KeyboardSensor keyboard = gui.getKeyboardSensor();
-        Paddle paddle = new Paddle(
-                new Rectangle(new Point(350, 560), 150, 20),
-                Color.ORANGE,
-                keyboard,
-                7,
-                Game.WIDTH
-        );
-        paddle.addToGame(this);
-        //creating blocks and adding them to collidable
-        int blockWidth = 50;
-        int blockHeight = 20;
-        int rows = 6;
-        int cols = 12;
-        int startX = 100;
-        int startY = 100;
-        int startXRight = WIDTH - borderThickness - cols * blockWidth;
-        Color[] rowColors = {
-                Color.GRAY,
-                Color.RED,
-                Color.YELLOW,
-                Color.BLUE,
-                Color.PINK,
-                Color.GREEN
-        };
-        for (int row = 0; row < rows; row++) {
-            int colsInRow = cols - row;
-            int rowStartX = WIDTH - borderThickness - colsInRow * blockWidth;
-            for (int col = 0; col < colsInRow; col++) {
-                int x = rowStartX + col * blockWidth;
-                int y = startY + row * blockHeight;
-                Block b = new Block(
-                        new Rectangle(new Point(x, y), blockWidth, blockHeight),
-                        rowColors[row]
-                );
-                b.addHitListener(blockRemover);
-                b.addHitListener(scoreListener);
-                b.addToGame(this);
-                this.remainingBlocks.increase(1);
+        return new GameLevelBuilder(this, keyboard);
+    }
+
+    /**
+     * Initializes the game on the given display with a large level read
+     * from a file and split into square chunks. Only chunks near the
+     * viewport or a ball take part in the game; the others are kept as
+     * compact records or evicted to disk.
+     *
+     * @param target    where frames are shown
+     * @param keyboard  the keyboard sensor that drives the paddle
+     * @param level     the level file, in the text or binary level format
+     * @param chunkSize the side of a chunk, in pixels
+     * @param swapDir   the directory evicted chunks are written to
+     * @throws IOException if the level file cannot be read or is malformed
+     */
+    public void initializeChunked(Display target, KeyboardSensor keyboard, Path level,
+                                  double chunkSize, Path swapDir) throws IOException {
+        LevelLoadEvent event = new LevelLoadEvent();
+        event.begin();
+        GameLevelBuilder builder = (GameLevelBuilder) prepare(target, keyboard);
+        this.world = new ChunkedWorld(this, builder, chunkSize, swapDir);
+        LevelReader.read(level, this.world);
+        this.world.start();
+        loaded(event, level, "chunked");
+    }
+
+    /**
+     * Initializes the game on the given display from a level snapshot
+     * written by {@link LevelSnapshot}. The bricks are loaded as whole
+     * columns instead of being built one at a time.
+     *
+     * @param target   where frames are shown
+     * @param keyboard the keyboard sensor that drives the paddle
+     * @param snapshot the snapshot file
+     * @throws IOException if the snapshot cannot be read or is malformed
+     */
+    public void initializeFromSnapshot(Display target, KeyboardSensor keyboard, Path snapshot) throws IOException {
+        LevelLoadEvent event = new LevelLoadEvent();
+        event.begin();
+        LevelSnapshot.load(this, (GameLevelBuilder) prepare(target, keyboard), snapshot);
+        loaded(event, snapshot, "snapshot");
+    }
+
+    /**
+     * Commits a level load event once the level is built.
+     */
+    private void loaded(LevelLoadEvent event, Path source, String kind) {
+        if (this.eventLog != null) {
+            this.eventLog.append(EventLog.LEVEL_START, this.tick, this.remainingBlocks.getValue(), -1,
+                    this.remainingBalls.getValue());
+        }
+        if (event.shouldCommit()) {
+            event.setLevel(source == null ? null : source.toString(), kind,
+                    this.remainingBlocks.getValue(), this.remainingBalls.getValue());
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the name of the loaded level.
+     *
+     * @return the level name
+     */
+    public String getLevelName() {
+        return this.levelName;
+    }
+
+    /**
+     * Sets the name of the loaded level.
+     *
+     * @param name the level name
+     */
+    void setLevelName(String name) {
+        this.levelName = name;
+    }
+
+    /**
+     * Advances the simulation by one frame. The tick that breaks the last
+     * block also adds {@link #CLEAR_BONUS} to the score.
+     */
+    public void tick() {
+        boolean blocksLeft = this.remainingBlocks.getValue() > 0;
+        if (!this.inputs.isEmpty()) {
+            long now = System.nanoTime();
+            for (int i = 0; i < this.inputs.size(); i++) {
+                this.inputs.get(i).beginTick(this.tick, now);
             }
         }
-        //Adding ball and connecting it with game environment
-        Ball ball1 = new Ball(new Point(400, 500), 7, Color.RED);
-        ball1.setVelocity(3, -4);
-        ball1.addToGame(this);
-        this.remainingBalls.increase(1);
-        Ball ball2 = new Ball(new Point(300, 450), 7, Color.WHITE);
-        ball2.setVelocity(-3, -5);
-        ball2.addToGame(this);
-        this.remainingBalls.increase(1);
-        Ball ball3 = new Ball(new Point(100, 450), 7, Color.PINK);
-        ball3.setVelocity(-3, -5);
-        ball3.addToGame(this);
-        this.remainingBalls.increase(1);
-        //Dispalying score
+        if (this.ballCollider != null) {
+            this.ballCollider.begin(this.balls);
+        }
+        Kinetics kinetics = this.environment.getKinetics();
+        if (kinetics != null) {
+            kinetics.beginTick(this.tick, this.ballCollider == null && this.environment.getHeatmap() == null);
+        }
+        this.sprites.notifyAllTimePassed();
+        if (this.ballCollider != null) {
+            this.ballCollider.resolve(this.balls);
+        }
+        this.overlays.notifyAllTimePassed();
+        releaseRetired();
+        this.tick++;
+        if (this.world != null) {
+            this.world.update(this.tick);
+        }
+        if (blocksLeft && this.remainingBlocks.getValue() == 0) {
+            clearBonus();
+        }
+    }
+
+    /**
+     * Draws the world through the viewport, then the overlays on top.
+     *
+     * @param d the surface to draw on
+     */
+    void drawFrame(DrawSurface d) {
+        if (this.viewX == 0 && this.viewY == 0) {
+            this.sprites.drawAllOn(d);
+        } else {
+            this.sprites.drawAllOn(this.shifted.wrap(d, (int) -this.viewX, (int) -this.viewY));
+        }
+        this.overlays.drawAllOn(d);
+    }
 
+    /**
+     * Fills the given frame state with the current look of the game.
+     *
+     * @param state the frame state to fill
+     */
+    public void writeFrame(FrameState state) {
+        state.clear(this.tick);
+        state.setView((int) this.viewX, (int) this.viewY);
+        this.sprites.writeAllTo(state);
+        this.overlays.writeAllTo(state);
     }
 
     /**
      * Runs the game loop:
      * draws all sprites, updates them,
-     * and maintains a fixed frame rate of 60 FPS.
+     * and maintains a fixed frame rate of 60 FPS with a {@link FramePacer}.
      */
     public void run() {
-        Sleeper sleeper = new Sleeper();
-        int framesPerSecond = 60;
-        int millisecondsPerFrame = 1000 / framesPerSecond;
+        if (this.renderThreaded) {
+            runWithRenderThread();
+            return;
+        }
+        this.pacer.start();
         while (this.remainingBlocks.getValue() > 0
                 && this.remainingBalls.getValue() > 0) {
-            long startTime = System.currentTimeMillis(); // timing
-            DrawSurface d = gui.getDrawSurface();
-            this.sprites.drawAllOn(d);
-            gui.show(d);
-            this.sprites.notifyAllTimePassed();
-
-            // timing
-            long usedTime = System.currentTimeMillis() - startTime;
-            long milliSecondLeftToSleep = millisecondsPerFrame - usedTime;
-            if (milliSecondLeftToSleep > 0) {
-                sleeper.sleepFor(milliSecondLeftToSleep);
+            FrameEvent frame = new FrameEvent();
+            frame.begin();
+            long renderStart = frame.isEnabled() ? System.nanoTime() : 0;
+            DrawSurface d = display.getDrawSurface();
+            this.drawFrame(d);
+            display.show(d);
+            long updateStart = frame.isEnabled() ? System.nanoTime() : 0;
+            this.tick();
+
+            long sleepStart = frame.isEnabled() ? System.nanoTime() : 0;
+            long slept = this.pacer.await();
+            if (frame.shouldCommit()) {
+                frame.setPhases(this.tick, sleepStart - updateStart, updateStart - renderStart, slept);
+                frame.commit();
             }
             if (this.remainingBlocks.getValue() == 0) {
-                this.score.increase(100);
-                DrawSurface ds = gui.getDrawSurface();
-                this.sprites.drawAllOn(ds);
-                gui.show(ds);
+                // show the score with the bonus the last tick added
+                DrawSurface ds = display.getDrawSurface();
+                this.drawFrame(ds);
+                display.show(ds);
             }
             if (this.remainingBlocks.getValue() == 0) {
                 System.out.println("You Win!\nYour score is: " + this.score.getValue());
@@ -226,14 +729,192 @@ public class Game {
                 System.out.println("game.Game Over.\nYour score is: " + this.score.getValue());
             }
         }
-        gui.close();
+        levelEnded();
+        display.close();
+    }
+
+    /**
+     * Runs the game loop with drawing on a separate render thread.
+     * This thread only simulates and publishes a frame state after every tick.
+     */
+    private void runWithRenderThread() {
+        FrameExchange exchange = new FrameExchange();
+        RenderThread renderer = new RenderThread(exchange, this.display);
+        this.writeFrame(exchange.backBuffer());
+        exchange.publish();
+        renderer.start();
+        this.pacer.start();
+        while (this.remainingBlocks.getValue() > 0
+                && this.remainingBalls.getValue() > 0) {
+            FrameEvent frame = new FrameEvent();
+            frame.begin();
+            long updateStart = frame.isEnabled() ? System.nanoTime() : 0;
+            this.tick();
+            long renderStart = frame.isEnabled() ? System.nanoTime() : 0;
+            this.writeFrame(exchange.backBuffer());
+            exchange.publish();
+
+            long sleepStart = frame.isEnabled() ? System.nanoTime() : 0;
+            long slept = this.pacer.await();
+            if (frame.shouldCommit()) {
+                frame.setPhases(this.tick, renderStart - updateStart, sleepStart - renderStart, slept);
+                frame.commit();
+            }
+        }
+        if (this.remainingBlocks.getValue() == 0) {
+            System.out.println("You Win!\nYour score is: " + this.score.getValue());
+        } else {
+            System.out.println("game.Game Over.\nYour score is: " + this.score.getValue());
+        }
+        levelEnded();
+        renderer.shutdown();
+        display.close();
+    }
+
+    /**
+     * Adds the bonus for clearing the level to the score.
+     */
+    private void clearBonus() {
+        this.score.increase(CLEAR_BONUS);
+        if (this.eventLog != null) {
+            this.eventLog.append(EventLog.SCORE, this.tick, -1, -1, this.score.getValue());
+        }
+    }
+
+    private void levelEnded() {
+        if (this.leaderboard != null) {
+            this.leaderboard.submit(this.levelName, this.playerName, this.score.getValue());
+        }
+        if (this.eventLog != null) {
+            this.eventLog.append(EventLog.LEVEL_END, this.tick, this.remainingBlocks.getValue(),
+                    this.remainingBalls.getValue(), this.score.getValue());
+        }
+    }
+
+    /**
+     * Hands out the next stable block id.
+     *
+     * @return a block id not used before in this game
+     */
+    int nextBlockId() {
+        return this.blockIds++;
+    }
+
+    /**
+     * Makes sure ids below the given one are not handed out again.
+     *
+     * @param next the lowest id still free
+     */
+    void reserveBlockIds(int next) {
+        this.blockIds = Math.max(this.blockIds, next);
+    }
+
+    /**
+     * Hands out the next stable ball id.
+     *
+     * @return a ball id not used before in this game
+     */
+    int nextBallId() {
+        return this.ballIds++;
     }
 
     void removeCollidable(Collidable c) {
         this.environment.removeCollidable(c);
     }
 
+    void removeCollidable(int collidableId) {
+        this.environment.removeCollidable(collidableId);
+    }
+
     void removeSprite(Sprite s) {
         this.sprites.removeSprite(s);
     }
+
+    void addBall(Ball b) {
+        this.balls.add(b);
+    }
+
+    void removeBall(Ball b) {
+        if (this.balls.remove(b)) {
+            for (int i = 0; i < this.removalListeners.size(); i++) {
+                this.removalListeners.get(i).ballRemoved(b.getId());
+            }
+            if (b.isPooled()) {
+                this.retiredBalls.add(b);
+            }
+        }
+    }
+
+    void retireBlock(Block b) {
+        this.retiredBlocks.add(b);
+    }
+
+    /**
+     * Returns the pooled balls and blocks removed during the tick to their
+     * pools. They are kept until the tick is over because the code that
+     * removed them, a hit listener for example, may still be using them.
+     */
+    private void releaseRetired() {
+        for (int i = 0; i < this.retiredBalls.size(); i++) {
+            this.ballPool.release(this.retiredBalls.get(i));
+        }
+        this.retiredBalls.clear();
+        for (int i = 0; i < this.retiredBlocks.size(); i++) {
+            this.blockPool.release(this.retiredBlocks.get(i));
+        }
+        this.retiredBlocks.clear();
+    }
+
+    /**
+     * Returns a ball from the game's pool, set up like a newly constructed
+     * one. Add it with {@link Ball#addToGame(Game)}; once it is removed from
+     * the game it goes back to the pool at the end of the tick, so it must
+     * not be used or added again after that.
+     *
+     * @param x     the x-coordinate of the center
+     * @param y     the y-coordinate of the center
+     * @param r     the radius
+     * @param color the color
+     * @param dx    the horizontal velocity
+     * @param dy    the vertical velocity
+     * @return the ball
+     */
+    public Ball newBall(double x, double y, int r, Color color, double dx, double dy) {
+        Ball b = this.ballPool.acquire();
+        b.reset(x, y, r, color, dx, dy);
+        return b;
+    }
+
+    /**
+     * Returns a stand-alone block from the game's pool, with no listeners.
+     * Add it with {@link Block#addToGame(Game)}; once it is removed from the
+     * game it goes back to the pool at the end of the tick.
+     *
+     * @param rect  the block's collision rectangle
+     * @param color the block's fill color
+     * @return the block
+     */
+    public Block newBlock(Rectangle rect, Color color) {
+        Block b = this.blockPool.acquire();
+        b.reset(rect, color);
+        return b;
+    }
+
+    /**
+     * Returns the pool of balls made by {@link #newBall}.
+     *
+     * @return the ball pool
+     */
+    public Pool<Ball> getBallPool() {
+        return this.ballPool;
+    }
+
+    /**
+     * Returns the pool of blocks made by {@link #newBlock}.
+     *
+     * @return the block pool
+     */
+    public Pool<Block> getBlockPool() {
+        return this.blockPool;
+    }
 }
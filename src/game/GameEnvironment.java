@@ -3,40 +3,187 @@ package game;
 import Geometry_shapes.Line;
 import Geometry_shapes.Point;
 import Geometry_shapes.Rectangle;
+import profiling.CollisionQueryEvent;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * A game.GameEnvironment holds all the collidable objects in the game.
  * It is used by a ball to check for upcoming collisions.
+ *
+ * <p>
+ * Every collidable gets a stable id when it is added, and its id is handed
+ * out again once it is removed, so ids stay as dense as the live
+ * collidables however many come and go. Collidables are kept
+ * in slots in the order they were added, with a {@link BitSet} marking the
+ * live ones; removing one only clears its bit and leaves a tombstone. Once
+ * tombstones make up half of the slots, the live entries are moved down
+ * in one pass, keeping their order and ids.
  */
 
 public class GameEnvironment {
-    private java.util.List<Collidable> collidables;
+    /** The fewest tombstones worth a compaction pass. */
+    private static final int MIN_COMPACTION = 64;
+    /** The most idle collision results kept; a ball holds one at a time. */
+    private static final int MAX_IDLE_COLLISIONS = 8;
+
+    private Collidable[] slots = new Collidable[16];
+    private int[] slotIds = new int[16];
+    private final BitSet alive = new BitSet();
+    private int slotCount;
+    private int tombstones;
+    /** The slot of each id, or -1 once it was removed. */
+    private int[] idSlots = new int[16];
+    private int nextId;
+    /** The removed ids, reused last in, first out. */
+    private int[] freeIds = new int[16];
+    private int freeIdCount;
+    private final Map<Collidable, Integer> ids = new IdentityHashMap<>();
+    private java.util.List<BlockTable> tables = new ArrayList<BlockTable>();
+    private final Pool<CollisionInfo> infos = new Pool<>(() -> new CollisionInfo(null, null),
+            i -> i.set(null, null), MAX_IDLE_COLLISIONS);
+    private boolean fixedPoint;
+    private final FixedHit fixedHit = new FixedHit();
+    private Heatmap heatmap;
+    private Kinetics kinetics;
+    /** The number of collidables and tables ever added. */
+    private int additions;
 
     /**
      * Creates a new, empty game environment.
      */
     public GameEnvironment() {
-        this.collidables = new ArrayList<Collidable>();
     }
 
     /**
      * Add the given collidable to the environment.
      *
      * @param c the collidable to add.
+     * @return the collidable's id, which stays valid until it is removed;
+     * a removed id may be given to a later collidable.
      */
 
-    public void addCollidable(Collidable c) {
-        this.collidables.add(c);
+    public int addCollidable(Collidable c) {
+        if (this.slotCount == this.slots.length) {
+            this.slots = Arrays.copyOf(this.slots, this.slotCount * 2);
+            this.slotIds = Arrays.copyOf(this.slotIds, this.slotCount * 2);
+        }
+        int id;
+        if (this.freeIdCount > 0) {
+            id = this.freeIds[--this.freeIdCount];
+        } else {
+            if (this.nextId == this.idSlots.length) {
+                this.idSlots = Arrays.copyOf(this.idSlots, this.nextId * 2);
+                this.freeIds = Arrays.copyOf(this.freeIds, this.nextId * 2);
+            }
+            id = this.nextId++;
+        }
+        int slot = this.slotCount++;
+        this.slots[slot] = c;
+        this.slotIds[slot] = id;
+        this.alive.set(slot);
+        this.idSlots[id] = slot;
+        this.ids.putIfAbsent(c, id);
+        this.additions++;
+        return id;
+    }
+    /**
+     * Adds a table of blocks to the environment. Its blocks are queried
+     * through the table's own collision grid.
+     *
+     * @param table the block table to add.
+     */
+    public void addBlockTable(BlockTable table) {
+        this.tables.add(table);
+        this.additions++;
     }
+
     /**
      * Removes the given collidable object from the environment.
      *
      * @param c the collidable object to remove
      */
     public void removeCollidable(Collidable c) {
-        this.collidables.remove(c);
+        Integer id = this.ids.get(c);
+        if (id != null) {
+            removeCollidable(id);
+        }
+    }
+
+    /**
+     * Removes the collidable with the given id from the environment.
+     * Removing an id twice has no effect, as long as it was not given to
+     * another collidable in between.
+     *
+     * @param id the id returned when the collidable was added
+     */
+    public void removeCollidable(int id) {
+        if (id < 0 || id >= this.nextId || this.idSlots[id] < 0) {
+            return;
+        }
+        int slot = this.idSlots[id];
+        this.idSlots[id] = -1;
+        this.freeIds[this.freeIdCount++] = id;
+        this.ids.remove(this.slots[slot], id);
+        this.slots[slot] = null;
+        this.alive.clear(slot);
+        this.tombstones++;
+        if (this.tombstones >= MIN_COMPACTION && this.tombstones * 2 >= this.slotCount) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns the number of collidables in the environment, not counting
+     * the blocks of its tables.
+     *
+     * @return the live collidable count
+     */
+    public int size() {
+        return this.slotCount - this.tombstones;
+    }
+
+    /**
+     * Returns the first live slot at or after {@code from}, or -1.
+     */
+    int nextLiveSlot(int from) {
+        return this.alive.nextSetBit(from);
+    }
+
+    /**
+     * Returns the collidable in a live slot.
+     */
+    Collidable collidableAt(int slot) {
+        return this.slots[slot];
+    }
+
+    /**
+     * Returns the block tables added to the environment.
+     */
+    java.util.List<BlockTable> getBlockTables() {
+        return this.tables;
+    }
+
+    /**
+     * Moves the live entries to the front of the slots, keeping their order.
+     */
+    private void compact() {
+        int to = 0;
+        for (int from = this.alive.nextSetBit(0); from >= 0; from = this.alive.nextSetBit(from + 1)) {
+            this.slots[to] = this.slots[from];
+            this.slotIds[to] = this.slotIds[from];
+            this.idSlots[this.slotIds[to]] = to;
+            to++;
+        }
+        Arrays.fill(this.slots, to, this.slotCount, null);
+        this.alive.clear();
+        this.alive.set(0, to);
+        this.slotCount = to;
+        this.tombstones = 0;
     }
 
     /**
@@ -50,11 +197,23 @@ public class GameEnvironment {
      * @return a game.CollisionInfo for the closest collision, or null if none.
      */
     public CollisionInfo getClosestCollision(Line trajectory) {
+        CollisionQueryEvent event = new CollisionQueryEvent();
+        event.begin();
+        CollisionInfo info = closestCollision(trajectory);
+        if (event.shouldCommit()) {
+            event.setResult(size() + testedRows(), info != null, false);
+            event.commit();
+        }
+        return info;
+    }
+
+    private CollisionInfo closestCollision(Line trajectory) {
         Point closestP = null;
         Collidable closestColl = null;
         double minDistance = Double.POSITIVE_INFINITY;
 
-        for (Collidable c : collidables) {
+        for (int i = this.alive.nextSetBit(0); i >= 0; i = this.alive.nextSetBit(i + 1)) {
+            Collidable c = this.slots[i];
             Rectangle rect = c.getCollisionRectangle();
 
             Point p = trajectory.closestIntersectionToStartOfLine(rect);
@@ -68,9 +227,236 @@ public class GameEnvironment {
                 }
             }
         }
+        BlockTable closestTable = null;
+        int closestRow = -1;
+        if (!this.tables.isEmpty()) {
+            Point start = trajectory.start();
+            Point end = trajectory.end();
+            double length = trajectory.length();
+            for (BlockTable table : this.tables) {
+                int row = table.closestHit(start.getX(), start.getY(), end.getX(), end.getY());
+                if (row >= 0 && table.getHitTime() * length < minDistance) {
+                    minDistance = table.getHitTime() * length;
+                    closestP = new Point(table.getHitX(), table.getHitY());
+                    closestTable = table;
+                    closestRow = row;
+                }
+            }
+        }
         if (closestP == null) {
             return null;
         }
-        return new CollisionInfo(closestP, closestColl);
+        if (closestTable != null) {
+            closestColl = closestTable.view(closestRow);
+            // the winner's point is computed like any other collidable's, so
+            // the ball ends up exactly where it did before blocks moved to tables
+            Point p = trajectory.closestIntersectionToStartOfLine(closestColl.getCollisionRectangle());
+            if (p != null) {
+                closestP = p;
+            }
+        }
+        return this.infos.acquire().set(closestP, closestColl);
+    }
+
+    /**
+     * Returns when a ball flying along a ray first comes within
+     * {@code margin} of a collidable, the earliest time at which the point
+     * {@code (x0 + t*dx, y0 + t*dy)} lies in a collidable grown by
+     * {@code margin} on every side. A paddle is taken to span every x,
+     * since it may move sideways at any tick.
+     *
+     * @param x0     the x-coordinate of the ray start
+     * @param y0     the y-coordinate of the ray start
+     * @param dx     the ray's movement per unit of time along x
+     * @param dy     the ray's movement per unit of time along y
+     * @param margin how far from a collidable the ray must stay
+     * @param limit  the time to look up to
+     * @return the entry time, or {@code limit} if nothing is that close before it
+     */
+    double freeTime(double x0, double y0, double dx, double dy, double margin, double limit) {
+        double best = limit;
+        for (int i = this.alive.nextSetBit(0); i >= 0; i = this.alive.nextSetBit(i + 1)) {
+            Collidable c = this.slots[i];
+            Rectangle rect = c.getCollisionRectangle();
+            double top = rect.getTop() - margin;
+            double bottom = rect.getTop() + rect.getHeight() + margin;
+            double t = c instanceof Paddle
+                    ? Rectangle.entryTime(x0, y0, dx, dy, Double.NEGATIVE_INFINITY, top, Double.POSITIVE_INFINITY, bottom)
+                    : Rectangle.entryTime(x0, y0, dx, dy, rect.getLeft() - margin, top,
+                            rect.getLeft() + rect.getWidth() + margin, bottom);
+            best = Math.min(best, t);
+        }
+        for (BlockTable table : this.tables) {
+            best = table.freeTime(x0, y0, dx, dy, margin, best);
+        }
+        return best;
+    }
+
+    /**
+     * Returns the number of collidables, tables and table blocks ever
+     * added. Removals leave it unchanged, as they only make room.
+     */
+    int getAdditions() {
+        int count = this.additions;
+        for (BlockTable table : this.tables) {
+            count += table.getAdditions();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of bricks the last query tested, over all tables.
+     */
+    private int testedRows() {
+        int tested = 0;
+        for (BlockTable table : this.tables) {
+            tested += table.getTestedRows();
+        }
+        return tested;
+    }
+
+    /**
+     * Sets whether balls in this environment move in fixed point. Balls
+     * read the mode when they are added to the environment.
+     *
+     * @param fixedPoint true for fixed-point physics
+     */
+    public void setFixedPoint(boolean fixedPoint) {
+        this.fixedPoint = fixedPoint;
+    }
+
+    /**
+     * Returns whether balls in this environment move in fixed point.
+     *
+     * @return true for fixed-point physics
+     */
+    public boolean isFixedPoint() {
+        return this.fixedPoint;
+    }
+
+    /**
+     * Sets the heatmap that hits and ball positions in this environment
+     * are counted in.
+     *
+     * @param heatmap the heatmap, or null to stop counting
+     */
+    void setHeatmap(Heatmap heatmap) {
+        this.heatmap = heatmap;
+    }
+
+    Heatmap getHeatmap() {
+        return this.heatmap;
+    }
+
+    /**
+     * Sets the state that lets balls in this environment skip collision
+     * queries; see {@link Kinetics}.
+     *
+     * @param kinetics the kinetics, or null to query every tick
+     */
+    void setKinetics(Kinetics kinetics) {
+        this.kinetics = kinetics;
+    }
+
+    Kinetics getKinetics() {
+        return this.kinetics;
+    }
+
+    /**
+     * Like {@link #getClosestCollision(Line)}, for a trajectory given in
+     * fixed point, with every intersection computed in exact integer
+     * arithmetic. The result is the same on every machine. The hit point
+     * in fixed point can be read afterwards with {@link #getFixedHitX()}
+     * and {@link #getFixedHitY()}.
+     *
+     * @param x0 the fixed-point x-coordinate of the trajectory start
+     * @param y0 the fixed-point y-coordinate of the trajectory start
+     * @param dx the fixed-point length of the trajectory along x
+     * @param dy the fixed-point length of the trajectory along y
+     * @return a game.CollisionInfo for the closest collision, or null if none.
+     */
+    public CollisionInfo getClosestCollisionFixed(long x0, long y0, long dx, long dy) {
+        CollisionQueryEvent event = new CollisionQueryEvent();
+        event.begin();
+        CollisionInfo info = closestCollisionFixed(x0, y0, dx, dy);
+        if (event.shouldCommit()) {
+            event.setResult(size() + testedRows(), info != null, true);
+            event.commit();
+        }
+        return info;
+    }
+
+    private CollisionInfo closestCollisionFixed(long x0, long y0, long dx, long dy) {
+        FixedHit hit = this.fixedHit;
+        hit.begin(x0, y0, dx, dy);
+        Collidable closestColl = null;
+        for (int i = this.alive.nextSetBit(0); i >= 0; i = this.alive.nextSetBit(i + 1)) {
+            Collidable c = this.slots[i];
+            Rectangle rect = c.getCollisionRectangle();
+            double left = rect.getUpperLeft().getX();
+            double top = rect.getUpperLeft().getY();
+            if (hit.test(left, top, left + rect.getWidth(), top + rect.getHeight())) {
+                closestColl = c;
+            }
+        }
+        BlockTable closestTable = null;
+        int closestRow = -1;
+        for (BlockTable table : this.tables) {
+            int row = table.closestHitFixed(hit);
+            if (row >= 0) {
+                closestTable = table;
+                closestRow = row;
+            }
+        }
+        if (closestTable != null) {
+            closestColl = closestTable.view(closestRow);
+        } else if (closestColl == null) {
+            return null;
+        }
+        return this.infos.acquire().set(new Point(hit.getPointX(), hit.getPointY()), closestColl);
+    }
+
+    /**
+     * Returns the x-coordinate of the last fixed-point collision.
+     *
+     * @return the fixed-point x-coordinate
+     */
+    public long getFixedHitX() {
+        return this.fixedHit.getX();
+    }
+
+    /**
+     * Returns the y-coordinate of the last fixed-point collision.
+     *
+     * @return the fixed-point y-coordinate
+     */
+    public long getFixedHitY() {
+        return this.fixedHit.getY();
+    }
+
+    /**
+     * Returns a collision found by {@link #getClosestCollision(Line)} once
+     * its hit is over, together with the block view made for it. Neither
+     * may be used afterwards. Collisions that are never returned are left
+     * to the garbage collector.
+     *
+     * @param info the collision
+     */
+    public void release(CollisionInfo info) {
+        Collidable c = info.collisionObject();
+        if (c instanceof Block && ((Block) c).isView()) {
+            Block view = (Block) c;
+            view.getTable().releaseView(view);
+        }
+        this.infos.release(info);
+    }
+
+    /**
+     * Returns the pool collision results come from.
+     *
+     * @return the collision pool
+     */
+    public Pool<CollisionInfo> getCollisionPool() {
+        return this.infos;
     }
 }
@@ -0,0 +1,154 @@
+package game;
+
+import Geometry_shapes.Point;
+import Geometry_shapes.Rectangle;
+import biuoop.KeyboardSensor;
+import levels.LevelBuilder;
+import listeners.BallRemover;
+import listeners.BlockRemover;
+import listeners.HitListener;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link LevelBuilder} that creates the game objects of a level
+ * directly inside a {@link Game} as the level is read.
+ */
+public class GameLevelBuilder implements LevelBuilder {
+    private final Game game;
+    private final KeyboardSensor[] keyboards;
+    private final BlockRemover blockRemover;
+    private final BallRemover ballRemover;
+    private final ScoreTrackingListener scoreListener;
+    private final int[] listenerSets = {-1, -1, -1, -1, -1, -1, -1, -1};
+    private int worldWidth = Game.WIDTH;
+
+    /**
+     * Creates a builder that fills the given game.
+     *
+     * @param game     the game receiving the level
+     * @param keyboard the keyboard sensor for the paddle
+     */
+    public GameLevelBuilder(Game game, KeyboardSensor keyboard) {
+        this(game, new KeyboardSensor[] {keyboard});
+    }
+
+    /**
+     * Creates a builder that fills the given game with one paddle per
+     * keyboard sensor. With several players, the level's paddle is
+     * repeated at evenly spaced positions across the world.
+     *
+     * @param game      the game receiving the level
+     * @param keyboards the keyboard sensors of the players, in player order
+     */
+    public GameLevelBuilder(Game game, KeyboardSensor[] keyboards) {
+        this.game = game;
+        this.keyboards = keyboards.clone();
+        this.blockRemover = new BlockRemover(game, game.getRemainingBlocks());
+        this.ballRemover = new BallRemover(game, game.getRemainingBalls());
+        this.scoreListener = new ScoreTrackingListener(game.getScore(), game);
+    }
+
+    /**
+     * Sets the width paddles are spaced across and wrap around, for worlds
+     * wider than the screen. Set it before the level's paddle is built.
+     *
+     * @param width the world width, in pixels
+     */
+    void setWorldWidth(int width) {
+        this.worldWidth = width;
+    }
+
+    @Override
+    public void name(String name) {
+        this.game.setLevelName(name);
+    }
+
+    @Override
+    public void block(double x, double y, double width, double height, Color color, int listeners) {
+        addRow(this.game.nextBlockId(), x, y, width, height, color, listeners);
+        if ((listeners & REMOVE_ON_HIT) != 0) {
+            this.game.getRemainingBlocks().increase(1);
+        }
+    }
+
+    /**
+     * Adds a block to the game's block table with the listeners named by
+     * the given flags, without counting it.
+     *
+     * @param id        the block's stable id
+     * @param x         the x-coordinate of the upper-left corner
+     * @param y         the y-coordinate of the upper-left corner
+     * @param width     the block width
+     * @param height    the block height
+     * @param color     the block color
+     * @param listeners a combination of the listener flags
+     * @return the block's row in the table
+     */
+    int addRow(int id, double x, double y, double width, double height, Color color, int listeners) {
+        return this.game.getBlockTable().add(id, x, y, width, height, color, listenerSet(listeners));
+    }
+
+    /**
+     * Returns the listener flags a set returned by {@link #listenerSet(int)} stands for.
+     *
+     * @param set the listener set id
+     * @return the flags, or -1 if this builder did not make the set
+     */
+    int flagsOf(int set) {
+        for (int flags = 0; flags < this.listenerSets.length; flags++) {
+            if (this.listenerSets[flags] == set) {
+                return flags;
+            }
+        }
+        return set == 0 ? 0 : -1;
+    }
+
+    /**
+     * Returns the table's listener set for the given flags, registering
+     * it the first time so all blocks with the same flags share one set.
+     *
+     * @param flags a combination of the listener flags
+     * @return the listener set id
+     */
+    int listenerSet(int flags) {
+        int set = this.listenerSets[flags & 7];
+        if (set >= 0) {
+            return set;
+        }
+        List<HitListener> listeners = new ArrayList<>();
+        if ((flags & REMOVE_ON_HIT) != 0) {
+            listeners.add(this.blockRemover);
+        }
+        if ((flags & SCORE_ON_HIT) != 0) {
+            listeners.add(this.scoreListener);
+        }
+        if ((flags & REMOVE_BALL) != 0) {
+            listeners.add(this.ballRemover);
+        }
+        set = this.game.getBlockTable().listenerSet(listeners.toArray(new HitListener[0]));
+        this.listenerSets[flags & 7] = set;
+        return set;
+    }
+
+    @Override
+    public void paddle(double x, double y, double width, double height, Color color, int speed) {
+        int players = this.keyboards.length;
+        for (int i = 0; i < players; i++) {
+            double left = players == 1 ? x : (i + 0.5) * this.worldWidth / players - width / 2;
+            Paddle paddle = new Paddle(new Rectangle(new Point(left, y), width, height),
+                    color, this.keyboards[i], speed, this.worldWidth);
+            paddle.addToGame(this.game);
+            this.game.addPaddle(paddle);
+        }
+    }
+
+    @Override
+    public void ball(double x, double y, int r, Color color, double dx, double dy) {
+        Ball ball = this.game.newBall(x, y, r, color, dx, dy);
+        ball.addToGame(this.game);
+        this.game.getRemainingBalls().increase(1);
+    }
+}
@@ -0,0 +1,310 @@
+package game;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Play analytics for level design: how often each block is hit, and how
+ * many ticks balls spend in each cell of a coarse grid over the world.
+ *
+ * <p>
+ * Counts live in primitive arrays, hits indexed by block id and ticks by
+ * cell, so recording is an array increment. A game records into the
+ * heatmap given to {@link Game#setHeatmap(Heatmap)}: {@link Block#hit}
+ * counts every hit, and {@link Ball#moveOneStep()} counts the cell the
+ * ball starts each step in. Positions outside the grid are counted
+ * together.
+ *
+ * <p>
+ * Heatmaps are saved in a compact binary format that
+ * {@link #merge(Heatmap)} can add up across runs, or as CSV:
+ * <pre>
+ * binary: int MAGIC, int VERSION, int cellSize, columns, rows, blocks,
+ *         long outside, long[blocks] hits, long[columns * rows] ticks (row by row)
+ * CSV:    kind,a,b,count with one "block,ID,,HITS" line per block hit and
+ *         one "cell,COLUMN,ROW,TICKS" line per cell visited
+ * </pre>
+ * Run this class to add up saved heatmaps:
+ * <pre>
+ * java game.Heatmap [--csv] OUT IN...
+ * </pre>
+ */
+public final class Heatmap {
+    private static final int MAGIC = 0x41524B48;
+    private static final int VERSION = 1;
+    private static final int INITIAL_BLOCKS = 64;
+
+    private final int cellSize;
+    private final int columns;
+    private final int rows;
+    private final double scale;
+    private final long[] ticks;
+    private long[] hits = new long[INITIAL_BLOCKS];
+    private int blocks;
+    private long outside;
+
+    /**
+     * Creates an empty heatmap over a world of the given size.
+     *
+     * @param width    the world width in pixels
+     * @param height   the world height in pixels
+     * @param cellSize the side of a grid cell in pixels
+     */
+    public Heatmap(int width, int height, int cellSize) {
+        if (width <= 0 || height <= 0 || cellSize <= 0) {
+            throw new IllegalArgumentException("Heatmap size and cell size must be positive");
+        }
+        this.cellSize = cellSize;
+        this.columns = (width + cellSize - 1) / cellSize;
+        this.rows = (height + cellSize - 1) / cellSize;
+        this.scale = 1.0 / cellSize;
+        this.ticks = new long[this.columns * this.rows];
+    }
+
+    /**
+     * Adds up saved heatmaps.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        boolean csv = args.length > 0 && args[0].equals("--csv");
+        int first = csv ? 2 : 1;
+        if (args.length <= first) {
+            System.err.println("usage: Heatmap [--csv] OUT IN...");
+            System.exit(2);
+        }
+        Heatmap total = read(Paths.get(args[first]));
+        for (int i = first + 1; i < args.length; i++) {
+            total.merge(read(Paths.get(args[i])));
+        }
+        Path out = Paths.get(args[first - 1]);
+        if (csv) {
+            total.writeCsv(out);
+        } else {
+            total.write(out);
+        }
+    }
+
+    /**
+     * Counts a hit on a block.
+     *
+     * @param blockId the block's id
+     */
+    void blockHit(int blockId) {
+        if (blockId < 0) {
+            return;
+        }
+        if (blockId >= this.hits.length) {
+            this.hits = Arrays.copyOf(this.hits, Math.max(blockId + 1, this.hits.length * 2));
+        }
+        this.hits[blockId]++;
+        this.blocks = Math.max(this.blocks, blockId + 1);
+    }
+
+    /**
+     * Counts a tick a ball spends at the given point.
+     *
+     * @param x the x-coordinate of the ball's center
+     * @param y the y-coordinate of the ball's center
+     */
+    void ballAt(double x, double y) {
+        // a negative coordinate must not truncate into column or row 0
+        if (x < 0 || y < 0) {
+            this.outside++;
+            return;
+        }
+        int column = (int) (x * this.scale);
+        int row = (int) (y * this.scale);
+        if (column >= this.columns || row >= this.rows) {
+            this.outside++;
+            return;
+        }
+        this.ticks[row * this.columns + column]++;
+    }
+
+    /**
+     * Returns the number of times a block was hit.
+     *
+     * @param blockId the block's id
+     * @return the hit count
+     */
+    public long getHits(int blockId) {
+        return blockId >= 0 && blockId < this.blocks ? this.hits[blockId] : 0;
+    }
+
+    /**
+     * Returns one more than the largest id of a block that was hit.
+     *
+     * @return the number of block ids with a count
+     */
+    public int getBlockCount() {
+        return this.blocks;
+    }
+
+    /**
+     * Returns the number of ball ticks spent in a grid cell.
+     *
+     * @param column the cell's column
+     * @param row    the cell's row
+     * @return the tick count
+     */
+    public long getTicks(int column, int row) {
+        return this.ticks[row * this.columns + column];
+    }
+
+    /**
+     * Returns the number of ball ticks spent outside the grid.
+     *
+     * @return the tick count
+     */
+    public long getOutside() {
+        return this.outside;
+    }
+
+    /**
+     * Returns the number of grid columns.
+     *
+     * @return the column count
+     */
+    public int getColumns() {
+        return this.columns;
+    }
+
+    /**
+     * Returns the number of grid rows.
+     *
+     * @return the row count
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Returns the side of a grid cell.
+     *
+     * @return the cell size in pixels
+     */
+    public int getCellSize() {
+        return this.cellSize;
+    }
+
+    /**
+     * Adds another heatmap's counts to this one's.
+     *
+     * @param other a heatmap with the same grid
+     * @throws IllegalArgumentException if the grids differ
+     */
+    public void merge(Heatmap other) {
+        if (other.cellSize != this.cellSize || other.columns != this.columns || other.rows != this.rows) {
+            throw new IllegalArgumentException("Cannot merge heatmaps with different grids");
+        }
+        for (int id = 0; id < other.blocks; id++) {
+            if (other.hits[id] != 0) {
+                if (id >= this.hits.length) {
+                    this.hits = Arrays.copyOf(this.hits, Math.max(other.blocks, this.hits.length * 2));
+                }
+                this.hits[id] += other.hits[id];
+            }
+        }
+        this.blocks = Math.max(this.blocks, other.blocks);
+        for (int i = 0; i < this.ticks.length; i++) {
+            this.ticks[i] += other.ticks[i];
+        }
+        this.outside += other.outside;
+    }
+
+    /**
+     * Saves the heatmap in the binary format.
+     *
+     * @param path the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(this.cellSize);
+            out.writeInt(this.columns);
+            out.writeInt(this.rows);
+            out.writeInt(this.blocks);
+            out.writeLong(this.outside);
+            for (int id = 0; id < this.blocks; id++) {
+                out.writeLong(this.hits[id]);
+            }
+            for (long count : this.ticks) {
+                out.writeLong(count);
+            }
+        }
+    }
+
+    /**
+     * Saves the heatmap as CSV, leaving out blocks and cells with no count.
+     *
+     * @param path the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeCsv(Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path)) {
+            out.write("kind,a,b,count\n");
+            for (int id = 0; id < this.blocks; id++) {
+                if (this.hits[id] != 0) {
+                    out.write("block," + id + ",," + this.hits[id] + "\n");
+                }
+            }
+            for (int row = 0; row < this.rows; row++) {
+                for (int column = 0; column < this.columns; column++) {
+                    long count = this.ticks[row * this.columns + column];
+                    if (count != 0) {
+                        out.write("cell," + column + "," + row + "," + count + "\n");
+                    }
+                }
+            }
+            out.write("outside,,," + this.outside + "\n");
+        }
+    }
+
+    /**
+     * Loads a heatmap saved with {@link #write(Path)}.
+     *
+     * @param path the file to read
+     * @return the heatmap
+     * @throws IOException if the file cannot be read or is not a heatmap
+     */
+    public static Heatmap read(Path path) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException(path + " is not a heatmap of this version");
+            }
+            int cellSize = in.getInt();
+            int columns = in.getInt();
+            int rows = in.getInt();
+            int blocks = in.getInt();
+            if (cellSize <= 0 || columns <= 0 || rows <= 0 || blocks < 0) {
+                throw new IOException(path + " has a bad heatmap header");
+            }
+            Heatmap map = new Heatmap(columns * cellSize, rows * cellSize, cellSize);
+            map.outside = in.getLong();
+            map.hits = new long[Math.max(blocks, INITIAL_BLOCKS)];
+            map.blocks = blocks;
+            for (int id = 0; id < blocks; id++) {
+                map.hits[id] = in.getLong();
+            }
+            for (int i = 0; i < map.ticks.length; i++) {
+                map.ticks[i] = in.getLong();
+            }
+            return map;
+        } catch (BufferUnderflowException e) {
+            throw new IOException(path + " is truncated", e);
+        }
+    }
+}
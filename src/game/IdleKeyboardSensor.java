@@ -0,0 +1,14 @@
+package game;
+
+import biuoop.KeyboardSensor;
+
+/**
+ * A keyboard sensor with no keyboard behind it: no key is ever pressed.
+ * Used when the game runs without a window.
+ */
+public class IdleKeyboardSensor implements KeyboardSensor {
+    @Override
+    public boolean isPressed(String key) {
+        return false;
+    }
+}
@@ -0,0 +1,137 @@
+package game;
+
+/**
+ * Lets balls skip the collision queries of ticks in which they cannot hit
+ * anything, while moving them exactly as the tick-by-tick simulation does.
+ *
+ * <p>
+ * After a ball's collision query, the time its straight flight first comes
+ * within {@link #MARGIN} of a collidable is computed once, looking at most
+ * {@link #HORIZON} ticks ahead. Every tick before that is free: the ball
+ * only counts it, and the steps are added to its position, one addition per
+ * tick as the query would have done, the next time the position is read.
+ * The margin is far larger than the rounding of those additions and than
+ * the tolerance of the collision tests, so a free tick is one whose query
+ * would have found nothing.
+ *
+ * <p>
+ * A prediction only needs redoing when something appears in the ball's
+ * way. Removing a block only makes room, so it invalidates nothing; a
+ * paddle is treated as a band across the whole width at its height, so its
+ * moves invalidate nothing either. Adding a collidable or a block
+ * invalidates every prediction, which {@link #beginTick} notices by
+ * counting additions. A ball's own prediction is dropped when its position
+ * or velocity is set from outside.
+ *
+ * <p>
+ * The skipping is suspended while something needs every ball position of
+ * every tick: ball collisions or a heatmap.
+ */
+final class Kinetics {
+    /** How close to a collidable, in pixels, a free flight may come. */
+    static final double MARGIN = 1.0;
+    /** The most ticks looked ahead. */
+    static final int HORIZON = 4096;
+    /** Slower balls query every tick, as the collision tests' tolerance grows as speed falls. */
+    private static final double MIN_SPEED = 1e-3;
+
+    private final GameEnvironment environment;
+    private boolean active;
+    private long tick;
+    /** Changes whenever every prediction becomes invalid. */
+    private int epoch;
+    private int additions = -1;
+    private long freeTicks;
+    private long predictions;
+
+    /**
+     * Creates the kinetics of an environment.
+     *
+     * @param environment the environment whose collidables are predicted
+     */
+    Kinetics(GameEnvironment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Starts a tick.
+     *
+     * @param now     the tick about to run
+     * @param allowed whether balls may skip queries this tick
+     */
+    void beginTick(long now, boolean allowed) {
+        this.tick = now;
+        if (!allowed) {
+            this.active = false;
+            return;
+        }
+        int count = this.environment.getAdditions();
+        if (!this.active || count != this.additions) {
+            this.additions = count;
+            this.epoch++;
+        }
+        this.active = true;
+    }
+
+    /**
+     * Checks whether a ball's prediction lets it skip this tick's query,
+     * and counts the tick if so.
+     *
+     * @param freeUntil the first tick the ball must query, from {@link #freeUntil}
+     * @param epoch     the {@link #getEpoch() epoch} of the prediction
+     * @return true if the tick is free
+     */
+    boolean isFree(long freeUntil, int epoch) {
+        if (this.active && epoch == this.epoch && this.tick < freeUntil) {
+            this.freeTicks++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Predicts the first tick after this one in which a ball that moves
+     * from {@code (x, y)} by {@code (dx, dy)} per tick needs a collision
+     * query.
+     *
+     * @param x  the x-coordinate of the ball's center after this tick
+     * @param y  the y-coordinate of the ball's center after this tick
+     * @param dx the ball's velocity along x
+     * @param dy the ball's velocity along y
+     * @return the tick, or 0 if skipping is suspended
+     */
+    long freeUntil(double x, double y, double dx, double dy) {
+        if (!this.active) {
+            return 0;
+        }
+        this.predictions++;
+        if (Math.abs(dx) + Math.abs(dy) < MIN_SPEED) {
+            return this.tick + 1;
+        }
+        double t = this.environment.freeTime(x, y, dx, dy, MARGIN, HORIZON);
+        // the ticks that end before the flight enters a margin are free
+        return this.tick + Math.max(1, (long) Math.ceil(t));
+    }
+
+    int getEpoch() {
+        return this.epoch;
+    }
+
+    /**
+     * Returns the number of ball ticks that skipped their query.
+     *
+     * @return the free tick count
+     */
+    long getFreeTicks() {
+        return this.freeTicks;
+    }
+
+    /**
+     * Returns the number of predictions made.
+     *
+     * @return the prediction count
+     */
+    long getPredictions() {
+        return this.predictions;
+    }
+}
@@ -0,0 +1,255 @@
+package game;
+
+import levels.DefaultLevel;
+import levels.LevelBuilder;
+import levels.LevelReader;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A level as the game holds it once built: the columns of its block
+ * table, ready to be copied in whole, followed by its paddles and balls.
+ * Loading a snapshot skips the per-block work of reading a level, such
+ * as parsing, palette lookups and listener set interning.
+ *
+ * <pre>
+ * java game.LevelSnapshot [LEVEL] OUT   write LEVEL (text or binary; the built-in
+ *                                       level if omitted) as a snapshot to OUT
+ * </pre>
+ *
+ * <p>
+ * File layout, big-endian:
+ * <pre>
+ * int magic "ARKS", int version,
+ * short name length, name (UTF-8),
+ * int rows, int next block id, int remaining blocks,
+ * short palette size, palette size x int ARGB,
+ * rows x int id, rows x float x, rows x float y, rows x float width, rows x float height,
+ * rows x short palette index, rows x byte listener flags,
+ * int movers, movers x (byte 'P', double x, y, width, height, int ARGB, int speed
+ *                     | byte 'B', double x, y, int radius, int ARGB, double dx, dy)
+ * </pre>
+ * Paddles and balls keep the order the level gave them in, so a game
+ * loaded from a snapshot plays exactly like one built from the level.
+ */
+public final class LevelSnapshot {
+    private static final int MAGIC = 0x41524B53;
+    private static final int VERSION = 1;
+    private static final byte PADDLE = 'P';
+    private static final byte BALL = 'B';
+
+    private LevelSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: LevelSnapshot [LEVEL] OUT");
+            System.exit(2);
+        }
+        Path level = args.length == 2 ? Paths.get(args[0]) : null;
+        Files.write(Paths.get(args[args.length - 1]), compile(level));
+    }
+
+    /**
+     * Builds a level in a game without a display and returns its snapshot.
+     *
+     * @param level the level file, or null for the built-in level
+     * @return the snapshot bytes
+     * @throws IOException if the level cannot be read
+     */
+    public static byte[] compile(Path level) throws IOException {
+        Game game = new Game();
+        GameLevelBuilder builder = (GameLevelBuilder) game.prepare(null, new IdleKeyboardSensor());
+        Movers movers = new Movers(builder);
+        if (level == null) {
+            DefaultLevel.emit(movers);
+        } else {
+            LevelReader.read(level, movers);
+        }
+        BlockTable table = game.getBlockTable();
+        int rows = table.rowLimit();
+        List<Color> palette = new ArrayList<>();
+        short[] paint = new short[rows];
+        for (int row = 0; row < rows; row++) {
+            Color c = table.getColor(row);
+            int index = palette.indexOf(c);
+            if (index < 0) {
+                index = palette.size();
+                palette.add(c);
+            }
+            paint[row] = (short) index;
+        }
+        byte[] name = game.getLevelName().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(64 + name.length + palette.size() * 4 + rows * 23
+                + movers.count * 45);
+        out.putInt(MAGIC).putInt(VERSION);
+        out.putShort((short) name.length).put(name);
+        // the throwaway game hands out its next free id
+        out.putInt(rows).putInt(game.nextBlockId()).putInt(game.getRemainingBlocks().getValue());
+        out.putShort((short) palette.size());
+        for (Color c : palette) {
+            out.putInt(c.getRGB());
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putInt(table.getId(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putFloat((float) table.getX(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putFloat((float) table.getY(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putFloat((float) table.getWidth(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putFloat((float) table.getHeight(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            out.putShort(paint[row]);
+        }
+        for (int row = 0; row < rows; row++) {
+            int flags = builder.flagsOf(table.getListenerSet(row));
+            if (flags < 0 || !table.isAlive(row)) {
+                throw new IllegalStateException("Row " + row + " cannot be written to a snapshot");
+            }
+            out.put((byte) flags);
+        }
+        out.putInt(movers.count);
+        out.put(movers.bytes.array(), 0, movers.bytes.position());
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     * Loads a snapshot into a game that was just prepared.
+     *
+     * @param game    the game
+     * @param builder the game's level builder
+     * @param path    the snapshot file
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    static void load(Game game, GameLevelBuilder builder, Path path) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException(path + " is not a level snapshot of this version");
+            }
+            byte[] name = new byte[in.getShort()];
+            in.get(name);
+            builder.name(new String(name, StandardCharsets.UTF_8));
+            int rows = in.getInt();
+            int nextId = in.getInt();
+            int remaining = in.getInt();
+            Color[] palette = new Color[in.getShort()];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = new Color(in.getInt(), true);
+            }
+            int[] ids = new int[rows];
+            in.asIntBuffer().get(ids);
+            in.position(in.position() + rows * 4);
+            float[][] columns = new float[4][rows];
+            for (float[] column : columns) {
+                in.asFloatBuffer().get(column);
+                in.position(in.position() + rows * 4);
+            }
+            short[] paint = new short[rows];
+            in.asShortBuffer().get(paint);
+            in.position(in.position() + rows * 2);
+            int[] sets = new int[rows];
+            int[] setOfFlags = new int[8];
+            Arrays.fill(setOfFlags, -1);
+            for (int row = 0; row < rows; row++) {
+                int flags = in.get() & 7;
+                if (setOfFlags[flags] < 0) {
+                    setOfFlags[flags] = builder.listenerSet(flags);
+                }
+                sets[row] = setOfFlags[flags];
+            }
+            game.getBlockTable().load(rows, ids, columns[0], columns[1], columns[2], columns[3], palette, paint, sets);
+            game.reserveBlockIds(nextId);
+            game.getRemainingBlocks().increase(remaining);
+            int movers = in.getInt();
+            for (int i = 0; i < movers; i++) {
+                byte kind = in.get();
+                if (kind == PADDLE) {
+                    builder.paddle(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(),
+                            new Color(in.getInt(), true), in.getInt());
+                } else if (kind == BALL) {
+                    builder.ball(in.getDouble(), in.getDouble(), in.getInt(), new Color(in.getInt(), true),
+                            in.getDouble(), in.getDouble());
+                } else {
+                    throw new IOException(path + " has an unknown object kind " + kind);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException(path + " is truncated", e);
+        }
+    }
+
+    /**
+     * Passes a level on to the game's builder and records its paddles and
+     * balls, in order, in snapshot form.
+     */
+    private static final class Movers implements LevelBuilder {
+        private final LevelBuilder target;
+        private ByteBuffer bytes = ByteBuffer.allocate(256);
+        private int count;
+
+        Movers(LevelBuilder target) {
+            this.target = target;
+        }
+
+        private void room(int n) {
+            if (this.bytes.remaining() < n) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(this.bytes.capacity() * 2, this.bytes.position() + n));
+                this.bytes.flip();
+                larger.put(this.bytes);
+                this.bytes = larger;
+            }
+        }
+
+        @Override
+        public void name(String name) {
+            this.target.name(name);
+        }
+
+        @Override
+        public void block(double x, double y, double width, double height, Color color, int listeners) {
+            this.target.block(x, y, width, height, color, listeners);
+        }
+
+        @Override
+        public void paddle(double x, double y, double width, double height, Color color, int speed) {
+            this.target.paddle(x, y, width, height, color, speed);
+            room(45);
+            this.bytes.put(PADDLE).putDouble(x).putDouble(y).putDouble(width).putDouble(height)
+                    .putInt(color.getRGB()).putInt(speed);
+            this.count++;
+        }
+
+        @Override
+        public void ball(double x, double y, int r, Color color, double dx, double dy) {
+            this.target.ball(x, y, r, color, dx, dy);
+            room(45);
+            this.bytes.put(BALL).putDouble(x).putDouble(y).putInt(r).putInt(color.getRGB())
+                    .putDouble(dx).putDouble(dy);
+            this.count++;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import Geometry_shapes.Point;
 import Geometry_shapes.Rectangle;
 import biuoop.DrawSurface;
 import biuoop.KeyboardSensor;
+import render.FrameState;
 
 import java.awt.Color;
 /**
@@ -11,11 +12,18 @@ import java.awt.Color;
  * can be drawn on the screen, and acts as a collidable object.
  */
 public class Paddle implements Sprite, Collidable {
+    /** The bounce angles of the outer left, inner left, inner right and outer right regions. */
+    private static final double[] DEFAULT_REGION_ANGLES = {300, 330, 30, 60};
+
     private biuoop.KeyboardSensor keyboard;
     private Rectangle rect;
     private Color color;
     private int speed;
     private int screenWidth;
+    private double[] regionAngles = DEFAULT_REGION_ANGLES.clone();
+    /** The velocity computed by the last {@link #bounce}. */
+    private double bounceDx;
+    private double bounceDy;
     /**
      * Creates a new paddle.
      *
@@ -94,6 +102,12 @@ public class Paddle implements Sprite, Collidable {
 
     }
 
+    @Override
+    public void writeTo(FrameState state) {
+        state.putPaddle(rect.getStartX(), rect.getStartY(),
+                (int) rect.getWidth(), (int) rect.getHeight(), color);
+    }
+
     /**
      * Returns the paddle's collision rectangle.
      *
@@ -104,6 +118,19 @@ public class Paddle implements Sprite, Collidable {
 
 
     }
+    /**
+     * Sets the angles a ball bounces off at from the four outer regions
+     * of the paddle's top; the middle region always reflects.
+     *
+     * @param angles the outer left, inner left, inner right and outer right angles, in degrees
+     */
+    public void setRegionAngles(double[] angles) {
+        if (angles.length != 4) {
+            throw new IllegalArgumentException("Expected 4 region angles, got " + angles.length);
+        }
+        this.regionAngles = angles.clone();
+    }
+
     /**
      * Computes the paddle's response to a collision.
      * The top surface is divided into five regions that determine
@@ -115,8 +142,22 @@ public class Paddle implements Sprite, Collidable {
      * @return the new velocity after the collision
      */
     public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
-        double x = collisionPoint.getX();
-        double leftX = rect.getUpperLeft().getX();
+        bounce(hitter, collisionPoint.getX(), currentVelocity.getDx(), currentVelocity.getDy());
+        return new Velocity(this.bounceDx, this.bounceDy);
+    }
+
+    /**
+     * Computes the velocity a ball leaves the paddle with, exactly as
+     * {@link #hit} does but without creating any objects; read it with
+     * {@link #getBounceDx()} and {@link #getBounceDy()}.
+     *
+     * @param hitter the ball that hits
+     * @param x      the x-coordinate of the point of impact
+     * @param dx     the incoming horizontal velocity
+     * @param dy     the incoming vertical velocity
+     */
+    void bounce(Ball hitter, double x, double dx, double dy) {
+        double leftX = rect.getLeft();
         double width = rect.getWidth();
         double regionWidth = width / 5.0;
         double hitPos = x - leftX;
@@ -130,35 +171,38 @@ public class Paddle implements Sprite, Collidable {
         }
 
         int region = (int) (hitPos / regionWidth);
-        double speed = currentVelocity.getSpeed();
-
-        Velocity newVel;
-        switch (region) {
-            case 0:
-                newVel = Velocity.fromAngleAndSpeed(300, speed);
-                break;
-            case 1:
-                newVel = Velocity.fromAngleAndSpeed(330, speed);
-                break;
-            case 2:
-                newVel = new Velocity(currentVelocity.getDx(), -Math.abs(currentVelocity.getDy()));
-                break;
-            case 3:
-                newVel = Velocity.fromAngleAndSpeed(30, speed);
-                break;
-            case 4:
-                newVel = Velocity.fromAngleAndSpeed(60, speed);
-                break;
-            default:
-                newVel = new Velocity(currentVelocity.getDx(), -Math.abs(currentVelocity.getDy()));
-                break;
+        if (region == 0 || region == 1 || region == 3 || region == 4) {
+            // the middle region reflects; the outer four have an angle each
+            double angle = this.regionAngles[region < 2 ? region : region - 1];
+            double speed = Math.sqrt(dx * dx + dy * dy);
+            // a ball that moves in fixed point bounces by StrictMath, which
+            // gives the same result on every machine
+            if (hitter.isFixedPoint()) {
+                double angleRad = StrictMath.toRadians(angle);
+                this.bounceDx = speed * StrictMath.cos(angleRad);
+                this.bounceDy = speed * StrictMath.sin(angleRad);
+            } else {
+                double angleRad = Math.toRadians(angle);
+                this.bounceDx = speed * Math.cos(angleRad);
+                this.bounceDy = speed * Math.sin(angleRad);
+            }
+        } else {
+            this.bounceDx = dx;
+            this.bounceDy = -Math.abs(dy);
         }
-        if (newVel.getDy() >= 0) {
-            newVel = new Velocity(newVel.getDx(), -Math.abs(newVel.getDy()));
+        if (this.bounceDy >= 0) {
+            this.bounceDy = -Math.abs(this.bounceDy);
         }
+    }
+
+    double getBounceDx() {
+        return this.bounceDx;
+    }
+
+    double getBounceDy() {
+        return this.bounceDy;
+    }
 
-        return newVel;
-        }
     /**
      * Adds the paddle to the given game as both sprite and collidable.
      *
@@ -0,0 +1,269 @@
+package game;
+
+import Geometry_shapes.Rectangle;
+import biuoop.KeyboardSensor;
+import levels.DefaultLevel;
+import levels.LevelReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A training environment for paddle agents, in the style of a gym
+ * environment: {@link #reset(long)} starts a new game of the level without
+ * a display, and {@link #step(int)} applies an action for one tick and
+ * returns the reward, the change in score.
+ *
+ * <p>
+ * Observations are written into a {@code float[]} or a {@code ByteBuffer}
+ * the caller owns, {@link #getObservationSize()} floats long:
+ * <pre>
+ * paddle x, paddle y, paddle width                      (the paddle's top-left corner, in pixels)
+ * maxBalls x (present, x, y, dx, dy)                    (center in pixels, velocity in pixels per tick)
+ * blocks x alive                                        (1 or 0 per row of the level's block table)
+ * </pre>
+ * A ball takes the slot of its id, so a ball keeps its slot while it
+ * lives; balls with ids of {@code maxBalls} or more are left out.
+ *
+ * <p>
+ * {@code step} and the observation methods allocate nothing beyond what a
+ * game tick allocates itself. In fixed point that is little more than
+ * each ball's new center and the moved paddle's rectangle; floating-point
+ * collision queries allocate several times more.
+ */
+public final class PaddleGym {
+    /** Stand still. */
+    public static final int NOOP = 0;
+    /** Move the paddle left. */
+    public static final int LEFT = 1;
+    /** Move the paddle right. */
+    public static final int RIGHT = 2;
+    private static final int PADDLE_FLOATS = 3;
+    private static final int BALL_FLOATS = 5;
+    /** The largest random turn of a ball's starting direction, in degrees. */
+    private static final double MAX_TURN_DEGREES = 15;
+
+    private final Path level;
+    private final int maxBalls;
+    private final boolean fixedPoint;
+    private final Action action = new Action();
+    private boolean kinetic;
+    private Game game;
+    private BlockTable table;
+    private int blocks;
+    private boolean done = true;
+
+    /**
+     * Creates an environment for a level. The level file is read again on
+     * every reset.
+     *
+     * @param level      the level file, or null for the built-in level
+     * @param maxBalls   the number of ball slots in an observation
+     * @param fixedPoint whether balls move in fixed point, so that an
+     *                   episode plays the same on every machine
+     */
+    public PaddleGym(Path level, int maxBalls, boolean fixedPoint) {
+        this.level = level;
+        this.maxBalls = maxBalls;
+        this.fixedPoint = fixedPoint;
+    }
+
+    /**
+     * Turns kinetic simulation on or off for the games started by later
+     * resets; see {@link Game#setKinetic(boolean)}. Episodes play the same
+     * either way.
+     *
+     * @param enabled whether balls skip the collision queries of free ticks
+     */
+    public void setKinetic(boolean enabled) {
+        this.kinetic = enabled;
+    }
+
+    /**
+     * Starts a new game. The seed turns each ball's starting direction by
+     * a random angle of up to {@value #MAX_TURN_DEGREES} degrees, keeping
+     * its speed; seed 0 keeps the level's directions.
+     *
+     * @param seed the seed of the starting directions
+     * @throws IOException if the level file cannot be read
+     */
+    public void reset(long seed) throws IOException {
+        this.game = new Game();
+        this.game.setFixedPoint(this.fixedPoint);
+        this.game.setKinetic(this.kinetic);
+        this.action.current = NOOP;
+        KeyboardSensor keyboard = this.action;
+        if (this.level == null) {
+            DefaultLevel.emit(this.game.prepare(null, keyboard));
+        } else {
+            LevelReader.read(this.level, this.game.prepare(null, keyboard));
+        }
+        if (seed != 0) {
+            SplittableRandom random = new SplittableRandom(seed);
+            List<Ball> balls = this.game.getBalls();
+            for (int i = 0; i < balls.size(); i++) {
+                Ball ball = balls.get(i);
+                double turn = StrictMath.toRadians(random.nextDouble(-MAX_TURN_DEGREES, MAX_TURN_DEGREES));
+                double cos = StrictMath.cos(turn);
+                double sin = StrictMath.sin(turn);
+                ball.setVelocity(ball.getDx() * cos - ball.getDy() * sin, ball.getDx() * sin + ball.getDy() * cos);
+            }
+        }
+        this.table = this.game.getBlockTable();
+        this.blocks = this.table.rowLimit();
+        this.done = false;
+    }
+
+    /**
+     * Plays one tick with the given action.
+     *
+     * @param move {@link #NOOP}, {@link #LEFT} or {@link #RIGHT}
+     * @return the points scored during the tick
+     * @throws IllegalStateException if the game is over or was never started
+     */
+    public int step(int move) {
+        if (this.done) {
+            throw new IllegalStateException("Call reset before stepping a finished game");
+        }
+        Counter score = this.game.getScore();
+        int before = score.getValue();
+        this.action.current = move;
+        // the tick that clears the level adds the game's clear bonus
+        this.game.tick();
+        if (this.game.getRemainingBlocks().getValue() == 0 || this.game.getRemainingBalls().getValue() == 0) {
+            this.done = true;
+        }
+        return score.getValue() - before;
+    }
+
+    /**
+     * Returns whether the game is over, won or lost.
+     *
+     * @return true once all blocks or all balls are gone
+     */
+    public boolean isDone() {
+        return this.done;
+    }
+
+    /**
+     * Returns the game being played, for inspection.
+     *
+     * @return the game, or null before the first reset
+     */
+    public Game getGame() {
+        return this.game;
+    }
+
+    /**
+     * Returns the number of floats in an observation of the current game.
+     * It changes only on reset, and only between levels.
+     *
+     * @return the observation size
+     */
+    public int getObservationSize() {
+        return PADDLE_FLOATS + this.maxBalls * BALL_FLOATS + this.blocks;
+    }
+
+    /**
+     * Writes the current observation into an array.
+     *
+     * @param out    the array
+     * @param offset where in the array the observation starts
+     */
+    public void observe(float[] out, int offset) {
+        int i = offset;
+        Paddle paddle = this.game.getPaddle();
+        if (paddle != null) {
+            Rectangle rect = paddle.getCollisionRectangle();
+            out[i] = (float) rect.getLeft();
+            out[i + 1] = (float) rect.getTop();
+            out[i + 2] = (float) rect.getWidth();
+        } else {
+            out[i] = 0;
+            out[i + 1] = 0;
+            out[i + 2] = 0;
+        }
+        i += PADDLE_FLOATS;
+        Arrays.fill(out, i, i + this.maxBalls * BALL_FLOATS, 0);
+        List<Ball> balls = this.game.getBalls();
+        for (int b = 0; b < balls.size(); b++) {
+            Ball ball = balls.get(b);
+            int id = ball.getId();
+            if (id >= 0 && id < this.maxBalls) {
+                int at = i + id * BALL_FLOATS;
+                out[at] = 1;
+                out[at + 1] = (float) ball.getCenter().getX();
+                out[at + 2] = (float) ball.getCenter().getY();
+                out[at + 3] = (float) ball.getDx();
+                out[at + 4] = (float) ball.getDy();
+            }
+        }
+        i += this.maxBalls * BALL_FLOATS;
+        for (int row = 0; row < this.blocks; row++) {
+            out[i + row] = this.table.isAlive(row) ? 1 : 0;
+        }
+    }
+
+    /**
+     * Writes the current observation into a buffer, as floats in the
+     * buffer's byte order, without moving its position.
+     *
+     * @param out    the buffer, usually a direct one shared with native code
+     * @param offset the byte offset where the observation starts
+     */
+    public void observe(ByteBuffer out, int offset) {
+        int i = offset;
+        Paddle paddle = this.game.getPaddle();
+        if (paddle != null) {
+            Rectangle rect = paddle.getCollisionRectangle();
+            out.putFloat(i, (float) rect.getLeft());
+            out.putFloat(i + 4, (float) rect.getTop());
+            out.putFloat(i + 8, (float) rect.getWidth());
+        } else {
+            out.putFloat(i, 0).putFloat(i + 4, 0).putFloat(i + 8, 0);
+        }
+        i += PADDLE_FLOATS * 4;
+        for (int k = 0; k < this.maxBalls * BALL_FLOATS; k++) {
+            out.putFloat(i + k * 4, 0);
+        }
+        List<Ball> balls = this.game.getBalls();
+        for (int b = 0; b < balls.size(); b++) {
+            Ball ball = balls.get(b);
+            int id = ball.getId();
+            if (id >= 0 && id < this.maxBalls) {
+                int at = i + id * BALL_FLOATS * 4;
+                out.putFloat(at, 1);
+                out.putFloat(at + 4, (float) ball.getCenter().getX());
+                out.putFloat(at + 8, (float) ball.getCenter().getY());
+                out.putFloat(at + 12, (float) ball.getDx());
+                out.putFloat(at + 16, (float) ball.getDy());
+            }
+        }
+        i += this.maxBalls * BALL_FLOATS * 4;
+        for (int row = 0; row < this.blocks; row++) {
+            out.putFloat(i + row * 4, this.table.isAlive(row) ? 1 : 0);
+        }
+    }
+
+    /**
+     * The keyboard the paddle reads: holds the key of the current action.
+     */
+    private static final class Action implements KeyboardSensor {
+        private int current;
+
+        @Override
+        public boolean isPressed(String key) {
+            if (LEFT_KEY.equals(key)) {
+                return this.current == LEFT;
+            }
+            if (RIGHT_KEY.equals(key)) {
+                return this.current == RIGHT;
+            }
+            return false;
+        }
+    }
+}
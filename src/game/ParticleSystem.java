@@ -0,0 +1,319 @@
+package game;
+
+import biuoop.DrawSurface;
+import render.FrameState;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Short-lived particles for block breaks and ball trails. Particles are
+ * only drawn; they never touch the game's physics.
+ *
+ * <p>
+ * Particles are stored column by column in primitive arrays allocated
+ * once, for a fixed capacity: position, velocity, ticks to live and a
+ * palette index. The live particles are kept packed at the front, and a
+ * dead one is replaced by the last live one, so the tail of the arrays is
+ * the free list and emitting a particle is a store at {@code count}.
+ * Every tick one pass moves all particles, and a second drops the dead.
+ * Nothing is allocated while particles are emitted, moved or drawn, once
+ * every color has been seen.
+ *
+ * <p>
+ * The system has two hard limits. It never holds more than its capacity,
+ * so a burst into a full system emits only what fits. And it keeps the
+ * time it spends each frame, moving and drawing, under a budget: a frame
+ * over budget halves its quality, a frame well under raises it again
+ * slowly. At quality {@code q}, bursts and trails emit a fraction
+ * {@code q} of their particles, and only a fraction {@code q} of the live
+ * ones, evenly spread, is drawn. Effects thin out under load instead of
+ * slowing the frame. When a render thread draws the frames, the drawing
+ * it times is charged to the frame that next refills the same buffer.
+ */
+public final class ParticleSystem implements Sprite {
+    /** The capacity used by the game's {@code --particles} option. */
+    public static final int DEFAULT_CAPACITY = 1 << 15;
+    /** The time budget used by the game's {@code --particles} option. */
+    public static final long DEFAULT_BUDGET_NANOS = 1_000_000L;
+    /** The number of particles a block break emits at full quality. */
+    public static final int BURST_SIZE = 32;
+    private static final int BURST_LIFE = 40;
+    private static final int TRAIL_LIFE = 12;
+    private static final float GRAVITY = 0.08f;
+    private static final double MAX_BURST_SPEED = 3;
+    private static final double TRAIL_SPEED = 0.3;
+    private static final double MIN_QUALITY = 1.0 / 64;
+    /** How much a frame well under budget raises the quality. */
+    private static final double RECOVERY = 1.0 / 32;
+
+    private final int capacity;
+    private final long budgetNanos;
+    private final float[] xs;
+    private final float[] ys;
+    private final float[] vxs;
+    private final float[] vys;
+    private final short[] life;
+    private final short[] paint;
+    private int count;
+    private Color[] palette = new Color[8];
+    private int paletteSize;
+    private final SplittableRandom random = new SplittableRandom(0x5EED);
+    private double quality = 1;
+    /** The time spent since the last tick began, in nanoseconds. */
+    private long spentNanos;
+    private long emitted;
+    private long dropped;
+    private Game game;
+
+    /**
+     * Creates an empty particle system.
+     *
+     * @param capacity    the most particles alive at once
+     * @param budgetNanos the time the system may take per frame, moving and drawing together
+     */
+    public ParticleSystem(int capacity, long budgetNanos) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Particle capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.budgetNanos = budgetNanos;
+        this.xs = new float[capacity];
+        this.ys = new float[capacity];
+        this.vxs = new float[capacity];
+        this.vys = new float[capacity];
+        this.life = new short[capacity];
+        this.paint = new short[capacity];
+    }
+
+    /**
+     * Emits a burst from the center of a block, in the block's color.
+     * Call it before the block is removed.
+     *
+     * @param block the block that breaks
+     */
+    public void burst(Block block) {
+        if (!block.isAlive()) {
+            return;
+        }
+        burst(block.getLeft() + block.getWidth() / 2, block.getTop() + block.getHeight() / 2,
+                block.getColor(), BURST_SIZE);
+    }
+
+    /**
+     * Emits particles flying out of a point in random directions.
+     *
+     * @param x     the x-coordinate of the point
+     * @param y     the y-coordinate of the point
+     * @param color the particles' color
+     * @param n     the number of particles at full quality
+     */
+    public void burst(double x, double y, Color color, int n) {
+        int wanted = (int) Math.ceil(n * this.quality);
+        int room = Math.min(wanted, this.capacity - this.count);
+        this.dropped += n - room;
+        short p = paletteIndex(color);
+        for (int i = 0; i < room; i++) {
+            double angle = this.random.nextDouble(2 * Math.PI);
+            double speed = this.random.nextDouble(MAX_BURST_SPEED);
+            add(x, y, speed * Math.cos(angle), speed * Math.sin(angle),
+                    BURST_LIFE / 2 + this.random.nextInt(BURST_LIFE / 2), p);
+        }
+    }
+
+    /**
+     * Emits one slow, short-lived particle, at a rate that falls with the
+     * quality.
+     *
+     * @param x     the x-coordinate of the particle
+     * @param y     the y-coordinate of the particle
+     * @param color the particle's color
+     */
+    public void trail(double x, double y, Color color) {
+        if (this.count == this.capacity || this.random.nextDouble() >= this.quality) {
+            this.dropped++;
+            return;
+        }
+        add(x, y, this.random.nextDouble(-TRAIL_SPEED, TRAIL_SPEED), this.random.nextDouble(-TRAIL_SPEED, TRAIL_SPEED),
+                TRAIL_LIFE, paletteIndex(color));
+    }
+
+    private void add(double x, double y, double vx, double vy, int ticks, short p) {
+        int i = this.count++;
+        this.xs[i] = (float) x;
+        this.ys[i] = (float) y;
+        this.vxs[i] = (float) vx;
+        this.vys[i] = (float) vy;
+        this.life[i] = (short) ticks;
+        this.paint[i] = p;
+        this.emitted++;
+    }
+
+    @Override
+    public void timePassed() {
+        long start = System.nanoTime();
+        adapt();
+        int n = this.count;
+        float[] x = this.xs;
+        float[] y = this.ys;
+        float[] vy = this.vys;
+        float[] vx = this.vxs;
+        short[] ticks = this.life;
+        for (int i = 0; i < n; i++) {
+            vy[i] += GRAVITY;
+            x[i] += vx[i];
+            y[i] += vy[i];
+            ticks[i]--;
+        }
+        for (int i = 0; i < n;) {
+            if (ticks[i] > 0) {
+                i++;
+                continue;
+            }
+            n--;
+            x[i] = x[n];
+            y[i] = y[n];
+            vx[i] = vx[n];
+            vy[i] = vy[n];
+            ticks[i] = ticks[n];
+            this.paint[i] = this.paint[n];
+        }
+        this.count = n;
+        if (this.game != null) {
+            List<Ball> balls = this.game.getBalls();
+            for (int i = 0; i < balls.size(); i++) {
+                Ball ball = balls.get(i);
+                trail(ball.getCenter().getX(), ball.getCenter().getY(), ball.getColor());
+            }
+        }
+        this.spentNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Adjusts the quality to the time the last frame took.
+     */
+    private void adapt() {
+        if (this.spentNanos > this.budgetNanos) {
+            this.quality = Math.max(MIN_QUALITY, this.quality / 2);
+        } else if (this.spentNanos < this.budgetNanos / 2) {
+            this.quality = Math.min(1, this.quality + RECOVERY);
+        }
+    }
+
+    /**
+     * Returns the distance between drawn particles: every particle at full
+     * quality, fewer below it.
+     */
+    private int stride() {
+        return (int) Math.ceil(1 / this.quality);
+    }
+
+    @Override
+    public void drawOn(DrawSurface d) {
+        long start = System.nanoTime();
+        int size = FrameState.PARTICLE_SIZE;
+        int current = -1;
+        for (int i = 0, step = stride(); i < this.count; i += step) {
+            if (this.paint[i] != current) {
+                current = this.paint[i];
+                d.setColor(this.palette[current]);
+            }
+            d.fillRectangle((int) this.xs[i], (int) this.ys[i], size, size);
+        }
+        this.spentNanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void writeTo(FrameState state) {
+        // the render thread draws the frame, and times it, after this returns;
+        // charge the time of the last draw of this buffer instead
+        this.spentNanos += state.takeParticleDrawNanos();
+        long start = System.nanoTime();
+        for (int i = 0, step = stride(); i < this.count; i += step) {
+            state.putParticle((int) this.xs[i], (int) this.ys[i], this.palette[this.paint[i]]);
+        }
+        this.spentNanos += System.nanoTime() - start;
+    }
+
+    @Override
+    public void addToGame(Game g) {
+        this.game = g;
+        g.addSprite(this);
+    }
+
+    /**
+     * Removes the system from its game; its particles stop moving and are
+     * no longer drawn.
+     *
+     * @param g the game
+     */
+    void removeFromGame(Game g) {
+        g.removeSprite(this);
+        this.game = null;
+    }
+
+    private short paletteIndex(Color color) {
+        for (int i = 0; i < this.paletteSize; i++) {
+            if (this.palette[i] == color || this.palette[i].equals(color)) {
+                return (short) i;
+            }
+        }
+        if (this.paletteSize == Short.MAX_VALUE) {
+            throw new IllegalStateException("A particle system holds at most " + Short.MAX_VALUE + " colors");
+        }
+        if (this.paletteSize == this.palette.length) {
+            this.palette = Arrays.copyOf(this.palette, this.paletteSize * 2);
+        }
+        this.palette[this.paletteSize] = color;
+        return (short) this.paletteSize++;
+    }
+
+    /**
+     * Returns the number of live particles.
+     *
+     * @return the particle count
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Returns the most particles alive at once.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the current quality, the fraction of particles emitted and
+     * drawn.
+     *
+     * @return the quality, in {@code (0, 1]}
+     */
+    public double getQuality() {
+        return this.quality;
+    }
+
+    /**
+     * Returns the number of particles emitted.
+     *
+     * @return the emitted count
+     */
+    public long getEmitted() {
+        return this.emitted;
+    }
+
+    /**
+     * Returns the number of particles asked for but not emitted, for lack
+     * of room or of time.
+     *
+     * @return the dropped count
+     */
+    public long getDropped() {
+        return this.dropped;
+    }
+}
@@ -0,0 +1,139 @@
+package game;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A pool of reusable objects for one game thread.
+ *
+ * <p>
+ * {@link #acquire()} hands out an idle object, or creates one when none is
+ * idle; {@link #release(Object)} scrubs an object and keeps it for the
+ * next acquire. Scrubbing drops everything the object refers to, such as
+ * listeners and the collidable it hit, so nothing reaches a recycled
+ * object through its old registrations. Callers set an acquired object up
+ * themselves. At most {@code maxIdle} objects are kept; further releases
+ * are left to the garbage collector.
+ *
+ * <p>
+ * The pool counts hits (acquires served from idle objects), misses
+ * (acquires that had to create one) and the high-water mark of objects
+ * out at the same time, which is the size the pool needs to stop missing.
+ *
+ * @param <T> the type of the pooled objects
+ */
+public class Pool<T> {
+    private final Supplier<T> factory;
+    private final Consumer<T> scrub;
+    private final int maxIdle;
+    private Object[] idle = new Object[8];
+    private int idleCount;
+    private long hits;
+    private long misses;
+    private int outstanding;
+    private int highWater;
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param factory creates a new object on a miss
+     * @param scrub   clears a released object's references
+     * @param maxIdle the most idle objects kept
+     */
+    public Pool(Supplier<T> factory, Consumer<T> scrub, int maxIdle) {
+        this.factory = factory;
+        this.scrub = scrub;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Returns an idle object, or a new one if none is idle.
+     *
+     * @return an object for the caller to set up
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        T object;
+        if (this.idleCount > 0) {
+            object = (T) this.idle[--this.idleCount];
+            this.idle[this.idleCount] = null;
+            this.hits++;
+        } else {
+            object = this.factory.get();
+            this.misses++;
+        }
+        if (++this.outstanding > this.highWater) {
+            this.highWater = this.outstanding;
+        }
+        return object;
+    }
+
+    /**
+     * Scrubs an object acquired from this pool and keeps it for reuse. The
+     * caller must not use the object afterwards.
+     *
+     * @param object the object to return
+     */
+    public void release(T object) {
+        this.scrub.accept(object);
+        this.outstanding--;
+        if (this.idleCount == this.maxIdle) {
+            return;
+        }
+        if (this.idleCount == this.idle.length) {
+            this.idle = Arrays.copyOf(this.idle, Math.min(this.maxIdle, this.idleCount * 2));
+        }
+        this.idle[this.idleCount++] = object;
+    }
+
+    /**
+     * Returns the number of acquires served from idle objects.
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of acquires that created a new object.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the most objects that were out of the pool at the same time.
+     *
+     * @return the high-water mark
+     */
+    public int getHighWater() {
+        return this.highWater;
+    }
+
+    /**
+     * Returns the number of objects acquired and not yet released.
+     *
+     * @return the outstanding count
+     */
+    public int getOutstanding() {
+        return this.outstanding;
+    }
+
+    /**
+     * Returns the number of idle objects kept for reuse.
+     *
+     * @return the idle count
+     */
+    public int getIdle() {
+        return this.idleCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses, high water %d", this.hits, this.misses, this.highWater);
+    }
+}
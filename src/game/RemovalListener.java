@@ -0,0 +1,22 @@
+package game;
+
+/**
+ * Objects that want to know which blocks and balls leave the game
+ * implement this interface. Blocks paged out of a chunked level are not
+ * reported; only blocks that were destroyed are.
+ */
+public interface RemovalListener {
+    /**
+     * Called when a block was removed from the game.
+     *
+     * @param blockId the stable id of the removed block
+     */
+    void blockRemoved(int blockId);
+
+    /**
+     * Called when a ball was removed from the game.
+     *
+     * @param ballId the stable id of the removed ball
+     */
+    void ballRemoved(int ballId);
+}
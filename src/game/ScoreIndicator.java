@@ -1,6 +1,7 @@
 package game;
 
 import biuoop.DrawSurface;
+import render.FrameState;
 
 import java.awt.Color;
 /**
@@ -19,7 +20,7 @@ public class ScoreIndicator implements Sprite {
 
     @Override
     public void addToGame(Game g) {
-        g.addSprite(this);
+        g.addOverlay(this);
     }
 
     @Override
@@ -28,6 +29,11 @@ public class ScoreIndicator implements Sprite {
         d.drawText(390, 25, "Score: " + score.getValue(), 16);
     }
 
+    @Override
+    public void writeTo(FrameState state) {
+        state.setScore(score.getValue());
+    }
+
     @Override
     public void timePassed() {
     }
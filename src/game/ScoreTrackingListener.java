@@ -1,11 +1,13 @@
 package game;
 
+import eventlog.EventLog;
 import listeners.HitListener;
 /**
  * A HitListener that tracks and updates the game score.
  */
 public class ScoreTrackingListener implements HitListener {
     private Counter currentScore;
+    private Game game;
     /**
      * Constructs a game.ScoreTrackingListener.
      *
@@ -14,8 +16,25 @@ public class ScoreTrackingListener implements HitListener {
     public ScoreTrackingListener(Counter scoreCounter) {
         this.currentScore = scoreCounter;
     }
+
+    /**
+     * Constructs a game.ScoreTrackingListener that also logs score changes
+     * to the game's event log.
+     *
+     * @param scoreCounter the counter used to track the game score
+     * @param game         the game whose event log records the changes
+     */
+    public ScoreTrackingListener(Counter scoreCounter, Game game) {
+        this.currentScore = scoreCounter;
+        this.game = game;
+    }
     @Override
     public void hitEvent(Block beingHit, Ball hitter) {
         this.currentScore.increase(5);
+        EventLog log = this.game == null ? null : this.game.getEventLog();
+        if (log != null) {
+            log.append(EventLog.SCORE, this.game.getTick(), beingHit.getId(), hitter.getId(),
+                    this.currentScore.getValue());
+        }
     }
     }
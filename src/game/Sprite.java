@@ -1,6 +1,7 @@
 package game;
 
 import biuoop.DrawSurface;
+import render.FrameState;
 
 /**
  * A game.Sprite is an object that can be drawn on the screen and updated over time.
@@ -23,4 +24,13 @@ public interface Sprite {
      * @param g the game to add this sprite to
      */
     void addToGame(Game g);
+    /**
+     * Records what this sprite looks like into the given frame state,
+     * so it can be drawn later by a separate render thread.
+     * Sprites that draw nothing leave the state unchanged.
+     *
+     * @param state the frame state being filled
+     */
+    default void writeTo(FrameState state) {
+    }
 }
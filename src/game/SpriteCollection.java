@@ -1,6 +1,8 @@
 package game;
 
 import biuoop.DrawSurface;
+import render.FrameState;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -54,4 +56,15 @@ public class SpriteCollection {
             s.drawOn(d);
         }
     }
+
+    /**
+     * Records all sprites into the given frame state.
+     *
+     * @param state the frame state being filled
+     */
+    public void writeAllTo(FrameState state) {
+        for (int i = 0; i < this.sprites.size(); i++) {
+            this.sprites.get(i).writeTo(state);
+        }
+    }
 }
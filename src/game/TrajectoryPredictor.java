@@ -0,0 +1,468 @@
+package game;
+
+import Geometry_shapes.Point;
+import Geometry_shapes.Rectangle;
+import listeners.BallRemover;
+import listeners.BlockRemover;
+import listeners.HitListener;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Predicts where a ball will go, frame by frame, without moving it or
+ * notifying anyone.
+ *
+ * <p>
+ * A prediction steps the ball exactly like {@link Ball#moveOneStep()}:
+ * each frame the ball moves by its velocity unless something is in the
+ * way, in which case it stops just before the contact point and bounces.
+ * Blocks in the environment's tables are found through their collision
+ * grid, and a block the ball would destroy is ignored after it was hit.
+ * Breaking a block gives the ball the block's color, as
+ * {@link BlockRemover} does, so later blocks of that color only bounce
+ * the ball and are not broken.
+ * Prediction stops after a number of contacts or frames, when the ball
+ * crosses a given horizontal line (the paddle line), or when it hits a
+ * block that removes balls.
+ *
+ * <p>
+ * Results are kept in primitive arrays owned by the predictor and
+ * overwritten by the next call, and every frame is stepped with primitive
+ * locals, reading stand-alone blocks from their tables and bouncing off
+ * paddles through {@link Paddle#bounce}, so one predictor can be asked
+ * about many balls every frame without allocating. The predicted path agrees with
+ * the game's own up to floating point rounding.
+ */
+public class TrajectoryPredictor {
+    /** How far before a contact point the ball stops, as in {@link Ball#moveOneStep()}. */
+    private static final double EPSILON = 1.0;
+    /** How close a hit point must be to an edge to be placed exactly on it. */
+    private static final double SNAP = 1e-6;
+
+    private final GameEnvironment environment;
+    private final int capacity;
+    private final double[] contactX;
+    private final double[] contactY;
+    private final int[] contactFrame;
+    private final Collidable[] contactObject;
+    private final BlockTable[] contactTable;
+    private final int[] contactRow;
+    private final boolean[] contactDestroyed;
+    private int contactCount;
+    private int[][] skipRows = new int[1][];
+    private int[] skipCounts = new int[1];
+
+    private int lineFrame;
+    private double lineX;
+    private boolean ballLost;
+    private int frames;
+    private double endX;
+    private double endY;
+    private double endDx;
+    private double endDy;
+
+    /**
+     * Creates a predictor for balls in the given environment.
+     *
+     * @param environment the environment the balls move in
+     * @param capacity    the most contacts a single prediction records
+     */
+    public TrajectoryPredictor(GameEnvironment environment, int capacity) {
+        this.environment = environment;
+        this.capacity = capacity;
+        this.contactX = new double[capacity];
+        this.contactY = new double[capacity];
+        this.contactFrame = new int[capacity];
+        this.contactObject = new Collidable[capacity];
+        this.contactTable = new BlockTable[capacity];
+        this.contactRow = new int[capacity];
+        this.contactDestroyed = new boolean[capacity];
+    }
+
+    /**
+     * Predicts the path of a ball.
+     *
+     * @param ball      the ball
+     * @param maxHits   stop after this many contacts (at most the capacity)
+     * @param maxFrames stop after this many frames
+     * @param lineY     stop when the ball's center moves down across this
+     *                  height; use {@link Double#POSITIVE_INFINITY} for no line
+     * @param ignore    a collidable the ball passes through, usually the
+     *                  paddle whose line is being watched; may be null
+     * @return the number of contacts recorded
+     */
+    public int predict(Ball ball, int maxHits, int maxFrames, double lineY, Collidable ignore) {
+        Point center = ball.getCenter();
+        Velocity v = ball.getVelocity();
+        return predict(ball, center.getX(), center.getY(), v.getDx(), v.getDy(),
+                maxHits, maxFrames, lineY, ignore);
+    }
+
+    /**
+     * Predicts the path of a ball from the given state instead of its current one.
+     *
+     * @param ball      the ball, for its color and as the hitter passed to a paddle
+     * @param x         the center's x-coordinate
+     * @param y         the center's y-coordinate
+     * @param dx        the horizontal velocity
+     * @param dy        the vertical velocity
+     * @param maxHits   stop after this many contacts (at most the capacity)
+     * @param maxFrames stop after this many frames
+     * @param lineY     stop when the ball's center moves down across this height
+     * @param ignore    a collidable the ball passes through; may be null
+     * @return the number of contacts recorded
+     */
+    public int predict(Ball ball, double x, double y, double dx, double dy,
+                       int maxHits, int maxFrames, double lineY, Collidable ignore) {
+        List<BlockTable> tables = this.environment.getBlockTables();
+        if (this.skipCounts.length < tables.size()) {
+            this.skipRows = Arrays.copyOf(this.skipRows, tables.size());
+            this.skipCounts = new int[tables.size()];
+        }
+        Arrays.fill(this.skipCounts, 0);
+        int hits = Math.min(maxHits, this.capacity);
+        this.contactCount = 0;
+        this.lineFrame = -1;
+        this.lineX = Double.NaN;
+        this.ballLost = false;
+        this.frames = 0;
+        Color color = ball.getColor();
+        while (this.frames < maxFrames && this.contactCount < hits && !this.ballLost) {
+            this.frames++;
+            double nx = x + dx;
+            double ny = y + dy;
+            // collidables first: on a tie the game prefers them over table blocks
+            double best = Double.POSITIVE_INFINITY;
+            Collidable bestObject = null;
+            double left = 0;
+            double top = 0;
+            double right = 0;
+            double bottom = 0;
+            for (int s = this.environment.nextLiveSlot(0); s >= 0; s = this.environment.nextLiveSlot(s + 1)) {
+                Collidable c = this.environment.collidableAt(s);
+                if (c == ignore || destroyed(c)) {
+                    continue;
+                }
+                double cLeft;
+                double cTop;
+                double cRight;
+                double cBottom;
+                if (c instanceof Block) {
+                    // a block's rectangle would be made anew for every call
+                    Block block = (Block) c;
+                    cLeft = block.getLeft();
+                    cTop = block.getTop();
+                    cRight = cLeft + block.getWidth();
+                    cBottom = cTop + block.getHeight();
+                } else {
+                    Rectangle r = c.getCollisionRectangle();
+                    cLeft = r.getLeft();
+                    cTop = r.getTop();
+                    cRight = cLeft + r.getWidth();
+                    cBottom = cTop + r.getHeight();
+                }
+                double t = Rectangle.edgeHitTime(x, y, dx, dy, cLeft, cTop, cRight, cBottom);
+                if (t < best) {
+                    best = t;
+                    bestObject = c;
+                    left = cLeft;
+                    top = cTop;
+                    right = cRight;
+                    bottom = cBottom;
+                }
+            }
+            BlockTable bestTable = null;
+            int bestTableIndex = -1;
+            int bestRow = -1;
+            double hitX = 0;
+            double hitY = 0;
+            for (int i = 0; i < tables.size(); i++) {
+                BlockTable table = tables.get(i);
+                int row = table.closestHit(x, y, nx, ny, this.skipRows[i], this.skipCounts[i]);
+                if (row >= 0 && table.getHitTime() < best) {
+                    best = table.getHitTime();
+                    // a closer row beats the collidable found above
+                    bestObject = null;
+                    bestTable = table;
+                    bestTableIndex = i;
+                    bestRow = row;
+                    hitX = table.getHitX();
+                    hitY = table.getHitY();
+                }
+            }
+            if (best == Double.POSITIVE_INFINITY) {
+                if (crossesLine(x, y, nx, ny, lineY)) {
+                    break;
+                }
+                x = nx;
+                y = ny;
+                continue;
+            }
+            if (bestTable != null) {
+                left = bestTable.getX(bestRow);
+                top = bestTable.getY(bestRow);
+                right = left + bestTable.getWidth(bestRow);
+                bottom = top + bestTable.getHeight(bestRow);
+            } else {
+                hitX = snap(x + dx * best, left, right);
+                hitY = snap(y + dy * best, top, bottom);
+            }
+            int c = this.contactCount++;
+            this.contactX[c] = hitX;
+            this.contactY[c] = hitY;
+            this.contactFrame[c] = this.frames;
+            this.contactObject[c] = bestObject;
+            this.contactTable[c] = bestTable;
+            this.contactRow[c] = bestRow;
+            this.contactDestroyed[c] = false;
+
+            double px = dx > 0 ? hitX - EPSILON : dx < 0 ? hitX + EPSILON : hitX;
+            double py = dy > 0 ? hitY - EPSILON : dy < 0 ? hitY + EPSILON : hitY;
+            if (crossesLine(x, y, px, py, lineY)) {
+                break;
+            }
+            x = px;
+            y = py;
+            if (bestObject instanceof Paddle) {
+                Paddle paddle = (Paddle) bestObject;
+                paddle.bounce(ball, hitX, dx, dy);
+                dx = paddle.getBounceDx();
+                dy = paddle.getBounceDy();
+                continue;
+            }
+            if (DoublesCompare.equals(hitX, left) || DoublesCompare.equals(hitX, right)) {
+                dx = -dx;
+            }
+            if (DoublesCompare.equals(hitY, top) || DoublesCompare.equals(hitY, bottom)) {
+                dy = -dy;
+            }
+            Color blockColor = null;
+            HitListener[] listeners = null;
+            if (bestObject instanceof Block) {
+                blockColor = ((Block) bestObject).getColor();
+                listeners = ((Block) bestObject).getListeners();
+            } else if (bestTable != null) {
+                blockColor = bestTable.getColor(bestRow);
+                listeners = bestTable.getListeners(bestRow);
+            }
+            if (blockColor != null && !blockColor.equals(color)) {
+                boolean removed = false;
+                for (HitListener hl : listeners) {
+                    if (hl instanceof BallRemover) {
+                        this.ballLost = true;
+                    } else if (hl instanceof BlockRemover) {
+                        removed = true;
+                        if (bestTable != null) {
+                            skip(bestTableIndex, bestRow);
+                        } else {
+                            this.contactDestroyed[c] = true;
+                        }
+                    }
+                }
+                if (removed) {
+                    color = blockColor;
+                }
+            }
+        }
+        if (this.lineFrame >= 0) {
+            x = this.lineX;
+            y = lineY;
+        }
+        this.endX = x;
+        this.endY = y;
+        this.endDx = dx;
+        this.endDy = dy;
+        return this.contactCount;
+    }
+
+    /**
+     * Checks whether a move crosses the line downward, and if so records where.
+     */
+    private boolean crossesLine(double x0, double y0, double x1, double y1, double lineY) {
+        if (y0 < lineY && y1 >= lineY) {
+            this.lineFrame = this.frames;
+            this.lineX = x0 + (x1 - x0) * (lineY - y0) / (y1 - y0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a collidable was destroyed earlier in this prediction.
+     */
+    private boolean destroyed(Collidable object) {
+        for (int i = 0; i < this.contactCount; i++) {
+            if (this.contactDestroyed[i] && this.contactObject[i] == object) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skip(int table, int row) {
+        int[] rows = this.skipRows[table];
+        if (rows == null) {
+            rows = new int[this.capacity];
+            this.skipRows[table] = rows;
+        }
+        rows[this.skipCounts[table]++] = row;
+    }
+
+    private static double snap(double v, double low, double high) {
+        if (Math.abs(v - low) <= SNAP) {
+            return low;
+        }
+        if (Math.abs(v - high) <= SNAP) {
+            return high;
+        }
+        return v;
+    }
+
+    /**
+     * Returns the number of contacts found by the last prediction.
+     *
+     * @return the contact count
+     */
+    public int getContactCount() {
+        return this.contactCount;
+    }
+
+    /**
+     * Returns the x-coordinate of a contact point.
+     *
+     * @param i the contact index, in the order they happen
+     * @return the x-coordinate
+     */
+    public double getContactX(int i) {
+        return this.contactX[i];
+    }
+
+    /**
+     * Returns the y-coordinate of a contact point.
+     *
+     * @param i the contact index, in the order they happen
+     * @return the y-coordinate
+     */
+    public double getContactY(int i) {
+        return this.contactY[i];
+    }
+
+    /**
+     * Returns the frame, counted from 1 for the next one, in which a contact happens.
+     *
+     * @param i the contact index, in the order they happen
+     * @return the frame of the contact
+     */
+    public int getContactFrame(int i) {
+        return this.contactFrame[i];
+    }
+
+    /**
+     * Returns the object hit in a contact, if it is not a block stored in
+     * a table; such blocks are named by {@link #getContactTable(int)} and
+     * {@link #getContactRow(int)}, so a prediction never takes a view.
+     *
+     * @param i the contact index, in the order they happen
+     * @return the collidable hit, or null for a block of a table
+     */
+    public Collidable getContactCollidable(int i) {
+        return this.contactObject[i];
+    }
+
+    /**
+     * Returns the table of the block hit in a contact.
+     *
+     * @param i the contact index, in the order they happen
+     * @return the table, or null if the contact was not with a table's block
+     */
+    public BlockTable getContactTable(int i) {
+        return this.contactObject[i] != null ? null : this.contactTable[i];
+    }
+
+    /**
+     * Returns the row of the block hit in a contact, valid until that
+     * block is removed.
+     *
+     * @param i the contact index, in the order they happen
+     * @return the row, or -1 if the contact was not with a table's block
+     */
+    public int getContactRow(int i) {
+        return this.contactObject[i] != null ? -1 : this.contactRow[i];
+    }
+
+    /**
+     * Returns the frame, counted from 1, in which the ball crossed the
+     * line of the last prediction.
+     *
+     * @return the frame, or -1 if the ball did not reach the line
+     */
+    public int getLineFrame() {
+        return this.lineFrame;
+    }
+
+    /**
+     * Returns the x-coordinate at which the ball's center crossed the line.
+     *
+     * @return the x-coordinate, or NaN if the ball did not reach the line
+     */
+    public double getLineX() {
+        return this.lineX;
+    }
+
+    /**
+     * Checks whether the last prediction ended with the ball hitting a
+     * block that removes balls.
+     *
+     * @return true if the ball is expected to be lost
+     */
+    public boolean isBallLost() {
+        return this.ballLost;
+    }
+
+    /**
+     * Returns the number of frames the last prediction covered.
+     *
+     * @return the frame count
+     */
+    public int getFrameCount() {
+        return this.frames;
+    }
+
+    /**
+     * Returns the x-coordinate of the ball's center where the prediction ended.
+     *
+     * @return the final x-coordinate
+     */
+    public double getEndX() {
+        return this.endX;
+    }
+
+    /**
+     * Returns the y-coordinate of the ball's center where the prediction ended.
+     *
+     * @return the final y-coordinate
+     */
+    public double getEndY() {
+        return this.endY;
+    }
+
+    /**
+     * Returns the ball's horizontal velocity where the prediction ended.
+     *
+     * @return the final horizontal velocity
+     */
+    public double getEndDx() {
+        return this.endDx;
+    }
+
+    /**
+     * Returns the ball's vertical velocity where the prediction ended.
+     *
+     * @return the final vertical velocity
+     */
+    public double getEndDy() {
+        return this.endDy;
+    }
+}
@@ -88,6 +88,19 @@ public class Velocity {
         double dy = speed * Math.sin(angleRad);
         return new Velocity(dx, dy);
     }
+    /**
+     * Like {@link #fromAngleAndSpeed(double, double)}, but computed with
+     * {@link StrictMath}, so the result is the same on every machine.
+     *
+     * @param angle the direction of movement in degrees.
+     * @param speed the magnitude of the velocity.
+     * @return a new {@code game.Velocity} with the given angle and speed.
+     */
+    public static Velocity fromAngleAndSpeedStrict(double angle, double speed) {
+        double angleRad = StrictMath.toRadians(angle);
+        return new Velocity(speed * StrictMath.cos(angleRad), speed * StrictMath.sin(angleRad));
+    }
+
     /**
      * Returns the speed of this velocity.
      *
@@ -0,0 +1,51 @@
+package game;
+
+import levels.DefaultLevel;
+import render.FrameState;
+import render.ImageDrawSurface;
+
+/**
+ * Plays throwaway games without a display so the just-in-time compiler
+ * has compiled the game's hot paths, such as collision queries, ball
+ * movement, frame writing and drawing, before the first visible frame.
+ *
+ * <p>
+ * The games use the built-in level with an {@link AutoplayController}
+ * that aims imperfectly, so balls reach every part of the collision code.
+ * The code exercised is the same for every level.
+ */
+public final class Warmup {
+    /** Draw every this many ticks; drawing costs more than simulating. */
+    private static final int DRAW_EVERY = 4;
+    private static final double AIM_ERROR = 0.8;
+
+    private Warmup() {
+    }
+
+    /**
+     * Runs games until the given number of ticks has been played.
+     *
+     * @param ticks the total number of ticks to play
+     */
+    public static void run(int ticks) {
+        FrameState frame = new FrameState();
+        ImageDrawSurface surface = new ImageDrawSurface(Game.WIDTH, Game.HEIGHT);
+        int played = 0;
+        for (long seed = 1; played < ticks; seed++) {
+            Game game = new Game();
+            AutoplayController player = new AutoplayController(game, AIM_ERROR, seed);
+            DefaultLevel.emit(game.prepare(null, player));
+            while (played < ticks && game.getRemainingBlocks().getValue() > 0
+                    && game.getRemainingBalls().getValue() > 0) {
+                game.tick();
+                game.writeFrame(frame);
+                if (played % DRAW_EVERY == 0) {
+                    surface.clear();
+                    game.drawFrame(surface);
+                    frame.drawOn(surface);
+                }
+                played++;
+            }
+        }
+    }
+}
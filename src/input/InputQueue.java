@@ -0,0 +1,113 @@
+package input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free queue of timestamped key events for exactly one
+ * producer thread and one consumer thread.
+ *
+ * <p>
+ * Events are stored in primitive ring arrays, so neither side allocates.
+ * The producer publishes an event by advancing the tail after writing
+ * it, and the consumer frees a slot by advancing the head after reading
+ * it; each side only re-reads the other's counter when its cached copy
+ * says the ring is full or empty.
+ */
+public class InputQueue {
+    private final long[] times;
+    private final int[] codes;
+    private final int mask;
+    /** The next slot to read; written by the consumer only. */
+    private final AtomicLong head = new AtomicLong();
+    /** The next slot to write; written by the producer only. */
+    private final AtomicLong tail = new AtomicLong();
+    /** The producer's last view of the head. */
+    private long headCache;
+    /** The consumer's last view of the tail. */
+    private long tailCache;
+
+    /**
+     * Creates an empty queue.
+     *
+     * @param capacity the number of events the queue holds, a power of two
+     */
+    public InputQueue(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.times = new long[capacity];
+        this.codes = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Adds an event. Only the producer thread may call this.
+     *
+     * @param nanos the {@link System#nanoTime()} at which the event happened
+     * @param key   the index of the key
+     * @param down  true if the key was pressed, false if it was released
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean offer(long nanos, int key, boolean down) {
+        long t = this.tail.get();
+        if (t - this.headCache > this.mask) {
+            this.headCache = this.head.get();
+            if (t - this.headCache > this.mask) {
+                return false;
+            }
+        }
+        int slot = (int) t & this.mask;
+        this.times[slot] = nanos;
+        this.codes[slot] = down ? key << 1 | 1 : key << 1;
+        this.tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Checks whether an event is waiting. Only the consumer thread may call this.
+     *
+     * @return true if {@link #peekTime()} and the other peek methods may be called
+     */
+    public boolean hasNext() {
+        long h = this.head.get();
+        if (h < this.tailCache) {
+            return true;
+        }
+        this.tailCache = this.tail.get();
+        return h < this.tailCache;
+    }
+
+    /**
+     * Returns the time of the oldest waiting event.
+     *
+     * @return the event's {@link System#nanoTime()}
+     */
+    public long peekTime() {
+        return this.times[(int) this.head.get() & this.mask];
+    }
+
+    /**
+     * Returns the key index of the oldest waiting event.
+     *
+     * @return the key index
+     */
+    public int peekKey() {
+        return this.codes[(int) this.head.get() & this.mask] >>> 1;
+    }
+
+    /**
+     * Checks whether the oldest waiting event is a key press.
+     *
+     * @return true for a press, false for a release
+     */
+    public boolean peekDown() {
+        return (this.codes[(int) this.head.get() & this.mask] & 1) != 0;
+    }
+
+    /**
+     * Discards the oldest waiting event, freeing its slot for the producer.
+     */
+    public void advance() {
+        this.head.lazySet(this.head.get() + 1);
+    }
+}
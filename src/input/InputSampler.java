@@ -0,0 +1,79 @@
+package input;
+
+import biuoop.KeyboardSensor;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A thread that polls a keyboard sensor far more often than the game
+ * ticks, and turns every change of a key's state into a timestamped event
+ * on an {@link InputQueue}.
+ */
+public class InputSampler extends Thread {
+    private final KeyboardSensor keyboard;
+    private final String[] keys;
+    private final InputQueue queue;
+    private final long periodNanos;
+    private final boolean[] down;
+    private volatile boolean running = true;
+    private volatile long dropped;
+
+    /**
+     * Creates a sampler.
+     *
+     * @param keyboard    the sensor to poll
+     * @param keys        the keys to watch; an event's key is an index into this array
+     * @param queue       the queue events are written to
+     * @param periodNanos the time between two polls
+     */
+    public InputSampler(KeyboardSensor keyboard, String[] keys, InputQueue queue, long periodNanos) {
+        super("input");
+        this.keyboard = keyboard;
+        this.keys = keys.clone();
+        this.queue = queue;
+        this.periodNanos = periodNanos;
+        this.down = new boolean[keys.length];
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        while (this.running) {
+            long now = System.nanoTime();
+            for (int i = 0; i < this.keys.length; i++) {
+                boolean pressed = this.keyboard.isPressed(this.keys[i]);
+                if (pressed != this.down[i]) {
+                    if (this.queue.offer(now, i, pressed)) {
+                        this.down[i] = pressed;
+                    } else {
+                        this.dropped++;
+                    }
+                }
+            }
+            LockSupport.parkNanos(this.periodNanos);
+        }
+    }
+
+    /**
+     * Asks the thread to stop and waits for it to finish.
+     */
+    public void shutdown() {
+        this.running = false;
+        LockSupport.unpark(this);
+        try {
+            join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns how many key changes could not be queued because the queue was full.
+     * A dropped change is seen again at the next poll.
+     *
+     * @return the number of failed offers
+     */
+    public long getDropped() {
+        return this.dropped;
+    }
+}
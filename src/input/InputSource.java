@@ -0,0 +1,18 @@
+package input;
+
+import biuoop.KeyboardSensor;
+
+/**
+ * A keyboard sensor whose state is advanced by the game loop, once per
+ * tick, instead of being read live.
+ */
+public interface InputSource extends KeyboardSensor {
+    /**
+     * Applies all input that belongs to the given tick. Called by the game
+     * before any sprite is told that time passed.
+     *
+     * @param tick  the tick about to be simulated
+     * @param nanos the {@link System#nanoTime()} at which the tick starts
+     */
+    void beginTick(long tick, long nanos);
+}
@@ -0,0 +1,91 @@
+package input;
+
+/**
+ * A keyboard sensor fed by an {@link InputQueue}.
+ *
+ * <p>
+ * At the start of every tick, all events stamped up to the tick's start
+ * are applied in order. A key counts as pressed for a tick if it is held
+ * when the tick starts, or if it went down at any time since the previous
+ * tick began, so a tap shorter than a frame still moves the paddle. The
+ * delay between an event and the tick that applies it is recorded.
+ */
+public class QueuedKeyboardSensor implements InputSource {
+    private final InputQueue queue;
+    private final String[] keys;
+    private final boolean[] down;
+    private final boolean[] tapped;
+    private long events;
+    private long latencySum;
+    private long latencyMax;
+
+    /**
+     * Creates a sensor reading from the given queue.
+     *
+     * @param queue the queue filled by an {@link InputSampler}
+     * @param keys  the keys the sampler watches, in the same order
+     */
+    public QueuedKeyboardSensor(InputQueue queue, String[] keys) {
+        this.queue = queue;
+        this.keys = keys.clone();
+        this.down = new boolean[keys.length];
+        this.tapped = new boolean[keys.length];
+    }
+
+    @Override
+    public void beginTick(long tick, long nanos) {
+        for (int i = 0; i < this.tapped.length; i++) {
+            this.tapped[i] = false;
+        }
+        while (this.queue.hasNext() && this.queue.peekTime() <= nanos) {
+            int key = this.queue.peekKey();
+            boolean pressed = this.queue.peekDown();
+            this.down[key] = pressed;
+            if (pressed) {
+                this.tapped[key] = true;
+            }
+            long latency = nanos - this.queue.peekTime();
+            this.latencySum += latency;
+            this.latencyMax = Math.max(this.latencyMax, latency);
+            this.events++;
+            this.queue.advance();
+        }
+    }
+
+    @Override
+    public boolean isPressed(String key) {
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i].equals(key)) {
+                return this.down[i] || this.tapped[i];
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of events applied so far.
+     *
+     * @return the event count
+     */
+    public long getEventCount() {
+        return this.events;
+    }
+
+    /**
+     * Returns the average delay between an event and the start of the tick that applied it.
+     *
+     * @return the mean input-to-tick latency in nanoseconds, or 0 before any event
+     */
+    public long getMeanLatencyNanos() {
+        return this.events == 0 ? 0 : this.latencySum / this.events;
+    }
+
+    /**
+     * Returns the longest delay between an event and the start of the tick that applied it.
+     *
+     * @return the maximum input-to-tick latency in nanoseconds
+     */
+    public long getMaxLatencyNanos() {
+        return this.latencyMax;
+    }
+}
@@ -0,0 +1,216 @@
+package leaderboard;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The best scores of one level, highest first, keeping at most a fixed
+ * number of entries. Of equal scores, the one submitted first ranks higher.
+ *
+ * <p>
+ * A leaderboard is stored as:
+ * <pre>
+ * int MAGIC, int VERSION, int capacity, int count,
+ * count x (long score, long time, short name length, UTF-8 name), int CRC-32 of everything before it
+ * </pre>
+ * A leaderboard is not thread-safe; {@link LeaderboardStore} guards the
+ * ones it caches.
+ */
+public final class Leaderboard {
+    /** The number of entries the game and the parameter sweep keep per level. */
+    public static final int DEFAULT_CAPACITY = 10;
+    private static final int MAGIC = 0x41524B4C;
+    private static final int VERSION = 1;
+    private static final int MAX_NAME_BYTES = 255;
+
+    private final int capacity;
+    private final long[] scores;
+    private final long[] times;
+    private final String[] names;
+    private int count;
+
+    /**
+     * Creates an empty leaderboard.
+     *
+     * @param capacity the number of entries kept
+     */
+    public Leaderboard(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Leaderboard capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.scores = new long[capacity];
+        this.times = new long[capacity];
+        this.names = new String[capacity];
+    }
+
+    /**
+     * Returns a copy of this leaderboard.
+     *
+     * @return the copy
+     */
+    public Leaderboard copy() {
+        Leaderboard copy = new Leaderboard(this.capacity);
+        System.arraycopy(this.scores, 0, copy.scores, 0, this.count);
+        System.arraycopy(this.times, 0, copy.times, 0, this.count);
+        System.arraycopy(this.names, 0, copy.names, 0, this.count);
+        copy.count = this.count;
+        return copy;
+    }
+
+    /**
+     * Enters a score if it ranks among the kept entries.
+     *
+     * @param name  the player's name
+     * @param score the score
+     * @param time  when the score was made, in milliseconds since the epoch
+     * @return the score's rank from 0, or -1 if it did not make the table
+     */
+    public int submit(String name, long score, long time) {
+        // the first rank whose score is lower; equal scores stay ahead
+        int rank = this.count;
+        while (rank > 0 && this.scores[rank - 1] < score) {
+            rank--;
+        }
+        if (rank == this.capacity) {
+            return -1;
+        }
+        int moved = Math.min(this.count, this.capacity - 1) - rank;
+        System.arraycopy(this.scores, rank, this.scores, rank + 1, moved);
+        System.arraycopy(this.times, rank, this.times, rank + 1, moved);
+        System.arraycopy(this.names, rank, this.names, rank + 1, moved);
+        this.scores[rank] = score;
+        this.times[rank] = time;
+        this.names[rank] = name;
+        this.count = Math.min(this.count + 1, this.capacity);
+        return rank;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the entry count
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Returns the number of entries kept.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the player name of an entry.
+     *
+     * @param rank the entry's rank, from 0
+     * @return the name
+     */
+    public String getName(int rank) {
+        return this.names[rank];
+    }
+
+    /**
+     * Returns the score of an entry.
+     *
+     * @param rank the entry's rank, from 0
+     * @return the score
+     */
+    public long getScore(int rank) {
+        return this.scores[rank];
+    }
+
+    /**
+     * Returns when the score of an entry was made.
+     *
+     * @param rank the entry's rank, from 0
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTime(int rank) {
+        return this.times[rank];
+    }
+
+    /**
+     * Encodes the leaderboard in its stored form.
+     *
+     * @return the bytes
+     */
+    byte[] toBytes() {
+        byte[][] encoded = new byte[this.count][];
+        int size = 20;
+        for (int i = 0; i < this.count; i++) {
+            byte[] name = this.names[i].getBytes(StandardCharsets.UTF_8);
+            encoded[i] = name.length > MAX_NAME_BYTES ? Arrays.copyOf(name, cut(name, MAX_NAME_BYTES)) : name;
+            size += 18 + encoded[i].length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(this.capacity).putInt(this.count);
+        for (int i = 0; i < this.count; i++) {
+            out.putLong(this.scores[i]).putLong(this.times[i]);
+            out.putShort((short) encoded[i].length).put(encoded[i]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), 0, out.position());
+        out.putInt((int) crc.getValue());
+        return out.array();
+    }
+
+    /**
+     * Returns the longest prefix of a UTF-8 string, at most {@code max}
+     * bytes, that does not split a character.
+     */
+    private static int cut(byte[] utf8, int max) {
+        int end = max;
+        // continuation bytes are 10xxxxxx; back up to the start of the character
+        while (end > 0 && (utf8[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Decodes a stored leaderboard, checking its checksum.
+     *
+     * @param bytes    the stored form
+     * @param capacity the number of entries to keep; extra stored entries are dropped
+     * @return the leaderboard
+     * @throws IOException if the bytes are not an intact leaderboard
+     */
+    static Leaderboard fromBytes(byte[] bytes, int capacity) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 4);
+            if (in.getInt() != MAGIC || in.getInt() != VERSION
+                    || in.getInt(bytes.length - 4) != (int) crc.getValue()) {
+                throw new IOException("Not an intact leaderboard of this version");
+            }
+            in.getInt();
+            int stored = in.getInt();
+            Leaderboard board = new Leaderboard(capacity);
+            for (int i = 0; i < stored; i++) {
+                long score = in.getLong();
+                long time = in.getLong();
+                byte[] name = new byte[in.getShort()];
+                in.get(name);
+                if (i < capacity) {
+                    board.scores[i] = score;
+                    board.times[i] = time;
+                    board.names[i] = new String(name, StandardCharsets.UTF_8);
+                    board.count++;
+                }
+            }
+            return board;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Truncated leaderboard", e);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package leaderboard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The leaderboards of all levels, one file per level in a directory,
+ * cached in memory and written by a background thread.
+ *
+ * <p>
+ * {@link #submit} and {@link #top} only touch the cache, so a game ends
+ * without waiting for the disk. The writer wakes up when a leaderboard
+ * changes, waits {@link #BATCH_MILLIS} so that a burst of submissions is
+ * written once, and then writes every changed leaderboard to a temporary
+ * file, forces it to disk, renames it over the old file and forces the
+ * directory, so the rename itself is on disk. The rename is atomic, so
+ * after a crash each file holds either its old or its new table; a file
+ * that fails its checksum anyway is read as empty. Platforms that cannot
+ * open a directory, such as Windows, skip forcing it.
+ *
+ * <p>
+ * All files are read when the store is opened.
+ */
+public class LeaderboardStore {
+    /** How long the writer waits for more submissions before writing. */
+    public static final long BATCH_MILLIS = 100;
+    private static final String SUFFIX = ".board";
+
+    private final Path directory;
+    private final Thread writer;
+    private final int capacity;
+    private final Map<String, Leaderboard> boards = new HashMap<>();
+    private final Set<String> dirty = new LinkedHashSet<>();
+    private boolean running = true;
+    private long submitted;
+    /** The number of submissions that changed a leaderboard. */
+    private long changes;
+    /** The number of those changes on disk. */
+    private long written;
+    private long files;
+    private IOException failure;
+
+    /**
+     * Opens the leaderboards in a directory and starts the writer.
+     *
+     * @param directory the directory holding the leaderboards; it is created if missing
+     * @param capacity  the number of entries kept per level
+     * @throws IOException if the directory cannot be created or listed
+     */
+    public LeaderboardStore(Path directory, int capacity) throws IOException {
+        this.directory = directory;
+        this.capacity = capacity;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                String level = unescape(name.substring(0, name.length() - SUFFIX.length()));
+                try {
+                    this.boards.put(level, Leaderboard.fromBytes(Files.readAllBytes(file), capacity));
+                } catch (IOException e) {
+                    System.err.println("Ignoring unreadable leaderboard " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        this.writer = new Thread(this::writeLoop, "leaderboard-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Enters a score into a level's leaderboard. The change is written in
+     * the background.
+     *
+     * @param level the level's name
+     * @param name  the player's name
+     * @param score the score
+     * @return the score's rank from 0, or -1 if it did not make the table
+     */
+    public synchronized int submit(String level, String name, long score) {
+        Leaderboard board = this.boards.computeIfAbsent(level, l -> new Leaderboard(this.capacity));
+        int rank = board.submit(name, score, System.currentTimeMillis());
+        this.submitted++;
+        if (rank >= 0) {
+            this.changes++;
+            if (this.dirty.add(level)) {
+                notifyAll();
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Returns a copy of a level's leaderboard.
+     *
+     * @param level the level's name
+     * @return the leaderboard, empty if no score was entered yet
+     */
+    public synchronized Leaderboard top(String level) {
+        Leaderboard board = this.boards.get(level);
+        return board == null ? new Leaderboard(this.capacity) : board.copy();
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Map<String, byte[]> batch = new HashMap<>();
+            long through;
+            synchronized (this) {
+                while (this.running && this.dirty.isEmpty()) {
+                    waitQuietly(0);
+                }
+                if (this.running) {
+                    waitQuietly(BATCH_MILLIS);
+                }
+                if (!this.running && this.dirty.isEmpty()) {
+                    notifyAll();
+                    return;
+                }
+                for (String level : this.dirty) {
+                    batch.put(level, this.boards.get(level).toBytes());
+                }
+                this.dirty.clear();
+                through = this.changes;
+            }
+            IOException error = null;
+            for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+                try {
+                    write(entry.getKey(), entry.getValue());
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            synchronized (this) {
+                this.files += batch.size();
+                this.written = through;
+                if (error != null) {
+                    this.failure = error;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void waitQuietly(long millis) {
+        try {
+            wait(millis);
+        } catch (InterruptedException e) {
+            // shutdown() is the way to stop the writer
+        }
+    }
+
+    private void write(String level, byte[] bytes) throws IOException {
+        Path target = this.directory.resolve(escape(level) + SUFFIX);
+        Path temp = this.directory.resolve(escape(level) + SUFFIX + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+    }
+
+    private void forceDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(this.directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // directories cannot be opened on Windows, which orders the rename itself
+            return;
+        }
+        try (FileChannel dir = channel) {
+            dir.force(true);
+        }
+    }
+
+    /**
+     * Waits until every score submitted so far is on disk.
+     *
+     * @throws IOException if writing a leaderboard failed
+     */
+    public synchronized void flush() throws IOException {
+        long target = this.changes;
+        while (this.written < target && this.writer.isAlive()) {
+            notifyAll();
+            waitQuietly(0);
+        }
+        if (this.failure != null) {
+            IOException e = this.failure;
+            this.failure = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Writes what is left and stops the writer.
+     *
+     * @throws IOException if writing a leaderboard failed
+     */
+    public void shutdown() throws IOException {
+        synchronized (this) {
+            this.running = false;
+            notifyAll();
+        }
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (this.failure != null) {
+                throw this.failure;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of scores submitted.
+     *
+     * @return the submission count
+     */
+    public synchronized long getSubmitted() {
+        return this.submitted;
+    }
+
+    /**
+     * Returns the number of leaderboard files written.
+     *
+     * @return the write count
+     */
+    public synchronized long getFilesWritten() {
+        return this.files;
+    }
+
+    /**
+     * Turns a level name into a file name: letters, digits, {@code -} and
+     * {@code _} are kept and every other character becomes {@code %} and
+     * four hex digits.
+     */
+    private static String escape(String level) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < level.length(); i++) {
+            char c = level.charAt(i);
+            if (Character.isLetterOrDigit(c) && c < 128 || c == '-' || c == '_') {
+                b.append(c);
+            } else {
+                b.append('%').append(String.format("%04x", (int) c));
+            }
+        }
+        return b.toString();
+    }
+
+    private static String unescape(String name) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '%' && i + 4 < name.length()) {
+                b.append((char) Integer.parseInt(name.substring(i + 1, i + 5), 16));
+                i += 4;
+            } else {
+                b.append(c);
+            }
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package levels;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link LevelBuilder} that writes the level it receives in the binary
+ * format described in {@link LevelFormat}. Feeding it from a
+ * {@link LevelReader} converts a text level into a binary one.
+ */
+public class BinaryLevelWriter implements LevelBuilder, Closeable {
+    private final DataOutputStream out;
+
+    /**
+     * Creates a writer and writes the file header.
+     *
+     * @param stream where the level is written; closed with this writer
+     * @throws IOException if the header cannot be written
+     */
+    public BinaryLevelWriter(OutputStream stream) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        this.out.writeInt(LevelFormat.MAGIC);
+        this.out.writeShort(LevelFormat.VERSION);
+    }
+
+    @Override
+    public void name(String name) {
+        try {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            this.out.writeByte(LevelFormat.TAG_NAME);
+            this.out.writeShort(bytes.length);
+            this.out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void block(double x, double y, double width, double height, Color color, int listeners) {
+        try {
+            this.out.writeByte(LevelFormat.TAG_BLOCK);
+            this.out.writeFloat((float) x);
+            this.out.writeFloat((float) y);
+            this.out.writeFloat((float) width);
+            this.out.writeFloat((float) height);
+            this.out.writeInt(color.getRGB() & 0xFFFFFF);
+            this.out.writeByte(listeners);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void paddle(double x, double y, double width, double height, Color color, int speed) {
+        try {
+            this.out.writeByte(LevelFormat.TAG_PADDLE);
+            this.out.writeFloat((float) x);
+            this.out.writeFloat((float) y);
+            this.out.writeFloat((float) width);
+            this.out.writeFloat((float) height);
+            this.out.writeInt(color.getRGB() & 0xFFFFFF);
+            this.out.writeInt(speed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void ball(double x, double y, int r, Color color, double dx, double dy) {
+        try {
+            this.out.writeByte(LevelFormat.TAG_BALL);
+            this.out.writeFloat((float) x);
+            this.out.writeFloat((float) y);
+            this.out.writeInt(r);
+            this.out.writeInt(color.getRGB() & 0xFFFFFF);
+            this.out.writeDouble(dx);
+            this.out.writeDouble(dy);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the end record and closes the stream.
+     *
+     * @throws IOException if the stream cannot be flushed or closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.out.writeByte(LevelFormat.TAG_END);
+        this.out.close();
+    }
+}
@@ -0,0 +1,66 @@
+package levels;
+
+import java.awt.Color;
+
+/**
+ * The built-in level: gray borders, an orange death region, the paddle,
+ * a staircase of six colored block rows and three balls.
+ */
+public final class DefaultLevel {
+    /** The width of the playfield. */
+    public static final int WIDTH = 800;
+    /** The height of the playfield. */
+    public static final int HEIGHT = 600;
+
+    private DefaultLevel() {
+    }
+
+    /**
+     * Sends the built-in level to the given builder.
+     *
+     * @param builder the builder receiving the level
+     */
+    public static void emit(LevelBuilder builder) {
+        builder.name("default");
+        //Creating side borders
+        int borderThickness = 10;
+        builder.block(0, 0, WIDTH, borderThickness, Color.GRAY, 0);
+        builder.block(0, borderThickness, borderThickness, HEIGHT - borderThickness, Color.GRAY, 0);
+        builder.block(WIDTH - borderThickness, borderThickness,
+                borderThickness, HEIGHT - borderThickness, Color.GRAY, 0);
+        builder.block(0, HEIGHT - borderThickness + 5, WIDTH, borderThickness,
+                Color.ORANGE, LevelBuilder.REMOVE_BALL);
+
+        //Creating paddle
+        builder.paddle(350, 560, 150, 20, Color.ORANGE, 7);
+
+        //creating the staircase of blocks
+        int blockWidth = 50;
+        int blockHeight = 20;
+        int rows = 6;
+        int cols = 12;
+        int startY = 100;
+        Color[] rowColors = {
+                Color.GRAY,
+                Color.RED,
+                Color.YELLOW,
+                Color.BLUE,
+                Color.PINK,
+                Color.GREEN
+        };
+        for (int row = 0; row < rows; row++) {
+            int colsInRow = cols - row;
+            int rowStartX = WIDTH - borderThickness - colsInRow * blockWidth;
+            for (int col = 0; col < colsInRow; col++) {
+                int x = rowStartX + col * blockWidth;
+                int y = startY + row * blockHeight;
+                builder.block(x, y, blockWidth, blockHeight, rowColors[row],
+                        LevelBuilder.REMOVE_ON_HIT | LevelBuilder.SCORE_ON_HIT);
+            }
+        }
+        //Adding balls
+        builder.ball(400, 500, 7, Color.RED, 3, -4);
+        builder.ball(300, 450, 7, Color.WHITE, -3, -5);
+        builder.ball(100, 450, 7, Color.PINK, -3, -5);
+    }
+}
@@ -0,0 +1,60 @@
+package levels;
+
+import java.awt.Color;
+
+/**
+ * Receives the parts of a level one at a time, as a level file is read.
+ *
+ * <p>
+ * Readers call these methods while they stream through a file, so a
+ * builder can create game objects directly without the whole level
+ * ever being held in memory.
+ */
+public interface LevelBuilder {
+    /** Listener flag: the block is removed when hit. */
+    int REMOVE_ON_HIT = 1;
+    /** Listener flag: hitting the block scores points. */
+    int SCORE_ON_HIT = 2;
+    /** Listener flag: a ball hitting the block is removed (the death region). */
+    int REMOVE_BALL = 4;
+
+    /**
+     * Called once, before any other part, with the level's name.
+     *
+     * @param name the level name
+     */
+    void name(String name);
+    /**
+     * Called for every block, including borders and the death region.
+     *
+     * @param x         the x-coordinate of the upper-left corner
+     * @param y         the y-coordinate of the upper-left corner
+     * @param width     the block width
+     * @param height    the block height
+     * @param color     the block color
+     * @param listeners a combination of the listener flags
+     */
+    void block(double x, double y, double width, double height, Color color, int listeners);
+    /**
+     * Called for the paddle.
+     *
+     * @param x      the x-coordinate of the upper-left corner
+     * @param y      the y-coordinate of the upper-left corner
+     * @param width  the paddle width
+     * @param height the paddle height
+     * @param color  the paddle color
+     * @param speed  the paddle speed per frame
+     */
+    void paddle(double x, double y, double width, double height, Color color, int speed);
+    /**
+     * Called for every ball.
+     *
+     * @param x     the x-coordinate of the center
+     * @param y     the y-coordinate of the center
+     * @param r     the radius
+     * @param color the ball color
+     * @param dx    the horizontal velocity
+     * @param dy    the vertical velocity
+     */
+    void ball(double x, double y, int r, Color color, double dx, double dy);
+}
@@ -0,0 +1,55 @@
+package levels;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command-line tool that converts levels between the text and binary formats.
+ *
+ * <pre>
+ * java levels.LevelCompiler IN OUT          convert IN (text or binary) to binary OUT
+ * java levels.LevelCompiler --text IN OUT   convert IN (text or binary) to text OUT
+ * java levels.LevelCompiler --default OUT   write the built-in level to binary OUT
+ * </pre>
+ */
+public final class LevelCompiler {
+    private LevelCompiler() {
+    }
+
+    /**
+     * Runs the converter.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        boolean text = args.length == 3 && args[0].equals("--text");
+        boolean builtIn = args.length == 2 && args[0].equals("--default");
+        if (!text && !builtIn && args.length != 2) {
+            System.err.println("usage: LevelCompiler [--text] IN OUT | --default OUT");
+            System.exit(2);
+        }
+        Path out = Paths.get(args[args.length - 1]);
+        try (OutputStream stream = Files.newOutputStream(out)) {
+            if (text) {
+                try (TextLevelWriter writer = new TextLevelWriter(stream)) {
+                    LevelReader.read(Paths.get(args[1]), writer);
+                }
+            } else {
+                try (BinaryLevelWriter writer = new BinaryLevelWriter(stream)) {
+                    if (builtIn) {
+                        DefaultLevel.emit(writer);
+                    } else {
+                        LevelReader.read(Paths.get(args[0]), writer);
+                    }
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
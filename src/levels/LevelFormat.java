@@ -0,0 +1,113 @@
+package levels;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Constants and helpers shared by the level readers and writers.
+ *
+ * <p>
+ * <b>Text format</b>: one part per line, fields separated by spaces,
+ * {@code #} starts a comment.
+ * <pre>
+ * level   NAME
+ * block   X Y W H COLOR [remover] [score] [ball-remover]
+ * paddle  X Y W H COLOR SPEED
+ * ball    X Y R COLOR DX DY
+ * </pre>
+ * A color is a name ({@code red}, {@code gray}, ...) or {@code #rrggbb}.
+ *
+ * <p>
+ * <b>Binary format</b>: the magic number and version, then a sequence of
+ * big-endian records, each starting with a one-byte tag:
+ * <pre>
+ * 'N' u16 length, UTF-8 bytes                      level name
+ * 'B' f32 x, y, w, h, i32 rgb, u8 listener flags   block
+ * 'P' f32 x, y, w, h, i32 rgb, i32 speed           paddle
+ * 'L' f32 x, y, i32 r, i32 rgb, f64 dx, dy         ball
+ * 'E'                                              end of level
+ * </pre>
+ */
+public final class LevelFormat {
+    /** The first four bytes of a binary level: "ARKL". */
+    public static final int MAGIC = 0x41524B4C;
+    /** The binary format version. */
+    public static final short VERSION = 1;
+    static final byte TAG_NAME = 'N';
+    static final byte TAG_BLOCK = 'B';
+    static final byte TAG_PADDLE = 'P';
+    static final byte TAG_BALL = 'L';
+    static final byte TAG_END = 'E';
+    static final int BLOCK_BYTES = 4 * 4 + 4 + 1;
+    static final int PADDLE_BYTES = 4 * 4 + 4 + 4;
+    static final int BALL_BYTES = 4 * 2 + 4 + 4 + 8 * 2;
+
+    private static final Map<String, Color> NAMED = new HashMap<>();
+    private static final Map<Integer, String> NAMES = new HashMap<>();
+
+    static {
+        named("black", Color.BLACK);
+        named("blue", Color.BLUE);
+        named("cyan", Color.CYAN);
+        named("gray", Color.GRAY);
+        named("green", Color.GREEN);
+        named("lightgray", Color.LIGHT_GRAY);
+        named("magenta", Color.MAGENTA);
+        named("orange", Color.ORANGE);
+        named("pink", Color.PINK);
+        named("red", Color.RED);
+        named("white", Color.WHITE);
+        named("yellow", Color.YELLOW);
+    }
+
+    private LevelFormat() {
+    }
+
+    private static void named(String name, Color color) {
+        NAMED.put(name, color);
+        NAMES.put(color.getRGB() & 0xFFFFFF, name);
+    }
+
+    /**
+     * Parses a color name or {@code #rrggbb} value.
+     *
+     * @param token the color text
+     * @return the color
+     * @throws IllegalArgumentException if the text is not a known color
+     */
+    static Color parseColor(String token) {
+        Color c = NAMED.get(token);
+        if (c != null) {
+            return c;
+        }
+        if (token.length() == 7 && token.charAt(0) == '#') {
+            return color(Integer.parseInt(token.substring(1), 16));
+        }
+        throw new IllegalArgumentException("Unknown color: " + token);
+    }
+
+    /**
+     * Formats a color as its name, or as {@code #rrggbb} if it has none.
+     *
+     * @param color the color
+     * @return the color text
+     */
+    static String formatColor(Color color) {
+        int rgb = color.getRGB() & 0xFFFFFF;
+        String name = NAMES.get(rgb);
+        return name != null ? name : String.format("#%06x", rgb);
+    }
+
+    /**
+     * Returns a color for the given RGB value, reusing the standard
+     * color objects where possible so large levels share them.
+     *
+     * @param rgb the 24-bit RGB value
+     * @return the color
+     */
+    static Color color(int rgb) {
+        String name = NAMES.get(rgb & 0xFFFFFF);
+        return name != null ? NAMED.get(name) : new Color(rgb & 0xFFFFFF);
+    }
+}
@@ -0,0 +1,273 @@
+package levels;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams a level file into a {@link LevelBuilder}.
+ *
+ * <p>
+ * Both formats described in {@link LevelFormat} are read in fixed-size
+ * chunks, one part at a time, so memory use does not depend on the size
+ * of the level. The format is detected from the first bytes of the file.
+ */
+public final class LevelReader {
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final Map<Integer, Color> colors = new HashMap<>();
+    private int lastRgb = -1;
+    private Color lastColor;
+
+    private LevelReader() {
+    }
+
+    /**
+     * Reads the level file at the given path.
+     *
+     * @param path    the level file, text or binary
+     * @param builder the builder receiving the level
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static void read(Path path, LevelBuilder builder) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4);
+            while (head.hasRemaining() && channel.read(head) >= 0) {
+                continue;
+            }
+            channel.position(0);
+            boolean binary = !head.hasRemaining() && head.getInt(0) == LevelFormat.MAGIC;
+            LevelReader reader = new LevelReader();
+            if (binary) {
+                reader.streamBinary(channel, builder);
+            } else {
+                reader.streamText(Channels.newInputStream(channel), builder);
+            }
+        }
+    }
+
+    /**
+     * Reads a binary level from the given channel.
+     *
+     * @param channel the channel positioned at the magic number
+     * @param builder the builder receiving the level
+     * @throws IOException if the data cannot be read or is malformed
+     */
+    public static void readBinary(ReadableByteChannel channel, LevelBuilder builder) throws IOException {
+        new LevelReader().streamBinary(channel, builder);
+    }
+
+    /**
+     * Reads a text level from the given stream.
+     *
+     * @param in      the text input, in UTF-8
+     * @param builder the builder receiving the level
+     * @throws IOException if the text cannot be read or is malformed
+     */
+    public static void readText(InputStream in, LevelBuilder builder) throws IOException {
+        new LevelReader().streamText(in, builder);
+    }
+
+    private void streamBinary(ReadableByteChannel channel, LevelBuilder builder) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(CHUNK_SIZE);
+        buf.flip();
+        require(channel, buf, 6);
+        if (buf.getInt() != LevelFormat.MAGIC) {
+            throw new IOException("Not a binary level file");
+        }
+        short version = buf.getShort();
+        if (version != LevelFormat.VERSION) {
+            throw new IOException("Unsupported level version " + version);
+        }
+        while (true) {
+            require(channel, buf, 1);
+            byte tag = buf.get();
+            switch (tag) {
+                case LevelFormat.TAG_BLOCK:
+                    require(channel, buf, LevelFormat.BLOCK_BYTES);
+                    builder.block(buf.getFloat(), buf.getFloat(), buf.getFloat(), buf.getFloat(),
+                            color(buf.getInt()), buf.get());
+                    break;
+                case LevelFormat.TAG_BALL:
+                    require(channel, buf, LevelFormat.BALL_BYTES);
+                    builder.ball(buf.getFloat(), buf.getFloat(), buf.getInt(), color(buf.getInt()),
+                            buf.getDouble(), buf.getDouble());
+                    break;
+                case LevelFormat.TAG_PADDLE:
+                    require(channel, buf, LevelFormat.PADDLE_BYTES);
+                    builder.paddle(buf.getFloat(), buf.getFloat(), buf.getFloat(), buf.getFloat(),
+                            color(buf.getInt()), buf.getInt());
+                    break;
+                case LevelFormat.TAG_NAME:
+                    require(channel, buf, 2);
+                    int length = buf.getShort() & 0xFFFF;
+                    require(channel, buf, length);
+                    byte[] bytes = new byte[length];
+                    buf.get(bytes);
+                    builder.name(new String(bytes, StandardCharsets.UTF_8));
+                    break;
+                case LevelFormat.TAG_END:
+                    return;
+                default:
+                    throw new IOException("Unknown record tag " + tag);
+            }
+        }
+    }
+
+    /**
+     * Makes sure at least {@code n} unread bytes are in the buffer,
+     * moving leftovers to the front and reading the next chunk if needed.
+     */
+    private static void require(ReadableByteChannel channel, ByteBuffer buf, int n) throws IOException {
+        if (buf.remaining() >= n) {
+            return;
+        }
+        buf.compact();
+        while (buf.position() < n) {
+            if (channel.read(buf) < 0) {
+                throw new EOFException("Level file ends in the middle of a record");
+            }
+        }
+        buf.flip();
+    }
+
+    private void streamText(InputStream in, LevelBuilder builder) throws IOException {
+        BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), CHUNK_SIZE);
+        String[] tokens = new String[16];
+        int lineNumber = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            int count = tokenize(line, tokens);
+            if (count == 0) {
+                continue;
+            }
+            try {
+                parseLine(tokens, count, builder);
+            } catch (RuntimeException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void parseLine(String[] t, int count, LevelBuilder builder) {
+        switch (t[0]) {
+            case "level":
+                expect(t, count, 2);
+                builder.name(t[1]);
+                break;
+            case "block":
+                expectAtLeast(t, count, 6);
+                int listeners = 0;
+                for (int i = 6; i < count; i++) {
+                    listeners |= listenerFlag(t[i]);
+                }
+                builder.block(num(t[1]), num(t[2]), num(t[3]), num(t[4]), parseColor(t[5]), listeners);
+                break;
+            case "paddle":
+                expect(t, count, 7);
+                builder.paddle(num(t[1]), num(t[2]), num(t[3]), num(t[4]), parseColor(t[5]),
+                        Integer.parseInt(t[6]));
+                break;
+            case "ball":
+                expect(t, count, 7);
+                builder.ball(num(t[1]), num(t[2]), Integer.parseInt(t[3]), parseColor(t[4]),
+                        num(t[5]), num(t[6]));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown entry '" + t[0] + "'");
+        }
+    }
+
+    private static int listenerFlag(String token) {
+        switch (token) {
+            case "remover":
+                return LevelBuilder.REMOVE_ON_HIT;
+            case "score":
+                return LevelBuilder.SCORE_ON_HIT;
+            case "ball-remover":
+                return LevelBuilder.REMOVE_BALL;
+            default:
+                throw new IllegalArgumentException("Unknown listener '" + token + "'");
+        }
+    }
+
+    private static void expect(String[] t, int count, int n) {
+        if (count != n) {
+            throw new IllegalArgumentException("'" + t[0] + "' takes " + (n - 1) + " values");
+        }
+    }
+
+    private static void expectAtLeast(String[] t, int count, int n) {
+        if (count < n) {
+            throw new IllegalArgumentException("'" + t[0] + "' takes at least " + (n - 1) + " values");
+        }
+    }
+
+    private static double num(String token) {
+        return Double.parseDouble(token);
+    }
+
+    /**
+     * Splits a line on spaces and tabs, ignoring anything after {@code #}.
+     *
+     * @return the number of tokens stored
+     */
+    private static int tokenize(String line, String[] out) {
+        int count = 0;
+        int n = line.length();
+        int i = 0;
+        while (i < n) {
+            char c = line.charAt(i);
+            if (c == '#') {
+                break;
+            }
+            if (c == ' ' || c == '\t') {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < n && line.charAt(i) != ' ' && line.charAt(i) != '\t' && line.charAt(i) != '#') {
+                i++;
+            }
+            if (count == out.length) {
+                throw new IllegalArgumentException("Too many values on one line");
+            }
+            out[count++] = line.substring(start, i);
+        }
+        return count;
+    }
+
+    private Color parseColor(String token) {
+        if (token.length() == 7 && token.charAt(0) == '#') {
+            return color(Integer.parseInt(token.substring(1), 16));
+        }
+        return LevelFormat.parseColor(token);
+    }
+
+    private Color color(int rgb) {
+        if (rgb == this.lastRgb) {
+            return this.lastColor;
+        }
+        Color c = this.colors.get(rgb);
+        if (c == null) {
+            c = LevelFormat.color(rgb);
+            this.colors.put(rgb, c);
+        }
+        this.lastRgb = rgb;
+        this.lastColor = c;
+        return c;
+    }
+}
@@ -0,0 +1,81 @@
+package levels;
+
+import java.awt.Color;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link LevelBuilder} that writes the level it receives in the text
+ * format described in {@link LevelFormat}.
+ */
+public class TextLevelWriter implements LevelBuilder, Closeable {
+    private final Writer out;
+
+    /**
+     * Creates a writer.
+     *
+     * @param stream where the level is written; closed with this writer
+     */
+    public TextLevelWriter(OutputStream stream) {
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    @Override
+    public void name(String name) {
+        line("level " + name);
+    }
+
+    @Override
+    public void block(double x, double y, double width, double height, Color color, int listeners) {
+        StringBuilder sb = new StringBuilder("block ");
+        sb.append(num(x)).append(' ').append(num(y)).append(' ')
+                .append(num(width)).append(' ').append(num(height)).append(' ')
+                .append(LevelFormat.formatColor(color));
+        if ((listeners & REMOVE_ON_HIT) != 0) {
+            sb.append(" remover");
+        }
+        if ((listeners & SCORE_ON_HIT) != 0) {
+            sb.append(" score");
+        }
+        if ((listeners & REMOVE_BALL) != 0) {
+            sb.append(" ball-remover");
+        }
+        line(sb.toString());
+    }
+
+    @Override
+    public void paddle(double x, double y, double width, double height, Color color, int speed) {
+        line("paddle " + num(x) + " " + num(y) + " " + num(width) + " " + num(height) + " "
+                + LevelFormat.formatColor(color) + " " + speed);
+    }
+
+    @Override
+    public void ball(double x, double y, int r, Color color, double dx, double dy) {
+        line("ball " + num(x) + " " + num(y) + " " + r + " " + LevelFormat.formatColor(color) + " "
+                + num(dx) + " " + num(dy));
+    }
+
+    private static String num(double v) {
+        return v == Math.rint(v) && Math.abs(v) < 1e15 ? Long.toString((long) v) : Double.toString(v);
+    }
+
+    private void line(String text) {
+        try {
+            this.out.write(text);
+            this.out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+}
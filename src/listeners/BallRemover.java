@@ -1,5 +1,6 @@
 package listeners;
 
+import eventlog.EventLog;
 import game.Ball;
 import game.Block;
 import game.Game;
@@ -24,7 +25,14 @@ public class BallRemover implements HitListener {
     }
     @Override
     public void hitEvent(Block beingHit, Ball hitter) {
+        // the ball's id is gone once it is removed
+        int ballId = hitter.getId();
         hitter.removeFromGame(this.game);
         this.remainingBalls.decrease(1);
+        EventLog log = this.game.getEventLog();
+        if (log != null) {
+            log.append(EventLog.BALL_LOST, this.game.getTick(), ballId, beingHit.getId(),
+                    this.remainingBalls.getValue());
+        }
     }
 }
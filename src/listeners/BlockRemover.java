@@ -1,9 +1,11 @@
 package listeners;
 
+import eventlog.EventLog;
 import game.Ball;
 import game.Block;
 import game.Game;
 import game.Counter;
+import game.ParticleSystem;
 
 /**
  * A HitListener that removes blocks from the game
@@ -25,9 +27,20 @@ public class BlockRemover implements HitListener {
 
     @Override
     public void hitEvent(Block beingHit, Ball hitter) {
+        // the block's id is gone once it is removed
+        int blockId = beingHit.getId();
         hitter.setColor(beingHit.getColor());
         beingHit.removeHitListener(this);
+        ParticleSystem particles = this.game.getParticles();
+        if (particles != null) {
+            particles.burst(beingHit);
+        }
         beingHit.removeFromGame(this.game);
         this.remainingBlocks.decrease(1);
+        EventLog log = this.game.getEventLog();
+        if (log != null) {
+            log.append(EventLog.BLOCK_HIT, this.game.getTick(), blockId, hitter.getId(),
+                    this.remainingBlocks.getValue());
+        }
     }
 }
@@ -0,0 +1,174 @@
+package net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+/**
+ * One client of a {@link GameServer}: its socket, the bytes read from it
+ * and the packets waiting to be written to it.
+ */
+final class Connection {
+    private static final int READ_BUFFER = 4096;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final int player;
+    private final ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER);
+    private final ArrayDeque<Packet> out = new ArrayDeque<>();
+    /** How much of the first queued packet was already written. */
+    private int written;
+    private boolean closed;
+    /** Whether deltas are being skipped until the next keyframe. */
+    private boolean waiting = true;
+    /** Keyframes sent while packets from before them were still queued. */
+    private int stalls;
+    /** The latest tick the client applied, or the keyframe it was last sent. */
+    private long acked;
+
+    Connection(SocketChannel channel, SelectionKey key, int player, long tick) {
+        this.channel = channel;
+        this.key = key;
+        this.player = player;
+        this.acked = tick;
+    }
+
+    int getPlayer() {
+        return this.player;
+    }
+
+    boolean isClosed() {
+        return this.closed;
+    }
+
+    int getQueued() {
+        return this.out.size();
+    }
+
+    boolean isWaitingForKeyframe() {
+        return this.waiting;
+    }
+
+    int getStalls() {
+        return this.stalls;
+    }
+
+    /**
+     * Records the tick of the last state the client reports it applied.
+     */
+    void acknowledge(long tick) {
+        this.acked = Math.max(this.acked, tick);
+    }
+
+    /**
+     * Returns how many ticks the client is behind. Unlike the send queue,
+     * this also counts the packets waiting in the socket's buffers.
+     */
+    long getLag(long now) {
+        return now - this.acked;
+    }
+
+    /**
+     * Drops every queued packet the peer has not started to receive, and
+     * waits for the next keyframe to catch up. A packet that is partly
+     * written is kept, so the stream stays framed.
+     */
+    void skipToKeyframe() {
+        Packet partial = this.written > 0 ? this.out.pollFirst() : null;
+        while (!this.out.isEmpty()) {
+            this.out.pollFirst().release();
+        }
+        if (partial != null) {
+            this.out.addFirst(partial);
+        }
+        this.waiting = true;
+    }
+
+    /**
+     * Queues a keyframe for a connection waiting for one, and resumes
+     * deltas. The client's lag is counted again from the keyframe.
+     */
+    void sendKeyframe(Packet p, long tick) throws IOException {
+        this.stalls = this.out.isEmpty() ? 0 : this.stalls + 1;
+        this.waiting = false;
+        this.acked = Math.max(this.acked, tick);
+        send(p);
+    }
+
+    /**
+     * Queues a packet, taking a reference to it, and writes as much as the
+     * socket accepts.
+     */
+    void send(Packet p) throws IOException {
+        p.retain();
+        this.out.addLast(p);
+        flush();
+    }
+
+    /**
+     * Writes queued packets until the socket would block, and asks the
+     * selector for write readiness if anything is left.
+     */
+    void flush() throws IOException {
+        while (!this.out.isEmpty()) {
+            Packet p = this.out.peekFirst();
+            ByteBuffer b = p.buffer();
+            // the buffer is shared with other connections; only this loop moves its bounds
+            b.limit(p.length());
+            b.position(this.written);
+            this.channel.write(b);
+            this.written = b.position();
+            if (this.written < p.length()) {
+                this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            this.out.pollFirst();
+            this.written = 0;
+            p.release();
+        }
+        this.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Reads what is available and returns the buffer in read mode, holding
+     * zero or more complete frames. Call {@link #consumed()} after taking them.
+     *
+     * @return the input buffer, or null if the peer closed the connection
+     */
+    ByteBuffer read() throws IOException {
+        if (this.channel.read(this.in) < 0) {
+            return null;
+        }
+        this.in.flip();
+        return this.in;
+    }
+
+    /**
+     * Keeps the unread bytes of the input buffer for the next read.
+     */
+    void consumed() {
+        this.in.compact();
+    }
+
+    /**
+     * Closes the socket and releases every queued packet.
+     */
+    void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.key.cancel();
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            // already gone
+        }
+        while (!this.out.isEmpty()) {
+            this.out.pollFirst().release();
+        }
+        this.written = 0;
+    }
+}
@@ -0,0 +1,281 @@
+package net;
+
+import biuoop.DrawSurface;
+import biuoop.KeyboardSensor;
+import game.Game;
+import game.IdleKeyboardSensor;
+import render.Display;
+import render.FrameState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * Connects to a {@link GameServer}, keeps a {@link RemoteWorld} copy of
+ * its game up to date, shows it, and sends the local player's keys.
+ */
+public class GameClient implements Closeable {
+    private static final int READ_BUFFER = 64 * 1024;
+    private static final long WELCOME_TIMEOUT_MILLIS = 5000;
+    private static final long POLL_MILLIS = 2;
+    /** Ticks applied between acknowledgements sent without a key change. */
+    static final int ACK_TICKS = 4;
+
+    private final SocketChannel channel;
+    private final Selector selector;
+    private ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(32);
+    private int player = Integer.MIN_VALUE;
+    private int playerCount;
+    private RemoteWorld world;
+    private boolean ended;
+    private boolean closed;
+    private int finalScore;
+    private int keys;
+    /** The tick the server was last told this client applied. */
+    private long ackedTick = -1;
+    private long bytesReceived;
+
+    private GameClient(SocketChannel channel, Selector selector) {
+        this.channel = channel;
+        this.selector = selector;
+    }
+
+    /**
+     * Connects to a server and waits for its welcome.
+     *
+     * @param address the server's address
+     * @return a connected client
+     * @throws IOException if the connection fails or no welcome arrives
+     */
+    public static GameClient connect(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.socket().setTcpNoDelay(true);
+        channel.configureBlocking(false);
+        Selector selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        GameClient client = new GameClient(channel, selector);
+        long deadline = System.currentTimeMillis() + WELCOME_TIMEOUT_MILLIS;
+        while (client.player == Integer.MIN_VALUE) {
+            if (client.closed || System.currentTimeMillis() > deadline) {
+                client.close();
+                throw new IOException("No welcome from " + address);
+            }
+            client.poll(POLL_MILLIS);
+        }
+        return client;
+    }
+
+    /**
+     * Builds the local copy of the level the server plays. Messages that
+     * arrive before this are kept until it is called.
+     *
+     * @param level the same level file the server uses, or null for the built-in level
+     * @throws IOException if the level cannot be read
+     */
+    public void start(Path level) throws IOException {
+        KeyboardSensor[] idle = new KeyboardSensor[this.playerCount];
+        for (int i = 0; i < idle.length; i++) {
+            idle[i] = new IdleKeyboardSensor();
+        }
+        Game local = new Game();
+        local.initialize(null, idle, level);
+        FrameState frame = new FrameState();
+        local.writeFrame(frame);
+        this.world = new RemoteWorld(frame);
+    }
+
+    /**
+     * Waits up to the given time for data and applies every complete message.
+     *
+     * @param timeoutMillis the longest time to wait; zero or less does not wait
+     * @return true if the world changed
+     * @throws IOException if reading fails
+     */
+    public boolean poll(long timeoutMillis) throws IOException {
+        if (this.closed) {
+            return false;
+        }
+        if (timeoutMillis > 0) {
+            this.selector.select(timeoutMillis);
+        } else {
+            this.selector.selectNow();
+        }
+        this.selector.selectedKeys().clear();
+        int n = this.channel.read(this.in);
+        if (n < 0) {
+            this.closed = true;
+            return false;
+        }
+        this.bytesReceived += n;
+        this.in.flip();
+        boolean changed = false;
+        int length;
+        while ((length = Protocol.completeFrame(this.in)) >= 0) {
+            int start = this.in.position();
+            this.in.position(start + Protocol.HEADER);
+            byte type = this.in.get();
+            if (type != Protocol.WELCOME && type != Protocol.END && this.world == null) {
+                // the local level is not built yet; keep the message for later
+                this.in.position(start);
+                break;
+            }
+            changed |= handle(type);
+            this.in.position(start + Protocol.HEADER + length);
+        }
+        this.in.compact();
+        if (changed && this.world.getTick() - this.ackedTick >= ACK_TICKS) {
+            sendInput(this.keys);
+        }
+        if (!this.in.hasRemaining()) {
+            // a frame larger than the buffer: grow it
+            ByteBuffer larger = ByteBuffer.allocateDirect(this.in.capacity() * 2);
+            this.in.flip();
+            larger.put(this.in);
+            this.in = larger;
+        }
+        return changed;
+    }
+
+    private boolean handle(byte type) {
+        switch (type) {
+            case Protocol.WELCOME:
+                this.player = Varint.getSigned(this.in);
+                this.playerCount = Varint.get(this.in);
+                return false;
+            case Protocol.FULL:
+                this.world.applyFull(this.in);
+                return true;
+            case Protocol.DELTA:
+                this.world.applyDelta(this.in);
+                return true;
+            case Protocol.END:
+                this.finalScore = Varint.getSigned(this.in);
+                this.ended = true;
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Sends the keys the local player holds, with the tick of the state
+     * applied last. {@link #poll} also sends it every {@value #ACK_TICKS}
+     * ticks applied, so the server knows how far behind this client is;
+     * a spectator's keys are not sent.
+     *
+     * @param keys the {@link Protocol#KEY_LEFT} and {@link Protocol#KEY_RIGHT} bits
+     * @throws IOException if writing fails
+     */
+    public void sendInput(int keys) throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.keys = this.player < 0 ? 0 : keys;
+        this.ackedTick = this.world == null ? -1 : this.world.getTick();
+        this.out.clear();
+        int frame = Protocol.beginFrame(this.out, Protocol.INPUT);
+        Varint.putLong(this.out, this.ackedTick);
+        Varint.put(this.out, this.keys);
+        Protocol.endFrame(this.out, frame);
+        this.out.flip();
+        while (this.out.hasRemaining()) {
+            this.channel.write(this.out);
+        }
+    }
+
+    /**
+     * Plays until the server ends the game or the connection drops:
+     * applies the server's messages, shows every new state and sends the
+     * keyboard's state whenever it changes.
+     *
+     * @param display  where the game is shown
+     * @param keyboard the local player's keyboard
+     * @throws IOException if the connection fails
+     */
+    public void run(Display display, KeyboardSensor keyboard) throws IOException {
+        int sentKeys = 0;
+        while (!this.ended && !this.closed) {
+            boolean changed = poll(POLL_MILLIS);
+            int keys = (keyboard.isPressed(KeyboardSensor.LEFT_KEY) ? Protocol.KEY_LEFT : 0)
+                    | (keyboard.isPressed(KeyboardSensor.RIGHT_KEY) ? Protocol.KEY_RIGHT : 0);
+            if (keys != sentKeys) {
+                sendInput(keys);
+                sentKeys = keys;
+            }
+            if (changed) {
+                DrawSurface d = display.getDrawSurface();
+                this.world.getView().drawOn(d);
+                display.show(d);
+            }
+        }
+        display.close();
+    }
+
+    /**
+     * Returns this client's player index.
+     *
+     * @return the player index, or -1 for a spectator
+     */
+    public int getPlayer() {
+        return this.player;
+    }
+
+    /**
+     * Returns the number of players in the game.
+     *
+     * @return the player count
+     */
+    public int getPlayerCount() {
+        return this.playerCount;
+    }
+
+    /**
+     * Returns the local copy of the game.
+     *
+     * @return the remote world, or null before {@link #start(Path)}
+     */
+    public RemoteWorld getWorld() {
+        return this.world;
+    }
+
+    /**
+     * Checks whether the server announced the end of the game.
+     *
+     * @return true after the end message
+     */
+    public boolean isEnded() {
+        return this.ended;
+    }
+
+    /**
+     * Returns the final score announced by the server.
+     *
+     * @return the final score
+     */
+    public int getFinalScore() {
+        return this.finalScore;
+    }
+
+    /**
+     * Returns the number of bytes received so far.
+     *
+     * @return the bytes received
+     */
+    public long getBytesReceived() {
+        return this.bytesReceived;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.selector.close();
+        this.channel.close();
+    }
+}
@@ -0,0 +1,406 @@
+package net;
+
+import biuoop.KeyboardSensor;
+import game.FramePacer;
+import game.Game;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a game for several players and streams it to clients over
+ * non-blocking sockets. The server is authoritative: it alone simulates,
+ * and clients only send the keys their player holds.
+ *
+ * <p>
+ * Everything happens on the thread that calls {@link #run()}. Each tick
+ * it accepts connections and reads input without blocking, advances the
+ * game, encodes one {@link Protocol#DELTA} frame into a pooled direct
+ * buffer and queues that same buffer on every connection. Clients beyond
+ * the number of players watch as spectators; they cost the server a
+ * queued reference and a socket write each, never an encoding.
+ *
+ * <p>
+ * Every {@link #KEYFRAME_INTERVAL} ticks, if any connection is waiting
+ * for one, the server also encodes a {@link Protocol#FULL} keyframe once
+ * and shares it the same way. New clients start from the next keyframe.
+ * A client that falls more than {@link #MAX_QUEUED} ticks behind drops
+ * its unsent deltas and skips to the next keyframe too; one that is still
+ * stuck after {@link #MAX_STALLS} keyframes is disconnected. How far a
+ * client is behind comes from the ticks it acknowledges in its
+ * {@link Protocol#INPUT} messages, so packets the kernel holds in the
+ * socket's buffers count, as well as those queued here.
+ */
+public class GameServer {
+    /** Simulation ticks per second. */
+    public static final int TICKS_PER_SECOND = 60;
+    /** Ticks between keyframes. */
+    public static final int KEYFRAME_INTERVAL = TICKS_PER_SECOND / 2;
+    /** Ticks a client may fall behind by before it skips to the next keyframe. */
+    static final int MAX_QUEUED = TICKS_PER_SECOND / 4;
+    /** Keyframes a stuck client may miss before it is dropped. */
+    static final int MAX_STALLS = 10;
+    private static final int PACKET_SIZE = 16 * 1024;
+    /**
+     * The socket send buffer. Kept small so little stale state waits in
+     * the kernel when a slow client skips to a keyframe; the client's
+     * acknowledgements show how much is waiting there.
+     */
+    private static final int SEND_BUFFER = 8 * 1024;
+    private static final long FINISH_NANOS = 1_000_000_000L;
+
+    private final Game game;
+    private final NetworkInputSource[] players;
+    private final Connection[] seats;
+    private final SnapshotEncoder encoder;
+    private final PacketPool pool = new PacketPool(PACKET_SIZE);
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final List<Connection> connections = new ArrayList<>();
+    private long bytesSent;
+    private long dropped;
+    private long skips;
+    private long keyframes;
+
+    /**
+     * Creates a server and starts listening. The game is set up at once
+     * with one paddle per player; unclaimed paddles stand still.
+     *
+     * @param level   the level file, or null for the built-in level
+     * @param players the number of players
+     * @param address the address to listen on; port 0 picks a free port
+     * @throws IOException if the level cannot be read or the socket cannot be bound
+     */
+    public GameServer(Path level, int players, InetSocketAddress address) throws IOException {
+        this.players = new NetworkInputSource[players];
+        this.seats = new Connection[players];
+        for (int i = 0; i < players; i++) {
+            this.players[i] = new NetworkInputSource();
+        }
+        this.game = new Game();
+        this.game.initialize(null, (KeyboardSensor[]) this.players, level);
+        for (NetworkInputSource p : this.players) {
+            this.game.addInputSource(p);
+        }
+        this.encoder = new SnapshotEncoder(this.game);
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.server.bind(address);
+        this.server.configureBlocking(false);
+        this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the local port
+     * @throws IOException if the socket is closed
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) this.server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Returns the simulated game.
+     *
+     * @return the game
+     */
+    public Game getGame() {
+        return this.game;
+    }
+
+    /**
+     * Checks whether the game has ended.
+     *
+     * @return true once all blocks or all balls are gone
+     */
+    public boolean isOver() {
+        return this.game.getRemainingBlocks().getValue() == 0 || this.game.getRemainingBalls().getValue() == 0;
+    }
+
+    /**
+     * Runs ticks at {@link #TICKS_PER_SECOND} until the game ends, then
+     * tells the clients and closes.
+     *
+     * @throws IOException if the server socket fails
+     */
+    public void run() throws IOException {
+        FramePacer pacer = new FramePacer(1_000_000_000L / TICKS_PER_SECOND);
+        pacer.start();
+        while (!isOver()) {
+            step();
+            pacer.await();
+        }
+        finish();
+    }
+
+    /**
+     * Runs one tick: handles the network, advances the game and broadcasts
+     * the changes.
+     *
+     * @throws IOException if the server socket fails
+     */
+    public void step() throws IOException {
+        pollNetwork();
+        this.game.tick();
+        broadcast();
+    }
+
+    private void broadcast() {
+        Packet delta = this.pool.acquire(this.encoder.deltaSizeBound());
+        this.encoder.encodeDelta(delta.buffer());
+        delta.seal();
+        Packet keyframe = null;
+        if (this.game.getTick() % KEYFRAME_INTERVAL == 0 && anyWaiting()) {
+            keyframe = this.pool.acquire(this.encoder.fullSizeBound());
+            this.encoder.encodeFull(keyframe.buffer());
+            keyframe.seal();
+            this.keyframes++;
+        }
+        for (int i = this.connections.size() - 1; i >= 0; i--) {
+            Connection c = this.connections.get(i);
+            try {
+                if (!c.isWaitingForKeyframe()) {
+                    c.send(delta);
+                    this.bytesSent += delta.length();
+                    if (c.getQueued() > MAX_QUEUED || c.getLag(this.game.getTick()) > MAX_QUEUED) {
+                        c.skipToKeyframe();
+                        this.skips++;
+                    }
+                } else if (keyframe != null) {
+                    c.sendKeyframe(keyframe, this.game.getTick());
+                    this.bytesSent += keyframe.length();
+                    if (c.getStalls() > MAX_STALLS) {
+                        this.dropped++;
+                        disconnect(c);
+                    }
+                }
+            } catch (IOException e) {
+                disconnect(c);
+            }
+        }
+        delta.release();
+        if (keyframe != null) {
+            keyframe.release();
+        }
+    }
+
+    private boolean anyWaiting() {
+        for (Connection c : this.connections) {
+            if (c.isWaitingForKeyframe()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void send(Connection c, Packet p) {
+        try {
+            c.send(p);
+            this.bytesSent += p.length();
+        } catch (IOException e) {
+            disconnect(c);
+        }
+    }
+
+    private void pollNetwork() throws IOException {
+        if (this.selector.selectNow() == 0) {
+            return;
+        }
+        Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+            Connection c = (Connection) key.attachment();
+            try {
+                if (key.isWritable()) {
+                    c.flush();
+                }
+                if (key.isReadable()) {
+                    readInput(c);
+                }
+            } catch (IOException | RuntimeException e) {
+                disconnect(c);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = this.server.accept()) != null) {
+            accept(channel);
+        }
+    }
+
+    private void accept(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.socket().setSendBufferSize(SEND_BUFFER);
+        int player = -1;
+        for (int i = 0; i < this.seats.length; i++) {
+            if (this.seats[i] == null) {
+                player = i;
+                break;
+            }
+        }
+        SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+        Connection c = new Connection(channel, key, player, this.game.getTick());
+        key.attach(c);
+        if (player >= 0) {
+            this.seats[player] = c;
+        }
+        Packet welcome = this.pool.acquire(16);
+        ByteBuffer b = welcome.buffer();
+        int frame = Protocol.beginFrame(b, Protocol.WELCOME);
+        Varint.putSigned(b, player);
+        Varint.put(b, this.seats.length);
+        Protocol.endFrame(b, frame);
+        welcome.seal();
+        send(c, welcome);
+        welcome.release();
+        if (!c.isClosed()) {
+            this.connections.add(c);
+        }
+    }
+
+    private void readInput(Connection c) throws IOException {
+        ByteBuffer in = c.read();
+        if (in == null) {
+            disconnect(c);
+            return;
+        }
+        int length;
+        while ((length = Protocol.completeFrame(in)) >= 0) {
+            int start = in.position();
+            in.position(start + Protocol.HEADER);
+            byte type = in.get();
+            if (type == Protocol.INPUT) {
+                c.acknowledge(Varint.getLong(in));
+                int keys = Varint.get(in);
+                if (c.getPlayer() >= 0) {
+                    this.players[c.getPlayer()].receive(keys);
+                }
+            }
+            in.position(start + Protocol.HEADER + length);
+        }
+        c.consumed();
+    }
+
+    private void disconnect(Connection c) {
+        c.close();
+        this.connections.remove(c);
+        if (c.getPlayer() >= 0 && this.seats[c.getPlayer()] == c) {
+            this.seats[c.getPlayer()] = null;
+            this.players[c.getPlayer()].reset();
+        }
+    }
+
+    /**
+     * Sends {@link Protocol#END} with the final score, gives clients a
+     * moment to receive everything, and closes all sockets.
+     *
+     * @throws IOException if the server socket fails
+     */
+    public void finish() throws IOException {
+        Packet end = this.pool.acquire(16);
+        ByteBuffer b = end.buffer();
+        int frame = Protocol.beginFrame(b, Protocol.END);
+        Varint.putSigned(b, this.game.getScore().getValue());
+        Protocol.endFrame(b, frame);
+        end.seal();
+        List<Connection> all = new ArrayList<>(this.connections);
+        for (Connection c : all) {
+            send(c, end);
+        }
+        end.release();
+        long deadline = System.nanoTime() + FINISH_NANOS;
+        boolean pending = true;
+        while (pending && System.nanoTime() < deadline) {
+            pollNetwork();
+            pending = false;
+            for (Connection c : all) {
+                pending |= !c.isClosed() && c.getQueued() > 0;
+            }
+            if (pending) {
+                LockSupport.parkNanos(1_000_000L);
+            }
+        }
+        for (Connection c : all) {
+            c.close();
+        }
+        this.connections.clear();
+        this.server.close();
+        this.selector.close();
+    }
+
+    /**
+     * Returns the total number of bytes queued to clients.
+     *
+     * @return the bytes sent
+     */
+    public long getBytesSent() {
+        return this.bytesSent;
+    }
+
+    /**
+     * Returns the number of clients dropped for staying stuck.
+     *
+     * @return the dropped client count
+     */
+    public long getDropped() {
+        return this.dropped;
+    }
+
+    /**
+     * Returns how many times a slow client skipped to the next keyframe.
+     *
+     * @return the skip count
+     */
+    public long getSkips() {
+        return this.skips;
+    }
+
+    /**
+     * Returns the number of keyframes encoded.
+     *
+     * @return the keyframe count
+     */
+    public long getKeyframes() {
+        return this.keyframes;
+    }
+
+    /**
+     * Returns the number of connected clients, players and spectators.
+     *
+     * @return the connection count
+     */
+    public int getConnectionCount() {
+        return this.connections.size();
+    }
+
+    /**
+     * Returns the pool the server's packets come from.
+     *
+     * @return the packet pool
+     */
+    public PacketPool getPool() {
+        return this.pool;
+    }
+}
@@ -0,0 +1,63 @@
+package net;
+
+import input.InputSource;
+
+/**
+ * The keys of one remote player, as last reported by their client.
+ *
+ * <p>
+ * Input messages are applied by the server's loop between ticks. A key
+ * reported pressed at any point since the last tick counts as pressed for
+ * the next one, even if a later message already released it.
+ */
+public class NetworkInputSource implements InputSource {
+    private int reported;
+    private int seen;
+    private int current;
+    private long messages;
+
+    /**
+     * Records a key state received from the player's client.
+     *
+     * @param keys the {@link Protocol#KEY_LEFT} and {@link Protocol#KEY_RIGHT} bits
+     */
+    public void receive(int keys) {
+        this.reported = keys;
+        this.seen |= keys;
+        this.messages++;
+    }
+
+    /**
+     * Releases all keys, for a player who disconnected.
+     */
+    public void reset() {
+        this.reported = 0;
+        this.seen = 0;
+    }
+
+    @Override
+    public void beginTick(long tick, long nanos) {
+        this.current = this.reported | this.seen;
+        this.seen = 0;
+    }
+
+    @Override
+    public boolean isPressed(String key) {
+        if (LEFT_KEY.equals(key)) {
+            return (this.current & Protocol.KEY_LEFT) != 0;
+        }
+        if (RIGHT_KEY.equals(key)) {
+            return (this.current & Protocol.KEY_RIGHT) != 0;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of input messages received.
+     *
+     * @return the message count
+     */
+    public long getMessageCount() {
+        return this.messages;
+    }
+}
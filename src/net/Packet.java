@@ -0,0 +1,71 @@
+package net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An encoded message in a direct buffer, shared by all the connections it
+ * is sent to. Each connection holds a reference while the packet waits in
+ * its send queue; the last release returns the packet to its pool.
+ */
+public final class Packet {
+    private final ByteBuffer buffer;
+    private final PacketPool pool;
+    private int length;
+    private int refs;
+
+    Packet(int capacity, PacketPool pool) {
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the buffer to encode into. Encoding starts at position 0.
+     *
+     * @return the packet's buffer
+     */
+    public ByteBuffer buffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Marks the end of the encoded bytes, at the buffer's current position.
+     */
+    public void seal() {
+        this.length = this.buffer.position();
+    }
+
+    /**
+     * Returns the number of encoded bytes.
+     *
+     * @return the packet length
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Adds a reference.
+     */
+    public void retain() {
+        this.refs++;
+    }
+
+    /**
+     * Drops a reference; the last one hands the packet back to its pool.
+     */
+    public void release() {
+        if (--this.refs == 0) {
+            this.pool.recycle(this);
+        }
+    }
+
+    int capacity() {
+        return this.buffer.capacity();
+    }
+
+    void reset() {
+        this.buffer.clear();
+        this.length = 0;
+        this.refs = 0;
+    }
+}
@@ -0,0 +1,88 @@
+package net;
+
+import java.util.ArrayDeque;
+
+/**
+ * A pool of {@link Packet}s with direct buffers of one standard size, so
+ * encoding and sending snapshots allocates nothing in steady state. A
+ * request for more than the standard size, such as a keyframe of a large
+ * game, gets a large packet: large packets all share one size, which
+ * doubles when a request does not fit, and are kept like standard ones
+ * until they are outgrown. Not thread-safe: the server's loop owns it.
+ */
+public class PacketPool {
+    private final int packetSize;
+    private final ArrayDeque<Packet> free = new ArrayDeque<>();
+    private final ArrayDeque<Packet> freeLarge = new ArrayDeque<>();
+    private int largeSize;
+    private int created;
+    private int createdLarge;
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param packetSize the capacity of a standard packet, in bytes
+     */
+    public PacketPool(int packetSize) {
+        this.packetSize = packetSize;
+    }
+
+    /**
+     * Takes a packet with room for at least the given number of bytes, and
+     * one reference held by the caller.
+     *
+     * @param minCapacity the bytes the caller needs
+     * @return an empty packet
+     */
+    public Packet acquire(int minCapacity) {
+        Packet p;
+        if (minCapacity > this.packetSize) {
+            if (minCapacity > this.largeSize) {
+                this.largeSize = Math.max(minCapacity, this.largeSize * 2);
+                // the idle large packets are outgrown
+                this.freeLarge.clear();
+            }
+            if (this.freeLarge.isEmpty()) {
+                p = new Packet(this.largeSize, this);
+                this.createdLarge++;
+            } else {
+                p = this.freeLarge.pop();
+            }
+        } else if (this.free.isEmpty()) {
+            p = new Packet(this.packetSize, this);
+            this.created++;
+        } else {
+            p = this.free.pop();
+        }
+        p.reset();
+        p.retain();
+        return p;
+    }
+
+    void recycle(Packet p) {
+        if (p.capacity() == this.packetSize) {
+            this.free.push(p);
+        } else if (p.capacity() == this.largeSize) {
+            this.freeLarge.push(p);
+        }
+    }
+
+    /**
+     * Returns how many standard packets the pool has created, which is the
+     * most that were ever in use at the same time.
+     *
+     * @return the number of standard packets created
+     */
+    public int getCreated() {
+        return this.created;
+    }
+
+    /**
+     * Returns how many large packets the pool has created.
+     *
+     * @return the number of large packets created
+     */
+    public int getCreatedLarge() {
+        return this.createdLarge;
+    }
+}
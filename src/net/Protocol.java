@@ -0,0 +1,93 @@
+package net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The wire format shared by {@link GameServer} and {@link GameClient}.
+ *
+ * <p>
+ * Every message is a frame: a four-byte big-endian length, then a type
+ * byte and a payload of varints (see {@link Varint}). The length counts
+ * the type byte and the payload.
+ * <ul>
+ *     <li>{@link #WELCOME} (server to client): the client's player index,
+ *         or -1 for a spectator, and the number of players;</li>
+ *     <li>{@link #FULL} (server to client): the complete changing state,
+ *         sent once when a client joins;</li>
+ *     <li>{@link #DELTA} (server to client): what changed in one tick;</li>
+ *     <li>{@link #INPUT} (client to server): the tick of the last state
+ *         the client applied, and the keys the player holds. Spectators
+ *         send it too, with no keys, so the server sees how far behind
+ *         every client is;</li>
+ *     <li>{@link #END} (server to client): the game is over, with the final score.</li>
+ * </ul>
+ * See {@link SnapshotEncoder} for the layout of {@code FULL} and {@code DELTA}.
+ */
+public final class Protocol {
+    /** A client's player slot and the player count. */
+    public static final byte WELCOME = 1;
+    /** The complete state. */
+    public static final byte FULL = 2;
+    /** The changes of one tick. */
+    public static final byte DELTA = 3;
+    /** A client's acknowledged tick and key state. */
+    public static final byte INPUT = 4;
+    /** The end of the game. */
+    public static final byte END = 5;
+
+    /** Input bit for the left key. */
+    public static final int KEY_LEFT = 1;
+    /** Input bit for the right key. */
+    public static final int KEY_RIGHT = 2;
+
+    /** The size of the length prefix of a frame. */
+    public static final int HEADER = 4;
+    /** The largest frame a peer accepts. */
+    public static final int MAX_FRAME = 1 << 24;
+
+    private Protocol() {
+    }
+
+    /**
+     * Starts a frame of the given type, leaving room for its length.
+     *
+     * @param out  the buffer to write to
+     * @param type the message type
+     * @return the position of the frame, to pass to {@link #endFrame}
+     */
+    public static int beginFrame(ByteBuffer out, byte type) {
+        int start = out.position();
+        out.putInt(0);
+        out.put(type);
+        return start;
+    }
+
+    /**
+     * Fills in the length of a frame once its payload was written.
+     *
+     * @param out   the buffer written to
+     * @param start the value returned by {@link #beginFrame}
+     */
+    public static void endFrame(ByteBuffer out, int start) {
+        out.putInt(start, out.position() - start - HEADER);
+    }
+
+    /**
+     * Returns the length of the complete frame at the start of the readable
+     * part of {@code in}, or -1 if more bytes are needed.
+     *
+     * @param in a buffer in read mode
+     * @return the frame's length, not counting the prefix, or -1
+     * @throws IllegalArgumentException if the frame is larger than {@link #MAX_FRAME}
+     */
+    public static int completeFrame(ByteBuffer in) {
+        if (in.remaining() < HEADER) {
+            return -1;
+        }
+        int length = in.getInt(in.position());
+        if (length <= 0 || length > MAX_FRAME) {
+            throw new IllegalArgumentException("Bad frame length " + length);
+        }
+        return in.remaining() - HEADER >= length ? length : -1;
+    }
+}
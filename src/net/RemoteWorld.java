@@ -0,0 +1,202 @@
+package net;
+
+import render.FrameState;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A client's copy of the server's game, kept up to date from
+ * {@link Protocol#FULL} and {@link Protocol#DELTA} messages.
+ *
+ * <p>
+ * The copy starts from a frame of the same level built locally, which
+ * supplies the blocks and the paddles' shape; the messages then move the
+ * balls and paddles, change the score and remove destroyed blocks.
+ */
+public class RemoteWorld {
+    private final FrameState view;
+    private long tick;
+    private int score;
+
+    private boolean[] known = new boolean[16];
+    private int[] ballX = new int[16];
+    private int[] ballY = new int[16];
+    private int[] ballR = new int[16];
+    private Color[] ballColor = new Color[16];
+
+    private final int[] paddleX;
+    private final int[] paddleY;
+    private final int[] paddleW;
+    private final int[] paddleH;
+    private final Color[] paddleColor;
+
+    /**
+     * Creates a copy starting from a locally built frame of the same level.
+     * The frame is updated in place from then on.
+     *
+     * @param initial a frame with the level's blocks and paddles
+     */
+    public RemoteWorld(FrameState initial) {
+        this.view = initial;
+        int paddles = initial.getPaddleCount();
+        this.paddleX = new int[paddles];
+        this.paddleY = new int[paddles];
+        this.paddleW = new int[paddles];
+        this.paddleH = new int[paddles];
+        this.paddleColor = new Color[paddles];
+        for (int i = 0; i < paddles; i++) {
+            this.paddleX[i] = initial.getPaddleX(i);
+            this.paddleY[i] = initial.getPaddleY(i);
+            this.paddleW[i] = initial.getPaddleWidth(i);
+            this.paddleH[i] = initial.getPaddleHeight(i);
+            this.paddleColor[i] = initial.getPaddleColor(i);
+        }
+    }
+
+    /**
+     * Applies the payload of a full message.
+     *
+     * @param in the payload, after the type byte
+     */
+    public void applyFull(ByteBuffer in) {
+        this.tick = Varint.getLong(in);
+        this.score = Varint.getSigned(in);
+        Arrays.fill(this.known, false);
+        int balls = Varint.get(in);
+        for (int i = 0; i < balls; i++) {
+            int id = Varint.get(in);
+            ensureBall(id);
+            this.known[id] = true;
+            this.ballX[id] = Varint.getSigned(in);
+            this.ballY[id] = Varint.getSigned(in);
+            this.ballR[id] = Varint.get(in);
+            this.ballColor[id] = color(this.ballColor[id], Varint.get(in));
+        }
+        int paddles = Varint.get(in);
+        for (int i = 0; i < paddles; i++) {
+            int x = Varint.getSigned(in);
+            if (i < this.paddleX.length) {
+                this.paddleX[i] = x;
+            }
+        }
+        int removed = Varint.get(in);
+        for (int i = 0; i < removed; i++) {
+            this.view.removeBlock(Varint.get(in));
+        }
+        refresh();
+    }
+
+    /**
+     * Applies the payload of a delta message.
+     *
+     * @param in the payload, after the type byte
+     */
+    public void applyDelta(ByteBuffer in) {
+        this.tick = Varint.getLong(in);
+        this.score += Varint.getSigned(in);
+        int balls = Varint.get(in);
+        for (int i = 0; i < balls; i++) {
+            int head = Varint.get(in);
+            int id = head >>> 1;
+            ensureBall(id);
+            if (!this.known[id]) {
+                this.ballX[id] = 0;
+                this.ballY[id] = 0;
+            }
+            this.known[id] = true;
+            this.ballX[id] += Varint.getSigned(in);
+            this.ballY[id] += Varint.getSigned(in);
+            if ((head & 1) != 0) {
+                this.ballR[id] = Varint.get(in);
+                this.ballColor[id] = color(this.ballColor[id], Varint.get(in));
+            }
+        }
+        int removedBalls = Varint.get(in);
+        for (int i = 0; i < removedBalls; i++) {
+            int id = Varint.get(in);
+            if (id < this.known.length) {
+                this.known[id] = false;
+            }
+        }
+        int removedBlocks = Varint.get(in);
+        for (int i = 0; i < removedBlocks; i++) {
+            this.view.removeBlock(Varint.get(in));
+        }
+        int paddles = Varint.get(in);
+        for (int i = 0; i < paddles; i++) {
+            int index = Varint.get(in);
+            int dx = Varint.getSigned(in);
+            if (index < this.paddleX.length) {
+                this.paddleX[index] += dx;
+            }
+        }
+        refresh();
+    }
+
+    /**
+     * Rewrites the balls, paddles and score of the frame.
+     */
+    private void refresh() {
+        this.view.clearMovers(this.tick);
+        this.view.setScore(this.score);
+        for (int i = 0; i < this.paddleX.length; i++) {
+            this.view.putPaddle(this.paddleX[i], this.paddleY[i], this.paddleW[i], this.paddleH[i],
+                    this.paddleColor[i]);
+        }
+        for (int id = 0; id < this.known.length; id++) {
+            if (this.known[id]) {
+                this.view.putBall(id, this.ballX[id], this.ballY[id], this.ballR[id], this.ballColor[id]);
+            }
+        }
+    }
+
+    /**
+     * Returns the frame this copy keeps up to date.
+     *
+     * @return the current frame
+     */
+    public FrameState getView() {
+        return this.view;
+    }
+
+    /**
+     * Returns the server tick of the last applied message.
+     *
+     * @return the tick
+     */
+    public long getTick() {
+        return this.tick;
+    }
+
+    /**
+     * Returns the score as of the last applied message.
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return this.score;
+    }
+
+    private void ensureBall(int id) {
+        if (id >= this.known.length) {
+            int size = Math.max(id + 1, this.known.length * 2);
+            this.known = Arrays.copyOf(this.known, size);
+            this.ballX = Arrays.copyOf(this.ballX, size);
+            this.ballY = Arrays.copyOf(this.ballY, size);
+            this.ballR = Arrays.copyOf(this.ballR, size);
+            this.ballColor = Arrays.copyOf(this.ballColor, size);
+        }
+    }
+
+    /**
+     * Returns a color for the given RGB value, reusing the current one if it matches.
+     */
+    private static Color color(Color current, int rgb) {
+        if (current != null && (current.getRGB() & 0xFFFFFF) == rgb) {
+            return current;
+        }
+        return new Color(rgb);
+    }
+}
@@ -0,0 +1,258 @@
+package net;
+
+import game.Ball;
+import game.Game;
+import game.Paddle;
+import game.RemovalListener;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes the changing part of a {@link Game} for clients: balls,
+ * paddles, the score and the blocks destroyed so far. Blocks themselves
+ * are not sent; clients read the same level.
+ *
+ * <p>
+ * The encoder remembers what it last sent, and each {@link #encodeDelta}
+ * writes only what differs from that, as varints:
+ * <pre>
+ * DELTA: tick, score change (signed),
+ *        n, n x (id &lt;&lt; 1 | look, x change (signed), y change (signed), [radius, rgb if look]),
+ *        n, n x removed ball id,
+ *        n, n x removed block id,
+ *        n, n x (paddle index, x change (signed))
+ * FULL:  tick, score (signed),
+ *        n, n x (id, x (signed), y (signed), radius, rgb),
+ *        n, n x paddle x (signed),
+ *        n, n x removed block id (ascending)
+ * </pre>
+ * A ball's look (radius and color) is sent when it first appears and
+ * whenever its color changes. {@link #encodeFull} describes exactly the
+ * state the last delta left clients in, so a client that joins receives
+ * one full message and then the same deltas as everyone else. The blocks
+ * destroyed so far are kept as a bit set over block ids, so however long
+ * a game runs, the encoder holds one bit per block.
+ */
+public class SnapshotEncoder implements RemovalListener {
+    private final Game game;
+
+    private boolean[] known = new boolean[16];
+    private int[] sentX = new int[16];
+    private int[] sentY = new int[16];
+    private int[] sentR = new int[16];
+    private int[] sentRgb = new int[16];
+    private int[] sentPaddleX = new int[0];
+    private int sentScore;
+    private long sentTick;
+
+    private int[] removedBalls = new int[16];
+    private int removedBallCount;
+    private int[] removedBlocks = new int[64];
+    private int removedBlockCount;
+    /** The ids of every block removed so far, for keyframes. */
+    private long[] removedSet = new long[1];
+    private int removedSetCount;
+
+    /**
+     * Creates an encoder for the given game and starts listening to its removals.
+     *
+     * @param game the game to encode
+     */
+    public SnapshotEncoder(Game game) {
+        this.game = game;
+        game.addRemovalListener(this);
+    }
+
+    @Override
+    public void blockRemoved(int blockId) {
+        this.removedBlocks = append(this.removedBlocks, this.removedBlockCount++, blockId);
+        int word = blockId >>> 6;
+        if (word >= this.removedSet.length) {
+            this.removedSet = Arrays.copyOf(this.removedSet, Math.max(word + 1, this.removedSet.length * 2));
+        }
+        long bit = 1L << blockId;
+        if ((this.removedSet[word] & bit) == 0) {
+            this.removedSet[word] |= bit;
+            this.removedSetCount++;
+        }
+    }
+
+    @Override
+    public void ballRemoved(int ballId) {
+        this.removedBalls = append(this.removedBalls, this.removedBallCount++, ballId);
+        if (ballId < this.known.length) {
+            this.known[ballId] = false;
+        }
+    }
+
+    private static int[] append(int[] array, int index, int value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, index * 2);
+        }
+        array[index] = value;
+        return array;
+    }
+
+    /**
+     * Returns an upper bound on the size of the next delta frame.
+     *
+     * @return the most bytes {@link #encodeDelta} can write now
+     */
+    public int deltaSizeBound() {
+        return 64 + this.game.getBalls().size() * 30 + (this.removedBallCount + this.removedBlockCount) * 5
+                + this.game.getPaddles().size() * 10;
+    }
+
+    /**
+     * Returns an upper bound on the size of a full frame.
+     *
+     * @return the most bytes {@link #encodeFull} can write now
+     */
+    public int fullSizeBound() {
+        return 64 + this.known.length * 25 + this.removedSetCount * 5 + this.sentPaddleX.length * 5;
+    }
+
+    /**
+     * Writes a {@link Protocol#DELTA} frame with the changes since the last
+     * one, and remembers the new state as sent.
+     *
+     * @param out the buffer to write to
+     */
+    public void encodeDelta(ByteBuffer out) {
+        int frame = Protocol.beginFrame(out, Protocol.DELTA);
+        this.sentTick = this.game.getTick();
+        Varint.putLong(out, this.sentTick);
+        int score = this.game.getScore().getValue();
+        Varint.putSigned(out, score - this.sentScore);
+        this.sentScore = score;
+
+        List<Ball> balls = this.game.getBalls();
+        int changed = 0;
+        for (int i = 0; i < balls.size(); i++) {
+            if (ballChanged(balls.get(i))) {
+                changed++;
+            }
+        }
+        Varint.put(out, changed);
+        for (int i = 0; i < balls.size() && changed > 0; i++) {
+            Ball b = balls.get(i);
+            if (!ballChanged(b)) {
+                continue;
+            }
+            changed--;
+            int id = b.getId();
+            ensureBall(id);
+            int rgb = b.getColor().getRGB() & 0xFFFFFF;
+            boolean look = !this.known[id] || this.sentRgb[id] != rgb;
+            int lastX = this.known[id] ? this.sentX[id] : 0;
+            int lastY = this.known[id] ? this.sentY[id] : 0;
+            Varint.put(out, id << 1 | (look ? 1 : 0));
+            Varint.putSigned(out, b.getX() - lastX);
+            Varint.putSigned(out, b.getY() - lastY);
+            if (look) {
+                Varint.put(out, b.getSize());
+                Varint.put(out, rgb);
+            }
+            this.known[id] = true;
+            this.sentX[id] = b.getX();
+            this.sentY[id] = b.getY();
+            this.sentR[id] = b.getSize();
+            this.sentRgb[id] = rgb;
+        }
+
+        Varint.put(out, this.removedBallCount);
+        for (int i = 0; i < this.removedBallCount; i++) {
+            Varint.put(out, this.removedBalls[i]);
+        }
+        this.removedBallCount = 0;
+        Varint.put(out, this.removedBlockCount);
+        for (int i = 0; i < this.removedBlockCount; i++) {
+            Varint.put(out, this.removedBlocks[i]);
+        }
+        this.removedBlockCount = 0;
+
+        List<Paddle> paddles = this.game.getPaddles();
+        if (this.sentPaddleX.length != paddles.size()) {
+            this.sentPaddleX = Arrays.copyOf(this.sentPaddleX, paddles.size());
+        }
+        int moved = 0;
+        for (int i = 0; i < paddles.size(); i++) {
+            if (paddleX(paddles.get(i)) != this.sentPaddleX[i]) {
+                moved++;
+            }
+        }
+        Varint.put(out, moved);
+        for (int i = 0; i < paddles.size(); i++) {
+            int x = paddleX(paddles.get(i));
+            if (x != this.sentPaddleX[i]) {
+                Varint.put(out, i);
+                Varint.putSigned(out, x - this.sentPaddleX[i]);
+                this.sentPaddleX[i] = x;
+            }
+        }
+        Protocol.endFrame(out, frame);
+    }
+
+    /**
+     * Writes a {@link Protocol#FULL} frame with the state the last delta
+     * left clients in.
+     *
+     * @param out the buffer to write to
+     */
+    public void encodeFull(ByteBuffer out) {
+        int frame = Protocol.beginFrame(out, Protocol.FULL);
+        Varint.putLong(out, this.sentTick);
+        Varint.putSigned(out, this.sentScore);
+        int count = 0;
+        for (int id = 0; id < this.known.length; id++) {
+            if (this.known[id]) {
+                count++;
+            }
+        }
+        Varint.put(out, count);
+        for (int id = 0; id < this.known.length; id++) {
+            if (this.known[id]) {
+                Varint.put(out, id);
+                Varint.putSigned(out, this.sentX[id]);
+                Varint.putSigned(out, this.sentY[id]);
+                Varint.put(out, this.sentR[id]);
+                Varint.put(out, this.sentRgb[id]);
+            }
+        }
+        Varint.put(out, this.sentPaddleX.length);
+        for (int x : this.sentPaddleX) {
+            Varint.putSigned(out, x);
+        }
+        Varint.put(out, this.removedSetCount);
+        for (int word = 0; word < this.removedSet.length; word++) {
+            for (long bits = this.removedSet[word]; bits != 0; bits &= bits - 1) {
+                Varint.put(out, word << 6 | Long.numberOfTrailingZeros(bits));
+            }
+        }
+        Protocol.endFrame(out, frame);
+    }
+
+    private boolean ballChanged(Ball b) {
+        int id = b.getId();
+        return id >= this.known.length || !this.known[id]
+                || this.sentX[id] != b.getX() || this.sentY[id] != b.getY()
+                || this.sentRgb[id] != (b.getColor().getRGB() & 0xFFFFFF);
+    }
+
+    private void ensureBall(int id) {
+        if (id >= this.known.length) {
+            int size = Math.max(id + 1, this.known.length * 2);
+            this.known = Arrays.copyOf(this.known, size);
+            this.sentX = Arrays.copyOf(this.sentX, size);
+            this.sentY = Arrays.copyOf(this.sentY, size);
+            this.sentR = Arrays.copyOf(this.sentR, size);
+            this.sentRgb = Arrays.copyOf(this.sentRgb, size);
+        }
+    }
+
+    private static int paddleX(Paddle p) {
+        return (int) p.getCollisionRectangle().getUpperLeft().getX();
+    }
+}
@@ -0,0 +1,99 @@
+package net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-length integer encoding: seven bits per byte, low bits first,
+ * with the high bit set on every byte but the last. Small values take one
+ * byte. Signed values are zigzag-mapped first, so small negative deltas
+ * stay small too.
+ */
+public final class Varint {
+    private Varint() {
+    }
+
+    /**
+     * Writes a non-negative value.
+     *
+     * @param out   the buffer to write to
+     * @param value the value, treated as unsigned
+     */
+    public static void put(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Writes a non-negative long value.
+     *
+     * @param out   the buffer to write to
+     * @param value the value, treated as unsigned
+     */
+    public static void putLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Writes a signed value in zigzag form.
+     *
+     * @param out   the buffer to write to
+     * @param value the value
+     */
+    public static void putSigned(ByteBuffer out, int value) {
+        put(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Reads a value written by {@link #put(ByteBuffer, int)}.
+     *
+     * @param in the buffer to read from
+     * @return the value
+     */
+    public static int get(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Reads a value written by {@link #putLong(ByteBuffer, long)}.
+     *
+     * @param in the buffer to read from
+     * @return the value
+     */
+    public static long getLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Reads a value written by {@link #putSigned(ByteBuffer, int)}.
+     *
+     * @param in the buffer to read from
+     * @return the value
+     */
+    public static int getSigned(ByteBuffer in) {
+        int v = get(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
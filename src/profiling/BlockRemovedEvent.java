@@ -0,0 +1,41 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for a block leaving the game.
+ */
+@Name("arkanoid.BlockRemoved")
+@Label("Block Removed")
+@Category({"Arkanoid", "Game Loop"})
+@Description("A block leaving the game")
+@StackTrace(false)
+public class BlockRemovedEvent extends Event {
+    @Label("Block")
+    private int block;
+
+    @Label("Tick")
+    private long tick;
+
+    @Label("Remaining")
+    @Description("Blocks left to clear")
+    private int remaining;
+
+    /**
+     * Sets which block was removed.
+     *
+     * @param blockId        the block's id
+     * @param removedAt      the game tick it was removed on
+     * @param remainingCount the number of blocks left to clear
+     */
+    public void setBlock(int blockId, long removedAt, int remainingCount) {
+        this.block = blockId;
+        this.tick = removedAt;
+        this.remaining = remainingCount;
+    }
+}
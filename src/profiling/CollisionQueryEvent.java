@@ -0,0 +1,45 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for one search for the closest collision on a
+ * ball's trajectory. There is one per ball per tick, so it is disabled
+ * unless a recording's settings enable it.
+ */
+@Name("arkanoid.CollisionQuery")
+@Label("Collision Query")
+@Category({"Arkanoid", "Physics"})
+@Description("A search for the closest collision on a trajectory")
+@StackTrace(false)
+@Enabled(false)
+public class CollisionQueryEvent extends Event {
+    @Label("Candidates")
+    @Description("Collidables and bricks tested against the trajectory")
+    private int candidates;
+
+    @Label("Hit")
+    private boolean hit;
+
+    @Label("Fixed Point")
+    private boolean fixedPoint;
+
+    /**
+     * Sets the outcome of the query.
+     *
+     * @param tested       the number of collidables and bricks tested
+     * @param found        whether a collision was found
+     * @param fixedPhysics whether the query was made in fixed point
+     */
+    public void setResult(int tested, boolean found, boolean fixedPhysics) {
+        this.candidates = tested;
+        this.hit = found;
+        this.fixedPoint = fixedPhysics;
+    }
+}
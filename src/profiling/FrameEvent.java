@@ -0,0 +1,54 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event spanning one frame of the game loop, from its
+ * start until the loop is ready for the next frame, with the time spent in
+ * each phase.
+ */
+@Name("arkanoid.Frame")
+@Label("Frame")
+@Category({"Arkanoid", "Game Loop"})
+@Description("One frame of the game loop")
+@StackTrace(false)
+public class FrameEvent extends Event {
+    @Label("Tick")
+    private long tick;
+
+    @Label("Update")
+    @Description("Moving the sprites one step")
+    @Timespan(Timespan.NANOSECONDS)
+    private long update;
+
+    @Label("Render")
+    @Description("Drawing and showing the frame, or handing it to the render thread")
+    @Timespan(Timespan.NANOSECONDS)
+    private long render;
+
+    @Label("Sleep")
+    @Description("Waiting for the next frame")
+    @Timespan(Timespan.NANOSECONDS)
+    private long sleep;
+
+    /**
+     * Sets the frame's tick and phase durations.
+     *
+     * @param frameTick   the game tick the frame ended on
+     * @param updateNanos the time spent updating the game
+     * @param renderNanos the time spent rendering
+     * @param sleepNanos  the time spent waiting for the next frame
+     */
+    public void setPhases(long frameTick, long updateNanos, long renderNanos, long sleepNanos) {
+        this.tick = frameTick;
+        this.update = updateNanos;
+        this.render = renderNanos;
+        this.sleep = sleepNanos;
+    }
+}
@@ -0,0 +1,40 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for one hit listener being told about a hit.
+ */
+@Name("arkanoid.HitDispatch")
+@Label("Hit Dispatch")
+@Category({"Arkanoid", "Physics"})
+@Description("A hit listener handling a hit")
+@StackTrace(false)
+public class HitDispatchEvent extends Event {
+    @Label("Listener")
+    private Class<?> listener;
+
+    @Label("Block")
+    private int block;
+
+    @Label("Ball")
+    private int ball;
+
+    /**
+     * Sets what was dispatched.
+     *
+     * @param listenerClass the listener's class
+     * @param blockId       the id of the block that was hit
+     * @param ballId        the id of the ball that hit it
+     */
+    public void setHit(Class<?> listenerClass, int blockId, int ballId) {
+        this.listener = listenerClass;
+        this.block = blockId;
+        this.ball = ballId;
+    }
+}
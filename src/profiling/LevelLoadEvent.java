@@ -0,0 +1,45 @@
+package profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event spanning the loading of a level.
+ */
+@Name("arkanoid.LevelLoad")
+@Label("Level Load")
+@Category({"Arkanoid", "Levels"})
+@Description("Building a level's objects")
+public class LevelLoadEvent extends Event {
+    @Label("Source")
+    @Description("The level file, or empty for the built-in level")
+    private String source;
+
+    @Label("Kind")
+    @Description("How the level was loaded: built-in, file, chunked or snapshot")
+    private String kind;
+
+    @Label("Blocks")
+    private int blocks;
+
+    @Label("Balls")
+    private int balls;
+
+    /**
+     * Sets what was loaded.
+     *
+     * @param levelSource the level file, or null for the built-in level
+     * @param loadKind    how the level was loaded
+     * @param blockCount  the number of blocks to clear
+     * @param ballCount   the number of balls in play
+     */
+    public void setLevel(String levelSource, String loadKind, int blockCount, int ballCount) {
+        this.source = levelSource;
+        this.kind = loadKind;
+        this.blocks = blockCount;
+        this.balls = ballCount;
+    }
+}
@@ -0,0 +1,26 @@
+package render;
+
+import biuoop.DrawSurface;
+
+/**
+ * Something the game loop can draw frames to: a window, or an offscreen
+ * image that is exported to disk.
+ */
+public interface Display {
+    /**
+     * Returns a blank surface to draw the next frame on.
+     *
+     * @return the surface for the next frame
+     */
+    DrawSurface getDrawSurface();
+    /**
+     * Presents a surface previously returned by {@link #getDrawSurface()}.
+     *
+     * @param d the finished frame
+     */
+    void show(DrawSurface d);
+    /**
+     * Releases the display once the game is over.
+     */
+    void close();
+}
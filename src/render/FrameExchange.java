@@ -0,0 +1,68 @@
+package render;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock-free triple buffer for handing frame states from the
+ * simulation thread to the render thread.
+ *
+ * <p>
+ * The producer always owns a back buffer and the consumer always owns a
+ * front buffer; the third buffer sits in the middle and is swapped with
+ * a single atomic operation on either side. Neither side ever blocks or
+ * allocates, and the consumer always sees the most recently published
+ * frame (older unseen frames are simply dropped).
+ */
+public class FrameExchange {
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;
+
+    private final FrameState[] buffers = new FrameState[3];
+    /** The middle buffer index, with {@link #FRESH} set when it holds an unseen frame. */
+    private final AtomicInteger middle = new AtomicInteger(1);
+    /** Owned by the producer. */
+    private int back = 0;
+    /** Owned by the consumer. */
+    private int front = 2;
+
+    /**
+     * Creates an exchange with three empty frame states.
+     */
+    public FrameExchange() {
+        for (int i = 0; i < this.buffers.length; i++) {
+            this.buffers[i] = new FrameState();
+        }
+    }
+
+    /**
+     * Returns the buffer the producer should fill next.
+     * Only the producer thread may call this.
+     *
+     * @return the back buffer
+     */
+    public FrameState backBuffer() {
+        return this.buffers[this.back];
+    }
+
+    /**
+     * Publishes the back buffer and takes the middle buffer as the new back buffer.
+     * Only the producer thread may call this.
+     */
+    public void publish() {
+        this.back = this.middle.getAndSet(this.back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Takes the most recently published frame, if one arrived since the last call.
+     * Only the consumer thread may call this.
+     *
+     * @return the newest frame, or null if nothing new was published
+     */
+    public FrameState acquire() {
+        if ((this.middle.get() & FRESH) == 0) {
+            return null;
+        }
+        this.front = this.middle.getAndSet(this.front) & INDEX_MASK;
+        return this.buffers[this.front];
+    }
+}
@@ -0,0 +1,30 @@
+package render;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * A destination for captured frames.
+ *
+ * <p>
+ * {@link #writeFrame(long, BufferedImage)} may be called from several
+ * encoder threads at once and frames may arrive out of order; every
+ * implementation must cope with both. The image is only valid until
+ * the call returns.
+ */
+public interface FrameSink {
+    /**
+     * Encodes one frame.
+     *
+     * @param index the frame number, starting at 0
+     * @param image the frame pixels
+     * @throws IOException if the frame could not be written
+     */
+    void writeFrame(long index, BufferedImage image) throws IOException;
+    /**
+     * Flushes and releases the sink after the last frame was written.
+     *
+     * @throws IOException if the sink could not be closed cleanly
+     */
+    void close() throws IOException;
+}
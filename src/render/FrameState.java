@@ -0,0 +1,458 @@
+package render;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * A snapshot of everything the renderer needs to draw one frame:
+ * ball positions, the live blocks, the paddles, the particles and the score.
+ *
+ * <p>
+ * A frame state is filled by the simulation thread and read by the
+ * render thread. All storage is kept in preallocated primitive arrays
+ * that only grow (for example while a level is being built), so
+ * publishing a frame in steady state allocates nothing.
+ *
+ * <p>
+ * Blocks are stored by their stable id, and a bit mask marks which
+ * ids are alive in this frame. Balls, paddles and particles are stored
+ * in the order they were written.
+ */
+public class FrameState {
+    /** The side of the square a particle is drawn as, in pixels. */
+    public static final int PARTICLE_SIZE = 2;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long tick;
+    private int score;
+    private int viewX;
+    private int viewY;
+    private final OffsetDrawSurface shifted = new OffsetDrawSurface();
+
+    private int ballCount;
+    private int[] ballId = new int[INITIAL_CAPACITY];
+    private int[] ballX = new int[INITIAL_CAPACITY];
+    private int[] ballY = new int[INITIAL_CAPACITY];
+    private int[] ballR = new int[INITIAL_CAPACITY];
+    private Color[] ballColor = new Color[INITIAL_CAPACITY];
+
+    private int blockLimit;
+    private int[] blockX = new int[INITIAL_CAPACITY];
+    private int[] blockY = new int[INITIAL_CAPACITY];
+    private int[] blockW = new int[INITIAL_CAPACITY];
+    private int[] blockH = new int[INITIAL_CAPACITY];
+    private Color[] blockColor = new Color[INITIAL_CAPACITY];
+    private long[] blockAlive = new long[1];
+
+    private int paddleCount;
+    private int[] paddleX = new int[2];
+    private int[] paddleY = new int[2];
+    private int[] paddleW = new int[2];
+    private int[] paddleH = new int[2];
+    private Color[] paddleColor = new Color[2];
+
+    private int particleCount;
+    private int[] particleX = new int[INITIAL_CAPACITY];
+    private int[] particleY = new int[INITIAL_CAPACITY];
+    private Color[] particleColor = new Color[INITIAL_CAPACITY];
+    /** The time spent drawing particles since the last take; not reset by clear. */
+    private long particleNanos;
+
+    /**
+     * Clears the frame so it can be filled again. Array storage is kept.
+     *
+     * @param frameTick the simulation tick this frame belongs to
+     */
+    public void clear(long frameTick) {
+        this.tick = frameTick;
+        this.score = 0;
+        this.viewX = 0;
+        this.viewY = 0;
+        this.ballCount = 0;
+        this.paddleCount = 0;
+        this.particleCount = 0;
+        int words = (this.blockLimit + 63) >>> 6;
+        for (int i = 0; i < words; i++) {
+            this.blockAlive[i] = 0L;
+        }
+        this.blockLimit = 0;
+    }
+
+    /**
+     * Clears the balls and paddles but keeps the blocks, for a frame that
+     * is kept up to date by applying changes instead of being refilled.
+     *
+     * @param frameTick the simulation tick this frame belongs to
+     */
+    public void clearMovers(long frameTick) {
+        this.tick = frameTick;
+        this.ballCount = 0;
+        this.paddleCount = 0;
+        this.particleCount = 0;
+    }
+
+    /**
+     * Marks a block as no longer alive in this frame.
+     *
+     * @param id the block's stable id
+     */
+    public void removeBlock(int id) {
+        if (id < this.blockLimit) {
+            this.blockAlive[id >>> 6] &= ~(1L << id);
+        }
+    }
+
+    /**
+     * Records a ball.
+     *
+     * @param id    the ball's stable id
+     * @param x     the x-coordinate of the center
+     * @param y     the y-coordinate of the center
+     * @param r     the radius
+     * @param color the fill color
+     */
+    public void putBall(int id, int x, int y, int r, Color color) {
+        if (this.ballCount == this.ballX.length) {
+            int size = this.ballCount * 2;
+            this.ballId = Arrays.copyOf(this.ballId, size);
+            this.ballX = Arrays.copyOf(this.ballX, size);
+            this.ballY = Arrays.copyOf(this.ballY, size);
+            this.ballR = Arrays.copyOf(this.ballR, size);
+            this.ballColor = Arrays.copyOf(this.ballColor, size);
+        }
+        int i = this.ballCount++;
+        this.ballId[i] = id;
+        this.ballX[i] = x;
+        this.ballY[i] = y;
+        this.ballR[i] = r;
+        this.ballColor[i] = color;
+    }
+
+    /**
+     * Records a particle, drawn as a square of {@link #PARTICLE_SIZE} pixels.
+     *
+     * @param x     the x-coordinate of the upper-left corner
+     * @param y     the y-coordinate of the upper-left corner
+     * @param color the fill color
+     */
+    public void putParticle(int x, int y, Color color) {
+        if (this.particleCount == this.particleX.length) {
+            int size = this.particleCount * 2;
+            this.particleX = Arrays.copyOf(this.particleX, size);
+            this.particleY = Arrays.copyOf(this.particleY, size);
+            this.particleColor = Arrays.copyOf(this.particleColor, size);
+        }
+        int i = this.particleCount++;
+        this.particleX[i] = x;
+        this.particleY[i] = y;
+        this.particleColor[i] = color;
+    }
+
+    /**
+     * Records a live block under its stable id.
+     *
+     * @param id    the block's stable id
+     * @param x     the x-coordinate of the upper-left corner
+     * @param y     the y-coordinate of the upper-left corner
+     * @param w     the width
+     * @param h     the height
+     * @param color the fill color
+     */
+    public void putBlock(int id, int x, int y, int w, int h, Color color) {
+        if (id >= this.blockX.length) {
+            int size = Math.max(id + 1, this.blockX.length * 2);
+            this.blockX = Arrays.copyOf(this.blockX, size);
+            this.blockY = Arrays.copyOf(this.blockY, size);
+            this.blockW = Arrays.copyOf(this.blockW, size);
+            this.blockH = Arrays.copyOf(this.blockH, size);
+            this.blockColor = Arrays.copyOf(this.blockColor, size);
+            this.blockAlive = Arrays.copyOf(this.blockAlive, (size + 63) >>> 6);
+        }
+        this.blockX[id] = x;
+        this.blockY[id] = y;
+        this.blockW[id] = w;
+        this.blockH[id] = h;
+        this.blockColor[id] = color;
+        this.blockAlive[id >>> 6] |= 1L << id;
+        if (id >= this.blockLimit) {
+            this.blockLimit = id + 1;
+        }
+    }
+
+    /**
+     * Records a paddle.
+     *
+     * @param x     the x-coordinate of the upper-left corner
+     * @param y     the y-coordinate of the upper-left corner
+     * @param w     the width
+     * @param h     the height
+     * @param color the fill color
+     */
+    public void putPaddle(int x, int y, int w, int h, Color color) {
+        if (this.paddleCount == this.paddleX.length) {
+            int size = this.paddleCount * 2;
+            this.paddleX = Arrays.copyOf(this.paddleX, size);
+            this.paddleY = Arrays.copyOf(this.paddleY, size);
+            this.paddleW = Arrays.copyOf(this.paddleW, size);
+            this.paddleH = Arrays.copyOf(this.paddleH, size);
+            this.paddleColor = Arrays.copyOf(this.paddleColor, size);
+        }
+        int i = this.paddleCount++;
+        this.paddleX[i] = x;
+        this.paddleY[i] = y;
+        this.paddleW[i] = w;
+        this.paddleH[i] = h;
+        this.paddleColor[i] = color;
+    }
+
+    /**
+     * Records the upper-left corner of the viewport, in world coordinates.
+     *
+     * @param x the viewport's x-coordinate
+     * @param y the viewport's y-coordinate
+     */
+    public void setView(int x, int y) {
+        this.viewX = x;
+        this.viewY = y;
+    }
+
+    /**
+     * Records the score shown in this frame.
+     *
+     * @param value the score
+     */
+    public void setScore(int value) {
+        this.score = value;
+    }
+
+    /**
+     * Draws this frame on the given surface, in the same style
+     * the sprites use when they draw themselves. The world is shifted by
+     * the viewport; the score stays in place. Particles are drawn first,
+     * under the blocks, paddles and balls, as the game's own sprites draw
+     * them.
+     *
+     * @param screen the surface to draw on
+     */
+    public void drawOn(DrawSurface screen) {
+        DrawSurface d = screen;
+        if (this.viewX != 0 || this.viewY != 0) {
+            d = this.shifted.wrap(screen, -this.viewX, -this.viewY);
+        }
+        if (this.particleCount > 0) {
+            long start = System.nanoTime();
+            Color current = null;
+            for (int i = 0; i < this.particleCount; i++) {
+                // bursts and trails write runs of one color; set it once per run
+                if (this.particleColor[i] != current) {
+                    current = this.particleColor[i];
+                    d.setColor(current);
+                }
+                d.fillRectangle(this.particleX[i], this.particleY[i], PARTICLE_SIZE, PARTICLE_SIZE);
+            }
+            this.particleNanos += System.nanoTime() - start;
+        }
+        for (int id = 0; id < this.blockLimit; id++) {
+            if (isBlockAlive(id)) {
+                drawBox(d, this.blockX[id], this.blockY[id], this.blockW[id], this.blockH[id], this.blockColor[id]);
+            }
+        }
+        for (int i = 0; i < this.paddleCount; i++) {
+            drawBox(d, this.paddleX[i], this.paddleY[i], this.paddleW[i], this.paddleH[i], this.paddleColor[i]);
+        }
+        for (int i = 0; i < this.ballCount; i++) {
+            d.setColor(this.ballColor[i]);
+            d.fillCircle(this.ballX[i], this.ballY[i], this.ballR[i]);
+        }
+        screen.setColor(Color.BLACK);
+        screen.drawText(390, 25, "Score: " + this.score, 16);
+    }
+
+    private static void drawBox(DrawSurface d, int x, int y, int w, int h, Color color) {
+        d.setColor(color);
+        d.fillRectangle(x, y, w, h);
+        d.setColor(Color.BLACK);
+        d.drawRectangle(x, y, w, h);
+    }
+
+    /**
+     * Returns the simulation tick this frame belongs to.
+     *
+     * @return the tick
+     */
+    public long getTick() {
+        return this.tick;
+    }
+
+    /**
+     * Returns the score shown in this frame.
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return this.score;
+    }
+
+    /**
+     * Returns the number of balls in this frame.
+     *
+     * @return the ball count
+     */
+    public int getBallCount() {
+        return this.ballCount;
+    }
+
+    /**
+     * Returns the stable id of the i-th ball.
+     *
+     * @param i the ball index, in {@code [0, getBallCount())}
+     * @return the ball id
+     */
+    public int getBallId(int i) {
+        return this.ballId[i];
+    }
+
+    /**
+     * Returns the x-coordinate of the i-th ball.
+     *
+     * @param i the ball index
+     * @return the x-coordinate of the center
+     */
+    public int getBallX(int i) {
+        return this.ballX[i];
+    }
+
+    /**
+     * Returns the y-coordinate of the i-th ball.
+     *
+     * @param i the ball index
+     * @return the y-coordinate of the center
+     */
+    public int getBallY(int i) {
+        return this.ballY[i];
+    }
+
+    /**
+     * Returns the radius of the i-th ball.
+     *
+     * @param i the ball index
+     * @return the radius
+     */
+    public int getBallRadius(int i) {
+        return this.ballR[i];
+    }
+
+    /**
+     * Returns the color of the i-th ball.
+     *
+     * @param i the ball index
+     * @return the fill color
+     */
+    public Color getBallColor(int i) {
+        return this.ballColor[i];
+    }
+
+    /**
+     * Returns one past the largest block id recorded in this frame.
+     *
+     * @return the block id limit
+     */
+    public int getBlockLimit() {
+        return this.blockLimit;
+    }
+
+    /**
+     * Checks whether the block with the given id is alive in this frame.
+     *
+     * @param id the block id
+     * @return true if the block was recorded in this frame
+     */
+    public boolean isBlockAlive(int id) {
+        return id < this.blockLimit && (this.blockAlive[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Returns the number of paddles in this frame.
+     *
+     * @return the paddle count
+     */
+    public int getPaddleCount() {
+        return this.paddleCount;
+    }
+
+    /**
+     * Returns the x-coordinate of the i-th paddle.
+     *
+     * @param i the paddle index
+     * @return the x-coordinate of the upper-left corner
+     */
+    public int getPaddleX(int i) {
+        return this.paddleX[i];
+    }
+
+    /**
+     * Returns the y-coordinate of the i-th paddle.
+     *
+     * @param i the paddle index
+     * @return the y-coordinate of the upper-left corner
+     */
+    public int getPaddleY(int i) {
+        return this.paddleY[i];
+    }
+
+    /**
+     * Returns the width of the i-th paddle.
+     *
+     * @param i the paddle index
+     * @return the width
+     */
+    public int getPaddleWidth(int i) {
+        return this.paddleW[i];
+    }
+
+    /**
+     * Returns the height of the i-th paddle.
+     *
+     * @param i the paddle index
+     * @return the height
+     */
+    public int getPaddleHeight(int i) {
+        return this.paddleH[i];
+    }
+
+    /**
+     * Returns the color of the i-th paddle.
+     *
+     * @param i the paddle index
+     * @return the fill color
+     */
+    public Color getPaddleColor(int i) {
+        return this.paddleColor[i];
+    }
+
+    /**
+     * Returns the time {@link #drawOn} spent drawing particles since the
+     * last call, and starts counting again. A frame state drawn on the
+     * render thread comes back to the simulation thread through the
+     * exchange, so the simulation can charge the draw to its particle
+     * budget when it refills the frame.
+     *
+     * @return the drawing time, in nanoseconds
+     */
+    public long takeParticleDrawNanos() {
+        long nanos = this.particleNanos;
+        this.particleNanos = 0;
+        return nanos;
+    }
+
+    /**
+     * Returns the number of particles recorded.
+     *
+     * @return the particle count
+     */
+    public int getParticleCount() {
+        return this.particleCount;
+    }
+}
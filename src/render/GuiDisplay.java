@@ -0,0 +1,35 @@
+package render;
+
+import biuoop.DrawSurface;
+import biuoop.GUI;
+
+/**
+ * A {@link Display} that shows frames in a {@link GUI} window.
+ */
+public class GuiDisplay implements Display {
+    private final GUI gui;
+
+    /**
+     * Creates a display backed by the given window.
+     *
+     * @param gui the window to draw to
+     */
+    public GuiDisplay(GUI gui) {
+        this.gui = gui;
+    }
+
+    @Override
+    public DrawSurface getDrawSurface() {
+        return this.gui.getDrawSurface();
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        this.gui.show(d);
+    }
+
+    @Override
+    public void close() {
+        this.gui.close();
+    }
+}
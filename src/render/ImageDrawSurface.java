@@ -0,0 +1,142 @@
+package render;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * A {@link DrawSurface} that draws into a {@link BufferedImage}
+ * instead of a window, so frames can be rendered on machines
+ * without a display.
+ *
+ * <p>
+ * Anti-aliasing is turned off so the same frame always produces
+ * the same pixels, which keeps image comparisons exact.
+ */
+public class ImageDrawSurface implements DrawSurface {
+    private static final int MAX_CACHED_FONT = 64;
+
+    private final BufferedImage image;
+    private final Graphics2D g;
+    private final Font[] fonts = new Font[MAX_CACHED_FONT + 1];
+
+    /**
+     * Creates a surface with a new RGB image of the given size.
+     *
+     * @param width  the image width in pixels
+     * @param height the image height in pixels
+     */
+    public ImageDrawSurface(int width, int height) {
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.g = this.image.createGraphics();
+        this.g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        this.g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        clear();
+    }
+
+    /**
+     * Fills the whole image with white, like a fresh window surface.
+     */
+    public void clear() {
+        this.g.setColor(Color.WHITE);
+        this.g.fillRect(0, 0, this.image.getWidth(), this.image.getHeight());
+        this.g.setColor(Color.BLACK);
+    }
+
+    /**
+     * Returns the image this surface draws into.
+     *
+     * @return the backing image
+     */
+    public BufferedImage getImage() {
+        return this.image;
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image img) {
+        this.g.drawImage(img, x, y, null);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        this.g.drawOval(x - r, y - r, 2 * r, 2 * r);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        this.g.fillOval(x - r, y - r, 2 * r, 2 * r);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        this.g.drawOval(x, y, width, height);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        this.g.fillOval(x, y, width, height);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        this.g.drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        this.g.drawRect(x, y, width, height);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        this.g.fillRect(x, y, width, height);
+    }
+
+    @Override
+    public void drawPolygon(Polygon p) {
+        this.g.drawPolygon(p);
+    }
+
+    @Override
+    public void fillPolygon(Polygon p) {
+        this.g.fillPolygon(p);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        this.g.setFont(font(fontSize));
+        this.g.drawString(text, x, y);
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.g.setColor(color);
+    }
+
+    @Override
+    public int getWidth() {
+        return this.image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return this.image.getHeight();
+    }
+
+    private Font font(int size) {
+        if (size < 0 || size > MAX_CACHED_FONT) {
+            return new Font(Font.SANS_SERIF, Font.PLAIN, size);
+        }
+        if (this.fonts[size] == null) {
+            this.fonts[size] = new Font(Font.SANS_SERIF, Font.PLAIN, size);
+        }
+        return this.fonts[size];
+    }
+}
@@ -0,0 +1,122 @@
+package render;
+
+import biuoop.DrawSurface;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Display} that renders into offscreen images and hands every
+ * finished frame to a {@link FrameSink} on a background thread pool.
+ *
+ * <p>
+ * A small ring of image surfaces is reused: the game draws into one while
+ * the encoder threads work on the others, so capturing does not hold up
+ * the simulation unless the encoders fall a whole ring behind.
+ */
+public class OffscreenDisplay implements Display {
+    /** How long {@link #close()} waits for the encoders to finish. */
+    private static final long CLOSE_TIMEOUT_SECONDS = 60;
+    private final FrameSink sink;
+    private final ExecutorService encoders;
+    private final BlockingQueue<ImageDrawSurface> free;
+    private long frames;
+    private volatile IOException failure;
+
+    /**
+     * Creates an offscreen display.
+     *
+     * @param width          the frame width in pixels
+     * @param height         the frame height in pixels
+     * @param sink           where finished frames are written
+     * @param encoderThreads the number of background encoder threads
+     */
+    public OffscreenDisplay(int width, int height, FrameSink sink, int encoderThreads) {
+        this.sink = sink;
+        this.encoders = Executors.newFixedThreadPool(encoderThreads, r -> {
+            Thread t = new Thread(r, "frame-encoder");
+            t.setDaemon(true);
+            return t;
+        });
+        int surfaces = encoderThreads * 2 + 1;
+        this.free = new ArrayBlockingQueue<>(surfaces);
+        for (int i = 0; i < surfaces; i++) {
+            this.free.add(new ImageDrawSurface(width, height));
+        }
+    }
+
+    @Override
+    public DrawSurface getDrawSurface() {
+        try {
+            ImageDrawSurface surface = this.free.take();
+            surface.clear();
+            return surface;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a free frame", e);
+        }
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        ImageDrawSurface surface = (ImageDrawSurface) d;
+        long index = this.frames++;
+        this.encoders.execute(() -> {
+            try {
+                if (this.failure == null) {
+                    this.sink.writeFrame(index, surface.getImage());
+                }
+            } catch (IOException e) {
+                // keep the first failure; later frames fail because of it
+                if (this.failure == null) {
+                    this.failure = e;
+                }
+            } finally {
+                this.free.add(surface);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of frames shown so far.
+     *
+     * @return the frame count
+     */
+    public long getFrameCount() {
+        return this.frames;
+    }
+
+    /**
+     * Waits for all queued frames to be encoded, for at most
+     * {@value #CLOSE_TIMEOUT_SECONDS} seconds, and closes the sink.
+     *
+     * @throws UncheckedIOException if any frame failed to encode, or the
+     *                              encoders did not finish in time
+     */
+    @Override
+    public void close() {
+        this.encoders.shutdown();
+        try {
+            if (!this.encoders.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                this.encoders.shutdownNow();
+                if (this.failure == null) {
+                    this.failure = new IOException("Frame encoders did not finish within "
+                            + CLOSE_TIMEOUT_SECONDS + " seconds");
+                }
+            }
+            this.sink.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (this.failure != null) {
+            throw new UncheckedIOException(this.failure);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package render;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+
+/**
+ * A {@link DrawSurface} that shifts everything drawn on it by a fixed
+ * offset before passing it on to another surface. Used to draw a world
+ * larger than the screen through a scrolling viewport.
+ */
+public class OffsetDrawSurface implements DrawSurface {
+    private DrawSurface target;
+    private int dx;
+    private int dy;
+
+    /**
+     * Points this surface at the given target and offset.
+     * The same instance can be reused for every frame.
+     *
+     * @param surface the surface drawing is passed on to
+     * @param offsetX added to every x-coordinate
+     * @param offsetY added to every y-coordinate
+     * @return this surface
+     */
+    public OffsetDrawSurface wrap(DrawSurface surface, int offsetX, int offsetY) {
+        this.target = surface;
+        this.dx = offsetX;
+        this.dy = offsetY;
+        return this;
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image img) {
+        this.target.drawImage(x + this.dx, y + this.dy, img);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        this.target.drawCircle(x + this.dx, y + this.dy, r);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        this.target.fillCircle(x + this.dx, y + this.dy, r);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        this.target.drawOval(x + this.dx, y + this.dy, width, height);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        this.target.fillOval(x + this.dx, y + this.dy, width, height);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        this.target.drawLine(x1 + this.dx, y1 + this.dy, x2 + this.dx, y2 + this.dy);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        this.target.drawRectangle(x + this.dx, y + this.dy, width, height);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        this.target.fillRectangle(x + this.dx, y + this.dy, width, height);
+    }
+
+    @Override
+    public void drawPolygon(Polygon p) {
+        Polygon shifted = new Polygon(p.xpoints, p.ypoints, p.npoints);
+        shifted.translate(this.dx, this.dy);
+        this.target.drawPolygon(shifted);
+    }
+
+    @Override
+    public void fillPolygon(Polygon p) {
+        Polygon shifted = new Polygon(p.xpoints, p.ypoints, p.npoints);
+        shifted.translate(this.dx, this.dy);
+        this.target.fillPolygon(shifted);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        this.target.drawText(x + this.dx, y + this.dy, text, fontSize);
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.target.setColor(color);
+    }
+
+    @Override
+    public int getWidth() {
+        return this.target.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return this.target.getHeight();
+    }
+}
@@ -0,0 +1,39 @@
+package render;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes every frame as a numbered PNG file
+ * ({@code frame-000000.png}, {@code frame-000001.png}, ...) into a directory.
+ */
+public class PngSequenceSink implements FrameSink {
+    private final File directory;
+
+    /**
+     * Creates a sink writing into the given directory, creating it if needed.
+     *
+     * @param directory the output directory
+     * @throws IOException if the directory cannot be created
+     */
+    public PngSequenceSink(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        this.directory = directory;
+    }
+
+    @Override
+    public void writeFrame(long index, BufferedImage image) throws IOException {
+        File file = new File(this.directory, String.format("frame-%06d.png", index));
+        if (!ImageIO.write(image, "png", file)) {
+            throw new IOException("No PNG writer available");
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
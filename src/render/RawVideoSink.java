@@ -0,0 +1,162 @@
+package render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes frames as a headerless stream of packed 24-bit RGB pixels
+ * (the {@code rawvideo}/{@code rgb24} format video tools understand).
+ *
+ * <p>
+ * Two targets are supported:
+ * <ul>
+ *     <li>a file, written through a memory mapping of each frame. Every
+ *         frame has a fixed offset, so encoder threads convert and copy
+ *         their frames in parallel without any ordering. Mapping a frame
+ *         grows the file to the end of that frame and no further, so the
+ *         file is never cut while a mapping may still be alive;</li>
+ *     <li>a pipe or any other channel (for example the standard input of an
+ *         encoder process). Frames are converted in parallel but written
+ *         strictly in order. Once a frame fails, every later frame fails
+ *         too instead of waiting for it.</li>
+ * </ul>
+ */
+public class RawVideoSink implements FrameSink {
+    private final int width;
+    private final int height;
+    private final int frameBytes;
+    private final FileChannel file;
+    private final WritableByteChannel pipe;
+    private final ThreadLocal<ByteBuffer> scratch;
+    /** The frames a pipe sink has written, which is also the next one it writes. */
+    private long framesWritten;
+    /** The first failure of a pipe sink, after which no frame is written. */
+    private IOException failure;
+
+    private RawVideoSink(int width, int height, FileChannel file, WritableByteChannel pipe) {
+        this.width = width;
+        this.height = height;
+        this.frameBytes = width * height * 3;
+        this.file = file;
+        this.pipe = pipe;
+        this.scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(this.frameBytes));
+    }
+
+    /**
+     * Creates a sink writing to a memory-mapped file. Any existing file is replaced.
+     *
+     * @param path   the output file
+     * @param width  the frame width in pixels
+     * @param height the frame height in pixels
+     * @return the sink
+     * @throws IOException if the file cannot be opened
+     */
+    public static RawVideoSink toFile(Path path, int width, int height) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new RawVideoSink(width, height, channel, null);
+    }
+
+    /**
+     * Creates a sink writing to a pipe or other sequential channel.
+     *
+     * @param channel the channel to write to; it is closed with the sink
+     * @param width   the frame width in pixels
+     * @param height  the frame height in pixels
+     * @return the sink
+     */
+    public static RawVideoSink toChannel(WritableByteChannel channel, int width, int height) {
+        return new RawVideoSink(width, height, null, channel);
+    }
+
+    @Override
+    public void writeFrame(long index, BufferedImage image) throws IOException {
+        if (image.getWidth() != this.width || image.getHeight() != this.height
+                || image.getType() != BufferedImage.TYPE_INT_RGB) {
+            IOException e = new IOException("Frame does not match the " + this.width + "x" + this.height + " RGB stream");
+            if (this.pipe != null) {
+                fail(e);
+            }
+            throw e;
+        }
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        if (this.file != null) {
+            packRgb(pixels, frameSlice(index));
+        } else {
+            try {
+                ByteBuffer buffer = this.scratch.get();
+                buffer.clear();
+                packRgb(pixels, buffer);
+                buffer.flip();
+                writeInOrder(index, buffer);
+            } catch (IOException e) {
+                fail(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Records the first failure of a pipe sink and wakes the frames
+     * waiting for their turn, which can then never come.
+     */
+    private synchronized void fail(IOException e) {
+        if (this.failure == null) {
+            this.failure = e;
+        }
+        notifyAll();
+    }
+
+    private static void packRgb(int[] pixels, ByteBuffer target) {
+        for (int p : pixels) {
+            target.put((byte) (p >>> 16));
+            target.put((byte) (p >>> 8));
+            target.put((byte) p);
+        }
+    }
+
+    /**
+     * Maps exactly the bytes of the given frame in the file, growing the
+     * file to the end of the frame if it is shorter.
+     */
+    private synchronized MappedByteBuffer frameSlice(long index) throws IOException {
+        return this.file.map(FileChannel.MapMode.READ_WRITE, index * this.frameBytes, this.frameBytes);
+    }
+
+    private synchronized void writeInOrder(long index, ByteBuffer buffer) throws IOException {
+        while (this.framesWritten != index && this.failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for frame " + this.framesWritten, e);
+            }
+        }
+        if (this.failure != null) {
+            throw new IOException("Frame " + index + " not written after an earlier frame failed", this.failure);
+        }
+        while (buffer.hasRemaining()) {
+            this.pipe.write(buffer);
+        }
+        // a frame that failed is not counted; fail wakes the waiting frames instead
+        this.framesWritten++;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.file != null) {
+            // the file ends with the last frame mapped, so there is nothing to cut
+            this.file.close();
+        } else {
+            this.pipe.close();
+        }
+    }
+}
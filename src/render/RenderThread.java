@@ -0,0 +1,69 @@
+package render;
+
+import biuoop.DrawSurface;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A thread that draws the latest frame published to a {@link FrameExchange},
+ * independently of the simulation that produces the frames.
+ */
+public class RenderThread extends Thread {
+    /** How long to park when no new frame is ready. */
+    private static final long IDLE_PARK_NANOS = 250_000L;
+
+    private final FrameExchange exchange;
+    private final Display display;
+    private volatile boolean running = true;
+    private volatile long framesDrawn;
+
+    /**
+     * Creates a render thread.
+     *
+     * @param exchange the exchange frames are read from
+     * @param display  the display frames are drawn to
+     */
+    public RenderThread(FrameExchange exchange, Display display) {
+        super("render");
+        this.exchange = exchange;
+        this.display = display;
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        while (this.running) {
+            FrameState state = this.exchange.acquire();
+            if (state == null) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            DrawSurface d = this.display.getDrawSurface();
+            state.drawOn(d);
+            this.display.show(d);
+            this.framesDrawn++;
+        }
+    }
+
+    /**
+     * Asks the thread to stop and waits for it to finish its current frame.
+     */
+    public void shutdown() {
+        this.running = false;
+        LockSupport.unpark(this);
+        try {
+            join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns how many frames this thread has drawn so far.
+     *
+     * @return the number of frames drawn
+     */
+    public long getFramesDrawn() {
+        return this.framesDrawn;
+    }
+}
@@ -0,0 +1,92 @@
+package render;
+
+import biuoop.DrawSurface;
+
+/**
+ * A display that passes frames on to another one and times the first
+ * second of frames, from the first frame shown, to measure how smoothly a
+ * game starts.
+ */
+public class TimedDisplay implements Display {
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    private final Display target;
+    private long firstFrameAt = -1;
+    private long lastFrameAt;
+    private int frames;
+    private long sumGapNanos;
+    private long maxGapNanos;
+
+    /**
+     * Creates a timed display.
+     *
+     * @param target the display frames are shown on
+     */
+    public TimedDisplay(Display target) {
+        this.target = target;
+    }
+
+    @Override
+    public DrawSurface getDrawSurface() {
+        return this.target.getDrawSurface();
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        this.target.show(d);
+        long now = System.nanoTime();
+        if (this.firstFrameAt < 0) {
+            this.firstFrameAt = now;
+        } else if (now - this.firstFrameAt <= WINDOW_NANOS) {
+            long gap = now - this.lastFrameAt;
+            this.sumGapNanos += gap;
+            this.maxGapNanos = Math.max(this.maxGapNanos, gap);
+        } else {
+            this.lastFrameAt = now;
+            return;
+        }
+        this.frames++;
+        this.lastFrameAt = now;
+    }
+
+    @Override
+    public void close() {
+        this.target.close();
+    }
+
+    /**
+     * Returns when the first frame was shown.
+     *
+     * @return the {@link System#nanoTime()} of the first frame, or -1 before it
+     */
+    public long getFirstFrameAt() {
+        return this.firstFrameAt;
+    }
+
+    /**
+     * Returns the number of frames shown in the first second.
+     *
+     * @return the frame count
+     */
+    public int getFirstSecondFrames() {
+        return this.frames;
+    }
+
+    /**
+     * Returns the mean time between frames in the first second.
+     *
+     * @return the mean frame time in nanoseconds, or 0 with fewer than two frames
+     */
+    public double getFirstSecondMeanNanos() {
+        return this.frames < 2 ? 0 : (double) this.sumGapNanos / (this.frames - 1);
+    }
+
+    /**
+     * Returns the longest time between frames in the first second.
+     *
+     * @return the longest frame time in nanoseconds
+     */
+    public long getFirstSecondMaxNanos() {
+        return this.maxGapNanos;
+    }
+}
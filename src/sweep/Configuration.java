@@ -0,0 +1,76 @@
+package sweep;
+
+/**
+ * One point of a parameter sweep: a level with the paddle's region
+ * angles and the balls' starting speed to play it with.
+ */
+public final class Configuration {
+    private final int index;
+    private final String layout;
+    private final byte[] level;
+    private final double[] angles;
+    private final double speed;
+
+    /**
+     * Creates a configuration.
+     *
+     * @param index  the configuration's position in the sweep
+     * @param layout the name of the level, as given on the command line
+     * @param level  the level in the binary level format
+     * @param angles the paddle's four outer region angles, in degrees
+     * @param speed  the balls' starting speed, or 0 to keep the level's velocities
+     */
+    public Configuration(int index, String layout, byte[] level, double[] angles, double speed) {
+        this.index = index;
+        this.layout = layout;
+        this.level = level;
+        this.angles = angles.clone();
+        this.speed = speed;
+    }
+
+    /**
+     * Returns the configuration's position in the sweep.
+     *
+     * @return the index
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Returns the name of the level.
+     *
+     * @return the layout name
+     */
+    public String getLayout() {
+        return this.layout;
+    }
+
+    /**
+     * Returns the level in the binary level format. The array is shared
+     * and must not be changed.
+     *
+     * @return the level bytes
+     */
+    byte[] getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Returns the paddle's region angles.
+     *
+     * @return a copy of the four angles
+     */
+    public double[] getAngles() {
+        return this.angles.clone();
+    }
+
+    /**
+     * Returns the balls' starting speed.
+     *
+     * @return the speed, or 0 if the level's velocities are kept
+     */
+    public double getSpeed() {
+        return this.speed;
+    }
+}
@@ -0,0 +1,113 @@
+package sweep;
+
+import biuoop.KeyboardSensor;
+import game.AutoplayController;
+import game.Game;
+import game.Paddle;
+import levels.LevelBuilder;
+import levels.LevelReader;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.util.SplittableRandom;
+
+/**
+ * Plays one game of a configuration without a display, with an
+ * {@link AutoplayController} at the paddle.
+ *
+ * <p>
+ * Everything random in a run comes from its seed: the turn of each
+ * ball's starting direction and the controller's aim offsets. The game
+ * itself does not read the clock, so the same configuration and seed
+ * always play the same game.
+ */
+public final class HeadlessRun {
+    private HeadlessRun() {
+    }
+
+    /**
+     * Plays a game until the level is cleared, every ball is lost, or the
+     * tick limit is reached.
+     *
+     * @param config   the configuration to play
+     * @param seed     the run's seed
+     * @param maxTicks the most ticks to play
+     * @param aimError the controller's largest aim offset, as a fraction of the paddle's half-width
+     * @param spread   the largest turn of a ball's starting direction, in degrees
+     * @return the outcome
+     */
+    public static RunResult play(Configuration config, long seed, long maxTicks, double aimError, double spread) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Game game = new Game();
+        KeyboardSensor player = new AutoplayController(game, aimError, random.nextLong());
+        LevelBuilder builder = new Tuning(game.prepare(null, player), config.getSpeed(), spread, random);
+        try {
+            LevelReader.readBinary(Channels.newChannel(new ByteArrayInputStream(config.getLevel())), builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        double[] angles = config.getAngles();
+        for (Paddle paddle : game.getPaddles()) {
+            paddle.setRegionAngles(angles);
+        }
+        int balls = game.getRemainingBalls().getValue();
+        while (game.getRemainingBlocks().getValue() > 0 && game.getRemainingBalls().getValue() > 0
+                && game.getTick() < maxTicks) {
+            game.tick();
+        }
+        // the tick that cleared the level added the clear bonus
+        boolean cleared = game.getRemainingBlocks().getValue() == 0;
+        return new RunResult(seed, cleared, game.getTick(), balls - game.getRemainingBalls().getValue(),
+                game.getScore().getValue(), game.getLevelName());
+    }
+
+    /**
+     * Passes a level on unchanged except for the balls' starting
+     * velocities, which get the configured speed and a random turn.
+     */
+    private static final class Tuning implements LevelBuilder {
+        private final LevelBuilder target;
+        private final double speed;
+        private final double spread;
+        private final SplittableRandom random;
+
+        Tuning(LevelBuilder target, double speed, double spread, SplittableRandom random) {
+            this.target = target;
+            this.speed = speed;
+            this.spread = spread;
+            this.random = random;
+        }
+
+        @Override
+        public void name(String name) {
+            this.target.name(name);
+        }
+
+        @Override
+        public void block(double x, double y, double width, double height, Color color, int listeners) {
+            this.target.block(x, y, width, height, color, listeners);
+        }
+
+        @Override
+        public void paddle(double x, double y, double width, double height, Color color, int speed) {
+            this.target.paddle(x, y, width, height, color, speed);
+        }
+
+        @Override
+        public void ball(double x, double y, int r, Color color, double dx, double dy) {
+            if (this.speed > 0 || this.spread > 0) {
+                double angle = StrictMath.atan2(dy, dx);
+                if (this.spread > 0) {
+                    angle += StrictMath.toRadians((this.random.nextDouble() * 2 - 1) * this.spread);
+                }
+                double v = this.speed > 0 ? this.speed : StrictMath.hypot(dx, dy);
+                dx = v * StrictMath.cos(angle);
+                dy = v * StrictMath.sin(angle);
+            }
+            this.target.ball(x, y, r, color, dx, dy);
+        }
+    }
+}
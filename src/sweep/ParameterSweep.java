@@ -0,0 +1,349 @@
+package sweep;
+
+import leaderboard.Leaderboard;
+import leaderboard.LeaderboardStore;
+import levels.BinaryLevelWriter;
+import levels.DefaultLevel;
+import levels.LevelReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Command-line tool that plays many seeded headless games for every
+ * combination of paddle region angles, ball speeds and levels, and
+ * writes statistics about them as CSV.
+ *
+ * <pre>
+ * java sweep.ParameterSweep [options]
+ *   --angles A,B,C,D     the paddle's outer left, inner left, inner right and
+ *                        outer right angles (default 300,330,30,60)
+ *   --speeds S           ball starting speeds; 0 keeps the level's (default 0)
+ *   --levels L,L...      level files, or "default" for the built-in level
+ *   --runs N             games per configuration (default 1000)
+ *   --seed S             the first run's seed (default 1)
+ *   --max-ticks N        the longest game, in ticks (default 20000)
+ *   --aim-error E        the autoplayer's aim error, as a fraction of the
+ *                        paddle's half-width (default 0.5)
+ *   --spread D           the largest random turn of a ball's starting
+ *                        direction, in degrees (default 10)
+ *   --threads N          worker threads (default: one per core)
+ *   --config N           play only configuration N
+ *   --out PREFIX         write PREFIX-runs.csv and PREFIX-summary.csv
+ *                        (default "sweep")
+ *   --leaderboard DIR    also enter every game's score into the level's
+ *                        leaderboard in DIR, as "config N seed S"
+ * </pre>
+ * Each angle and each speed is a single value, alternatives separated by
+ * {@code |} or a range {@code FROM:TO:STEP}; the sweep covers every
+ * combination. For example {@code --angles 290:310:10,330,30,50|60}
+ * sweeps six configurations per speed and level.
+ *
+ * <p>
+ * Run {@code i} of every configuration uses seed {@code S + i}, so
+ * configurations are compared on the same random draws. Results stream
+ * to the runs file in run order, one line per game with its seed, as soon
+ * as a game and every game before it are done, and a configuration's
+ * summary line follows its last game. The output does not depend on the
+ * number of threads. A single game is reproduced with
+ * {@code --config N --seed SEED --runs 1} and the same other options.
+ */
+public final class ParameterSweep {
+    /** Runs handed to a worker at a time. */
+    private static final int BATCH = 16;
+    private static final String RUNS_HEADER = "config,seed,cleared,ticks,balls_lost,score";
+
+    private ParameterSweep() {
+    }
+
+    /**
+     * Runs the sweep.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if a level cannot be read or an output file cannot be written
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String angles = "300,330,30,60";
+        String speeds = "0";
+        String levels = "default";
+        int runs = 1000;
+        long seed = 1;
+        long maxTicks = 20000;
+        double aimError = 0.5;
+        double spread = 10;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int only = -1;
+        String out = "sweep";
+        String leaderboard = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                System.err.println("option " + args[i] + " needs a value");
+                System.exit(2);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--angles":
+                    angles = value;
+                    break;
+                case "--speeds":
+                    speeds = value;
+                    break;
+                case "--levels":
+                    levels = value;
+                    break;
+                case "--runs":
+                    runs = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--max-ticks":
+                    maxTicks = Long.parseLong(value);
+                    break;
+                case "--aim-error":
+                    aimError = Double.parseDouble(value);
+                    break;
+                case "--spread":
+                    spread = Double.parseDouble(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--config":
+                    only = Integer.parseInt(value);
+                    break;
+                case "--out":
+                    out = value;
+                    break;
+                case "--leaderboard":
+                    leaderboard = value;
+                    break;
+                default:
+                    System.err.println("unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+        List<Configuration> configs = configurations(angles, speeds, levels);
+        if (only >= 0) {
+            configs = configs.subList(only, only + 1);
+        }
+        LeaderboardStore store = leaderboard == null ? null
+                : new LeaderboardStore(Paths.get(leaderboard), Leaderboard.DEFAULT_CAPACITY);
+        try (Writer runsCsv = Files.newBufferedWriter(Paths.get(out + "-runs.csv"));
+             Writer summaryCsv = Files.newBufferedWriter(Paths.get(out + "-summary.csv"))) {
+            long start = System.nanoTime();
+            run(configs, runs, seed, maxTicks, aimError, spread, threads, runsCsv, summaryCsv, store);
+            System.out.printf("%d configurations x %d runs in %.1f s%n", configs.size(), runs,
+                    (System.nanoTime() - start) / 1e9);
+        } finally {
+            if (store != null) {
+                store.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Builds every combination of the given parameters, levels outermost.
+     *
+     * @param angles the angle specification
+     * @param speeds the speed specification
+     * @param levels comma-separated level files or "default"
+     * @return the configurations, in index order
+     * @throws IOException if a level cannot be read
+     */
+    public static List<Configuration> configurations(String angles, String speeds, String levels)
+            throws IOException {
+        String[] parts = angles.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Expected 4 angles: " + angles);
+        }
+        double[][] choices = new double[4][];
+        for (int i = 0; i < 4; i++) {
+            choices[i] = values(parts[i]);
+        }
+        double[] speedValues = values(speeds);
+        List<Configuration> configs = new ArrayList<>();
+        for (String layout : levels.split(",")) {
+            byte[] level = compile(layout);
+            for (double a0 : choices[0]) {
+                for (double a1 : choices[1]) {
+                    for (double a2 : choices[2]) {
+                        for (double a3 : choices[3]) {
+                            for (double speed : speedValues) {
+                                configs.add(new Configuration(configs.size(), layout, level,
+                                        new double[] {a0, a1, a2, a3}, speed));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return configs;
+    }
+
+    /**
+     * Parses a single value, alternatives separated by {@code |}, or a
+     * range {@code FROM:TO:STEP} that includes {@code TO}.
+     */
+    static double[] values(String spec) {
+        String[] range = spec.split(":");
+        if (range.length == 3) {
+            double from = Double.parseDouble(range[0]);
+            double to = Double.parseDouble(range[1]);
+            double step = Double.parseDouble(range[2]);
+            if (step <= 0) {
+                throw new IllegalArgumentException("Range step must be positive: " + spec);
+            }
+            int n = (int) Math.floor((to - from) / step + 1e-9) + 1;
+            double[] v = new double[Math.max(n, 0)];
+            for (int i = 0; i < v.length; i++) {
+                v[i] = from + i * step;
+            }
+            return v;
+        }
+        String[] alternatives = spec.split("\\|");
+        double[] v = new double[alternatives.length];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = Double.parseDouble(alternatives[i]);
+        }
+        return v;
+    }
+
+    /**
+     * Reads a level once into the binary format, so runs replay it from memory.
+     */
+    private static byte[] compile(String layout) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BinaryLevelWriter writer = new BinaryLevelWriter(bytes)) {
+            if (layout.equals("default")) {
+                DefaultLevel.emit(writer);
+            } else {
+                LevelReader.read(Paths.get(layout), writer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Plays {@code runs} games of every configuration on a pool of worker
+     * threads and writes the results in run order, holding back those that
+     * finish early.
+     *
+     * @param configs    the configurations
+     * @param runs       games per configuration
+     * @param firstSeed  the seed of each configuration's first game
+     * @param maxTicks   the longest game, in ticks
+     * @param aimError   the autoplayer's aim error
+     * @param spread     the largest turn of a ball's starting direction, in degrees
+     * @param threads    the number of worker threads
+     * @param runsCsv    receives one line per game
+     * @param summaryCsv receives one line per configuration
+     * @param store      receives every game's score, or null
+     * @throws IOException if writing fails
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public static void run(List<Configuration> configs, int runs, long firstSeed, long maxTicks,
+                           double aimError, double spread, int threads, Writer runsCsv, Writer summaryCsv,
+                           LeaderboardStore store)
+            throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<Batch> done = new ExecutorCompletionService<>(pool);
+        int tasks = 0;
+        for (int c = 0; c < configs.size(); c++) {
+            Configuration config = configs.get(c);
+            for (int from = 0; from < runs; from += BATCH) {
+                int slot = c;
+                int order = tasks;
+                long seed = firstSeed + from;
+                int count = Math.min(BATCH, runs - from);
+                done.submit(() -> {
+                    RunResult[] results = new RunResult[count];
+                    for (int i = 0; i < count; i++) {
+                        results[i] = HeadlessRun.play(config, seed + i, maxTicks, aimError, spread);
+                    }
+                    return new Batch(order, slot, results);
+                });
+                tasks++;
+            }
+        }
+        SweepStats[] stats = new SweepStats[configs.size()];
+        // batches that finished before an earlier one, by submission order
+        Batch[] early = new Batch[tasks];
+        int next = 0;
+        runsCsv.write(RUNS_HEADER + "\n");
+        summaryCsv.write(SweepStats.HEADER + "\n");
+        try {
+            for (int t = 0; t < tasks; t++) {
+                Batch arrived = done.take().get();
+                early[arrived.order] = arrived;
+                for (; next < tasks && early[next] != null; next++) {
+                    Batch batch = early[next];
+                    early[next] = null;
+                    write(batch, configs.get(batch.slot), runs, stats, runsCsv, summaryCsv, store);
+                }
+                runsCsv.flush();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A run failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes a batch's games to the runs file and the leaderboards, and the
+     * configuration's summary once its last game is written.
+     */
+    private static void write(Batch batch, Configuration config, int runs, SweepStats[] stats,
+                              Writer runsCsv, Writer summaryCsv, LeaderboardStore store) throws IOException {
+        if (stats[batch.slot] == null) {
+            stats[batch.slot] = new SweepStats(config);
+        }
+        for (RunResult r : batch.results) {
+            runsCsv.write(config.getIndex() + "," + r.getSeed() + "," + (r.isCleared() ? 1 : 0) + ","
+                    + r.getTicks() + "," + r.getBallsLost() + "," + r.getScore() + "\n");
+            stats[batch.slot].add(r);
+            if (store != null) {
+                store.submit(r.getLevel(), "config " + config.getIndex() + " seed " + r.getSeed(), r.getScore());
+            }
+        }
+        if (stats[batch.slot].getRuns() == runs) {
+            summaryCsv.write(stats[batch.slot].toCsv() + "\n");
+            summaryCsv.flush();
+            stats[batch.slot] = null;
+        }
+    }
+
+    /**
+     * The results of consecutive runs of one configuration.
+     */
+    private static final class Batch {
+        private final int order;
+        private final int slot;
+        private final RunResult[] results;
+
+        Batch(int order, int slot, RunResult[] results) {
+            this.order = order;
+            this.slot = slot;
+            this.results = results;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package sweep;
+
+/**
+ * The outcome of one headless game.
+ */
+public final class RunResult {
+    private final long seed;
+    private final boolean cleared;
+    private final long ticks;
+    private final int ballsLost;
+    private final int score;
+    private final String level;
+
+    /**
+     * Creates a result.
+     *
+     * @param seed      the seed the game was played with
+     * @param cleared   whether every block was destroyed
+     * @param ticks     the number of ticks played
+     * @param ballsLost the number of balls that fell out
+     * @param score     the final score
+     * @param level     the name the level gives itself
+     */
+    public RunResult(long seed, boolean cleared, long ticks, int ballsLost, int score, String level) {
+        this.seed = seed;
+        this.cleared = cleared;
+        this.ticks = ticks;
+        this.ballsLost = ballsLost;
+        this.score = score;
+        this.level = level;
+    }
+
+    /**
+     * Returns the seed the game was played with.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Checks whether every block was destroyed.
+     *
+     * @return true if the level was cleared
+     */
+    public boolean isCleared() {
+        return this.cleared;
+    }
+
+    /**
+     * Returns the number of ticks played.
+     *
+     * @return the ticks
+     */
+    public long getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * Returns the number of balls that fell out.
+     *
+     * @return the balls lost
+     */
+    public int getBallsLost() {
+        return this.ballsLost;
+    }
+
+    /**
+     * Returns the final score.
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return this.score;
+    }
+
+    /**
+     * Returns the name the level gives itself, which its leaderboard is
+     * kept under.
+     *
+     * @return the level name
+     */
+    public String getLevel() {
+        return this.level;
+    }
+}
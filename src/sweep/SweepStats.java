@@ -0,0 +1,80 @@
+package sweep;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Collects the results of one configuration's runs and summarizes them.
+ */
+final class SweepStats {
+    /** The header of the summary CSV file. */
+    static final String HEADER = "config,layout,angle0,angle1,angle2,angle3,speed,runs,clear_rate,"
+            + "mean_ticks_to_clear,p50_ticks_to_clear,mean_balls_lost,mean_score,"
+            + "p10_score,p50_score,p90_score,max_score";
+
+    private final Configuration config;
+    private int runs;
+    private int clears;
+    private long[] clearTicks = new long[16];
+    private long ballsLost;
+    private int[] scores = new int[16];
+
+    SweepStats(Configuration config) {
+        this.config = config;
+    }
+
+    void add(RunResult r) {
+        if (this.runs == this.scores.length) {
+            this.scores = Arrays.copyOf(this.scores, this.runs * 2);
+        }
+        this.scores[this.runs++] = r.getScore();
+        this.ballsLost += r.getBallsLost();
+        if (r.isCleared()) {
+            if (this.clears == this.clearTicks.length) {
+                this.clearTicks = Arrays.copyOf(this.clearTicks, this.clears * 2);
+            }
+            this.clearTicks[this.clears++] = r.getTicks();
+        }
+    }
+
+    int getRuns() {
+        return this.runs;
+    }
+
+    /**
+     * Returns the summary as a CSV line, without the line break.
+     */
+    String toCsv() {
+        int[] sorted = Arrays.copyOf(this.scores, this.runs);
+        Arrays.sort(sorted);
+        long[] ticks = Arrays.copyOf(this.clearTicks, this.clears);
+        Arrays.sort(ticks);
+        long tickSum = 0;
+        for (long t : ticks) {
+            tickSum += t;
+        }
+        long scoreSum = 0;
+        for (int s : sorted) {
+            scoreSum += s;
+        }
+        double[] a = this.config.getAngles();
+        return String.format(Locale.ROOT, "%d,%s,%s,%s,%s,%s,%s,%d,%.4f,%s,%s,%.4f,%.2f,%d,%d,%d,%d",
+                this.config.getIndex(), this.config.getLayout(), num(a[0]), num(a[1]), num(a[2]), num(a[3]),
+                num(this.config.getSpeed()), this.runs, (double) this.clears / this.runs,
+                this.clears == 0 ? "" : String.format(Locale.ROOT, "%.1f", (double) tickSum / this.clears),
+                this.clears == 0 ? "" : Long.toString(ticks[ticks.length / 2]),
+                (double) this.ballsLost / this.runs, (double) scoreSum / this.runs,
+                percentile(sorted, 0.1), percentile(sorted, 0.5), percentile(sorted, 0.9), sorted[sorted.length - 1]);
+    }
+
+    private static int percentile(int[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+
+    /**
+     * Formats a parameter without a trailing ".0" for whole numbers.
+     */
+    static String num(double v) {
+        return v == Math.rint(v) ? Long.toString((long) v) : Double.toString(v);
+    }
+}
@@ -0,0 +1,115 @@
+package game;
+
+import Geometry_shapes.Point;
+import Geometry_shapes.Rectangle;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Respawns balls and blocks with listeners for many ticks and checks the
+ * pools: recycled blocks never notify their old listeners, collision
+ * results and block views go back to their pools, and trajectory
+ * predictions take no views. Then recycles one block with a new listener
+ * many times, and checks that its old listeners are released.
+ */
+public final class PoolStressTest {
+    private static final int TICKS = 20000;
+    private static final int MAX_BALLS = 40;
+    private static final int RECYCLES = 100000;
+
+    private PoolStressTest() {
+    }
+
+    /**
+     * Runs the test.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        Game g = new Game();
+        g.initialize(null, new IdleKeyboardSensor());
+        TrajectoryPredictor predictor = new TrajectoryPredictor(g.getEnvironment(), 16);
+        SplittableRandom random = new SplittableRandom(3);
+        List<Block> live = new ArrayList<>();
+        int[] stale = {0};
+        int spawned = 0;
+        for (int t = 0; t < TICKS && g.getRemainingBlocks().getValue() > 0; t++) {
+            if (t % 10 == 0 && g.getBalls().size() < MAX_BALLS) {
+                Ball b = g.newBall(100 + random.nextInt(600), 300, 5, Color.CYAN, random.nextDouble(-2, 2), 4);
+                b.addToGame(g);
+                g.getRemainingBalls().increase(1);
+                spawned++;
+            }
+            if (t % 50 == 0) {
+                Block block = g.newBlock(new Rectangle(new Point(50 + random.nextInt(650), 350 + random.nextInt(150)),
+                        40, 10), Color.MAGENTA);
+                block.addHitListener((beingHit, hitter) -> {
+                    // a recycled block must not call the listeners of its earlier life
+                    if (!live.remove(block)) {
+                        stale[0]++;
+                    }
+                    block.removeFromGame(g);
+                });
+                block.addToGame(g);
+                live.add(block);
+            }
+            int views = g.getBlockTable().getViewPool().getOutstanding();
+            List<Ball> balls = g.getBalls();
+            if (!balls.isEmpty()) {
+                predictor.predict(balls.get(0), 8, 600, 560, null);
+                for (int c = 0; c < predictor.getContactCount(); c++) {
+                    check(predictor.getContactCollidable(c) != null || predictor.getContactRow(c) >= 0,
+                            "contact " + c + " names neither an object nor a row");
+                }
+            }
+            check(g.getBlockTable().getViewPool().getOutstanding() == views, "a prediction took a block view");
+            g.tick();
+        }
+        check(spawned > 100, "only " + spawned + " balls were spawned");
+        check(stale[0] == 0, stale[0] + " hits reached recycled blocks");
+        check(g.getBallPool().getHits() > 0, "no ball was recycled: " + g.getBallPool());
+        check(g.getBlockPool().getHits() > 0, "no block was recycled: " + g.getBlockPool());
+        check(g.getEnvironment().getCollisionPool().getHighWater() <= 1,
+                "collision results were not released: " + g.getEnvironment().getCollisionPool());
+        check(g.getBlockTable().getViewPool().getHighWater() <= 1,
+                "block views were not released: " + g.getBlockTable().getViewPool());
+        int recycled = recycleOneBlock();
+        System.out.println("PoolStressTest passed: " + spawned + " balls spawned in " + g.getTick() + " ticks, "
+                + recycled + " block recycles");
+    }
+
+    /**
+     * Adds and removes a pooled block with a new listener every time; it
+     * must let go of the listeners of its earlier lives.
+     */
+    private static int recycleOneBlock() {
+        Game g = new Game();
+        g.initialize(null, new IdleKeyboardSensor());
+        Rectangle rect = new Rectangle(new Point(10, 10), 20, 10);
+        Block first = null;
+        for (int i = 0; i < RECYCLES; i++) {
+            Block block = g.newBlock(rect, Color.MAGENTA);
+            if (first == null) {
+                first = block;
+            }
+            check(block == first, "the block was not recycled in cycle " + i);
+            block.addHitListener((beingHit, hitter) -> {
+            });
+            check(block.getListeners().length == 1,
+                    "the block kept listeners of an earlier life in cycle " + i);
+            block.addToGame(g);
+            block.removeFromGame(g);
+            g.tick();
+        }
+        return RECYCLES;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
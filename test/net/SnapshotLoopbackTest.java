@@ -0,0 +1,164 @@
+package net;
+
+import render.FrameState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Plays a server with two players and a spectator over loopback and
+ * checks that every client's view matches the server's frame on every
+ * tick once it has its first keyframe. Along the way the spectator stops
+ * reading for a while, and must be skipped to a keyframe within
+ * {@link GameServer#MAX_QUEUED} ticks and then catch up, and a client
+ * that joins late must match from its first keyframe, removed blocks
+ * included. Finally the packet pool must reuse its large packets.
+ */
+public final class SnapshotLoopbackTest {
+    private static final int TICKS = 3000;
+    private static final int STALL_FROM = 600;
+    private static final int STALL_TO = 900;
+    private static final int LATE_JOIN = 1500;
+
+    private SnapshotLoopbackTest() {
+    }
+
+    /**
+     * Runs the test.
+     *
+     * @param args unused
+     * @throws Exception if the loopback connection fails
+     */
+    public static void main(String[] args) throws Exception {
+        GameServer server = new GameServer(null, 2, new InetSocketAddress("127.0.0.1", 0));
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+        GameClient[] clients = new GameClient[4];
+        for (int i = 0; i < 3; i++) {
+            clients[i] = join(server, address);
+        }
+        check(clients[0].getPlayer() == 0 && clients[1].getPlayer() == 1 && clients[2].getPlayer() == -1,
+                "seats were not handed out in order");
+        FrameState frame = new FrameState();
+        boolean[] synced = new boolean[clients.length];
+        long skipTick = -1;
+        int checks = 0;
+        for (int tick = 0; tick < TICKS && !server.isOver(); tick++) {
+            if (tick == 100) {
+                clients[0].sendInput(Protocol.KEY_LEFT);
+            } else if (tick == 160) {
+                clients[0].sendInput(0);
+            } else if (tick == 200) {
+                clients[1].sendInput(Protocol.KEY_RIGHT);
+            } else if (tick == 260) {
+                clients[1].sendInput(0);
+            } else if (tick == LATE_JOIN) {
+                clients[3] = join(server, address);
+            }
+            long skips = server.getSkips();
+            server.step();
+            if (skipTick < 0 && tick >= STALL_FROM && server.getSkips() > skips) {
+                skipTick = tick;
+            }
+            server.getGame().writeFrame(frame);
+            String want = signature(frame);
+            for (int i = 0; i < clients.length; i++) {
+                GameClient c = clients[i];
+                if (c == null || i == 2 && tick >= STALL_FROM && tick < STALL_TO) {
+                    continue;
+                }
+                for (int n = 0; n < 200 && c.getWorld().getTick() != frame.getTick(); n++) {
+                    c.poll(1);
+                }
+                synced[i] |= c.getWorld().getTick() == frame.getTick();
+                if (!synced[i] || i == 2 && tick < STALL_TO + 2 * GameServer.KEYFRAME_INTERVAL) {
+                    continue;
+                }
+                checks++;
+                check(c.getWorld().getTick() == frame.getTick(), "client " + i + " fell behind at tick " + tick);
+                String got = signature(c.getWorld().getView());
+                check(got.equals(want), "client " + i + " differs at tick " + tick + "\n  server " + want
+                        + "\n  client " + got);
+            }
+        }
+        for (int i = 0; i < clients.length; i++) {
+            check(synced[i], "client " + i + " never received a keyframe");
+        }
+        check(skipTick >= 0, "the stalled spectator was never skipped");
+        check(skipTick - STALL_FROM <= GameServer.MAX_QUEUED + GameClient.ACK_TICKS + 2,
+                "the stalled spectator was skipped only " + (skipTick - STALL_FROM) + " ticks into its stall");
+        check(server.getDropped() == 0, "a client was dropped");
+        check(server.getPool().getCreated() <= GameServer.MAX_QUEUED + 4,
+                "the pool created " + server.getPool().getCreated() + " packets");
+        server.finish();
+        for (GameClient c : clients) {
+            for (int n = 0; n < 100 && !c.isEnded(); n++) {
+                c.poll(5);
+            }
+            check(c.isEnded() && c.getFinalScore() == server.getGame().getScore().getValue(),
+                    "a client missed the end of the game");
+            c.close();
+        }
+        checkLargePackets();
+        System.out.println("SnapshotLoopbackTest passed: " + checks + " client frames matched, stalled spectator skipped "
+                + (skipTick - STALL_FROM) + " ticks into its stall");
+    }
+
+    private static GameClient join(GameServer server, InetSocketAddress address) throws Exception {
+        GameClient[] joined = new GameClient[1];
+        IOException[] failure = new IOException[1];
+        Thread connecting = new Thread(() -> {
+            try {
+                joined[0] = GameClient.connect(address);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        connecting.start();
+        // the server only accepts while it steps
+        while (connecting.isAlive()) {
+            server.step();
+            Thread.sleep(1);
+        }
+        if (failure[0] != null) {
+            throw new UncheckedIOException(failure[0]);
+        }
+        joined[0].start(null);
+        return joined[0];
+    }
+
+    private static void checkLargePackets() {
+        PacketPool pool = new PacketPool(1024);
+        Packet p = pool.acquire(4096);
+        p.release();
+        pool.acquire(4000).release();
+        check(pool.getCreatedLarge() == 1, "a large packet was not reused");
+        pool.acquire(20000).release();
+        pool.acquire(5000).release();
+        check(pool.getCreatedLarge() == 2, "large packets did not grow once: " + pool.getCreatedLarge());
+    }
+
+    private static String signature(FrameState f) {
+        StringBuilder b = new StringBuilder();
+        b.append('t').append(f.getTick()).append(" s").append(f.getScore());
+        for (int i = 0; i < f.getBallCount(); i++) {
+            b.append(" b").append(f.getBallId(i)).append(':').append(f.getBallX(i)).append(',').append(f.getBallY(i))
+                    .append(',').append(f.getBallRadius(i)).append(',').append(f.getBallColor(i).getRGB());
+        }
+        for (int i = 0; i < f.getPaddleCount(); i++) {
+            b.append(" p").append(f.getPaddleX(i)).append(',').append(f.getPaddleY(i)).append(',')
+                    .append(f.getPaddleWidth(i));
+        }
+        b.append(" blocks");
+        for (int id = 0; id < f.getBlockLimit(); id++) {
+            b.append(f.isBlockAlive(id) ? '1' : '0');
+        }
+        return b.toString();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}